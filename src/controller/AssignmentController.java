@@ -11,10 +11,23 @@ import model.Course; // Keep import just in case needed later
  */
 public class AssignmentController {
 
+    // logs the edits to the journal through this, can be null to not log.
+    private final TeacherController teacherController;
+
     /**
      *  constructor, prints a message when created
      */
     public AssignmentController() {
+        this(null);
+    }
+
+    /**
+     * constructor that also saves the edits, they get logged to the journal the
+     * teacher controller logs to.
+     * @param teacherController the controller for the teacher's courses, can be null to not log.
+     */
+    public AssignmentController(TeacherController teacherController) {
+        this.teacherController = teacherController;
         System.out.println("AssignmentController created");
     }
 
@@ -42,6 +55,8 @@ public class AssignmentController {
 
         //keep track if any part fails.
         boolean success = true;
+        // replay finds the assignment by the name it had before.
+        String nameBefore = assignmentToEdit.getName();
 
         //check if a new name was given and isn't empty.
         boolean shouldChangeName = (newName != null && !newName.trim().isEmpty());
@@ -80,6 +95,9 @@ public class AssignmentController {
 
         // TODO need blocks here later to update other fields like due date, description, etc
 
+        if (shouldChangeName || shouldChangePoints) {
+            logEdit(nameBefore, assignmentToEdit);
+        }
         // Return true only if all updates we tried worked.
         return success;
     }
@@ -134,6 +152,7 @@ public class AssignmentController {
               // Call the setter.
               theAssignment.setGraded(isNowGraded); // Use the setter
               System.out.println("assignment graded status set ok");
+              logEdit(theAssignment.getName(), theAssignment);
               return true; // Assume worked.
          } 
          
@@ -142,4 +161,11 @@ public class AssignmentController {
              return false; // Failed.
          }
     }
-}
\ No newline at end of file
+
+    // saves the assignment's name, points and graded flag to the journal, if there's one.
+    private void logEdit(String nameBefore, Assignment theAssignment) {
+        if (teacherController != null) {
+            teacherController.logAssignmentEdit(nameBefore, theAssignment);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package controller;
+
+import model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AuthenticationService checks passwords off the Swing thread.
+ * BCrypt is slow on purpose, about 100 ms a check, so when a whole lab logs in at once
+ * doing it on the EDT freezes the screen. Here every check runs on a small fixed pool
+ * of worker threads and the caller gets a CompletableFuture back right away.
+ *
+ * A few things keep it from falling over under load:
+ * - the queue in front of the workers has a fixed size, when it's full new logins are
+ *   turned away right away instead of piling up (admission control).
+ * - if the same username and password is already being checked, the second login
+ *   gets the same future instead of hashing again (in flight dedup). The running check
+ *   only keeps a salted SHA-256 of its password to compare against, never the password
+ *   itself, and a login with a different password gets checked on its own.
+ * - queue depth and hash times are counted so they can be printed or shown.
+ */
+public class AuthenticationService {
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private final UserController userController;
+    private final ThreadPoolExecutor workers;
+    // username -> the check running for it right now.
+    private final Map<String, InFlightLogin> inFlight = new ConcurrentHashMap<>();
+
+    // metrics
+    private final AtomicLong hashesDone = new AtomicLong();
+    private final AtomicLong totalHashNanos = new AtomicLong();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+    private final AtomicLong rejectedLogins = new AtomicLong();
+    private final AtomicLong dedupedLogins = new AtomicLong();
+
+    /**
+     * Makes the service with one worker per core, at least 2, and the default queue size.
+     * @param userController where accounts are looked up.
+     */
+    public AuthenticationService(UserController userController) {
+        this(userController, Math.max(2, Runtime.getRuntime().availableProcessors()), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Makes the service.
+     * @param userController where accounts are looked up.
+     * @param workerCount how many password checks can run at the same time.
+     * @param queueCapacity how many checks can wait for a worker before new ones are turned away.
+     */
+    public AuthenticationService(UserController userController, int workerCount, int queueCapacity) {
+        if (workerCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("workerCount and queueCapacity must be at least 1");
+        }
+        this.userController = userController;
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "auth-worker-" + threadNumber.getAndIncrement());
+            // daemon so an open pool never keeps the app from exiting.
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), factory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Starts checking a login.
+     * The future finishes with the User if the username exists and the password matches,
+     * or with null if not, same as the old login did. If too many logins are waiting it
+     * finishes right away with an IllegalStateException so the screen can say try again.
+     * @param username the username typed in.
+     * @param password the password typed in.
+     * @return future with the logged in User or null.
+     */
+    public CompletableFuture<User> authenticate(String username, String password) {
+        if (username == null || username.isEmpty() || password == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        InFlightLogin mine = new InFlightLogin(password);
+        InFlightLogin running = inFlight.putIfAbsent(username, mine);
+        if (running != null) {
+            if (running.matches(password)) {
+                dedupedLogins.incrementAndGet();
+                return running.future;
+            }
+            // a different password for the same account, check it on its own.
+            return submit(username, password, new InFlightLogin(password), false);
+        }
+        return submit(username, password, mine, true);
+    }
+
+    private CompletableFuture<User> submit(String username, String password, InFlightLogin login, boolean registered) {
+        try {
+            // the password only lives in this task, not in the shared map.
+            workers.execute(() -> runCheck(username, password, login));
+        } catch (RejectedExecutionException full) {
+            rejectedLogins.incrementAndGet();
+            System.out.println("AuthenticationService problem: login queue full, turning away " + username);
+            login.future.completeExceptionally(new IllegalStateException("Too many logins right now, please try again."));
+        }
+        if (registered) {
+            // take it out once it's done so the next login checks again.
+            login.future.whenComplete((user, error) -> inFlight.remove(username, login));
+        }
+        return login.future;
+    }
+
+    private void runCheck(String username, String password, InFlightLogin login) {
+        try {
+            User user = userController.findUserByUsername(username);
+            boolean userExists = (user != null);
+            boolean passwordMatches = false;
+            if (userExists) {
+                long start = System.nanoTime();
+                try {
+                    passwordMatches = user.checkPassword(password);
+                } catch (IllegalArgumentException badHash) {
+                    System.out.println("AuthenticationService problem: stored hash for " + username + " can't be read");
+                }
+                recordHashTime(System.nanoTime() - start);
+            }
+            if (passwordMatches) {
+                // still on the worker, so an old cost hash gets upgraded off the EDT too.
+                userController.upgradePasswordHash(user, password);
+            }
+            login.future.complete(passwordMatches ? user : null);
+        } catch (RuntimeException e) {
+            login.future.completeExceptionally(e);
+        }
+    }
+
+    private void recordHashTime(long nanos) {
+        hashesDone.incrementAndGet();
+        totalHashNanos.addAndGet(nanos);
+        maxHashNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    //metrics
+
+    /** How many checks are waiting for a worker right now. */
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    /** How many checks are running on a worker right now. */
+    public int getActiveChecks() {
+        return workers.getActiveCount();
+    }
+
+    /** How many different usernames are being checked right now. */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /** How many BCrypt checks have finished. */
+    public long getHashCount() {
+        return hashesDone.get();
+    }
+
+    /** Average time of one BCrypt check in milliseconds, 0 if none yet. */
+    public double getAverageHashMillis() {
+        long count = hashesDone.get();
+        return (count == 0) ? 0.0 : totalHashNanos.get() / (double) count / 1_000_000.0;
+    }
+
+    /** Slowest BCrypt check so far in milliseconds. */
+    public double getMaxHashMillis() {
+        return maxHashNanos.get() / 1_000_000.0;
+    }
+
+    /** How many logins were turned away because the queue was full. */
+    public long getRejectedCount() {
+        return rejectedLogins.get();
+    }
+
+    /** How many logins shared a check that was already running. */
+    public long getDedupedCount() {
+        return dedupedLogins.get();
+    }
+
+    /**
+     * Stops taking new logins, checks already queued still finish.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AuthenticationService [queued=%d, active=%d, hashes=%d, avg=%.1fms, max=%.1fms, rejected=%d, deduped=%d]",
+            getQueueDepth(), getActiveChecks(), getHashCount(), getAverageHashMillis(), getMaxHashMillis(),
+            getRejectedCount(), getDedupedCount());
+    }
+
+    /**
+     * One login being checked. It keeps a salted digest of the password instead of the
+     * password, so only identical logins share it without the password sitting in the map.
+     */
+    private static class InFlightLogin {
+        private static final SecureRandom SALTS = new SecureRandom();
+
+        private final byte[] salt = new byte[16];
+        private final byte[] digest;
+        private final CompletableFuture<User> future = new CompletableFuture<>();
+
+        InFlightLogin(String password) {
+            SALTS.nextBytes(salt);
+            this.digest = digest(salt, password);
+        }
+
+        /** Checks if another login typed the same password, in constant time. */
+        boolean matches(String password) {
+            return MessageDigest.isEqual(digest, digest(salt, password));
+        }
+
+        private static byte[] digest(byte[] salt, String password) {
+            try {
+                MessageDigest sha = MessageDigest.getInstance("SHA-256");
+                sha.update(salt);
+                return sha.digest(password.getBytes(StandardCharsets.UTF_8));
+            } catch (NoSuchAlgorithmException e) {
+                // every JDK has to have SHA-256.
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+}
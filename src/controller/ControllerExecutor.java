@@ -0,0 +1,274 @@
+package controller;
+
+import javax.swing.SwingUtilities;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * ControllerExecutor runs controller work that blocks, like reading an import file or
+ * hashing a new account's password, off the Swing thread.
+ * The views used to call those controller methods right in their action listeners,
+ * so the whole window froze until the file was read or the hash was done.
+ *
+ * Every task gets its own thread, so there's no pool size to pick: a thread that's
+ * just waiting on the disk doesn't hold anyone else up. On a JDK that has virtual
+ * threads (21 and up) those threads are virtual ones and cost almost nothing. On older
+ * JDKs, like the 17 this builds on, it falls back to a cached pool of daemon threads,
+ * which makes threads as they're needed and reuses idle ones.
+ *
+ * fanOut runs a list of tasks at once as one group: it only finishes once every task in
+ * it has stopped, and if one fails the rest are cancelled (structured concurrency).
+ * The onEdt versions hand the result back on the Swing thread, so the callback can
+ * update the screen right away.
+ */
+public class ControllerExecutor implements AutoCloseable {
+
+    // made the first time shared() is called.
+    private static class SharedHolder {
+        static final ControllerExecutor SHARED = new ControllerExecutor();
+    }
+
+    private final ExecutorService threads;
+    private final boolean virtualThreads;
+
+    /**
+     * Makes an executor with virtual threads if the JDK has them, or a cached pool if not.
+     */
+    public ControllerExecutor() {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = (virtual != null);
+        this.threads = virtualThreads ? virtual : newCachedDaemonPool();
+    }
+
+    /**
+     * Gets the executor the controllers share. Its threads never keep the app from exiting.
+     */
+    public static ControllerExecutor shared() {
+        return SharedHolder.SHARED;
+    }
+
+    /** Checks if tasks run on virtual threads, false means the cached pool fallback. */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Runs one blocking task on its own thread.
+     * @param task the work, can throw.
+     * @return future with what the task returned. It fails with whatever the task threw.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        if (task == null) {
+            throw new IllegalArgumentException("task cannot be null");
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            threads.execute(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException closed) {
+            result.completeExceptionally(new IllegalStateException("ControllerExecutor is closed", closed));
+        }
+        return result;
+    }
+
+    /**
+     * Runs one blocking task and gives the result to a callback on the Swing thread.
+     * @param task the work, runs on its own thread.
+     * @param onEdt gets the result and null, or null and what the task threw.
+     * @return the same future submit gives, for tests or chaining.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task, BiConsumer<? super T, Throwable> onEdt) {
+        return onEdt(submit(task), onEdt);
+    }
+
+    /**
+     * Runs one task per item all at once, as one group.
+     * The group doesn't finish until every task in it has stopped, so nothing it started
+     * is still running afterwards. If one task fails, tasks that haven't started are skipped,
+     * running ones are interrupted, and the group fails with that first error.
+     * @param items what to work on, like file paths.
+     * @param task the work for one item, runs on its own thread.
+     * @return future with the results in the same order as the items.
+     */
+    public <T, R> CompletableFuture<List<R>> fanOut(List<T> items, Function<? super T, ? extends R> task) {
+        if (items == null || task == null) {
+            throw new IllegalArgumentException("items and task cannot be null");
+        }
+        List<T> copy = new ArrayList<>(items);
+        if (copy.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        // the group waits on its own thread, fine since threads here are cheap.
+        return submit(() -> new Scope<T, R>(copy, task).run());
+    }
+
+    /**
+     * fanOut that gives the results to a callback on the Swing thread.
+     * @param onEdt gets the results and null, or null and the first error.
+     */
+    public <T, R> CompletableFuture<List<R>> fanOut(List<T> items, Function<? super T, ? extends R> task,
+                                                   BiConsumer<? super List<R>, Throwable> onEdt) {
+        return onEdt(fanOut(items, task), onEdt);
+    }
+
+    /**
+     * Calls a callback on the Swing thread once a future is done.
+     * The CompletionException wrapper is taken off the error first.
+     * @return the same future.
+     */
+    public static <T> CompletableFuture<T> onEdt(CompletableFuture<T> future, BiConsumer<? super T, Throwable> onEdt) {
+        if (future == null || onEdt == null) {
+            throw new IllegalArgumentException("future and onEdt cannot be null");
+        }
+        future.whenComplete((value, error) -> {
+            Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+            SwingUtilities.invokeLater(() -> onEdt.accept(value, cause));
+        });
+        return future;
+    }
+
+    /**
+     * Stops taking tasks, ones already running still finish.
+     * Don't close the shared() one.
+     */
+    @Override
+    public void close() {
+        threads.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "ControllerExecutor [" + (virtualThreads ? "virtual threads" : "cached pool") + "]";
+    }
+
+    /**
+     * One fanOut group. Every task counts down the latch when it stops, even a skipped one,
+     * so run() can wait for all of them.
+     */
+    private class Scope<T, R> {
+        private final List<T> items;
+        private final Function<? super T, ? extends R> task;
+        private final CountDownLatch stopped;
+        private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        // threads running a task of this group right now, interrupted if the group fails.
+        private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+        private final Object[] results;
+
+        Scope(List<T> items, Function<? super T, ? extends R> task) {
+            this.items = items;
+            this.task = task;
+            this.stopped = new CountDownLatch(items.size());
+            this.results = new Object[items.size()];
+        }
+
+        List<R> run() throws Exception {
+            for (int i = 0; i < items.size(); i++) {
+                int index = i;
+                try {
+                    threads.execute(() -> runOne(index));
+                } catch (RejectedExecutionException closed) {
+                    fail(new IllegalStateException("ControllerExecutor is closed", closed));
+                    // the rest will never start, count them as stopped.
+                    for (int skipped = i; skipped < items.size(); skipped++) {
+                        stopped.countDown();
+                    }
+                    break;
+                }
+            }
+            try {
+                stopped.await();
+            } catch (InterruptedException e) {
+                // whoever waits on the group gave up, stop the children and still wait for them.
+                fail(new CancellationException("fanOut interrupted"));
+                stopped.await();
+                throw e;
+            }
+            Throwable failure = firstFailure.get();
+            if (failure instanceof Exception) {
+                throw (Exception) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            List<R> list = new ArrayList<>(results.length);
+            for (Object value : results) {
+                @SuppressWarnings("unchecked")
+                R result = (R) value;
+                list.add(result);
+            }
+            return Collections.unmodifiableList(list);
+        }
+
+        private void runOne(int index) {
+            Thread me = Thread.currentThread();
+            running.add(me);
+            try {
+                // checked after adding, so a failure either sees this thread or this thread sees the failure.
+                if (firstFailure.get() == null) {
+                    results[index] = task.apply(items.get(index));
+                }
+            } catch (Throwable e) {
+                fail(e);
+            } finally {
+                synchronized (running) {
+                    running.remove(me);
+                    Thread.interrupted(); // don't leave an interrupt meant for this task on a reused thread
+                }
+                stopped.countDown();
+            }
+        }
+
+        private void fail(Throwable e) {
+            if (!firstFailure.compareAndSet(null, e)) {
+                return; // only the first error counts, the rest are from being cancelled
+            }
+            synchronized (running) {
+                for (Thread thread : running) {
+                    thread.interrupt();
+                }
+            }
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor, looked up by name since it's not in JDK 17.
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException notThere) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newCachedDaemonPool() {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "controller-task-" + threadNumber.getAndIncrement());
+            // daemon so a file still being read never keeps the app from exiting.
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(factory);
+    }
+}
@@ -2,6 +2,8 @@ package controller;
 
 import model.User;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * This controller handles the login process.
  * Its going to connect to  the login screen (LoginView) to the user system (UserController).
@@ -12,6 +14,8 @@ public class LoginController {
     
 	
     private UserController userController;
+    // checks passwords on its own threads so the login screen doesn't freeze.
+    private AuthenticationService authService;
 
     /**
      * Creates a new LoginController and links it to the UserController.
@@ -19,18 +23,38 @@ public class LoginController {
      * @param userController the helper class that handles login checking and user files
      */
     public LoginController(UserController userController) {
+        this(userController, new AuthenticationService(userController));
+    }
+
+    /**
+     * Creates a new LoginController with its own AuthenticationService, like one with
+     * a different pool size.
+     *
+     * @param userController the helper class that handles login checking and user files
+     * @param authService the service that checks the passwords
+     */
+    public LoginController(UserController userController, AuthenticationService authService) {
         this.userController = userController;
+        this.authService = authService;
     }
 
     /**
      * Tries to log in using a username and password.
-     * If the info is correct, it returns the User object. If not, it returns null.
+     * The password check runs in the background, so this returns right away.
+     * The future gets the User object if the info is correct, or null if it isn't.
+     * It fails with an IllegalStateException if too many logins are waiting already.
+     * It doesn't finish on the Swing thread, so use SwingUtilities.invokeLater to update the screen.
      *
      * @param username the login username typed by the user
      * @param password the login password typed by the user
-     * @return the User object if login works, or null if it fails
+     * @return future with the User object if login works, or null if it fails
      */
-    public User login(String username, String password) {
-        return userController.login(username, password);
+    public CompletableFuture<User> login(String username, String password) {
+        return authService.authenticate(username, password);
+    }
+
+    /** Gets the service doing the password checks, for its queue and timing numbers. */
+    public AuthenticationService getAuthenticationService() {
+        return authService;
     }
 }
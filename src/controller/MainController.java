@@ -3,17 +3,56 @@ package controller;
 import model.*;
 import view.*;
 
+import persistence.GradebookStore;
+
 import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 // A controller to handle the operation of switching between views and starting the app
 public class MainController {
     private UserController userController;
     private LoginController loginController;
     private User loggedInUser;
+    private GradebookStore gradebookStore; // null if the data folder couldn't be opened
 
     public MainController() {
         userController = new UserController();
         loginController = new LoginController(userController);
+        openGradebookStore();
+    }
+
+    // Opens the gradebook store, the app still runs without saving changes if this fails.
+    private void openGradebookStore() {
+        try {
+            gradebookStore = new GradebookStore(Paths.get(GradebookStore.DEFAULT_DIRECTORY));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    gradebookStore.close();
+                } catch (IOException e) {
+                    System.out.println("MainController problem: closing gradebook store failed " + e.getMessage());
+                }
+            }));
+        } catch (IOException e) {
+            System.out.println("MainController problem: couldn't open gradebook store, changes won't be saved " + e.getMessage());
+            gradebookStore = null;
+        }
+    }
+
+    // Loads the newest snapshot and the journal after it on top of the demo courses so earlier changes come back.
+    // This reads files, so it's called from ControllerExecutor and not the Swing thread.
+    private void loadSavedGradebook(List<Course> courses, Function<String, User> userLookup) {
+        if (gradebookStore == null) {
+            return;
+        }
+        Map<String, Course> coursesById = new HashMap<>();
+        for (Course c : courses) {
+            coursesById.put(c.getCourseId(), c);
+        }
+        gradebookStore.load(coursesById, userLookup);
     }
 
     public void startApp() {
@@ -26,22 +65,10 @@ public class MainController {
         loginView.getLoginButton().addActionListener(e -> {
             String username = loginView.getUsername();
             String password = loginView.getPassword();
-            User user = loginController.login(username, password);
-            if (user != null) {
-                loggedInUser = user;
-                loginView.dispose();
-                if (loggedInUser instanceof Teacher teacher) {
-                    setupCoursesForTeacher(teacher); // setup fresh and completed courses
-                }
-                else if (loggedInUser instanceof Student student) {
-                	 student.initTransientFields();
-                	setupCoursesForStudent(student);
-                }
-                
-                showMainView();
-            } else {
-                JOptionPane.showMessageDialog(loginView, "Login failed. Please try again.");
-            }
+            // password check runs in the background, button stays off until it's done.
+            loginView.getLoginButton().setEnabled(false);
+            loginController.login(username, password).whenComplete((user, error) ->
+                SwingUtilities.invokeLater(() -> finishLogin(loginView, user, error)));
         });
 
         loginView.getCreateAccountButton().addActionListener(e -> {
@@ -50,6 +77,51 @@ public class MainController {
         });
     }
 
+    // Back on the Swing thread once the password check is done.
+    private void finishLogin(LoginView loginView, User user, Throwable error) {
+        if (error != null) {
+            loginView.getLoginButton().setEnabled(true);
+            Throwable cause = (error.getCause() != null) ? error.getCause() : error;
+            JOptionPane.showMessageDialog(loginView, cause.getMessage());
+            return;
+        }
+        if (user != null) {
+            loggedInUser = user;
+            List<Course> courses;
+            Function<String, User> userLookup;
+            if (loggedInUser instanceof Teacher teacher) {
+                setupCoursesForTeacher(teacher); // setup fresh and completed courses
+                courses = teacher.getCoursesTaught();
+                userLookup = userController::findUserByUsername;
+            }
+            else if (loggedInUser instanceof Student student) {
+            	 student.initTransientFields();
+            	setupCoursesForStudent(student);
+                courses = student.getCurrentCourses();
+                userLookup = name -> name.equals(student.getUsername()) ? student : null;
+            } else {
+                courses = List.of();
+                userLookup = name -> null;
+            }
+
+            // the saved gradebook loads in the background, the login window stays up
+            // (button still off) until it's done and then the main view opens.
+            ControllerExecutor.shared().submit(() -> {
+                loadSavedGradebook(courses, userLookup);
+                return null;
+            }, (ignored, loadError) -> {
+                if (loadError != null) {
+                    System.out.println("MainController problem: loading saved gradebook failed " + loadError.getMessage());
+                }
+                loginView.dispose();
+                showMainView();
+            });
+        } else {
+            loginView.getLoginButton().setEnabled(true);
+            JOptionPane.showMessageDialog(loginView, "Login failed. Please try again.");
+        }
+    }
+
     private void showMainView() {
         List<String> courseNames;
         if (loggedInUser instanceof Teacher) {
@@ -65,6 +137,10 @@ public class MainController {
         MainView mainView = new MainView(loggedInUser.getFirstName() + " " + loggedInUser.getLastName(), courseNames);
 
         mainView.getLogoutButton().addActionListener(e -> {
+            // snapshot the teacher's courses so the next start doesn't replay this whole session.
+            if (gradebookStore != null && loggedInUser instanceof Teacher teacher) {
+                gradebookStore.snapshotNow(teacher.getCoursesTaught());
+            }
             mainView.dispose();
             loggedInUser = null;
             showLoginView();
@@ -98,7 +174,7 @@ public class MainController {
             }
 
             if (loggedInUser instanceof Teacher teacher) {
-                TeacherController teacherController = new TeacherController(teacher, userController);
+                TeacherController teacherController = new TeacherController(teacher, userController, gradebookStore);
                 new CourseView(teacher, selectedCourse, teacherController).setVisible(true);
             } else if (loggedInUser instanceof Student student) {
                 new CourseView(student, selectedCourse, null).setVisible(true);
@@ -120,14 +196,10 @@ public class MainController {
             String password = createView.getPassword();
             Role role = Role.valueOf(createView.getRole().toUpperCase());
 
-            User createdUser = userController.createAccount(fn, ln, username, password, role);
-            if (createdUser != null) {
-                JOptionPane.showMessageDialog(createView, "Account created! Please log in.");
-                createView.dispose();
-                showLoginView();
-            } else {
-                JOptionPane.showMessageDialog(createView, "Failed to create account. Username may already exist.");
-            }
+            // hashing and saving run in the background, button stays off until it's done.
+            createView.getCreateButton().setEnabled(false);
+            ControllerExecutor.onEdt(userController.createAccountAsync(fn, ln, username, password, role),
+                (createdUser, error) -> finishCreateAccount(createView, createdUser, error));
         });
 
         createView.getCancelButton().addActionListener(e -> {
@@ -135,6 +207,21 @@ public class MainController {
             showLoginView();
         });
     }
+    // Back on the Swing thread once the account is saved.
+    private void finishCreateAccount(CreateAccountView createView, User createdUser, Throwable error) {
+        createView.getCreateButton().setEnabled(true);
+        if (error != null) {
+            System.out.println("MainController problem: creating account failed " + error);
+            JOptionPane.showMessageDialog(createView, "Failed to create account: " + error.getMessage());
+        } else if (createdUser != null) {
+            JOptionPane.showMessageDialog(createView, "Account created! Please log in.");
+            createView.dispose();
+            showLoginView();
+        } else {
+            JOptionPane.showMessageDialog(createView, "Failed to create account. Username may already exist.");
+        }
+    }
+
     private void setupCoursesForTeacher(Teacher teacher) {
         // 1. Fresh Courses
         Course csc335 = new Course("CSC 335 - Software Engineering", "CSC335", "Spring 2025", false);
@@ -254,21 +341,10 @@ public class MainController {
         student.addGrade(engQuiz, new Grade(48, "Almost full marks"));
     }
 
-    // Helper for group management
+    // Helper for group management, the registry finds it ignoring case or makes it.
     private Group getOrCreateGroup(Course course, String groupName) {
         if (groupName == null) return null;
-        
-        // Check if group already exists
-        for (Group g : course.getGroups()) {
-            if (g.getGroupName().equalsIgnoreCase(groupName)) {
-                return g;
-            }
-        }
-        
-        // Create new group if not found
-        Group newGroup = new Group(groupName);
-        course.getGroups().add(newGroup);
-        return newGroup;
+        return course.getGroupRegistry().getOrCreate(groupName);
     }
 
     /* Can use the method above like so: 
@@ -126,7 +126,7 @@ public class StudentController {
         
         GradeCalculator calculator = currentCourse.getGradeCalculator();
         return calculator != null ? 
-            calculator.calculateFinalAverage(currentCourse, currentStudent) : 0.0;
+            currentCourse.calculateStudentAverage(currentStudent) : 0.0;
     }
 
     /**
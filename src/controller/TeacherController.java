@@ -7,19 +7,29 @@ import model.GradingCategory;
 import model.Student;
 import model.Teacher;
 import model.User;
+import model.grading.ClassAverageRecomputer;
+import model.grading.ClassAverages;
 import model.grading.GradeCalculator;
 import model.GradeScale;
 import util.StudentImporter; //new importer class
+import util.GradeImporter;
+import util.GradeImportReport;
+import persistence.BinaryCourseFile;
+import persistence.GradebookStore;
+import persistence.JournalRecord;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.Map;
 // import java.io.BufferedReader; //importer handles these now
 // import java.io.FileReader;
 // import java.io.IOException;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This is the TeacherController, handles teacher actions.
@@ -36,14 +46,32 @@ public class TeacherController {
     //need the user controller mainly for the student importer helper.
     private UserController userController;
 
+    //store that every gradebook change gets logged to, can be null to not log.
+    private GradebookStore gradebookStore;
+
+    //works out a whole class's averages in parallel, like after the grading mode changes.
+    //every controller shares one pool, so logging in again doesn't leave another pool behind.
+    private ClassAverageRecomputer averageRecomputer = ClassAverageRecomputer.shared();
+
     /**
      * Constructor for TeacherController.
      * stores the teacher and user controller objects passed in.
      * Prints status messages.
      */
     public TeacherController(Teacher loggedInTeacher, UserController userCtrl) {
+        this(loggedInTeacher, userCtrl, null);
+    }
+
+    /**
+     * Constructor for TeacherController that also saves changes.
+     * Every enroll, assignment add/remove, grade and final grade that works gets
+     * logged to the store's journal so it can be loaded next time the app starts.
+     * @param gradebookStore the GradebookStore to log to, or null for no saving.
+     */
+    public TeacherController(Teacher loggedInTeacher, UserController userCtrl, GradebookStore gradebookStore) {
         this.theCurrentTeacherUsingTheSystem = loggedInTeacher;
         this.userController = userCtrl;
+        this.gradebookStore = gradebookStore;
         // Basic checks
         if (loggedInTeacher != null) {
              System.out.println("TeacherController ready for teacher: " + loggedInTeacher.getUsername());
@@ -99,10 +127,42 @@ public class TeacherController {
         }
         // give to Course model method.
         courseToAddTo.enrollStudent(studentToAdd);
+        logToJournal(JournalRecord.enrollStudent(courseToAddTo, studentToAdd));
         // Assume ok.
         return true;
     }
 
+    /**
+     * addStudentsToCourse enrolls a whole list of students at once, like a roster import.
+     * They all go in inside one course batch, so the views get one studentsEnrolled event.
+     * The journal gets one record per student that wasn't already enrolled, all written together after the batch.
+     * @param studentsToAdd The Student objects, nulls are skipped.
+     * @param courseToAddTo The Course object.
+     * @return how many students were newly enrolled, -1 if the inputs were null.
+     */
+    public int addStudentsToCourse(List<Student> studentsToAdd, Course courseToAddTo) {
+        System.out.println("TeacherController adding " + (studentsToAdd != null ? studentsToAdd.size() : 0) + " students to course");
+        boolean studentsExist = (studentsToAdd != null);
+        boolean courseExists = (courseToAddTo != null);
+        if (!studentsExist || !courseExists) {
+            System.out.println("TeacherController problem: addStudentsToCourse got null inputs");
+            return -1;
+        }
+        List<JournalRecord> enrollRecords = new ArrayList<>();
+        courseToAddTo.runInBatch(() -> {
+            for (Student s : studentsToAdd) {
+                if (s == null || courseToAddTo.getEnrolledStudent(s.getUsername()) != null) {
+                    continue;
+                }
+                courseToAddTo.enrollStudent(s);
+                enrollRecords.add(JournalRecord.enrollStudent(courseToAddTo, s));
+            }
+        });
+        // one journal write (and one snapshot check) for the whole list, not per student.
+        logAllToJournal(enrollRecords);
+        return enrollRecords.size();
+    }
+
     /**
      * removeStudentFromCourse removes a student from the selected course.
      * Called from the TeacherView. Tells the Course model to remove the student.
@@ -120,8 +180,12 @@ public class TeacherController {
             System.out.println("TeacherController problem: removeStudentFromCourse got null inputs");
             return false;
         }
+        boolean wasEnrolled = (courseToRemoveFrom.getEnrolledStudent(studentToRemove.getUsername()) != null);
         // give to Course model method.
         courseToRemoveFrom.removeStudent(studentToRemove);
+        if (wasEnrolled) {
+            logToJournal(JournalRecord.removeStudent(courseToRemoveFrom, studentToRemove));
+        }
         // Assume ok.
         return true;
     }
@@ -145,6 +209,7 @@ public class TeacherController {
         }
         // give to Course model method.
         courseToAddTo.addAssignment(assignmentToAdd);
+        logToJournal(JournalRecord.addAssignment(courseToAddTo, assignmentToAdd));
         // Assume ok.
         return true;
      }
@@ -168,6 +233,7 @@ public class TeacherController {
         }
         // give to Course model method.
         courseToRemoveFrom.removeAssignment(assignmentToRemove);
+        logToJournal(JournalRecord.removeAssignment(courseToRemoveFrom, assignmentToRemove));
         // Assume ok.
         return true;
      }
@@ -250,6 +316,12 @@ public class TeacherController {
             // Tell the Assignment model to mark itself as graded.
             theAssignment.markGraded();
 
+            // log it against whichever of this teacher's courses owns the assignment.
+            Course owningCourse = findCourseForAssignment(theAssignment);
+            if (owningCourse != null) {
+                logToJournal(JournalRecord.addGrade(owningCourse, theStudent, theAssignment, gradeObject));
+            }
+
             System.out.println("Grade added successfully.");
             // Models should fire observer events now.
             return true; // It worked.
@@ -335,8 +407,8 @@ public class TeacherController {
         boolean calculatorExists = (calculator != null);
         
         if (calculatorExists) {
-            // Tell the calculator object to do the work.
-            return calculator.calculateFinalAverage(theCourse, theStudent);
+            // Tell the course to do the work, it only runs the calculator again if a grade or the course changed.
+            return theCourse.calculateStudentAverage(theStudent);
         } 
         
         else {
@@ -418,6 +490,7 @@ public class TeacherController {
         try {
             // give setting the grade and validating the letter to the Student model.
             theStudent.setFinalGradeForCourse(theCourse, finalLetterGrade);
+            logToJournal(JournalRecord.setFinalGrade(theCourse, theStudent, finalLetterGrade));
             // Student model should fire observer event now.
             return true; // Assume it worked if no error.
         } 
@@ -435,9 +508,63 @@ public class TeacherController {
         }
      }
 
+    /**
+     * closeCourse closes out one course at the end of the semester, see closeCourses.
+     * @param theCourse The Course object.
+     * @return the final averages and letters, or null if the course couldn't be closed.
+     */
+    public ClassAverages closeCourse(Course theCourse) {
+        boolean courseExists = (theCourse != null);
+        if (!courseExists) {
+            System.out.println("TeacherController problem: closeCourse got null course");
+            return null;
+        }
+        return closeCourses(Collections.singletonList(theCourse)).get(theCourse.getCourseId());
+    }
+
+    /**
+     * closeCourses closes out a whole semester of courses at once.
+     * For each course every enrolled student's final average is worked out in parallel
+     * (recomputeCourseAverages), turned into a letter with GradeScale, and Course.closeCourse
+     * moves the course to every student's completed list with that letter.
+     * That fires one "courseClosed" event per course instead of one event per student.
+     * All the final grades from all the courses go to the journal in one write at the end.
+     * @param coursesToClose the courses to close.
+     * @return a new Map of course id to that course's finals, in the same order.
+     *         Courses that couldn't be worked out, like ones with no calculator, are left out.
+     */
+    public Map<String, ClassAverages> closeCourses(List<Course> coursesToClose) {
+        Map<String, ClassAverages> closed = new LinkedHashMap<>();
+        boolean coursesExist = (coursesToClose != null);
+        if (!coursesExist) {
+            System.out.println("TeacherController problem: closeCourses got null list");
+            return closed;
+        }
+        List<JournalRecord> records = new ArrayList<>();
+        for (Course theCourse : coursesToClose) {
+            if (theCourse == null) {
+                System.out.println("TeacherController problem: closeCourses skipping null course");
+                continue;
+            }
+            ClassAverages finals = recomputeCourseAverages(theCourse);
+            if (finals == null) {
+                System.out.println("TeacherController problem: closeCourses couldn't work out finals for " + theCourse.getName());
+                continue;
+            }
+            Map<Student, GradeScale> completed = theCourse.closeCourse(finals);
+            for (Map.Entry<Student, GradeScale> entry : completed.entrySet()) {
+                records.add(JournalRecord.completeCourse(theCourse, entry.getKey(), entry.getValue().getLetter()));
+            }
+            System.out.println("TeacherController closed " + theCourse.getName() + " for " + completed.size() + " students");
+            closed.put(theCourse.getCourseId(), finals);
+        }
+        logAllToJournal(records);
+        return closed;
+    }
+
     /**
      * viewUngradedAssignments finds assignments in a course not yet marked as graded.
-     * Asks the Course for all assignments, then filters the list using a stream.
+     * The Course keeps graded and ungraded assignments apart already, so this just asks for that list.
      * @param theCourse The Course object.
      * @return A List of Assignment objects that are not graded. Empty list if none or error.
      */
@@ -449,19 +576,8 @@ public class TeacherController {
             System.out.println("TeacherController problem: viewUngradedAssignments got null course");
             return new ArrayList<>();
         }
-        // Get all assignments copy from Course.
-        List<Assignment> allAssignments = theCourse.getAllAssignments();
-        // Make sure list isn't null.
-        boolean assignmentListExists = (allAssignments != null);
-        if (!assignmentListExists) {
-             return new ArrayList<>();
-        }
-        // Use stream to filter the list easily.
-        List<Assignment> ungradedList = allAssignments.stream()
-            .filter(assignment -> assignment != null && !assignment.isGraded()) // Keep only non-null, ungraded ones
-            .collect(Collectors.toList()); // Put results into a new list
-        // Return the filtered list.
-        return ungradedList;
+        // Already a new list in course order.
+        return theCourse.getUngradedAssignments();
     }
 
     /**
@@ -494,12 +610,127 @@ public class TeacherController {
         return importResult;
     }
 
+    /**
+     * importStudentsFromFiles imports several student files into a course at the same time,
+     * each file on its own thread, see ControllerExecutor.fanOut.
+     * Reading the files blocks, so this returns right away and the view gets the results later.
+     * @param filePathsOnComputer the paths to the student files.
+     * @param theCourse The Course object to add students to.
+     * @return future with importStudentsFromFile's result for each file, in the same order.
+     */
+    public CompletableFuture<List<Boolean>> importStudentsFromFiles(List<String> filePathsOnComputer, Course theCourse) {
+        boolean pathsExist = (filePathsOnComputer != null);
+        if (!pathsExist) {
+            System.out.println("TeacherController problem: importStudentsFromFiles got null paths");
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        System.out.println("TeacherController importing " + filePathsOnComputer.size() + " student files");
+        return ControllerExecutor.shared().fanOut(filePathsOnComputer, path -> importStudentsFromFile(path, theCourse));
+    }
+
+    /**
+     * importGradesFromFile reads a whole spreadsheet of grades into a course.
+     * The file has "username" then one column per assignment name, one student per row.
+     * GradeImporter does the reading and checking, this just logs the stored grades
+     * to the journal, a chunk at a time. Reading the file blocks, so the view runs
+     * this on the ControllerExecutor.
+     * @param filePathOnComputer the path to the grade CSV file.
+     * @param theCourse the Course the grades are for.
+     * @return the import report with counts and row problems, or null if the inputs were bad or the file couldn't be read.
+     */
+    public GradeImportReport importGradesFromFile(String filePathOnComputer, Course theCourse) {
+        System.out.println("TeacherController importing grades from file: " + filePathOnComputer);
+        boolean courseExists = (theCourse != null);
+        boolean pathExists = (filePathOnComputer != null && !filePathOnComputer.isEmpty());
+        if (!courseExists || !pathExists) {
+            System.out.println("TeacherController problem: importGradesFromFile got null inputs");
+            return null;
+        }
+
+        GradeImporter importer = new GradeImporter(theCourse);
+        if (gradebookStore != null) {
+            // one journal write per chunk, the snapshot check happens once at the end instead of per grade.
+            importer.setCommitListener(grades -> {
+                List<JournalRecord> records = new ArrayList<>(grades.size());
+                for (GradeImporter.CommittedGrade committed : grades) {
+                    records.add(JournalRecord.addGrade(theCourse, committed.getStudent(), committed.getAssignment(), committed.getGrade()));
+                }
+                gradebookStore.logAll(records).exceptionally(error -> {
+                    System.out.println("TeacherController problem: journal write failed for imported grades");
+                    return null;
+                });
+            });
+        }
+        try {
+            GradeImportReport report = importer.importFromFile(Paths.get(filePathOnComputer));
+            if (gradebookStore != null && theCurrentTeacherUsingTheSystem != null) {
+                gradebookStore.snapshotIfDue(theCurrentTeacherUsingTheSystem.getCoursesTaught());
+            }
+            return report;
+        } catch (IOException e) {
+            System.out.println("TeacherController problem: importGradesFromFile couldn't read " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * exportCourseToFile saves a course in the binary course format.
+     * @param theCourse The Course to save.
+     * @param filePathOnComputer where to write the .gbc file.
+     * @return true if written ok, false if inputs null or writing failed.
+     */
+    public boolean exportCourseToFile(Course theCourse, String filePathOnComputer) {
+        System.out.println("TeacherController exporting course to file: " + filePathOnComputer);
+        boolean courseExists = (theCourse != null);
+        boolean pathExists = (filePathOnComputer != null && !filePathOnComputer.isEmpty());
+        if (!courseExists || !pathExists) {
+            System.out.println("TeacherController problem: exportCourseToFile got null inputs");
+            return false;
+        }
+        try {
+            BinaryCourseFile.write(theCourse, Paths.get(filePathOnComputer));
+            return true;
+        } catch (IOException e) {
+            System.out.println("TeacherController problem: exportCourseToFile couldn't write " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * openCourseFromFile opens a binary course file and adds the course to this teacher.
+     * The file is memory mapped, so this is quick even for big courses, grades only get
+     * read from the file when a view or calculator asks for them.
+     * Enrolled students are looked up through the UserController.
+     * @param filePathOnComputer the .gbc file to open.
+     * @return the opened Course, or null if it couldn't be read.
+     */
+    public Course openCourseFromFile(String filePathOnComputer) {
+        System.out.println("TeacherController opening course file: " + filePathOnComputer);
+        boolean pathExists = (filePathOnComputer != null && !filePathOnComputer.isEmpty());
+        if (!pathExists || theCurrentTeacherUsingTheSystem == null) {
+            System.out.println("TeacherController problem: openCourseFromFile got null inputs");
+            return null;
+        }
+        try {
+            BinaryCourseFile courseFile = BinaryCourseFile.open(Paths.get(filePathOnComputer));
+            Course opened = courseFile.toCourse(this::getStudentByUsername);
+            theCurrentTeacherUsingTheSystem.addCourse(opened);
+            return opened;
+        } catch (IOException e) {
+            System.out.println("TeacherController problem: openCourseFromFile couldn't read " + e.getMessage());
+            return null;
+        }
+    }
+
 
     //COURSE SETTING UP METHODS.
 
     /**
      * setCourseGradingMode sets the GradeCalculator strategy points or category for a course.
      * It tells the Course object which calculator instance to use using its setter.
+     * Every student's average changes with the calculator, so the caller should work
+     * them all out again after, with recomputeCourseAveragesInBackground so a big class
+     * doesn't hold up the Swing thread.
      * Checks inputs first.
      * @param theCourse   The Course object.
      * @param calculatorToUse The GradeCalculator object e.g., new PointsBasedCalculator().
@@ -518,11 +749,68 @@ public class TeacherController {
          
          // give to Course model's setter method.
          theCourse.setGradeCalculator(calculatorToUse);
-         
+         JournalRecord modeRecord = JournalRecord.setGradingMode(theCourse, calculatorToUse);
+         if (modeRecord != null) {
+             logToJournal(modeRecord);
+         }
+
          //assume ok.
          return true;
      }
 
+     /**
+      * recomputeCourseAverages works out every enrolled student's average and letter grade
+      * for a course at once, split over all the cores, see ClassAverageRecomputer.
+      * The averages are also saved in the course, so asking for them one at a time after is quick.
+      * @param theCourse The Course object.
+      * @return the averages and letters, or null if the course is null, has no calculator or the calculation failed.
+      */
+     public ClassAverages recomputeCourseAverages(Course theCourse) {
+         boolean canRecompute = (theCourse != null && theCourse.getGradeCalculator() != null);
+         if (!canRecompute) {
+             System.out.println("TeacherController problem: recomputeCourseAverages got null course or no calculator set");
+             return null;
+         }
+         try {
+             ClassAverages averages = averageRecomputer.recompute(theCourse);
+             System.out.println("TeacherController recomputed averages: " + averages);
+             return averages;
+         } catch (RuntimeException e) {
+             System.out.println("TeacherController problem: recomputeCourseAverages failed for " + theCourse.getName() + ": " + e);
+             return null;
+         }
+     }
+
+     /**
+      * recomputeCourseAveragesInBackground does recomputeCourseAverages on the ControllerExecutor,
+      * so it can be started from the Swing thread, like right after the grading mode changes.
+      * The view gets the result back with ControllerExecutor.onEdt.
+      * @param theCourse The Course object.
+      * @return future with recomputeCourseAverages's result, null inside if it couldn't be worked out.
+      */
+     public CompletableFuture<ClassAverages> recomputeCourseAveragesInBackground(Course theCourse) {
+         return ControllerExecutor.shared().submit(() -> recomputeCourseAverages(theCourse));
+     }
+
+     /**
+      * setAverageRecomputer swaps the recomputer, like one with fewer threads.
+      * The old one is closed, unless it's the shared one other controllers still use.
+      * @param recomputer the new recomputer, can't be null.
+      * @return true if swapped, false if null.
+      */
+     public boolean setAverageRecomputer(ClassAverageRecomputer recomputer) {
+         if (recomputer == null) {
+             System.out.println("TeacherController problem: setAverageRecomputer got null");
+             return false;
+         }
+         ClassAverageRecomputer old = this.averageRecomputer;
+         this.averageRecomputer = recomputer;
+         if (old != recomputer && old != ClassAverageRecomputer.shared()) {
+             old.close();
+         }
+         return true;
+     }
+
      /**
       * setupAssignmentCategories configures the grading categories like name, weight, drops
       * for a course that uses category based grading.
@@ -548,18 +836,21 @@ public class TeacherController {
          theCourse.clearGradingCategories();
          
          // Loop through the provided list of new categories.
+         List<GradingCategory> added = new ArrayList<>();
          for (GradingCategory category : categoryDetails) {
              //check if category object is valid.
              boolean categoryIsValid = (category != null);
              if (categoryIsValid) {
                  // Tell Course model to add this one. 
                  theCourse.addGradingCategory(category);
+                 added.add(category);
              } 
              
              else {
                  System.out.println("TeacherController warning: setupAssignmentCategories found null category in list");
              }
          }
+         logToJournal(JournalRecord.setCategories(theCourse, added));
          // Assume worked ok if loop finished.
          return true;
      }
@@ -591,8 +882,13 @@ public class TeacherController {
       * @return true if created successfully
       */
      public boolean createGroup(Course course, String groupName) {
+         if (course == null) {
+             System.out.println("TeacherController problem: createGroup got null course");
+             return false;
+         }
          try {
              course.createGroup(groupName);
+             logToJournal(JournalRecord.createGroup(course, groupName));
              return true;
          } catch (IllegalArgumentException e) {
              return false;
@@ -607,7 +903,141 @@ public class TeacherController {
       * @return true if operation succeeded
       */
      public boolean addStudentToGroup(Course course, String groupName, Student student) {
-         return course.addStudentToGroup(groupName, student);
+         if (course == null || student == null) {
+             System.out.println("TeacherController problem: addStudentToGroup got null inputs");
+             return false;
+         }
+         boolean added = course.addStudentToGroup(groupName, student);
+         if (added) {
+             logToJournal(JournalRecord.addGroupMember(course, groupName, student));
+         }
+         return added;
+     }
+
+     /**
+      * Removes a group from a course, its assignments keep their own Group object
+      * @param course Target course
+      * @param groupName Name of the group, case doesn't matter
+      * @return true if there was a group to remove
+      */
+     public boolean removeGroup(Course course, String groupName) {
+         if (course == null) {
+             System.out.println("TeacherController problem: removeGroup got null course");
+             return false;
+         }
+         boolean removed = course.removeGroup(groupName);
+         if (removed) {
+             logToJournal(JournalRecord.removeGroup(course, groupName));
+         }
+         return removed;
      }
 
-}
\ No newline at end of file
+     /**
+      * Takes a student out of a course group
+      * @param course Target course
+      * @param groupName Name of existing group
+      * @param student Student to take out
+      * @return true if the student was in the group
+      */
+     public boolean removeStudentFromGroup(Course course, String groupName, Student student) {
+         if (course == null || student == null) {
+             System.out.println("TeacherController problem: removeStudentFromGroup got null inputs");
+             return false;
+         }
+         boolean removed = course.removeStudentFromGroup(groupName, student);
+         if (removed) {
+             logToJournal(JournalRecord.removeGroupMember(course, groupName, student));
+         }
+         return removed;
+     }
+
+     /**
+      * Adds a whole list of students to a course group at once
+      * @param course Target course
+      * @param groupName Name of existing group, case doesn't matter
+      * @param students Students to add
+      * @return how many were newly added, -1 if the course or group doesn't exist
+      */
+     public int addStudentsToGroup(Course course, String groupName, List<Student> students) {
+         if (course == null || course.findGroupByName(groupName) == null) {
+             System.out.println("TeacherController problem: addStudentsToGroup has no such course or group");
+             return -1;
+         }
+         int added = course.getGroupRegistry().assignAll(groupName, students);
+         if (added > 0) {
+             // replaying a member who's already in the group does nothing, so log the whole list.
+             List<JournalRecord> records = new ArrayList<>();
+             for (Student student : students) {
+                 if (student != null) {
+                     records.add(JournalRecord.addGroupMember(course, groupName, student));
+                 }
+             }
+             logAllToJournal(records);
+         }
+         return added;
+     }
+
+    /**
+     * Logs an assignment edit made through AssignmentController, if the assignment
+     * belongs to one of this teacher's courses.
+     * @param nameBefore the assignment's name before the edit.
+     * @param theAssignment the edited assignment.
+     */
+    void logAssignmentEdit(String nameBefore, Assignment theAssignment) {
+        Course owningCourse = findCourseForAssignment(theAssignment);
+        if (owningCourse != null) {
+            logToJournal(JournalRecord.editAssignment(owningCourse, nameBefore, theAssignment));
+        }
+    }
+
+
+    //journal helpers
+
+    /**
+     * Logs a record to the store if there is one. Doesn't wait for the disk,
+     * the journal's writer thread batches and syncs in the background.
+     * Every so often this also starts a snapshot of the teacher's courses.
+     */
+    private void logToJournal(JournalRecord record) {
+        if (gradebookStore == null) {
+            return;
+        }
+        gradebookStore.log(record).exceptionally(error -> {
+            System.out.println("TeacherController problem: journal write failed for " + record);
+            return null;
+        });
+        if (theCurrentTeacherUsingTheSystem != null) {
+            gradebookStore.snapshotIfDue(theCurrentTeacherUsingTheSystem.getCoursesTaught());
+        }
+    }
+
+    // Same as logToJournal but for many records, they go to disk in one write.
+    private void logAllToJournal(List<JournalRecord> records) {
+        if (gradebookStore == null || records.isEmpty()) {
+            return;
+        }
+        gradebookStore.logAll(records).exceptionally(error -> {
+            System.out.println("TeacherController problem: journal write failed for " + records.size() + " records");
+            return null;
+        });
+        if (theCurrentTeacherUsingTheSystem != null) {
+            gradebookStore.snapshotIfDue(theCurrentTeacherUsingTheSystem.getCoursesTaught());
+        }
+    }
+
+    /**
+     * Finds which of this teacher's courses stores an assignment's grades.
+     * @return the Course, or null if none of them has it.
+     */
+    private Course findCourseForAssignment(Assignment theAssignment) {
+        if (theCurrentTeacherUsingTheSystem == null) {
+            return null;
+        }
+        for (Course course : theCurrentTeacherUsingTheSystem.getCoursesTaught()) {
+            if (course.getGradeMatrix().columnOf(theAssignment) >= 0) {
+                return course;
+            }
+        }
+        return null;
+    }
+}
@@ -1,36 +1,58 @@
 package controller;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-
+import model.PasswordPolicy;
 import model.Role;
 import model.Student;
 import model.Teacher;
 import model.User;
+import persistence.FileUserRepository;
+import persistence.GradebookJson;
+import persistence.UserRepository;
 
-import java.io.*;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class UserController {
     private final String folderPath = "accounts";
-    private final Gson gson;
+    // in memory index of every account, loaded once at startup.
+    private final UserRepository userRepository;
+    // BCrypt cost for new hashes and for upgrading old ones at login.
+    private final PasswordPolicy passwordPolicy;
 
     public UserController() {
-        gson = new GsonBuilder().setPrettyPrinting().create();
-        File folder = new File(folderPath);
-        if (!folder.exists()) {
-            folder.mkdirs();
-        }
+        // courses are set up fresh every session, so stored course ids aren't resolved here.
+        userRepository = new FileUserRepository(folderPath, GradebookJson.create(true));
+        // picks the cost from the config or by timing a hash, once at startup.
+        passwordPolicy = PasswordPolicy.fromConfiguration();
+        PasswordPolicy.setCurrent(passwordPolicy);
+    }
+
+    /**
+     * Makes a UserController on top of a repository that's already set up.
+     * Uses whatever PasswordPolicy is current.
+     * @param userRepository where accounts are looked up and saved.
+     */
+    public UserController(UserRepository userRepository) {
+        this(userRepository, PasswordPolicy.getCurrent());
+    }
+
+    /**
+     * Makes a UserController on top of a repository with its own password policy.
+     * @param userRepository where accounts are looked up and saved.
+     * @param passwordPolicy the BCrypt cost stored hashes get upgraded to.
+     */
+    public UserController(UserRepository userRepository, PasswordPolicy passwordPolicy) {
+        this.userRepository = userRepository;
+        this.passwordPolicy = passwordPolicy;
     }
 
     public User createAccount(String firstName, String lastName, String username, String password, Role role) {
         
-        File file = new File(folderPath + "/" + username+".json");
         String id = generateUserId(username);
         String email=username+"@arizona.edu";
 
-        if (file.exists()) {
+        if (userRepository.exists(username)) {
             return null; // Username already taken
         }
         
@@ -44,41 +66,63 @@ public class UserController {
             newUser = new Teacher(firstName, lastName, email, password, username, id);
         }
 
-        try (Writer writer = new FileWriter(file)) {
-            gson.toJson(newUser, writer);
+        // repository writes the file and adds the new account to its index.
+        if (userRepository.save(newUser)) {
             return newUser;
-        } 
-        
-        catch (IOException e) {
-            e.printStackTrace();
-            return null;
         }
+        return null;
+    }
+
+    /**
+     * createAccount off the calling thread. Hashing the password and writing the account
+     * file both block, so the create account screen uses this instead.
+     * @return future with the new User, or null if the username is taken or saving failed.
+     */
+    public CompletableFuture<User> createAccountAsync(String firstName, String lastName, String username, String password, Role role) {
+        return ControllerExecutor.shared().submit(() -> createAccount(firstName, lastName, username, password, role));
     }
 
+    /**
+     * Logs in on the calling thread, the BCrypt check blocks for a while so the
+     * login screen goes through LoginController and AuthenticationService instead.
+     * @return the User if the password matches, or null.
+     */
     public User login(String username, String password) {
-        String fileName = getFileName(username);
-        File file = new File(folderPath + "/" + fileName);
-        if (!file.exists()) return null;
-
-        try (Reader reader = new FileReader(file)) {
-        	JsonObject raw = JsonParser.parseReader(reader).getAsJsonObject();
-            String role = raw.get("role").getAsString();
-            Gson gson = new Gson();
-            User user = gson.fromJson(reader, User.class);
-            
-            if (role.equals("STUDENT")) {
-                return gson.fromJson(raw, Student.class);
-            } 
-            
-            else if (role.equals("TEACHER")) {
-                return gson.fromJson(raw, Teacher.class);
-            }
-        } 
-        
-        catch (IOException e) {
-            e.printStackTrace();
+        // Student or Teacher straight from the index, no file parsing.
+        User user = userRepository.findByUsername(username);
+        boolean userExists = (user != null);
+        if (!userExists || password == null || !user.checkPassword(password)) {
+            return null;
         }
-        return null;
+        upgradePasswordHash(user, password);
+        return user;
+    }
+
+    /**
+     * Rehashes a user's password if the stored hash has a different cost than the
+     * password policy, and saves the account so the new hash sticks.
+     * Only call this right after the password was checked, it's the only time the
+     * plain password is around.
+     * @param user the user who just logged in.
+     * @param password the password they logged in with.
+     * @return true if the hash was upgraded and saved.
+     */
+    public boolean upgradePasswordHash(User user, String password) {
+        if (user == null || !user.rehashPasswordIfNeeded(password, passwordPolicy)) {
+            return false;
+        }
+        boolean saved = userRepository.save(user);
+        if (!saved) {
+            System.out.println("UserController problem: couldn't save rehashed password for " + user.getUsername());
+        } else {
+            System.out.println("UserController: rehashed password for " + user.getUsername() + " at cost " + passwordPolicy.getCost());
+        }
+        return saved;
+    }
+
+    /** Gets the password policy new and upgraded hashes use. */
+    public PasswordPolicy getPasswordPolicy() {
+        return passwordPolicy;
     }
     
 
@@ -86,24 +130,22 @@ public class UserController {
         System.out.println(user.getUsername() + " logged out.");
     }
 
-    private String getFileName(String username) {
-        return username + ".json";
-    }
-    
     public User findUserByUsername(String username) {
-        String fileName = getFileName(username);
-        File file = new File(folderPath + "/" + fileName);
-        
-        if (!file.exists()) return null;
+        return userRepository.findByUsername(username);
+    }
 
-        try (Reader reader = new FileReader(file)) {
-            return gson.fromJson(reader, User.class);
-        } 
-        
-        catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        }
+    /**
+     * Looks up many usernames in one call, like every line of an import file.
+     * @param usernames the usernames to find.
+     * @return Map of username to User for the ones that exist.
+     */
+    public Map<String, User> findUsersByUsernames(Collection<String> usernames) {
+        return userRepository.findUsersByUsernames(usernames);
+    }
+
+    /** Gets the repository holding the account index. */
+    public UserRepository getUserRepository() {
+        return userRepository;
     }
     
     // Generate a unique id for each unique username 
@@ -1,15 +1,16 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
 
 /**
  * Represents a single assignment within a course like Hommework 1 or Midterm.
  * Holds info like name, points, due date, category, graded status.
  * Also holds the grades students received for it and calculates its own average/median.
+ * Changing grades is synchronized on the assignment, so it's the lock for its own column:
+ * two graders on the same assignment take turns, graders on different ones don't wait.
+ * Reading a grade doesn't take that lock.
  */
 public class Assignment {
     //made fields not final anymore so they can be edited by setters
@@ -32,6 +33,21 @@ public class Assignment {
     // it's private so only methods inside Assignment can change it directly
     private Map<String, Grade> studentGrades; // Key=Student Username, Value=Grade Object
 
+    // Once the assignment is added to a course, its grades move into that course's
+    // GradeMatrix and studentGrades stays empty. These say where in the matrix they are.
+    // transient so Gson doesn't try to save the matrix with every assignment.
+    // volatile since other threads read them to find the cell, the column is always set before the matrix.
+    private transient volatile GradeMatrix gradeMatrix;
+    private transient volatile int gradeColumn = -1;
+
+    // running count/sum/min/max/variance and sorted scores for the stats below.
+    // null until first asked for, then kept up to date by addGrade, removeGrade and clearAllGrades.
+    private transient ScoreStatistics scoreStats;
+
+    // the course's lookup index this assignment is in, null if it isn't in a course.
+    // The setters below change their field through the index so it's moved to the right buckets.
+    private transient volatile AssignmentIndex index;
+
     /**
      * constructor for making a new Assignment.
      */
@@ -53,7 +69,8 @@ public class Assignment {
 		this.group = group;
 		this.isGraded = false; //start it as not graded
 		this.description = "";
-		this.studentGrades = new HashMap<String, Grade>(); //,map initialized
+		// concurrent map, grades for an assignment outside a course can come from more than one thread.
+		this.studentGrades = new ConcurrentHashMap<String, Grade>(); //,map initialized
 		
 	}
     
@@ -111,7 +128,7 @@ public class Assignment {
             String trimmedName = newAssignmentName.trim();
             isNameNotEmpty = !trimmedName.isEmpty();
             if (isNameNotEmpty) {
-                this.name = trimmedName;
+                changeIndexed(() -> this.name = trimmedName);
                 // TODO: Maybe fire observer event if Assignment becomes observable?
                 return;
             }
@@ -133,7 +150,12 @@ public class Assignment {
             throw new IllegalArgumentException("Assignment points must be non negative");
         }
         // If okay, update the value.
+        boolean changed = (this.pointsWorth != points);
         this.pointsWorth = points;
+        // the course's grading plan has the old points, let it know.
+        if (changed && gradeMatrix != null) {
+            gradeMatrix.bumpLayoutVersion();
+        }
         // TODO: Maybe fire observer event?
     }
 
@@ -144,7 +166,7 @@ public class Assignment {
      */
      public void setDueDate(String newDueDate) {
          // Store the string directly for now.
-         this.dueDate = newDueDate;
+         changeIndexed(() -> this.dueDate = newDueDate);
          // TODO: Maybe fire observer event?
      }
 
@@ -154,7 +176,7 @@ public class Assignment {
      */
      public void setCategoryName(String newCategoryName) {
          // Store the name string. Allows unsetting category maybe?
-         this.categoryName = newCategoryName;
+         changeIndexed(() -> this.categoryName = newCategoryName);
           // TODO: Maybe fire observer event?
           // TODO: If model changes to store GradingCategory object, need setCategory(GradingCategory c) instead.
      }
@@ -164,7 +186,7 @@ public class Assignment {
      * @param newGroupName The new group name string. Can be null or empty.
      */
      public void setGroupName(Group newGroupName) {   // group isn't a string anymore
-         this.group = newGroupName;
+         changeIndexed(() -> this.group = newGroupName);
           // TODO: Maybe fire observer event?
      }
 
@@ -175,8 +197,14 @@ public class Assignment {
      */
      public void setGraded(boolean graded) {
          // Check if status is actually changing before firing event maybe?
-         // boolean changed = (this.isGraded != graded);
-         this.isGraded = graded;
+         boolean changed = (this.isGraded != graded);
+         if (changed) {
+             changeIndexed(() -> this.isGraded = graded);
+         }
+         // the course's grading plan only counts graded assignments, let it know.
+         if (changed && gradeMatrix != null) {
+             gradeMatrix.bumpLayoutVersion();
+         }
          // TODO: Fire observer event if changed?
          // if (changed) pcs.firePropertyChange("isGraded", !graded, graded);
      }
@@ -205,15 +233,27 @@ public class Assignment {
      * @param studentUsername The username String key.
      * @param grade The Grade object value points/feedback.
      */
-    public void addGrade(String studentUsername, Grade grade) {
+    public synchronized void addGrade(String studentUsername, Grade grade) {
         // Check username is valid before using as key.
         boolean usernameOk = (studentUsername != null && !studentUsername.isEmpty());
         // Grade can technically be null maybe if teacher wants to remove grade?
         // Let's assume grade is not null for adding/updating here.
         boolean gradeOk = (grade != null);
         if (usernameOk && gradeOk) {
+            if (gradeMatrix != null) {
+                // stored in the course's matrix, set replaces existing value if already there.
+                int row = gradeMatrix.rowFor(studentUsername);
+                Grade oldGrade = (scoreStats != null) ? gradeMatrix.getGrade(row, gradeColumn) : null;
+                boolean hadGrade = (oldGrade != null);
+                double oldPoints = hadGrade ? oldGrade.getPointsEarned() : 0.0;
+                gradeMatrix.setGrade(row, gradeColumn, grade.getPointsEarned(), grade.getFeedback());
+                updateStatsForNewScore(hadGrade, oldPoints, grade.getPointsEarned());
+                return;
+            }
             // Put replaces existing value if key already there.
-            studentGrades.put(studentUsername, grade);
+            Grade oldGrade = studentGrades.put(studentUsername, grade);
+            boolean hadGrade = (oldGrade != null);
+            updateStatsForNewScore(hadGrade, hadGrade ? oldGrade.getPointsEarned() : 0.0, grade.getPointsEarned());
             // TODO: Maybe fire observer event specific to this assignment?
         } else {
              System.out.println("Assignment problem: addGrade got null username or grade for assignment " + this.name);
@@ -232,10 +272,45 @@ public class Assignment {
         if (!usernameOk) {
             return null; // Can't look up grade for invalid username.
         }
+        // read once, the assignment could be removed from its course while we look.
+        GradeMatrix matrix = gradeMatrix;
+        int column = gradeColumn;
+        if (matrix != null && column >= 0) {
+            // read the cell from the course's matrix, null if no grade there.
+            return matrix.getGrade(matrix.indexOfStudent(studentUsername), column);
+        }
         // Get the grade from the map using the username key. Returns null if not found.
         return studentGrades.get(studentUsername);
     }
 
+    /**
+     * Removes one student's grade for this assignment.
+     * Used by Student.removeGradeForAssignment.
+     * @param studentUsername The username String key.
+     * @return true if there was a grade to remove.
+     */
+    public synchronized boolean removeGrade(String studentUsername) {
+        boolean usernameOk = (studentUsername != null && !studentUsername.isEmpty());
+        if (!usernameOk) {
+            return false;
+        }
+        if (gradeMatrix != null) {
+            int row = gradeMatrix.indexOfStudent(studentUsername);
+            Grade oldGrade = gradeMatrix.getGrade(row, gradeColumn);
+            double oldPoints = (oldGrade != null) ? oldGrade.getPointsEarned() : 0.0;
+            boolean removed = gradeMatrix.clearGrade(row, gradeColumn);
+            if (removed && scoreStats != null) {
+                scoreStats.remove(oldPoints);
+            }
+            return removed;
+        }
+        Grade removedGrade = studentGrades.remove(studentUsername);
+        if (removedGrade != null && scoreStats != null) {
+            scoreStats.remove(removedGrade.getPointsEarned());
+        }
+        return removedGrade != null;
+    }
+
     /**
      * hasSubmission checks if a student has any grade recorded for this assignment.
      * Just checks if the username key exists in the internal grades map.
@@ -248,6 +323,11 @@ public class Assignment {
         if (!usernameOk) {
             return false;
         }
+        GradeMatrix matrix = gradeMatrix;
+        int column = gradeColumn;
+        if (matrix != null && column >= 0) {
+            return matrix.hasGrade(matrix.indexOfStudent(studentUsername), column);
+        }
         // Check if the map contains an entry for this username key.
         return studentGrades.containsKey(studentUsername);
     }
@@ -258,6 +338,12 @@ public class Assignment {
      * @return A new Map<String, Grade> copy.
      */
     public Map<String, Grade> getAllGrades() {
+        GradeMatrix matrix = gradeMatrix;
+        int column = gradeColumn;
+        if (matrix != null && column >= 0) {
+            // build the copy from the matrix column.
+            return matrix.copyColumnGrades(column);
+        }
         // Create a new HashMap and copy all entries from the internal map into it.
         return new HashMap<String, Grade>(this.studentGrades);
     }
@@ -266,8 +352,14 @@ public class Assignment {
      * Clears all grades stored within this assignment.
      * Used by Course.removeAssignment to clean up.
      */
-    public void clearAllGrades() {
+    public synchronized void clearAllGrades() {
     	studentGrades.clear();
+    	if (gradeMatrix != null) {
+    	    gradeMatrix.clearColumn(gradeColumn);
+    	}
+    	if (scoreStats != null) {
+    	    scoreStats.clear();
+    	}
         System.out.println("Assignment info: Cleared all grades for assignment " + this.name);
         // TODO: Maybe fire event?
     }
@@ -277,99 +369,135 @@ public class Assignment {
     /**
      * calculateAverageScore calculates the average score for this assignment
      * based on all the grades currently stored inside it.
-     * Gets all the grades, loops, sums, counts, and divides.
+     * Uses the running sum and count, so it doesn't loop over the grades.
      * @return The average score as a double, 0.0 if no grades.
      */
-    public double calculateAverageScore() {
-        // Get the internal map of grades directly.
-        Map<String, Grade> currentGrades = this.studentGrades;
-
-        // Check if map is null or empty.
-        boolean anyGradesExist = (currentGrades != null && !currentGrades.isEmpty());
-        if (!anyGradesExist) {
-            return 0.0; // No grades, average is 0.
-        }
+    public synchronized double calculateAverageScore() {
+        return statistics().getAverage();
+    }
 
-        //variables for calculation.
-        double sumOfScores = 0.0;
-        int numberOfGrades = 0;
-
-        //loop through the Grade objects values in the map.
-        for (Grade grade : currentGrades.values()) {
-        	//check grade object valid.
-            boolean gradeIsValid = (grade != null);
-            if (gradeIsValid) {
-                sumOfScores = sumOfScores + grade.getPointsEarned();
-                numberOfGrades++;
+    /**
+     * calculateMedianScore calculates the median score for this assignment.
+     * The scores are kept sorted as grades come in, so this just reads the
+     * middle value or averages the two middle values.
+     * @return The median score as a double, or 0.0 if no grades.
+     */
+    public synchronized double calculateMedianScore() {
+        return statistics().getMedian();
+    }
+
+    /** Lowest score on this assignment, 0.0 if no grades. */
+    public synchronized double calculateMinScore() {
+        return statistics().getMin();
+    }
+
+    /** Highest score on this assignment, 0.0 if no grades. */
+    public synchronized double calculateMaxScore() {
+        return statistics().getMax();
+    }
+
+    /** Population variance of the scores on this assignment, 0.0 if no grades. */
+    public synchronized double calculateScoreVariance() {
+        return statistics().getVariance();
+    }
+
+    /**
+     * Gets the score at a percentile, like 90 for the score 90% of the class is at or under.
+     * @param percentile from 0 to 100.
+     * @return the score, 0.0 if no grades.
+     */
+    public synchronized double calculatePercentileScore(double percentile) {
+        return statistics().getPercentile(percentile);
+    }
+
+    /**
+     * Gets the running statistics, building them from the grades the first time.
+     * After that addGrade, removeGrade and clearAllGrades keep them current.
+     */
+    private synchronized ScoreStatistics statistics() {
+        if (scoreStats == null) {
+            if (gradeMatrix != null) {
+                scoreStats = ScoreStatistics.of(gradeMatrix.copyColumnScores(gradeColumn));
+            } else {
+                scoreStats = new ScoreStatistics();
+                for (Grade grade : studentGrades.values()) {
+                    // the map could have a null grade put in by old code, skip those.
+                    if (grade != null) {
+                        scoreStats.add(grade.getPointsEarned());
+                    }
+                }
             }
         }
+        return scoreStats;
+    }
 
-        //calculate average, make sure dont divide by zero.
-        double averageResult = 0.0;
-        boolean canCalculate = (numberOfGrades > 0);
-        if (canCalculate) {
-            averageResult = sumOfScores / numberOfGrades;
+    private void updateStatsForNewScore(boolean hadGrade, double oldPoints, double newPoints) {
+        if (scoreStats == null) {
+            return; // built from the grades when first asked for
         }
+        if (hadGrade) {
+            scoreStats.replace(oldPoints, newPoints);
+        } else {
+            scoreStats.add(newPoints);
+        }
+    }
 
-        return averageResult;
+    // --- Grade matrix link, used by Course and GradeMatrix ---
+
+    /** Gets the course matrix holding this assignment's grades, or null if none yet. */
+    GradeMatrix getGradeMatrix() {
+        return gradeMatrix;
+    }
+
+    /** Gets this assignment's column in its grade matrix. */
+    int getGradeColumn() {
+        return gradeColumn;
     }
 
     /**
-     * calculateMedianScore calculates the median score for this assignment.
-     * It gets all the grades, extracts the scores into a list,
-     * sorts the list, then finds the middle value or averages the two middle values.
-     * @return The median score as a double, or 0.0 if no grades.
+     * Links this assignment to a column of a course's matrix.
+     * Any grades added before the assignment joined a course get moved over,
+     * so the matrix is the only place they're stored after this.
      */
-     public double calculateMedianScore() {
-        //get the internal map of grades.
-        Map<String, Grade> currentGrades = this.studentGrades;
-
-        //check if any grades exist.
-        boolean anyGradesExist = (currentGrades != null && !currentGrades.isEmpty());
-        if (!anyGradesExist) {
-            return 0.0;
+    synchronized void attachToGradeMatrix(GradeMatrix matrix, int column) {
+        this.gradeColumn = column;
+        this.gradeMatrix = matrix;
+        for (Map.Entry<String, Grade> entry : studentGrades.entrySet()) {
+            Grade grade = entry.getValue();
+            matrix.setGrade(matrix.rowFor(entry.getKey()), column, grade.getPointsEarned(), grade.getFeedback());
         }
+        studentGrades.clear();
+        scoreStats = null; // the column could have had grades loaded into it
+    }
 
-        //make a list to hold just the score numbers.
-        List<Double> scoresList = new ArrayList<>();
-
-        //loop through grades, add valid scores to the list.
-        for (Grade grade : currentGrades.values()) {
-             boolean gradeIsValid = (grade != null);
-             if (gradeIsValid) {
-                 scoresList.add(grade.getPointsEarned());
-             }
-        }
+    /** Links this assignment to its course's lookup index. */
+    void attachToIndex(AssignmentIndex courseIndex) {
+        this.index = courseIndex;
+    }
 
-        //check if list ended up empty after loop maybe grades were null.
-        boolean haveScoresToList = !scoresList.isEmpty();
-        if (!haveScoresToList) {
-             return 0.0; // Return 0 if no valid scores found.
+    /** Unlinks this assignment from an index, only if it's the one it's in. */
+    void detachFromIndex(AssignmentIndex courseIndex) {
+        if (this.index == courseIndex) {
+            this.index = null;
         }
+    }
 
-        //sort the scores low to high.
-        Collections.sort(scoresList);
-
-        //find the median value.
-        double medianScoreResult = 0.0;
-        int numberOfScores = scoresList.size();
-        boolean isEvenNumberOfScores = (numberOfScores % 2 == 0);
-
-        if (isEvenNumberOfScores) {
-            //if even number, average the 2 middle scores.
-            // Need to handle case of only 0 or 1 score? sort handles 1. If 0, list empty check above catches it.
-            int middleIndex1 = numberOfScores / 2 - 1;
-            int middleIndex2 = numberOfScores / 2;
-            double middleScore1 = scoresList.get(middleIndex1);
-            double middleScore2 = scoresList.get(middleIndex2);
-            medianScoreResult = (middleScore1 + middleScore2) / 2.0;
+    // makes a change to an indexed field, as one step for anyone reading the index meanwhile.
+    private void changeIndexed(Runnable change) {
+        AssignmentIndex courseIndex = index;
+        if (courseIndex != null) {
+            courseIndex.update(this, change);
         } else {
-            // If odd number, median is the middle score. Index is size / 2.
-            int middleIndex = numberOfScores / 2;
-            medianScoreResult = scoresList.get(middleIndex);
+            change.run();
         }
-        return medianScoreResult;
-     }
+    }
+
+    /** Unlinks this assignment from its matrix, after it was removed from its course. */
+    synchronized void detachFromGradeMatrix() {
+        this.gradeMatrix = null;
+        this.gradeColumn = -1;
+        this.scoreStats = null;
+    }
 
     /**
      * equals method to compare assignments. Based only on name for simplicity now maybe?
@@ -0,0 +1,228 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * AssignmentIndex keeps a course's assignments sorted a few different ways, so the
+ * Course lookups are map gets instead of loops over every assignment:
+ *   - by name, for findAssignmentByName and the duplicate check in addAssignment.
+ *   - by category name, ignoring case.
+ *   - by group name, ignoring case.
+ *   - by due date, in a TreeMap so a date range is one subMap.
+ *   - graded and ungraded.
+ * Every list comes back in the order the assignments were added to the course, same as
+ * the old loops gave.
+ *
+ * Course adds and removes assignments here. The Assignment setters make their change
+ * through update, which takes the assignment out, runs the change and puts it back,
+ * so the index always matches the fields.
+ * Assignments are tracked by identity, since Assignment's equals and hashCode use the
+ * name and the name can change.
+ *
+ * Every method locks the index, so a lookup never sees an assignment half moved by a setter
+ * on another thread. The lists handed back are copies.
+ * After a tracked assignment's field changes the change listener hears about it, with the
+ * name from before, so the course can tell views about renames.
+ */
+class AssignmentIndex {
+    // told about every change to a tracked assignment, after the index is unlocked.
+    private final BiConsumer<Assignment, String> changeListener;
+
+    // order each assignment was added in, so buckets can stay in course order.
+    private final Map<Assignment, Long> addedOrder = new IdentityHashMap<>();
+    private long nextOrder = 0L;
+
+    private final Map<String, List<Assignment>> byName = new HashMap<>();
+    private final Map<String, List<Assignment>> byCategory = new HashMap<>();
+    private final Map<String, List<Assignment>> byGroup = new HashMap<>();
+    // due date strings sort right as long as they're yyyy-MM-dd like the views make them.
+    private final NavigableMap<String, List<Assignment>> byDueDate = new TreeMap<>();
+    private final List<Assignment> graded = new ArrayList<>();
+    private final List<Assignment> ungraded = new ArrayList<>();
+
+    /**
+     * Makes an index that reports changes.
+     * @param changeListener gets the changed assignment and its name before the change, can be null.
+     */
+    AssignmentIndex(BiConsumer<Assignment, String> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /** Starts tracking an assignment, does nothing if it's already tracked. */
+    synchronized void add(Assignment a) {
+        if (addedOrder.containsKey(a)) {
+            return;
+        }
+        addedOrder.put(a, nextOrder++);
+        a.attachToIndex(this);
+        reindex(a);
+    }
+
+    /** Stops tracking an assignment. */
+    synchronized void remove(Assignment a) {
+        if (!addedOrder.containsKey(a)) {
+            return;
+        }
+        unindex(a);
+        addedOrder.remove(a);
+        a.detachFromIndex(this);
+    }
+
+    /** Takes an assignment out of every bucket, called before one of its fields changes. */
+    private void unindex(Assignment a) {
+        if (!addedOrder.containsKey(a)) {
+            return;
+        }
+        removeFrom(byName, a.getName(), a);
+        removeFrom(byCategory, keyFor(a.getCategoryName()), a);
+        removeFrom(byGroup, (a.getGroup() != null) ? keyFor(a.getGroup().getGroupName()) : null, a);
+        removeFrom(byDueDate, a.getDueDate(), a);
+        removeIdentity(a.isGraded() ? graded : ungraded, a);
+    }
+
+    /** Puts an assignment back in the buckets for its current fields, called after a change. */
+    private void reindex(Assignment a) {
+        Long order = addedOrder.get(a);
+        if (order == null) {
+            return;
+        }
+        addTo(byName, a.getName(), a);
+        addTo(byCategory, keyFor(a.getCategoryName()), a);
+        addTo(byGroup, (a.getGroup() != null) ? keyFor(a.getGroup().getGroupName()) : null, a);
+        addTo(byDueDate, a.getDueDate(), a);
+        insertInOrder(a.isGraded() ? graded : ungraded, a);
+    }
+
+    /**
+     * Runs a change to one of an assignment's indexed fields, moving it to the buckets
+     * for the new value. Untracked assignments just get the change.
+     */
+    void update(Assignment a, Runnable change) {
+        String nameBefore;
+        boolean tracked;
+        synchronized (this) {
+            nameBefore = a.getName();
+            tracked = addedOrder.containsKey(a);
+            unindex(a);
+            try {
+                change.run();
+            } finally {
+                reindex(a);
+            }
+        }
+        // outside the lock, the listener fires events and listeners can look things up.
+        if (tracked && changeListener != null) {
+            changeListener.accept(a, nameBefore);
+        }
+    }
+
+    /** First assignment with exactly this name, or null. */
+    synchronized Assignment findByName(String name) {
+        List<Assignment> bucket = (name != null) ? byName.get(name) : null;
+        return (bucket == null || bucket.isEmpty()) ? null : bucket.get(0);
+    }
+
+    synchronized List<Assignment> byCategory(String categoryName) {
+        return copyOf(byCategory.get(keyFor(categoryName)));
+    }
+
+    synchronized List<Assignment> byGroup(String groupName) {
+        return copyOf(byGroup.get(keyFor(groupName)));
+    }
+
+    /** Assignments due from one date to another, both ends included, earliest first. */
+    synchronized List<Assignment> dueBetween(String fromDate, String toDate) {
+        List<Assignment> result = new ArrayList<>();
+        if (fromDate == null || toDate == null || fromDate.compareTo(toDate) > 0) {
+            return result;
+        }
+        for (List<Assignment> bucket : byDueDate.subMap(fromDate, true, toDate, true).values()) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+
+    /** Every assignment with a due date, earliest first. */
+    synchronized List<Assignment> inDueDateOrder() {
+        List<Assignment> result = new ArrayList<>();
+        for (List<Assignment> bucket : byDueDate.values()) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+
+    synchronized List<Assignment> graded() {
+        return new ArrayList<>(graded);
+    }
+
+    synchronized List<Assignment> ungraded() {
+        return new ArrayList<>(ungraded);
+    }
+
+    synchronized int size() {
+        return addedOrder.size();
+    }
+
+    // --- bucket helpers ---
+
+    private static String keyFor(String name) {
+        return (name == null) ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void addTo(Map<String, List<Assignment>> buckets, String key, Assignment a) {
+        if (key == null) {
+            return;
+        }
+        insertInOrder(buckets.computeIfAbsent(key, k -> new ArrayList<>(2)), a);
+    }
+
+    private static void removeFrom(Map<String, List<Assignment>> buckets, String key, Assignment a) {
+        if (key == null) {
+            return;
+        }
+        List<Assignment> bucket = buckets.get(key);
+        if (bucket != null) {
+            removeIdentity(bucket, a);
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    // binary search on the added order, so the bucket stays in course order.
+    private void insertInOrder(List<Assignment> bucket, Assignment a) {
+        long order = addedOrder.get(a);
+        int low = 0;
+        int high = bucket.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (addedOrder.get(bucket.get(mid)) < order) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        bucket.add(low, a);
+    }
+
+    private static void removeIdentity(List<Assignment> bucket, Assignment a) {
+        for (int i = 0; i < bucket.size(); i++) {
+            if (bucket.get(i) == a) {
+                bucket.remove(i);
+                return;
+            }
+        }
+    }
+
+    private static List<Assignment> copyOf(List<Assignment> bucket) {
+        return (bucket == null) ? new ArrayList<>() : new ArrayList<>(bucket);
+    }
+}
@@ -0,0 +1,119 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * AverageCache remembers the last average worked out for each student in one course.
+ * Every saved average also keeps the two version stamps it was worked out at, the
+ * course's and the student's. The stamps only go up, so if both still match the
+ * average can be handed back without running the GradeCalculator again. If either one
+ * moved, something that could change the average happened and it gets worked out again.
+ *
+ * It counts hits and misses so you can see how much work it's saving.
+ */
+public final class AverageCache {
+
+    // one saved average and the stamps it was worked out at.
+    private static final class Entry {
+        final long courseVersion;
+        final long studentVersion;
+        final double average;
+
+        Entry(long courseVersion, long studentVersion, double average) {
+            this.courseVersion = courseVersion;
+            this.studentVersion = studentVersion;
+            this.average = average;
+        }
+    }
+
+    // key is the student's username.
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    /**
+     * Gets a student's average, working it out only if the saved one is out of date.
+     * The calculation runs outside the lock so a slow calculator doesn't hold up
+     * other students.
+     * @param username the student's username.
+     * @param courseVersion the course's version stamp right now.
+     * @param studentVersion the student's version stamp right now.
+     * @param calculate works the average out on a miss.
+     * @return the average.
+     */
+    public double get(String username, long courseVersion, long studentVersion, DoubleSupplier calculate) {
+        if (username == null || calculate == null) {
+            throw new IllegalArgumentException("username and calculate cannot be null");
+        }
+        synchronized (this) {
+            Entry saved = entries.get(username);
+            boolean upToDate = (saved != null && saved.courseVersion == courseVersion && saved.studentVersion == studentVersion);
+            if (upToDate) {
+                hitCount++;
+                return saved.average;
+            }
+            missCount++;
+        }
+        double average = calculate.getAsDouble();
+        put(username, courseVersion, studentVersion, average);
+        return average;
+    }
+
+    /**
+     * Saves an average worked out somewhere else, like a whole class recomputed at once.
+     * The stamps have to be ones read before the grades the average came from.
+     * @param username the student's username.
+     * @param courseVersion the course's version stamp the average goes with.
+     * @param studentVersion the student's version stamp the average goes with.
+     * @param average the average.
+     */
+    public synchronized void put(String username, long courseVersion, long studentVersion, double average) {
+        if (username == null) {
+            throw new IllegalArgumentException("username cannot be null");
+        }
+        Entry saved = entries.get(username);
+        // don't write over an average someone else worked out at newer stamps meanwhile.
+        boolean newer = (saved != null && (saved.courseVersion > courseVersion || saved.studentVersion > studentVersion));
+        if (!newer) {
+            entries.put(username, new Entry(courseVersion, studentVersion, average));
+        }
+    }
+
+    /** Forgets one student's saved average, like when they leave the course. */
+    public synchronized void forget(String username) {
+        entries.remove(username);
+    }
+
+    /** Forgets every saved average. The hit and miss counts stay. */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /** Number of students with a saved average. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** How many times a saved average was handed back. */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /** How many times the average had to be worked out. */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /** Hits divided by all lookups, 0.0 before the first lookup. */
+    public synchronized double getHitRate() {
+        long lookups = hitCount + missCount;
+        return (lookups == 0) ? 0.0 : (double) hitCount / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AverageCache [saved=" + entries.size() + ", hits=" + hitCount + ", misses=" + missCount + "]";
+    }
+}
@@ -4,11 +4,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import model.grading.ClassAverages;
 import model.grading.GradeCalculator;
+import model.grading.GradingPlan;
+import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 
@@ -16,26 +24,79 @@ import java.beans.PropertyChangeSupport;
 /**
  * Represents a course in the gradebook system.
  *holds students, assignments, categories, grading settings
+ *
+ * A course can be changed from more than one thread at once, like several graders
+ * entering grades in the same session while an import runs. What each kind of change promises:
+ *   - Grades: every cell write is atomic and writes to one assignment's column happen
+ *     one at a time (see GradeMatrix). Grade writes don't take the course's lock, so
+ *     graders on different assignments never wait on each other, and readers never wait on writers.
+ *   - Structure: enrolling, removing students, adding or removing assignments and categories
+ *     and changing the calculator all happen one at a time under the structure lock.
+ *   - Reads: the roster, assignment and category getters hand back copies. A copy always
+ *     holds whole changes, never half of one, but may already be a little out of date.
+ *   - Reads across many cells, like an average, can check getVersion and getStudentVersion
+ *     before and after. If neither moved, nothing they read changed in between.
+ *     calculateStudentAverage does this and tries again when they moved.
+ *   - Events fire on the thread that made the change, after the change. Listeners should be
+ *     quick and not wait on other threads, a view should hand the work to the Swing thread.
+ *   - A batch belongs to the whole course, not one thread. While any batch is open the
+ *     grade and enrollment events from every thread are saved up for the summary events.
  */
 public class Course {
+    /** How many times calculateStudentAverage works an average out while grades keep changing. */
+    public static final int MAX_AVERAGE_ATTEMPTS = 3;
+
     private final String name;
     private final String courseId;
     private final String semester;
-    private final List<Group> groups = new ArrayList<>();
+    // the course's groups, indexed by name and by student.
+    private final GroupRegistry groups = new GroupRegistry();
     
     // map holds students enrolled, key is username string, value is Student object.
+    // concurrent so the roster can be copied while someone enrolls a student.
     private final Map<String, Student> enrolledStudents;
     // list holds all assignments defined for this course.
+    // copy on write, assignments change rarely and are looped over all the time from any thread.
     private final List<Assignment> assignments;
+    // the assignments again, sorted by name, category, group, due date and graded, for quick lookups.
+    private final transient AssignmentIndex assignmentIndex = new AssignmentIndex(this::assignmentChanged);
     // map holds grading categories if used, key is category name string, value is GradingCategory object.
     private final Map<String, GradingCategory> categories;
     // flag true means use weighted category mode, false means use simple points mode.
     private boolean useCategories;
     // holds the specific GradeCalculator strategy object PointsBased or CategoryBased
-    private GradeCalculator gradeCalculator;
+    private volatile GradeCalculator gradeCalculator;
+    // dense storage for every grade cell in this course, students are rows, assignments columns.
+    // transient for JSON, made lazily in getGradeMatrix since Gson skips field initializers.
+    private transient volatile GradeMatrix gradeMatrix;
+    // held while the roster, the assignments, the categories or the calculator change,
+    // so those changes happen one at a time. Grade writes don't take it.
+    private final transient Object structureLock = new Object();
+    // guards the batch fields below. Taken after structureLock when both are needed, never before.
+    private final transient Object batchLock = new Object();
     // This helper object is for the Observer pattern PropertyChangeSupport
     // It manages listeners and firing events when data changes. Marked transient for JSON.
     private final transient PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+    // grading layout the calculators run against, made again after the course's structure changes.
+    // null means it needs making.
+    private transient volatile GradingPlan gradingPlan;
+    // goes up every time something about the course that could change an average happens,
+    // like a new calculator or categories. Assignment changes show up in the matrix layout version.
+    // only changed under structureLock, volatile so readers see it without the lock.
+    private transient volatile long version = 0L;
+    // goes up every time a student is enrolled or removed, only changed under structureLock.
+    private transient volatile long rosterVersion = 0L;
+    // the last snapshot handed out, given out again until something changes.
+    private transient volatile CourseSnapshot lastSnapshot;
+    // last average worked out for each student, made lazily in getAverageCache.
+    private transient volatile AverageCache averageCache;
+    // set while removeAssignment clears an assignment's grades, so those don't each fire gradeChanged.
+    private transient volatile Assignment assignmentBeingRemoved;
+    // how many batches are open, events are held back while it's above 0.
+    private transient int batchDepth = 0;
+    // usernames whose grades or enrollment changed during the open batch, null when no batch is open.
+    private transient Set<String> batchedGradeUsernames;
+    private transient Set<String> batchedEnrolledUsernames;
 
 
     //Constructor
@@ -50,9 +111,11 @@ public class Course {
         this.semester = semester.trim();
         this.useCategories = useCategories; // Store if using categories or points
         // Create the empty collections.
-        this.enrolledStudents = new HashMap<>();
-        this.assignments = new ArrayList<>();
-        this.categories = new HashMap<>();
+        this.enrolledStudents = new ConcurrentHashMap<>();
+        this.assignments = new CopyOnWriteArrayList<>();
+        this.categories = new ConcurrentHashMap<>();
+        // first listener, so the plan and stamp are updated before anyone else hears about the change.
+        pcs.addPropertyChangeListener(this::courseChanged);
     }
 
   //getters
@@ -82,12 +145,16 @@ public class Course {
      * @param gc The GradeCalculator object like PointsBased or CategoryBased
      */
     public void setGradeCalculator(GradeCalculator gc) {
-        // Store old value for observer event
-        GradeCalculator oldCalculator = this.gradeCalculator;
-        // Just assign the calculator strategy object passed in.
-        this.gradeCalculator = gc;
-        // Notify listeners that the calculator strategy changed.
-        pcs.firePropertyChange("gradeCalculator", oldCalculator, gc);
+        synchronized (structureLock) {
+            // Store old value for observer event
+            GradeCalculator oldCalculator = this.gradeCalculator;
+            // Just assign the calculator strategy object passed in.
+            this.gradeCalculator = gc;
+            // every saved average came from the old calculator.
+            version++;
+            // Notify listeners that the calculator strategy changed.
+            pcs.firePropertyChange("gradeCalculator", oldCalculator, gc);
+        }
     }
 
     /**
@@ -100,6 +167,338 @@ public class Course {
         return this.gradeCalculator;
     }
 
+    /**
+     * getGradeMatrix returns the grade storage for this course.
+     * Assignment, Student and the calculators read grades for this course's
+     * assignments from here. Makes it the first time it's needed.
+     * @return the GradeMatrix, never null.
+     */
+    public GradeMatrix getGradeMatrix() {
+        GradeMatrix matrix = gradeMatrix;
+        if (matrix == null) {
+            // checked again under the lock so two threads can't each make one.
+            synchronized (structureLock) {
+                matrix = gradeMatrix;
+                if (matrix == null) {
+                    matrix = new GradeMatrix();
+                    matrix.setCellListener(this::gradeCellChanged);
+                    gradeMatrix = matrix;
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * gradeCellChanged is called by the matrix every time a grade in this course is set or removed.
+     * Fires observer event "gradeChanged" so views can update just that one cell.
+     * Old value is the student's username, or null if the whole assignment was cleared.
+     * New value is the Assignment.
+     */
+    private void gradeCellChanged(int row, int col) {
+        GradeMatrix matrix = gradeMatrix;
+        Assignment changedAssignment = matrix.getAssignment(col);
+        if (changedAssignment == assignmentBeingRemoved) {
+            return;
+        }
+        String changedUsername = (row >= 0) ? matrix.getUsername(row) : null;
+        synchronized (batchLock) {
+            if (batchDepth > 0) {
+                // saved up for the one gradesChanged event, a cleared column touches everybody.
+                if (changedUsername != null) {
+                    batchedGradeUsernames.add(changedUsername);
+                } else {
+                    batchedGradeUsernames.addAll(enrolledStudents.keySet());
+                }
+                return;
+            }
+        }
+        pcs.firePropertyChange(new PropertyChangeEvent(this, "gradeChanged", changedUsername, changedAssignment));
+    }
+
+    /**
+     * assignmentChanged is called by the assignment index after one of the course's
+     * assignments got a new name, due date, category, group or graded flag.
+     * Fires observer event "assignmentChanged" so views can update headers and lists.
+     * Old value is the assignment's name before the change, new value is the Assignment.
+     */
+    private void assignmentChanged(Assignment changedAssignment, String nameBefore) {
+        pcs.firePropertyChange(new PropertyChangeEvent(this, "assignmentChanged", nameBefore, changedAssignment));
+    }
+
+    /**
+     * getGradingPlan gets the course's compiled grading layout for the calculators.
+     * It's only made again after assignments or categories were added or removed,
+     * or an assignment's points or graded flag changed.
+     * @return the GradingPlan, never null.
+     */
+    public GradingPlan getGradingPlan() {
+        GradingPlan plan = gradingPlan;
+        if (plan == null || plan.getLayoutVersion() != getGradeMatrix().getLayoutVersion()) {
+            plan = GradingPlan.compile(this);
+            gradingPlan = plan;
+        }
+        return plan;
+    }
+
+    // throws the plan away on the events that change the course's structure,
+    // and moves the version stamp on for those and the roster changing.
+    private void courseChanged(PropertyChangeEvent event) {
+        String eventName = event.getPropertyName();
+        boolean structureChanged = "assignmentAdded".equals(eventName) || "assignmentRemoved".equals(eventName)
+            || "categoryAdded".equals(eventName) || "categoriesCleared".equals(eventName);
+        if (structureChanged) {
+            gradingPlan = null;
+            version++;
+        } else if ("studentRemoved".equals(eventName) && event.getOldValue() instanceof Student) {
+            getAverageCache().forget(((Student) event.getOldValue()).getUsername());
+        }
+    }
+
+    /**
+     * Batch is an open batch on a course, closing it ends the batch.
+     * Made by beginBatch, meant for try-with-resources.
+     */
+    public final class Batch implements AutoCloseable {
+        private boolean closed = false;
+
+        private Batch() {
+        }
+
+        /** Ends the batch, closing it a second time does nothing. */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                endBatch();
+            }
+        }
+    }
+
+    /**
+     * beginBatch starts a batch of changes, like an import or a whole column of grades.
+     * Until the batch is closed, gradeChanged and studentEnrolled events aren't fired.
+     * When the last open batch closes, one "gradesChanged" event and one "studentsEnrolled"
+     * event are fired instead, if anything changed. Their new value is the list of usernames
+     * that were affected, old value is null. Other events still fire right away.
+     * Batches can be nested, only the outside one fires the events.
+     * Use runInBatch for a block of changes, or close the Batch in a finally when
+     * the changes throw checked exceptions.
+     * @return the Batch, close it when done.
+     */
+    public Batch beginBatch() {
+        synchronized (batchLock) {
+            if (batchDepth == 0) {
+                batchedGradeUsernames = new LinkedHashSet<>();
+                batchedEnrolledUsernames = new LinkedHashSet<>();
+            }
+            batchDepth++;
+        }
+        return new Batch();
+    }
+
+    /**
+     * runInBatch runs some changes inside one batch, and closes the batch after,
+     * even if the changes throw. Same as beginBatch but without a try-with-resources
+     * variable that nothing uses.
+     * Use it like: course.runInBatch(() -> { ... });
+     * @param changes the changes to make, can't be null.
+     */
+    public void runInBatch(Runnable changes) {
+        if (changes == null) {
+            throw new IllegalArgumentException("changes cannot be null");
+        }
+        Batch batch = beginBatch();
+        try {
+            changes.run();
+        } finally {
+            batch.close();
+        }
+    }
+
+    /** Checks if a batch is open on this course. */
+    public boolean isInBatch() {
+        synchronized (batchLock) {
+            return batchDepth > 0;
+        }
+    }
+
+    // closes one batch, and fires the summary events when it was the last one.
+    // the events fire outside batchLock so a listener can start another batch.
+    private void endBatch() {
+        List<String> gradeUsernames;
+        List<String> enrolledUsernames;
+        synchronized (batchLock) {
+            if (batchDepth == 0) {
+                return;
+            }
+            batchDepth--;
+            if (batchDepth > 0) {
+                return;
+            }
+            gradeUsernames = Collections.unmodifiableList(new ArrayList<>(batchedGradeUsernames));
+            enrolledUsernames = Collections.unmodifiableList(new ArrayList<>(batchedEnrolledUsernames));
+            batchedGradeUsernames = null;
+            batchedEnrolledUsernames = null;
+        }
+        // enrollments first, so a listener adding rows has them before their grades.
+        if (!enrolledUsernames.isEmpty()) {
+            pcs.firePropertyChange("studentsEnrolled", null, enrolledUsernames);
+        }
+        if (!gradeUsernames.isEmpty()) {
+            pcs.firePropertyChange("gradesChanged", null, gradeUsernames);
+        }
+    }
+
+    /**
+     * getVersion gets the course's version stamp. It only ever goes up, and it moves
+     * whenever the calculator, the categories, the assignments or an assignment's
+     * points or graded flag change.
+     * @return the version stamp.
+     */
+    public long getVersion() {
+        return version + getGradeMatrix().getLayoutVersion();
+    }
+
+    /** Gets the roster's version stamp, it moves when a student is enrolled or removed. */
+    long getRosterVersion() {
+        return rosterVersion;
+    }
+
+    /**
+     * snapshot gets the course frozen as it is right now, see CourseSnapshot.
+     * Views, calculators and exports should take one snapshot and read everything from it
+     * instead of calling getEnrolledStudents, getAllAssignments or getGradingCategories again and again.
+     * If nothing changed since the last call the same snapshot comes back, that only compares
+     * a few version stamps. Otherwise a new one is made that reuses whatever didn't change.
+     * @return the snapshot, never null.
+     */
+    public CourseSnapshot snapshot() {
+        CourseSnapshot last = lastSnapshot;
+        if (last != null && last.isCurrent()) {
+            return last;
+        }
+        // under the structure lock so nothing is enrolled or added halfway through the copy,
+        // and two threads don't both copy the same changes.
+        synchronized (structureLock) {
+            last = lastSnapshot;
+            if (last != null && last.isCurrent()) {
+                return last;
+            }
+            CourseSnapshot made = new CourseSnapshot(this, last);
+            lastSnapshot = made;
+            return made;
+        }
+    }
+
+    /**
+     * getStudentVersion gets one student's version stamp in this course. It moves
+     * whenever one of their grades is set or removed.
+     * @param student the student.
+     * @return the version stamp, 0 for null.
+     */
+    public long getStudentVersion(Student student) {
+        if (student == null) {
+            return 0L;
+        }
+        GradeMatrix matrix = getGradeMatrix();
+        return matrix.getRowVersion(matrix.indexOfStudent(student.getUsername())) + student.getGradeVersion();
+    }
+
+    /**
+     * getAverageCache gets the saved student averages for this course,
+     * mostly so the hit and miss counts can be looked at.
+     * @return the AverageCache, never null.
+     */
+    public AverageCache getAverageCache() {
+        AverageCache cache = averageCache;
+        if (cache == null) {
+            synchronized (structureLock) {
+                cache = averageCache;
+                if (cache == null) {
+                    cache = new AverageCache();
+                    averageCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * calculateStudentAverage gets a student's average with this course's calculator.
+     * If nothing that could change it happened since the last time, the saved average
+     * is handed back instead of working it out again.
+     * If a grade or the course changes while the average is being worked out, it's
+     * worked out again, up to MAX_AVERAGE_ATTEMPTS times. After that the last one is
+     * returned, it's still made from real grades, just not all from the same moment.
+     * @param student the student.
+     * @return the average percentage, or 0.0 if student null or no calculator set.
+     */
+    public double calculateStudentAverage(Student student) {
+        GradeCalculator calculator = this.gradeCalculator;
+        boolean canCalculate = (student != null && calculator != null);
+        if (!canCalculate) {
+            System.out.println("Course problem: calculateStudentAverage got null student or no calculator set for " + name);
+            return 0.0;
+        }
+        AverageCache cache = getAverageCache();
+        double average = 0.0;
+        for (int attempt = 0; attempt < MAX_AVERAGE_ATTEMPTS; attempt++) {
+            long courseVersion = getVersion();
+            long studentVersion = getStudentVersion(student);
+            average = cache.get(student.getUsername(), courseVersion, studentVersion,
+                () -> calculator.calculateFinalAverage(this, student));
+            // the stamps only go up, so if neither moved nothing the average read changed.
+            if (courseVersion == getVersion() && studentVersion == getStudentVersion(student)) {
+                return average;
+            }
+        }
+        return average;
+    }
+
+    /**
+     * closeCourse finishes the course for every enrolled student at once, like at the end of the semester.
+     * The final averages were already worked out for the whole class together (see ClassAverageRecomputer),
+     * so this just moves the course to each student's completed list with their letter grade.
+     * The course fires one "courseClosed" event at the end with the finals, so closing a class of 300
+     * doesn't refresh the course views 300 times. Each completed student then gets one "courseCompleted"
+     * event of their own (see Student.courseClosed), which only their own screens listen to.
+     * If nobody was left to complete, like closing it a second time, no event is fired.
+     * A student who enrolled after the finals were worked out gets their average worked out here.
+     * Students stay on the roster so their grades can still be looked at.
+     * @param finals the averages and letters for this course.
+     * @return a new Map of every student the course was completed for to their letter grade, in roster order.
+     *         Students who already finished the course aren't in it.
+     * @throws IllegalArgumentException if finals is null or for a different course.
+     */
+    public Map<Student, GradeScale> closeCourse(ClassAverages finals) {
+        if (finals == null || !Objects.equals(finals.getCourseId(), courseId)) {
+            throw new IllegalArgumentException("closeCourse needs the finals for course " + courseId);
+        }
+        Map<Student, GradeScale> completed = new LinkedHashMap<>();
+        // nobody enrolls or leaves halfway through.
+        synchronized (structureLock) {
+            for (Student student : snapshot().getStudents()) {
+                GradeScale letter = finals.getLetter(student.getUsername());
+                if (letter == null) {
+                    letter = GradeScale.fromPercentage(calculateStudentAverage(student));
+                }
+                if (student.completeCourseWithGrade(this, letter.getLetter())) {
+                    completed.put(student, letter);
+                }
+            }
+        }
+        // one event for the whole class, outside the lock so a listener can read the course.
+        if (!completed.isEmpty()) {
+            pcs.firePropertyChange("courseClosed", null, finals);
+            for (Student student : completed.keySet()) {
+                student.courseClosed(this);
+            }
+        }
+        return completed;
+    }
+
+
     ////////
     //ENROLLMENT
 
@@ -113,19 +512,39 @@ public class Course {
      * @param s The Student object to enroll.
      */
     public void enrollStudent(Student s) {
-        // check that the student object is valid and not already enrolled
-        if (s != null && !enrolledStudents.containsKey(s.getUsername())) {
-            // add the student to the internal map using their username as the key
-            Student previouslyAdded = enrolledStudents.put(s.getUsername(), s);
-            // Check if put returned null which means student was not already there
-            if (previouslyAdded == null) {
-                 // Also inform the student that they are now part of this course
-                 // Assumes Student class has this method.
-                 s.enrollInCourse(this);
-
-                 // Notify any observers like views that a new student has been enrolled
-                 // The event name is "studentEnrolled". Old value null, new value is the student.
-                 pcs.firePropertyChange("studentEnrolled", null, s);
+        synchronized (structureLock) {
+            // check that the student object is valid and not already enrolled
+            if (s != null && !enrolledStudents.containsKey(s.getUsername())) {
+                // add the student to the internal map using their username as the key
+                Student previouslyAdded = enrolledStudents.put(s.getUsername(), s);
+                // Check if put returned null which means student was not already there
+                if (previouslyAdded == null) {
+                     rosterVersion++;
+                     // Also inform the student that they are now part of this course
+                     // Assumes Student class has this method.
+                     s.enrollInCourse(this);
+
+                     // Move any grades the student got before enrolling into this course's matrix.
+                     if (s.hasUnstoredGrades()) {
+                         for (Assignment a : assignments) {
+                             s.moveGradeIntoMatrix(a);
+                         }
+                     }
+
+                     // Notify any observers like views that a new student has been enrolled
+                     // The event name is "studentEnrolled". Old value null, new value is the student.
+                     // Inside a batch it's saved up for the one studentsEnrolled event instead.
+                     boolean batched;
+                     synchronized (batchLock) {
+                         batched = (batchDepth > 0);
+                         if (batched) {
+                             batchedEnrolledUsernames.add(s.getUsername());
+                         }
+                     }
+                     if (!batched) {
+                         pcs.firePropertyChange("studentEnrolled", null, s);
+                     }
+                }
             }
         }
     }
@@ -137,14 +556,17 @@ public class Course {
      * @param s The Student object to remove.
      */
     public void removeStudent(Student s) {
-        //check input and if student actually enrolled using username key.
-        if (s != null && enrolledStudents.containsKey(s.getUsername())) {
-            //remove student from the map using username key. Returns removed student or null.
-            Student removedStudent = enrolledStudents.remove(s.getUsername());
-            // Check if remove actually returned the student object meaning it was there.
-            if (removedStudent != null) {
-                 //notify listeners. Event name "studentRemoved". Old value is student, new is null.
-                 pcs.firePropertyChange("studentRemoved", s, null);
+        synchronized (structureLock) {
+            //check input and if student actually enrolled using username key.
+            if (s != null && enrolledStudents.containsKey(s.getUsername())) {
+                //remove student from the map using username key. Returns removed student or null.
+                Student removedStudent = enrolledStudents.remove(s.getUsername());
+                // Check if remove actually returned the student object meaning it was there.
+                if (removedStudent != null) {
+                     rosterVersion++;
+                     //notify listeners. Event name "studentRemoved". Old value is student, new is null.
+                     pcs.firePropertyChange("studentRemoved", s, null);
+                }
             }
         }
     }
@@ -161,6 +583,18 @@ public class Course {
         return new ArrayList<Student>(enrolledStudents.values());
     }
 
+    /**
+     * Finds one enrolled student by username without copying the roster.
+     * @param username The student's username.
+     * @return the Student, or null if nobody with that username is enrolled.
+     */
+    public Student getEnrolledStudent(String username) {
+        if (username == null) {
+            return null;
+        }
+        return enrolledStudents.get(username);
+    }
+
     //////////////////////
     //ASSIGNMENTS AND CATEGORIES
 
@@ -172,28 +606,41 @@ public class Course {
      * @param a The Assignment object to add.
      */
     public void addAssignment(Assignment a) {
-        // check input is not null and assignment isn't already in the list using equals.
-        if (a != null && !assignments.contains(a)) {
-            // Add to the main assignment list for the course.
-            assignments.add(a);
-
-            //if this course is using category weights...
-            if (useCategories) {
-                // ...then find the category object using the assignment's category name string.
-                GradingCategory category = categories.get(a.getCategoryName());
-
-                //if the category object exists...
-                if (category != null) {
-                    // ...tell it to add this assignment to its internal list too.
-                    category.addAssignment(a);
-                } else {
-                    // Print warning if category wasn't found. Maybe teacher needs to add category first.
-                    System.out.println("Course warning: added assignment '" + a.getName() + "' but category '" + a.getCategoryName() + "' not found.");
+        synchronized (structureLock) {
+            // check input is not null and assignment isn't already in the list.
+            // equals only compares names, so the name index answers that without a loop.
+            if (a != null && assignmentIndex.findByName(a.getName()) == null) {
+                // Add to the main assignment list for the course, and the lookup index.
+                assignments.add(a);
+                assignmentIndex.add(a);
+
+                // Give it a column in the grade matrix, this moves the assignment's own grades in.
+                // Then move in any grades enrolled students got before it joined the course.
+                getGradeMatrix().addColumn(a);
+                for (Student student : enrolledStudents.values()) {
+                    if (student.hasUnstoredGrades()) {
+                        student.moveGradeIntoMatrix(a);
+                    }
+                }
+
+                //if this course is using category weights...
+                if (useCategories) {
+                    // ...then find the category object using the assignment's category name string.
+                    GradingCategory category = categories.get(a.getCategoryName());
+
+                    //if the category object exists...
+                    if (category != null) {
+                        // ...tell it to add this assignment to its internal list too.
+                        category.addAssignment(a);
+                    } else {
+                        // Print warning if category wasn't found. Maybe teacher needs to add category first.
+                        System.out.println("Course warning: added assignment '" + a.getName() + "' but category '" + a.getCategoryName() + "' not found.");
+                    }
                 }
-            }
 
-            //notify listeners that assignment list changed. Event name "assignmentAdded".
-            pcs.firePropertyChange("assignmentAdded", null, a);
+                //notify listeners that assignment list changed. Event name "assignmentAdded".
+                pcs.firePropertyChange("assignmentAdded", null, a);
+            }
         }
     }
 
@@ -208,37 +655,51 @@ public class Course {
      * @param a The Assignment object to remove.
      */
     public void removeAssignment(Assignment a) {
-        //check if assignment is valid and actually exists in the course list.
-        if (a != null && assignments.contains(a)) {
-            //remove from the main list first. remove returns true if successful.
-            boolean removed = assignments.remove(a);
-
-            // Only do cleanup if it was successfully removed from main list.
-            if (removed) {
-                //if using categories, find the category...
-                if (useCategories && categories.containsKey(a.getCategoryName())) {
-                    GradingCategory category = categories.get(a.getCategoryName());
-                    //...and if category exists, tell it to remove the assignment too.
-                    if (category != null) {
-                        category.removeAssignment(a);
+        synchronized (structureLock) {
+            //check if assignment is valid and actually exists in the course list, using the name index.
+            Assignment stored = (a != null) ? assignmentIndex.findByName(a.getName()) : null;
+            if (stored != null) {
+                //remove from the main list first. remove returns true if successful.
+                boolean removed = assignments.remove(a);
+                assignmentIndex.remove(stored);
+
+                // Only do cleanup if it was successfully removed from main list.
+                if (removed) {
+                    //if using categories, find the category...
+                    if (useCategories && categories.containsKey(a.getCategoryName())) {
+                        GradingCategory category = categories.get(a.getCategoryName());
+                        //...and if category exists, tell it to remove the assignment too.
+                        if (category != null) {
+                            category.removeAssignment(a);
+                        }
                     }
-                }
 
-                // Clear grades stored inside the Assignment object itself.
-                // Assumes Assignment has this method.
-                a.clearAllGrades(); // TODO Verify Assignment.clearAllGrades exists
+                    // Remove each enrolled student's grade for this assignment first,
+                    // while the cells are still there, so students fire gradeRemoved.
+                    // loop through all student objects currently enrolled.
+                    // The cells go away with the column, so no gradeChanged for them,
+                    // assignmentRemoved below covers it.
+                    assignmentBeingRemoved = a;
+                    try {
+                        for (Student student : enrolledStudents.values()) {
+                            //tell the student object to remove any grade associated with this assignment object.
+                            student.removeGradeForAssignment(a);
+                        }
+
+                        // Clear grades stored for this assignment, including any left for
+                        // students that aren't enrolled anymore.
+                        a.clearAllGrades();
+                    } finally {
+                        assignmentBeingRemoved = null;
+                    }
 
-                // Also remove grades stored inside each Student object for this assignment.
-                // loop through all student objects currently enrolled.
-                for (Student student : enrolledStudents.values()) {
-                    //tell the student object to remove any grade associated with this assignment object.
-                    // Assumes Student has this method.
-                    student.removeGradeForAssignment(a);
-                }
+                    // Free the assignment's column in the grade matrix.
+                    getGradeMatrix().removeColumn(a);
 
-                //notify observers that the assignment was removed.
-                //the removed assignment is sent as the old value in the event name "assignmentRemoved".
-                pcs.firePropertyChange("assignmentRemoved", a, null);
+                    //notify observers that the assignment was removed.
+                    //the removed assignment is sent as the old value in the event name "assignmentRemoved".
+                    pcs.firePropertyChange("assignmentRemoved", a, null);
+                }
             }
         }
     }
@@ -251,12 +712,14 @@ public class Course {
      * @param category The GradingCategory object to add.
      */
     public void addGradingCategory(GradingCategory category) {
-        //check input object exists, make sure category name isn't already used as a key in the map.
-        if (category != null && !categories.containsKey(category.getName())) {
-            //add to the map using category name as key, category object as value.
-            categories.put(category.getName(), category);
-            // Notify listeners category list changed
-             pcs.firePropertyChange("categoryAdded", null, category);
+        synchronized (structureLock) {
+            //check input object exists, make sure category name isn't already used as a key in the map.
+            if (category != null && !categories.containsKey(category.getName())) {
+                //add to the map using category name as key, category object as value.
+                categories.put(category.getName(), category);
+                // Notify listeners category list changed
+                 pcs.firePropertyChange("categoryAdded", null, category);
+            }
         }
     }
 
@@ -266,12 +729,14 @@ public class Course {
      * Fires event after clearing.
      */
     public void clearGradingCategories() {
-        // Check if there's anything to clear first
-        if (!categories.isEmpty()) {
-            //clear the map holding the category objects.
-            categories.clear();
-            // Notify listeners that categories were cleared
-            pcs.firePropertyChange("categoriesCleared", null, null); // Send null for old/new maybe
+        synchronized (structureLock) {
+            // Check if there's anything to clear first
+            if (!categories.isEmpty()) {
+                //clear the map holding the category objects.
+                categories.clear();
+                // Notify listeners that categories were cleared
+                pcs.firePropertyChange("categoriesCleared", null, null); // Send null for old/new maybe
+            }
         }
     }
 
@@ -297,11 +762,21 @@ public class Course {
         return new ArrayList<Assignment>(assignments);
     }
 
+    /**
+     * Finds an assignment in this course by its name.
+     * @param assignmentName The assignment name to look for.
+     * @return the first Assignment with that name, or null if there isn't one.
+     */
+    public Assignment findAssignmentByName(String assignmentName) {
+        return assignmentIndex.findByName(assignmentName);
+    }
+
     /**
      * getGradesForStudent gets all the grades a specific student has received
      * for assignments that belong to this course.
-     * It loops through only this course's assignments list
-     * and asks the student object for their grade on each one.
+     * The student's row in the grade matrix is looked up once, then each of this
+     * course's assignments is read straight from its column in that row, instead of
+     * looking the username up again for every assignment.
      * @param student The Student object whose grades we want. Check if null.
      * @return A new Map where key is Assignment object, value is Grade object. Empty if student null.
      */
@@ -314,12 +789,13 @@ public class Course {
         // Create a new map to store the results.
         Map<Assignment, Grade> result = new HashMap<>();
 
+        GradeMatrix matrix = getGradeMatrix();
+        int row = matrix.indexOfStudent(student.getUsername());
         // Loop through the assignments list that belongs to *this course*.
-        // Using this.assignments is safe because we are inside the class.
         for (Assignment a : this.assignments) {
-            // Ask the student object passed in for their grade on this assignment.
-            // Assumes Student has getGradeForAssignment from Person B.
-        	Grade g = a.getGrade(student.getUsername());
+            int col = matrix.columnOf(a);
+            // an assignment not in the matrix keeps its own grades, ask it like before.
+            Grade g = (col >= 0) ? matrix.getGrade(row, col) : a.getGrade(student.getUsername());
 
         	// If the student had a grade Grade object returned not null...
             if (g != null) {
@@ -333,8 +809,8 @@ public class Course {
 
     /**
      * Gets ungraded assignments for a specific student in this course.
-     * Loops through this course's assignments, asks student for grade on each.
-     * If student returns null grade, adds assignment to result list.
+     * Looks the student's matrix row up once and checks each assignment's cell in it,
+     * which only reads the presence bit and doesn't make a Grade copy.
      * @param student The Student object. Check if null.
      * @return list of assignments the student has no grade for in this course. Empty if student null.
      */
@@ -348,13 +824,16 @@ public class Course {
         // list to store results.
         List<Assignment> result = new ArrayList<Assignment>();
 
+        GradeMatrix matrix = getGradeMatrix();
+        // -1 if the student never had a grade here, then every assignment is ungraded.
+        int row = matrix.indexOfStudent(student.getUsername());
         // loop through assignments in this course. Use internal list.
         for (Assignment a : this.assignments) {
-            // ask the student if they have a grade for this assignment.
-            Grade g = a.getGrade(student.getUsername()); // Assumes Student method exists
+            int col = matrix.columnOf(a);
+            boolean graded = (col >= 0) ? matrix.hasGrade(row, col) : (a.getGrade(student.getUsername()) != null);
 
-            // if the grade returned is null, it means it's ungraded for them.
-            if (g == null) {
+            // if there's no grade, it's ungraded for them.
+            if (!graded) {
                 result.add(a); // Add assignment to our results list.
             }
         }
@@ -364,9 +843,9 @@ public class Course {
 
     /**
      * Gets assignments that belong to a specific group name within this course.
-     * Loops through course assignments, compares group name using equals exact match.
+     * Looks the group name up in the assignment index, ignoring case like the group registry does.
      * @param groupName The group name string to look for. Check if null.
-     * @return list of assignments matching the group name. Empty if groupName null.
+     * @return list of assignments in that group, in course order. Empty if groupName null.
      */
     public List<Assignment> getGroupAssignments(String groupName) {
         // Check input.
@@ -374,27 +853,14 @@ public class Course {
             System.out.println("Course problem: getGroupAssignments got null groupName");
         	return new ArrayList<>();
         }
-
-        // list to store results.
-        List<Assignment> groupAssignments = new ArrayList<Assignment>();
-
-        // loop through assignments in this course. Use internal list.
-        for (Assignment a : this.assignments) {
-            // Check if assignment group name matches the one requested. Use equals for exact match.
-            // Assumes Assignment.getGroupName exists.
-            if (groupName.equals(a.getName())) {
-                groupAssignments.add(a);
-            }
-        }
-        // return found list.
-        return groupAssignments;
+        return assignmentIndex.byGroup(groupName);
     }
 
     /**
      * Gets assignments that belong to a specific grading category name like Homework.
-     * Loops through course assignments, compares category name ignoring case.
+     * Looks the category name up in the assignment index, ignoring case.
      * @param categoryName The category name string to look for. Check if null.
-     * @return list of assignments matching the category name. Empty if categoryName null.
+     * @return list of assignments matching the category name, in course order. Empty if categoryName null.
      */
     public List<Assignment> getAssignmentsByCategory(String categoryName) {
         // Check input.
@@ -402,19 +868,46 @@ public class Course {
             System.out.println("Course problem: getAssignmentsByCategory got null categoryName");
         	return new ArrayList<>();
         }
+        return assignmentIndex.byCategory(categoryName);
+    }
 
-        List<Assignment> categoryAssignments = new ArrayList<Assignment>();
-
-        // loop through assignments in this course. Use internal list.
-        for (Assignment a : this.assignments) {
-             // Compare assignment's category name with requested one, ignore case difference.
-             // Assumes Assignment.getCategoryName exists.
-            if (categoryName.equalsIgnoreCase(a.getCategoryName())) {
-                categoryAssignments.add(a);
-            }
+    /**
+     * Gets assignments due between two dates, both included.
+     * Dates are compared as yyyy-MM-dd strings, the way the views enter them.
+     * @param fromDate first due date to include.
+     * @param toDate last due date to include.
+     * @return list of assignments earliest due first. Empty if a date is null or from is after to.
+     */
+    public List<Assignment> getAssignmentsDueBetween(String fromDate, String toDate) {
+        if (fromDate == null || toDate == null) {
+            System.out.println("Course problem: getAssignmentsDueBetween got null date");
+            return new ArrayList<>();
         }
-        // Return the list found.
-        return categoryAssignments;
+        return assignmentIndex.dueBetween(fromDate, toDate);
+    }
+
+    /**
+     * Gets every assignment that has a due date, earliest due first.
+     * @return new list, assignments without a due date are left out.
+     */
+    public List<Assignment> getAssignmentsInDueDateOrder() {
+        return assignmentIndex.inDueDateOrder();
+    }
+
+    /**
+     * Gets the assignments marked graded, in course order.
+     * @return new list.
+     */
+    public List<Assignment> getGradedAssignments() {
+        return assignmentIndex.graded();
+    }
+
+    /**
+     * Gets the assignments not marked graded yet, in course order.
+     * @return new list.
+     */
+    public List<Assignment> getUngradedAssignments() {
+        return assignmentIndex.ungraded();
     }
 
 
@@ -486,13 +979,21 @@ public class Course {
             return new ArrayList<>(); // Return empty list if assignment missing.
         }
 
-        // Get the current list of students using the getter returns a copy.
-        List<Student> studentsToSort = this.getEnrolledStudents();
+        // Take one snapshot, the comparator runs n log n times and reads the copied column
+        // instead of the live matrix. Sort a copy of its roster.
+        CourseSnapshot courseSnapshot = snapshot();
+        List<Student> studentsToSort = new ArrayList<>(courseSnapshot.getStudents());
+        boolean inSnapshot = (courseSnapshot.columnOf(assignment) >= 0);
 
         // Create the Comparator rule for comparing two students student1, student2 based on grade.
         // Comparator.comparingDouble takes a function that extracts the double score to compare.
         Comparator<Student> gradeComparator = Comparator.comparingDouble(student -> {
             // This lambda function runs for each student being compared.
+            if (inSnapshot) {
+                // NaN means no grade, those sort lowest like below.
+                double points = courseSnapshot.getPointsEarned(student.getUsername(), assignment);
+                return Double.isNaN(points) ? Double.NEGATIVE_INFINITY : points;
+            }
             // Get this student's grade object for the specific assignment we're sorting by.
             Grade grade = assignment.getGrade(student.getUsername()); // Assumes Assignment.getGrade exists
             // Check if the student actually had a grade recorded.
@@ -551,14 +1052,29 @@ public class Course {
   //group stuff
     /**
      * Creates a new student group in this course
-     * @param groupName Unique name for the group
+     * @param groupName Unique name for the group, case doesn't matter
      * @throws IllegalArgumentException if name exists or is invalid
      */
     public void createGroup(String groupName) {
-        if (groups.stream().anyMatch(g -> g.getGroupName().equalsIgnoreCase(groupName))) {
-            throw new IllegalArgumentException("Group name already exists");
-        }
-        groups.add(new Group(groupName));
+        groups.create(groupName);
+    }
+
+    /**
+     * Adds a group made somewhere else, like in a view's New Group dialog.
+     * @param group The group to add
+     * @return true if added, false if null or the name is already used
+     */
+    public boolean addGroup(Group group) {
+        return groups.add(group);
+    }
+
+    /**
+     * Removes a group by name, case doesn't matter.
+     * @param groupName The group to remove
+     * @return true if there was one to remove
+     */
+    public boolean removeGroup(String groupName) {
+        return groups.remove(groupName);
     }
 
     /**
@@ -568,11 +1084,18 @@ public class Course {
      * @return true if added successfully
      */
     public boolean addStudentToGroup(String groupName, Student student) {
-        Group group = groups.stream()
-            .filter(g -> g.getGroupName().equals(groupName))
-            .findFirst()
-            .orElse(null);
-        return group != null && group.addMember(student);
+        return groups.assign(groupName, student);
+    }
+
+    /**
+     * Takes a student out of a course group
+     * @param groupName Target group name, case doesn't matter
+     * @param student Student to take out
+     * @return true if the student was in the group and got taken out
+     */
+    public boolean removeStudentFromGroup(String groupName, Student student) {
+        Group group = groups.find(groupName);
+        return group != null && group.removeMember(student);
     }
 
     /**
@@ -580,18 +1103,22 @@ public class Course {
      * @return Unmodifiable list of groups
      */
     public List<Group> getGroups() {
-        return Collections.unmodifiableList(groups);
+        return Collections.unmodifiableList(groups.getGroups());
+    }
+
+    /**
+     * Gets the registry behind the groups, for bulk assignment and
+     * looking up which group a student is in.
+     */
+    public GroupRegistry getGroupRegistry() {
+        return groups;
     }
 
     /**
-     * Finds group by name
+     * Finds group by name, ignoring case
      */
     public Group findGroupByName(String groupName) {
-        if (groupName == null) return null;
-        return groups.stream()
-            .filter(g -> g.getGroupName().equals(groupName))
-            .findFirst()
-            .orElse(null);
+        return groups.find(groupName);
     }
 
     //overrides
@@ -0,0 +1,335 @@
+package model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.grading.GradingPlan;
+
+/**
+ * CourseSnapshot is a course frozen at one moment: who's enrolled, the assignments,
+ * the categories, the grading plan and every grade cell.
+ * getEnrolledStudents, getAllAssignments and getGradingCategories make a new copy on every
+ * call, and calculators and views call them over and over. A snapshot copies them once,
+ * and after that everything is read straight out of it, no copies and no locks.
+ *
+ * Get one with Course.snapshot(). Nothing in a snapshot ever changes, so it can be
+ * handed to any thread. When the course hasn't changed since the last snapshot, that
+ * same snapshot is handed back. When it has, the new snapshot reuses every part that
+ * didn't change from the last one: the roster if nobody enrolled or left, the assignment
+ * list, categories and plan if the structure didn't change, and each grade column that
+ * nobody wrote to. So a grade change only costs copying that one column.
+ *
+ * What's frozen is which students, assignments and categories are in the course and
+ * the grade cells. The Student, Assignment and GradingCategory objects themselves are
+ * the course's real ones, so their names and such are whatever they are right now.
+ */
+public final class CourseSnapshot implements GradeSource {
+
+    /**
+     * One grade column copied out of the GradeMatrix. Made by GradeMatrix.snapshotColumn.
+     * Rows past the end of the arrays were made after the copy, so they have no grade in it.
+     */
+    static final class Column {
+        final Assignment assignment;
+        final int col;
+        final long version;
+        final int gradeCount;
+        private final long[] present;
+        private final double[] points;
+        private final String[] feedback;
+
+        Column(Assignment assignment, int col, long version, int gradeCount, long[] present, double[] points, String[] feedback) {
+            this.assignment = assignment;
+            this.col = col;
+            this.version = version;
+            this.gradeCount = gradeCount;
+            this.present = present;
+            this.points = points;
+            this.feedback = feedback;
+        }
+
+        boolean has(int row) {
+            return row >= 0 && row < points.length && (present[row >>> 6] & (1L << row)) != 0;
+        }
+
+        double pointsAt(int row) {
+            return has(row) ? points[row] : Double.NaN;
+        }
+
+        String feedbackAt(int row) {
+            return (feedback != null && has(row)) ? feedback[row] : null;
+        }
+    }
+
+    private final Course course;
+    private final GradeMatrix matrix;
+
+    // the stamps the course had right before this was copied.
+    private final long courseVersion;
+    private final long rosterVersion;
+    private final long cellVersion;
+
+    private final List<Student> students;
+    private final Map<String, Student> studentsByUsername;
+    private final List<Assignment> assignments;
+    private final Map<String, GradingCategory> categories;
+    private final GradingPlan plan;
+    // copied columns, by matrix column index and by assignment.
+    private final Column[] columns;
+    private final Map<Assignment, Column> columnByAssignment;
+    // username of every matrix row, including students with grades who aren't enrolled anymore.
+    private final String[] usernames;
+
+    /**
+     * Copies a course. Course.snapshot calls this while holding the course's structure lock,
+     * so no assignment or student comes or goes in the middle. Grades can still be written,
+     * each column is copied as one moment of that column.
+     * @param course the course.
+     * @param previous the course's last snapshot to reuse parts of, or null.
+     */
+    CourseSnapshot(Course course, CourseSnapshot previous) {
+        this.course = course;
+        this.matrix = course.getGradeMatrix();
+        // stamps before copying, so a change made during the copy makes the next snapshot look again.
+        this.courseVersion = course.getVersion();
+        this.rosterVersion = course.getRosterVersion();
+        this.cellVersion = matrix.getCellVersion();
+
+        if (previous != null && previous.rosterVersion == rosterVersion) {
+            students = previous.students;
+            studentsByUsername = previous.studentsByUsername;
+        } else {
+            List<Student> roster = course.getEnrolledStudents();
+            Map<String, Student> byUsername = new HashMap<>();
+            for (Student student : roster) {
+                byUsername.put(student.getUsername(), student);
+            }
+            students = Collections.unmodifiableList(roster);
+            studentsByUsername = Collections.unmodifiableMap(byUsername);
+        }
+
+        boolean sameStructure = (previous != null && previous.courseVersion == courseVersion);
+        if (sameStructure) {
+            assignments = previous.assignments;
+            categories = previous.categories;
+            plan = previous.plan;
+        } else {
+            assignments = Collections.unmodifiableList(course.getAllAssignments());
+            categories = Collections.unmodifiableMap(new LinkedHashMap<>(course.getGradingCategories()));
+            plan = course.getGradingPlan();
+        }
+
+        if (sameStructure && previous.cellVersion == cellVersion) {
+            columns = previous.columns;
+            columnByAssignment = previous.columnByAssignment;
+        } else {
+            int highestColumn = -1;
+            for (Assignment a : assignments) {
+                highestColumn = Math.max(highestColumn, matrix.columnOf(a));
+            }
+            Column[] copied = new Column[highestColumn + 1];
+            Map<Assignment, Column> byAssignment = new IdentityHashMap<>();
+            for (Assignment a : assignments) {
+                int col = matrix.columnOf(a);
+                if (col < 0) {
+                    continue; // stored by another course
+                }
+                Column column = matrix.snapshotColumn(col, (previous != null) ? previous.columnByAssignment.get(a) : null);
+                if (column != null) {
+                    copied[col] = column;
+                    byAssignment.put(a, column);
+                }
+            }
+            columns = copied;
+            columnByAssignment = Collections.unmodifiableMap(byAssignment);
+        }
+        // after the columns, so every row a copied column has a grade in has a username.
+        usernames = matrix.snapshotUsernames((previous != null) ? previous.usernames : null);
+    }
+
+    /**
+     * Checks if the course is still exactly like this snapshot.
+     * Only compares three stamps, so it's cheap to call.
+     * @return true if nothing was enrolled, removed, restructured or graded since.
+     */
+    public boolean isCurrent() {
+        return course.getVersion() == courseVersion
+            && course.getRosterVersion() == rosterVersion
+            && matrix.getCellVersion() == cellVersion;
+    }
+
+    public Course getCourse() {
+        return course;
+    }
+
+    // --- roster ---
+
+    /** Gets the enrolled students. The list can't be changed and is shared, no need to copy it. */
+    public List<Student> getStudents() {
+        return students;
+    }
+
+    public int getStudentCount() {
+        return students.size();
+    }
+
+    /**
+     * Finds an enrolled student by username.
+     * @return the Student, or null if nobody with that username was enrolled.
+     */
+    public Student getStudent(String username) {
+        return (username != null) ? studentsByUsername.get(username) : null;
+    }
+
+    public boolean isEnrolled(String username) {
+        return getStudent(username) != null;
+    }
+
+    // --- structure ---
+
+    /** Gets the course's assignments in course order. The list can't be changed. */
+    public List<Assignment> getAssignments() {
+        return assignments;
+    }
+
+    /** Gets the grading categories by name. The map can't be changed. */
+    public Map<String, GradingCategory> getCategories() {
+        return categories;
+    }
+
+    /** Gets the grading plan that goes with this snapshot's assignments and categories. */
+    public GradingPlan getGradingPlan() {
+        return plan;
+    }
+
+    // --- grades ---
+
+    @Override
+    public int indexOfStudent(String username) {
+        // rows never move once made, so the matrix's row can be used for the copied columns.
+        return matrix.indexOfStudent(username);
+    }
+
+    @Override
+    public double pointsAt(int row, int col) {
+        Column column = (col >= 0 && col < columns.length) ? columns[col] : null;
+        return (column != null) ? column.pointsAt(row) : Double.NaN;
+    }
+
+    /**
+     * Finds the matrix column an assignment's grades were copied from.
+     * @return the column, or -1 if the assignment isn't in the course or is stored by another course.
+     */
+    public int columnOf(Assignment a) {
+        Column column = (a != null) ? columnByAssignment.get(a) : null;
+        return (column != null) ? column.col : -1;
+    }
+
+    /** Gets the feedback in a cell by row and matrix column, or null if none. */
+    public String feedbackAt(int row, int col) {
+        Column column = (col >= 0 && col < columns.length) ? columns[col] : null;
+        return (column != null) ? column.feedbackAt(row) : null;
+    }
+
+    /** Number of matrix rows, every student who was ever enrolled or graded in the course. */
+    public int getRowCount() {
+        return usernames.length;
+    }
+
+    /** Gets the username of a matrix row. */
+    public String getUsername(int row) {
+        return usernames[row];
+    }
+
+    /**
+     * Checks if a student had a grade on one of the course's assignments.
+     * @return false if either is null or the assignment isn't in the course.
+     */
+    public boolean hasGrade(String username, Assignment a) {
+        Column column = (a != null) ? columnByAssignment.get(a) : null;
+        return column != null && column.has(matrix.indexOfStudent(username));
+    }
+
+    /**
+     * Gets a student's points on one of the course's assignments.
+     * @return points earned, or Double.NaN if there was no grade.
+     */
+    public double getPointsEarned(String username, Assignment a) {
+        Column column = (a != null) ? columnByAssignment.get(a) : null;
+        return (column != null) ? column.pointsAt(matrix.indexOfStudent(username)) : Double.NaN;
+    }
+
+    /** Gets the feedback on a student's grade, or null if none. */
+    public String getFeedback(String username, Assignment a) {
+        Column column = (a != null) ? columnByAssignment.get(a) : null;
+        return (column != null) ? column.feedbackAt(matrix.indexOfStudent(username)) : null;
+    }
+
+    /**
+     * Makes a Grade for a cell. It's a new object every time since Grade can be changed.
+     * @return a new Grade, or null if there was no grade.
+     */
+    public Grade getGrade(String username, Assignment a) {
+        Column column = (a != null) ? columnByAssignment.get(a) : null;
+        if (column == null) {
+            return null;
+        }
+        int row = matrix.indexOfStudent(username);
+        return column.has(row) ? new Grade(column.pointsAt(row), column.feedbackAt(row)) : null;
+    }
+
+    /** Number of grades an assignment had, 0 if it isn't in the course. */
+    public int getGradeCount(Assignment a) {
+        Column column = (a != null) ? columnByAssignment.get(a) : null;
+        return (column != null) ? column.gradeCount : 0;
+    }
+
+    /**
+     * Gets every grade one student had in the course, like Course.getGradesForStudent.
+     * @return a new map of assignment to Grade, empty if the student is null.
+     */
+    public Map<Assignment, Grade> getGradesForStudent(Student student) {
+        Map<Assignment, Grade> result = new LinkedHashMap<>();
+        if (student == null) {
+            return result;
+        }
+        int row = matrix.indexOfStudent(student.getUsername());
+        for (Assignment a : assignments) {
+            Column column = columnByAssignment.get(a);
+            if (column != null && column.has(row)) {
+                result.put(a, new Grade(column.pointsAt(row), column.feedbackAt(row)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets every grade on one assignment, like Assignment.getAllGrades, but in row order
+     * and including students who aren't enrolled anymore. Used by the exports.
+     * @return a new map of username to Grade, empty if the assignment isn't in the course.
+     */
+    public Map<String, Grade> getGrades(Assignment a) {
+        Map<String, Grade> result = new LinkedHashMap<>();
+        Column column = (a != null) ? columnByAssignment.get(a) : null;
+        if (column == null) {
+            return result;
+        }
+        for (int row = 0; row < usernames.length; row++) {
+            if (column.has(row)) {
+                result.put(usernames[row], new Grade(column.pointsAt(row), column.feedbackAt(row)));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CourseSnapshot [course=" + course.getName() + ", students=" + students.size()
+            + ", assignments=" + assignments.size() + ", courseVersion=" + courseVersion
+            + ", cellVersion=" + cellVersion + "]";
+    }
+}
@@ -0,0 +1,12 @@
+package model;
+
+/**
+ * How a GradingCategory decides which grades are the lowest ones to drop.
+ */
+public enum DropPolicy {
+    /** Lowest points earned, the way drops always worked. */
+    LOWEST_POINTS,
+    /** Lowest percentage, points earned divided by the assignment's getPointsWorth,
+     *  so a 5/10 quiz counts as lower than a 40/50 one. */
+    LOWEST_PERCENTAGE
+}
@@ -0,0 +1,108 @@
+package model;
+
+import java.util.BitSet;
+
+/**
+ * DropSelector picks the k lowest scores out of a category for dropping.
+ * Sorting every score just to take the bottom one or two is wasteful, so this
+ * keeps a max heap of size k over plain double arrays while walking the scores
+ * once, O(n log k). The result is a BitSet of positions so checking if one
+ * assignment is dropped is a single bit lookup.
+ *
+ * Ties go to the earlier position, the same as the old stable sort did.
+ */
+public final class DropSelector {
+
+    private DropSelector() {
+    }
+
+    /**
+     * Picks the numToDrop lowest scores.
+     * @param scores one score per position, Double.NaN for positions that can't be
+     *               dropped (no grade), those are skipped.
+     * @param count how many positions of scores to look at.
+     * @param numToDrop how many to drop, fewer get dropped if there aren't enough scores.
+     * @return BitSet with a bit set for each dropped position.
+     */
+    public static BitSet selectLowest(double[] scores, int count, int numToDrop) {
+        BitSet dropped = new BitSet(count);
+        if (numToDrop <= 0 || count <= 0) {
+            return dropped;
+        }
+        // heap of positions, the highest of the lowest ones so far on top.
+        int[] heap = new int[Math.min(numToDrop, count)];
+        int heapSize = 0;
+        for (int position = 0; position < count; position++) {
+            double score = scores[position];
+            if (Double.isNaN(score)) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize] = position;
+                siftUp(heap, heapSize, scores);
+                heapSize++;
+            } else if (comesBefore(scores, position, heap[0])) {
+                // lower than the highest one kept, so it takes its place.
+                heap[0] = position;
+                siftDown(heap, heapSize, scores);
+            }
+        }
+        for (int i = 0; i < heapSize; i++) {
+            dropped.set(heap[i]);
+        }
+        return dropped;
+    }
+
+    /**
+     * Gets the score a grade is ranked by under a drop policy.
+     * @param pointsEarned points earned, NaN for no grade.
+     * @param pointsWorth the assignment's points possible.
+     * @param policy the drop policy.
+     * @return the points, or the fraction of pointsWorth for LOWEST_PERCENTAGE. NaN stays NaN.
+     */
+    public static double rankScore(double pointsEarned, double pointsWorth, DropPolicy policy) {
+        if (policy == DropPolicy.LOWEST_PERCENTAGE && !Double.isNaN(pointsEarned)) {
+            return (pointsWorth > 0) ? pointsEarned / pointsWorth : 0.0;
+        }
+        return pointsEarned;
+    }
+
+    // true if position a ranks lower than position b, the earlier one on a tie.
+    private static boolean comesBefore(double[] scores, int a, int b) {
+        int byScore = Double.compare(scores[a], scores[b]);
+        return byScore < 0 || (byScore == 0 && a < b);
+    }
+
+    private static void siftUp(int[] heap, int index, double[] scores) {
+        int position = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!comesBefore(scores, heap[parent], position)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = position;
+    }
+
+    private static void siftDown(int[] heap, int size, double[] scores) {
+        int index = 0;
+        int position = heap[0];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && comesBefore(scores, heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!comesBefore(scores, position, heap[child])) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = position;
+    }
+}
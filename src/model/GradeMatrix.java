@@ -0,0 +1,862 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * GradeMatrix is the dense grade storage that lives inside a Course.
+ * Before this, every grade was stored twice, once in Assignment.studentGrades and
+ * once in Student.grades, with a boxed Grade object per cell.
+ * Here students and assignments get integer indexes instead. Students are rows and
+ * assignments are columns. Each column keeps its points in a double[], a bitmap in a
+ * long[] that says which rows actually have a grade, and a String[] for feedback that
+ * only gets made once somebody writes feedback in that column.
+ * Assignment.getGrade, Student.getGradeForAssignment and the calculators all read from
+ * here once the assignment has been added to a course.
+ * Grade objects handed out by getGrade are new copies of the cell, so changing one
+ * doesn't change the stored grade, use Assignment.addGrade for that.
+ * A column can also be given a ColumnLoader instead of its grades, like when a course
+ * is opened from a BinaryCourseFile. The loader only runs the first time that column
+ * is looked at, so columns nobody reads never get decoded.
+ *
+ * Threads: the matrix can be read and written from several threads at once, like a few
+ * TAs grading the same course. There are two kinds of locks:
+ *   - the layout lock, a read/write lock over the arrays themselves. Everything that
+ *     touches a cell holds it for reading, only adding rows or adding/removing columns
+ *     hold it for writing, and those are rare.
+ *   - column stripes, one StampedLock per group of columns. Writing a cell locks its
+ *     column's stripe, so grading different assignments doesn't wait on each other.
+ *     Reading a cell is an optimistic read of the stripe: it reads without locking and
+ *     only tries again under the read lock if a writer got in the middle, so readers
+ *     never hold up writers and never see half a cell.
+ * The cell listener is always called after every lock is let go.
+ *
+ * Every write also stamps its column with a new number from one counter, so a
+ * CourseSnapshot can tell which columns changed since the last one and keep the rest.
+ */
+public class GradeMatrix implements GradeSource {
+
+    /**
+     * Fills in one column's grades the first time the column is used.
+     */
+    public interface ColumnLoader {
+        /**
+         * Puts every stored grade of the column into the sink.
+         * @param sink where to put each grade.
+         */
+        void load(CellSink sink);
+    }
+
+    /**
+     * Takes the grades a ColumnLoader reads.
+     */
+    public interface CellSink {
+        void put(String username, double pointsEarned, String feedback);
+    }
+
+    /**
+     * Hears about grade cells being set or cleared, not about lazy columns loading.
+     * Course uses this to fire its gradeChanged event.
+     */
+    public interface CellListener {
+        /**
+         * @param row the row that changed, or -1 if the whole column was cleared.
+         * @param col the column that changed.
+         */
+        void cellChanged(int row, int col);
+    }
+
+    private static final int INITIAL_ROWS = 16;
+    private static final int INITIAL_COLUMNS = 8;
+    // how many column stripes, a power of two so col & (STRIPES - 1) picks one.
+    private static final int STRIPES = 16;
+
+    // held for reading by every cell access, for writing when the arrays change shape.
+    private final ReentrantReadWriteLock layoutLock = new ReentrantReadWriteLock();
+    private final StampedLock[] columnStripes = newStripes();
+    // only one lazy column loads at a time.
+    private final Object loadLock = new Object();
+
+    // row index for each username, and the username for each row going back.
+    private final Map<String, Integer> rowByUsername = new ConcurrentHashMap<>();
+    private String[] usernameByRow = new String[INITIAL_ROWS];
+    private int rowCount = 0;
+    private int rowCapacity = INITIAL_ROWS;
+
+    // column storage, one entry per column index.
+    private double[][] pointsColumns = new double[INITIAL_COLUMNS][];
+    private long[][] presentColumns = new long[INITIAL_COLUMNS][];
+    private String[][] feedbackColumns = new String[INITIAL_COLUMNS][];
+    private int[] gradeCountByColumn = new int[INITIAL_COLUMNS];
+    // stamp of each column's last change, written under the column's stripe.
+    private long[] columnVersions = new long[INITIAL_COLUMNS];
+    private Assignment[] assignmentByColumn = new Assignment[INITIAL_COLUMNS];
+    private int columnCount = 0;
+
+    // columns freed by removed assignments get used again before making new ones.
+    private int[] freeColumns = new int[INITIAL_COLUMNS];
+    private int freeColumnCount = 0;
+
+    // loaders for columns that haven't been read yet, null when none are waiting.
+    // A column's loader is only taken off after its grades are in, so other threads
+    // that see it gone also see the grades.
+    private volatile AtomicReferenceArray<ColumnLoader> pendingLoaders = null;
+
+    // goes up when a column is added or removed or an assignment's points or graded
+    // flag change, so a GradingPlan can tell it's out of date.
+    private final AtomicInteger layoutVersion = new AtomicInteger();
+
+    // goes up for a row every time one of its cells is set or cleared, so a cached
+    // average for that student can tell it's out of date. Same capacity as the rows.
+    // Atomic since two columns being written at once can share a row.
+    private AtomicLongArray rowVersions = new AtomicLongArray(INITIAL_ROWS);
+
+    // goes up on every cell write, cleared column and added column. Each of those stamps
+    // its column with the new value, so no two changes anywhere share a stamp.
+    private final AtomicLong cellVersion = new AtomicLong();
+
+    // told about every cell that's set or cleared, null when nobody is listening.
+    private volatile CellListener cellListener;
+
+    //rows
+
+    /**
+     * Finds the row index for a student.
+     * @param username The student's username.
+     * @return the row index, or -1 if this student has never had a grade here.
+     */
+    @Override
+    public int indexOfStudent(String username) {
+        if (username == null) {
+            return -1;
+        }
+        Integer row = rowByUsername.get(username);
+        return (row != null) ? row : -1;
+    }
+
+    /** Gets the username stored in a row. */
+    public String getUsername(int row) {
+        layoutLock.readLock().lock();
+        try {
+            return usernameByRow[row];
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes sure a student has a row, so row indexes don't move around later
+     * when lazy columns get loaded.
+     * @param username The student's username.
+     * @return the row index.
+     */
+    public int reserveRow(String username) {
+        if (username == null) {
+            throw new IllegalArgumentException("username cannot be null");
+        }
+        return rowFor(username);
+    }
+
+    /**
+     * Gets how many times a row's cells were changed.
+     * @param row the row index, -1 gives 0.
+     * @return the row version.
+     */
+    public long getRowVersion(int row) {
+        layoutLock.readLock().lock();
+        try {
+            if (row < 0 || row >= rowCount) {
+                return 0L;
+            }
+            return rowVersions.get(row);
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /** Number of student rows currently in the matrix. */
+    public int getStudentCount() {
+        layoutLock.readLock().lock();
+        try {
+            return rowCount;
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the row for a username, making a new one if needed.
+     * Growing rows doubles the capacity of every column.
+     */
+    int rowFor(String username) {
+        Integer existing = rowByUsername.get(username);
+        if (existing != null) {
+            return existing;
+        }
+        // a new row can grow every column, so nobody else can be in the arrays.
+        layoutLock.writeLock().lock();
+        try {
+            existing = rowByUsername.get(username);
+            if (existing != null) {
+                return existing; // another thread made it while we waited
+            }
+            if (rowCount == rowCapacity) {
+                growRows(rowCapacity * 2);
+            }
+            int row = rowCount;
+            usernameByRow[row] = username;
+            rowCount++;
+            rowByUsername.put(username, row);
+            return row;
+        } finally {
+            layoutLock.writeLock().unlock();
+        }
+    }
+
+    // only called with the layout write lock held.
+    private void growRows(int newCapacity) {
+        usernameByRow = Arrays.copyOf(usernameByRow, newCapacity);
+        AtomicLongArray grownVersions = new AtomicLongArray(newCapacity);
+        for (int row = 0; row < rowCount; row++) {
+            grownVersions.set(row, rowVersions.get(row));
+        }
+        rowVersions = grownVersions;
+        for (int col = 0; col < columnCount; col++) {
+            if (assignmentByColumn[col] != null) {
+                pointsColumns[col] = Arrays.copyOf(pointsColumns[col], newCapacity);
+                presentColumns[col] = Arrays.copyOf(presentColumns[col], bitmapWords(newCapacity));
+                if (feedbackColumns[col] != null) {
+                    feedbackColumns[col] = Arrays.copyOf(feedbackColumns[col], newCapacity);
+                }
+            }
+        }
+        rowCapacity = newCapacity;
+    }
+
+    private static int bitmapWords(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    //columns
+
+    /**
+     * Finds the column an assignment uses in this matrix.
+     * @param a The Assignment.
+     * @return the column index, or -1 if the assignment isn't stored in this matrix.
+     */
+    public int columnOf(Assignment a) {
+        if (a == null || a.getGradeMatrix() != this) {
+            return -1;
+        }
+        return a.getGradeColumn();
+    }
+
+    /** Gets the assignment stored in a column, or null for a free column. */
+    public Assignment getAssignment(int col) {
+        layoutLock.readLock().lock();
+        try {
+            return assignmentByColumn[col];
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /** Number of grades stored in one column. */
+    public int getGradeCount(int col) {
+        ensureLoaded(col);
+        layoutLock.readLock().lock();
+        StampedLock stripe = stripeFor(col);
+        long stamp = stripe.readLock();
+        try {
+            return gradeCountByColumn[col];
+        } finally {
+            stripe.unlockRead(stamp);
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    private static StampedLock[] newStripes() {
+        StampedLock[] stripes = new StampedLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new StampedLock();
+        }
+        return stripes;
+    }
+
+    private StampedLock stripeFor(int col) {
+        return columnStripes[col & (STRIPES - 1)];
+    }
+
+    /**
+     * Gives an assignment's column a loader instead of grades. Grades already in
+     * the column stay, the loader's grades get added on top when it runs.
+     * Rows for every student the loader will use should be reserved first.
+     * @param a an Assignment already added to this matrix's course.
+     * @param loader reads the column's grades later.
+     */
+    public void setColumnLoader(Assignment a, ColumnLoader loader) {
+        int col = columnOf(a);
+        if (col < 0) {
+            throw new IllegalArgumentException("Assignment " + (a == null ? null : a.getName()) + " isn't stored in this matrix");
+        }
+        synchronized (loadLock) {
+            AtomicReferenceArray<ColumnLoader> loaders = pendingLoaders;
+            int size = Math.max(col + 1, assignmentByColumn.length);
+            if (loaders == null || loaders.length() < size) {
+                AtomicReferenceArray<ColumnLoader> grown = new AtomicReferenceArray<>(size);
+                for (int i = 0; loaders != null && i < loaders.length(); i++) {
+                    grown.set(i, loaders.get(i));
+                }
+                loaders = grown;
+            }
+            loaders.set(col, loader);
+            pendingLoaders = loaders;
+        }
+    }
+
+    /** Checks if a column still has a loader that hasn't run. */
+    public boolean isColumnLoaded(int col) {
+        AtomicReferenceArray<ColumnLoader> loaders = pendingLoaders;
+        return loaders == null || col >= loaders.length() || loaders.get(col) == null;
+    }
+
+    // drops a column's loader without running it.
+    private void dropLoader(int col) {
+        synchronized (loadLock) {
+            AtomicReferenceArray<ColumnLoader> loaders = pendingLoaders;
+            if (loaders != null && col < loaders.length()) {
+                loaders.set(col, null);
+            }
+        }
+    }
+
+    /**
+     * Runs a column's loader if it hasn't run yet.
+     * Called before any lock is taken, since the loader can add rows.
+     * The grades are read into a list first and then stored all at once under the
+     * column's lock, and the loader is only taken off after that.
+     */
+    private void ensureLoaded(int col) {
+        if (isColumnLoaded(col)) {
+            return;
+        }
+        synchronized (loadLock) {
+            AtomicReferenceArray<ColumnLoader> loaders = pendingLoaders;
+            ColumnLoader loader = loaders.get(col);
+            if (loader == null) {
+                return; // another thread loaded it while we waited
+            }
+            List<Object[]> cells = new ArrayList<>();
+            loader.load((username, pointsEarned, feedback) -> cells.add(new Object[] {rowFor(username), pointsEarned, feedback}));
+            // loading isn't a change, so it stores the cells without bumping row versions or telling the listener.
+            layoutLock.readLock().lock();
+            StampedLock stripe = stripeFor(col);
+            long stamp = stripe.writeLock();
+            try {
+                if (assignmentByColumn[col] != null) {
+                    for (Object[] cell : cells) {
+                        storeCell((Integer) cell[0], col, (Double) cell[1], (String) cell[2]);
+                    }
+                }
+            } finally {
+                stripe.unlockWrite(stamp);
+                layoutLock.readLock().unlock();
+            }
+            loaders.set(col, null);
+        }
+    }
+
+    /**
+     * Gives an assignment a column and moves its grades in.
+     * Called by Course.addAssignment. Does nothing if the assignment is already
+     * stored in a matrix, including another course's.
+     * @return the column index used, or -1 if the assignment lives somewhere else.
+     */
+    int addColumn(Assignment a) {
+        if (a.getGradeMatrix() != null) {
+            return columnOf(a);
+        }
+        int col;
+        layoutLock.writeLock().lock();
+        try {
+            if (freeColumnCount > 0) {
+                col = freeColumns[--freeColumnCount];
+            } else {
+                if (columnCount == assignmentByColumn.length) {
+                    growColumns(columnCount * 2);
+                }
+                col = columnCount++;
+            }
+            pointsColumns[col] = new double[rowCapacity];
+            presentColumns[col] = new long[bitmapWords(rowCapacity)];
+            feedbackColumns[col] = null;
+            gradeCountByColumn[col] = 0;
+            columnVersions[col] = cellVersion.incrementAndGet();
+            assignmentByColumn[col] = a;
+            layoutVersion.incrementAndGet();
+        } finally {
+            layoutLock.writeLock().unlock();
+        }
+        // outside the lock, moving the assignment's own grades in goes through setGrade.
+        a.attachToGradeMatrix(this, col);
+        return col;
+    }
+
+    private void growColumns(int newCapacity) {
+        pointsColumns = Arrays.copyOf(pointsColumns, newCapacity);
+        presentColumns = Arrays.copyOf(presentColumns, newCapacity);
+        feedbackColumns = Arrays.copyOf(feedbackColumns, newCapacity);
+        gradeCountByColumn = Arrays.copyOf(gradeCountByColumn, newCapacity);
+        columnVersions = Arrays.copyOf(columnVersions, newCapacity);
+        assignmentByColumn = Arrays.copyOf(assignmentByColumn, newCapacity);
+        freeColumns = Arrays.copyOf(freeColumns, newCapacity);
+    }
+
+    /**
+     * Drops an assignment's column so it can be reused.
+     * Called by Course.removeAssignment after the grades were cleared.
+     */
+    void removeColumn(Assignment a) {
+        int col = columnOf(a);
+        if (col < 0) {
+            return;
+        }
+        a.detachFromGradeMatrix();
+        dropLoader(col); // never read, nothing to decode
+        layoutLock.writeLock().lock();
+        try {
+            pointsColumns[col] = null;
+            presentColumns[col] = null;
+            feedbackColumns[col] = null;
+            gradeCountByColumn[col] = 0;
+            assignmentByColumn[col] = null;
+            freeColumns[freeColumnCount++] = col;
+            layoutVersion.incrementAndGet();
+        } finally {
+            layoutLock.writeLock().unlock();
+        }
+    }
+
+    /** Gets the layout version, it changes whenever the graded layout of the course could have. */
+    public int getLayoutVersion() {
+        return layoutVersion.get();
+    }
+
+    /** Called by Assignment when its points or graded flag change. */
+    void bumpLayoutVersion() {
+        layoutVersion.incrementAndGet();
+    }
+
+    /**
+     * Gets the cell version, it changes whenever any grade in the matrix is set or
+     * removed or a column is added. Loading a lazy column doesn't count.
+     */
+    public long getCellVersion() {
+        return cellVersion.get();
+    }
+
+    //cells
+
+    /** Checks if a cell has a grade. Rows of -1 count as no grade. */
+    public boolean hasGrade(int row, int col) {
+        if (row < 0) {
+            return false;
+        }
+        ensureLoaded(col);
+        layoutLock.readLock().lock();
+        try {
+            if (row >= rowCount || assignmentByColumn[col] == null) {
+                return false; // no such row, or the column was removed meanwhile
+            }
+            StampedLock stripe = stripeFor(col);
+            long stamp = stripe.tryOptimisticRead();
+            boolean present = isPresent(row, col);
+            if (!stripe.validate(stamp)) {
+                stamp = stripe.readLock();
+                try {
+                    present = isPresent(row, col);
+                } finally {
+                    stripe.unlockRead(stamp);
+                }
+            }
+            return present;
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /** Gets the points in a cell. Only meaningful if hasGrade is true. Rows of -1 give 0. */
+    public double getPointsEarned(int row, int col) {
+        if (row < 0) {
+            return 0.0;
+        }
+        ensureLoaded(col);
+        layoutLock.readLock().lock();
+        try {
+            if (row >= rowCount || assignmentByColumn[col] == null) {
+                return 0.0; // no such row, or the column was removed meanwhile
+            }
+            StampedLock stripe = stripeFor(col);
+            long stamp = stripe.tryOptimisticRead();
+            double points = pointsColumns[col][row];
+            if (!stripe.validate(stamp)) {
+                stamp = stripe.readLock();
+                try {
+                    points = pointsColumns[col][row];
+                } finally {
+                    stripe.unlockRead(stamp);
+                }
+            }
+            return points;
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /** Gets the feedback in a cell, or null if none. */
+    public String getFeedback(int row, int col) {
+        ensureLoaded(col);
+        layoutLock.readLock().lock();
+        try {
+            if (assignmentByColumn[col] == null) {
+                return null;
+            }
+            StampedLock stripe = stripeFor(col);
+            long stamp = stripe.tryOptimisticRead();
+            String feedback = feedbackAt(row, col);
+            if (!stripe.validate(stamp)) {
+                stamp = stripe.readLock();
+                try {
+                    feedback = feedbackAt(row, col);
+                } finally {
+                    stripe.unlockRead(stamp);
+                }
+            }
+            return feedback;
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes a Grade copy of a cell.
+     * The presence, points and feedback are read together, so the copy is never
+     * half one write and half another.
+     * @return a new Grade, or null if the cell is empty.
+     */
+    public Grade getGrade(int row, int col) {
+        if (row < 0) {
+            return null;
+        }
+        ensureLoaded(col);
+        layoutLock.readLock().lock();
+        try {
+            if (row >= rowCount || assignmentByColumn[col] == null) {
+                return null; // no such row, or the column was removed meanwhile
+            }
+            StampedLock stripe = stripeFor(col);
+            long stamp = stripe.tryOptimisticRead();
+            boolean present = isPresent(row, col);
+            double points = pointsColumns[col][row];
+            String feedback = feedbackAt(row, col);
+            if (!stripe.validate(stamp)) {
+                stamp = stripe.readLock();
+                try {
+                    present = isPresent(row, col);
+                    points = pointsColumns[col][row];
+                    feedback = feedbackAt(row, col);
+                } finally {
+                    stripe.unlockRead(stamp);
+                }
+            }
+            return present ? new Grade(points, feedback) : null;
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads one cell's points, with one read of the column instead of hasGrade
+     * and then getPointsEarned.
+     * @return points earned, or Double.NaN if the cell is empty.
+     */
+    @Override
+    public double pointsAt(int row, int col) {
+        if (row < 0) {
+            return Double.NaN;
+        }
+        ensureLoaded(col);
+        layoutLock.readLock().lock();
+        try {
+            if (row >= rowCount || assignmentByColumn[col] == null) {
+                return Double.NaN;
+            }
+            StampedLock stripe = stripeFor(col);
+            long stamp = stripe.tryOptimisticRead();
+            boolean present = isPresent(row, col);
+            double points = pointsColumns[col][row];
+            if (!stripe.validate(stamp)) {
+                stamp = stripe.readLock();
+                try {
+                    present = isPresent(row, col);
+                    points = pointsColumns[col][row];
+                } finally {
+                    stripe.unlockRead(stamp);
+                }
+            }
+            return present ? points : Double.NaN;
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads one cell's points for a calculation.
+     * Assignments that aren't stored in this matrix, like ones that belong to another
+     * course, fall back to the assignment's own lookup so the result is the same.
+     * @param row the student's row from indexOfStudent, can be -1.
+     * @param a the Assignment to look at.
+     * @param username the student's username, used for the fallback.
+     * @return points earned, or Double.NaN if there's no grade.
+     */
+    public double lookupPoints(int row, Assignment a, String username) {
+        int col = columnOf(a);
+        if (col < 0) {
+            Grade g = a.getGrade(username);
+            return (g != null) ? g.getPointsEarned() : Double.NaN;
+        }
+        return pointsAt(row, col);
+    }
+
+    // these two read the arrays, the caller holds the layout lock and checks the stripe.
+    private boolean isPresent(int row, int col) {
+        return (presentColumns[col][row >>> 6] & (1L << row)) != 0;
+    }
+
+    private String feedbackAt(int row, int col) {
+        String[] feedback = feedbackColumns[col];
+        return (feedback != null) ? feedback[row] : null;
+    }
+
+    /** Sets who hears about cells changing, null for nobody. Called by Course. */
+    void setCellListener(CellListener listener) {
+        this.cellListener = listener;
+    }
+
+    /** Stores a grade into a cell, replacing what was there. */
+    void setGrade(int row, int col, double pointsEarned, String feedback) {
+        ensureLoaded(col);
+        layoutLock.readLock().lock();
+        StampedLock stripe = stripeFor(col);
+        long stamp = stripe.writeLock();
+        try {
+            storeCell(row, col, pointsEarned, feedback);
+            rowVersions.incrementAndGet(row);
+            columnVersions[col] = cellVersion.incrementAndGet();
+        } finally {
+            stripe.unlockWrite(stamp);
+            layoutLock.readLock().unlock();
+        }
+        notifyCellChanged(row, col);
+    }
+
+    // puts the values in a cell without counting it as a change. Caller holds the column's stripe.
+    private void storeCell(int row, int col, double pointsEarned, String feedback) {
+        long[] present = presentColumns[col];
+        long bit = 1L << row;
+        if ((present[row >>> 6] & bit) == 0) {
+            present[row >>> 6] |= bit;
+            gradeCountByColumn[col]++;
+        }
+        pointsColumns[col][row] = pointsEarned;
+        if (feedback != null || feedbackColumns[col] != null) {
+            if (feedbackColumns[col] == null) {
+                feedbackColumns[col] = new String[rowCapacity];
+            }
+            feedbackColumns[col][row] = feedback;
+        }
+    }
+
+    /**
+     * Empties one cell.
+     * @return true if there was a grade there.
+     */
+    boolean clearGrade(int row, int col) {
+        if (row < 0) {
+            return false;
+        }
+        ensureLoaded(col);
+        layoutLock.readLock().lock();
+        StampedLock stripe = stripeFor(col);
+        long stamp = stripe.writeLock();
+        try {
+            if (row >= rowCount || !isPresent(row, col)) {
+                return false;
+            }
+            presentColumns[col][row >>> 6] &= ~(1L << row);
+            pointsColumns[col][row] = 0.0;
+            if (feedbackColumns[col] != null) {
+                feedbackColumns[col][row] = null;
+            }
+            gradeCountByColumn[col]--;
+            rowVersions.incrementAndGet(row);
+            columnVersions[col] = cellVersion.incrementAndGet();
+        } finally {
+            stripe.unlockWrite(stamp);
+            layoutLock.readLock().unlock();
+        }
+        notifyCellChanged(row, col);
+        return true;
+    }
+
+    /** Empties a whole column. */
+    void clearColumn(int col) {
+        dropLoader(col); // cleared before it was read, skip decoding it
+        layoutLock.readLock().lock();
+        StampedLock stripe = stripeFor(col);
+        long stamp = stripe.writeLock();
+        try {
+            // every row might have lost a grade.
+            for (int row = 0; row < rowCount; row++) {
+                rowVersions.incrementAndGet(row);
+            }
+            Arrays.fill(presentColumns[col], 0L);
+            Arrays.fill(pointsColumns[col], 0.0);
+            feedbackColumns[col] = null;
+            gradeCountByColumn[col] = 0;
+            columnVersions[col] = cellVersion.incrementAndGet();
+        } finally {
+            stripe.unlockWrite(stamp);
+            layoutLock.readLock().unlock();
+        }
+        notifyCellChanged(-1, col);
+    }
+
+    // called after every lock is let go, so a listener can read the matrix.
+    private void notifyCellChanged(int row, int col) {
+        CellListener listener = cellListener;
+        if (listener != null) {
+            listener.cellChanged(row, col);
+        }
+    }
+
+    /**
+     * Copies the points of every graded row in a column.
+     * Used for the assignment average and median. The column is read under its
+     * read lock, so it's one consistent moment of the column.
+     * @return new array with one entry per grade, in row order.
+     */
+    double[] copyColumnScores(int col) {
+        ensureLoaded(col);
+        layoutLock.readLock().lock();
+        StampedLock stripe = stripeFor(col);
+        long stamp = stripe.readLock();
+        try {
+            double[] scores = new double[gradeCountByColumn[col]];
+            int next = 0;
+            long[] present = presentColumns[col];
+            double[] points = pointsColumns[col];
+            for (int word = 0; word < present.length && next < scores.length; word++) {
+                long bits = present[word];
+                while (bits != 0) {
+                    int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    scores[next++] = points[row];
+                    bits &= bits - 1;
+                }
+            }
+            return scores;
+        } finally {
+            stripe.unlockRead(stamp);
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes a username to Grade map for one column.
+     * Used by Assignment.getAllGrades, read under the column's read lock like copyColumnScores.
+     */
+    Map<String, Grade> copyColumnGrades(int col) {
+        ensureLoaded(col);
+        layoutLock.readLock().lock();
+        StampedLock stripe = stripeFor(col);
+        long stamp = stripe.readLock();
+        try {
+            Map<String, Grade> result = new HashMap<>();
+            long[] present = presentColumns[col];
+            for (int word = 0; word < present.length; word++) {
+                long bits = present[word];
+                while (bits != 0) {
+                    int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    result.put(usernameByRow[row], new Grade(pointsColumns[col][row], feedbackAt(row, col)));
+                    bits &= bits - 1;
+                }
+            }
+            return result;
+        } finally {
+            stripe.unlockRead(stamp);
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies every row's username for a CourseSnapshot. Rows never change once they're made,
+     * so if no row was added since the copy handed in was made, that copy is given back.
+     * @param previous the last snapshot's usernames, or null.
+     * @return usernames by row.
+     */
+    String[] snapshotUsernames(String[] previous) {
+        layoutLock.readLock().lock();
+        try {
+            if (previous != null && previous.length == rowCount) {
+                return previous;
+            }
+            return Arrays.copyOf(usernameByRow, rowCount);
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies one column for a CourseSnapshot, under its read lock so it's one moment of the column.
+     * If the column hasn't changed since the copy handed in was made, that copy is
+     * given back instead, so a snapshot only pays for columns that changed.
+     * @param col the column.
+     * @param previous the same assignment's column from the last snapshot, or null.
+     * @return the column copy, or null if the column was removed.
+     */
+    CourseSnapshot.Column snapshotColumn(int col, CourseSnapshot.Column previous) {
+        ensureLoaded(col);
+        layoutLock.readLock().lock();
+        StampedLock stripe = stripeFor(col);
+        long stamp = stripe.readLock();
+        try {
+            Assignment a = assignmentByColumn[col];
+            if (a == null) {
+                return null;
+            }
+            long version = columnVersions[col];
+            if (previous != null && previous.version == version && previous.assignment == a) {
+                return previous;
+            }
+            // only rows that exist now, later rows can't have a grade in this copy.
+            String[] feedback = feedbackColumns[col];
+            return new CourseSnapshot.Column(a, col, version, gradeCountByColumn[col],
+                Arrays.copyOf(presentColumns[col], bitmapWords(rowCount)),
+                Arrays.copyOf(pointsColumns[col], rowCount),
+                (feedback != null) ? Arrays.copyOf(feedback, rowCount) : null);
+        } finally {
+            stripe.unlockRead(stamp);
+            layoutLock.readLock().unlock();
+        }
+    }
+}
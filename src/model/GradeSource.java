@@ -0,0 +1,24 @@
+package model;
+
+/**
+ * GradeSource is something grade cells can be read from by row and column,
+ * either the live GradeMatrix or a CourseSnapshot of it.
+ * The calculators read through this so the same code works on both.
+ */
+public interface GradeSource {
+
+    /**
+     * Finds the row index for a student.
+     * @param username The student's username.
+     * @return the row index, or -1 if the student has no row.
+     */
+    int indexOfStudent(String username);
+
+    /**
+     * Reads the points in one cell.
+     * @param row the row, -1 counts as no grade.
+     * @param col the column.
+     * @return points earned, or Double.NaN if there's no grade in the cell.
+     */
+    double pointsAt(int row, int col);
+}
@@ -1,10 +1,12 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents a category of assignments with specific grading rules
@@ -13,9 +15,18 @@ public class GradingCategory {
     private final String name;
     private final double weight;
     private final int numDropped;
+    private final DropPolicy dropPolicy;
     private final List<Assignment> assignments;
 
     public GradingCategory(String name, double weight, int numDropped) {
+        this(name, weight, numDropped, DropPolicy.LOWEST_POINTS);
+    }
+
+    /**
+     * Makes a category that picks its dropped grades with a drop policy.
+     * @param dropPolicy LOWEST_POINTS or LOWEST_PERCENTAGE, null means LOWEST_POINTS.
+     */
+    public GradingCategory(String name, double weight, int numDropped, DropPolicy dropPolicy) {
         if (name == null || name.isEmpty()) {
             throw new IllegalArgumentException("Name cannot be null or empty");
         }
@@ -29,6 +40,7 @@ public class GradingCategory {
         this.name = name;
         this.weight = weight;
         this.numDropped = numDropped;
+        this.dropPolicy = (dropPolicy != null) ? dropPolicy : DropPolicy.LOWEST_POINTS;
         this.assignments = new ArrayList<Assignment>();
     }
 
@@ -44,6 +56,10 @@ public class GradingCategory {
         return numDropped;
     }
 
+    public DropPolicy getDropPolicy() {
+        return dropPolicy;
+    }
+
     public List<Assignment> getAssignments() {
         return new ArrayList<Assignment>(assignments);
     }
@@ -67,38 +83,53 @@ public class GradingCategory {
     /**
      * Determines which assignments should be dropped for a student
      * @param studentGrades: map of the student's grades
-     * @return list of assignments to drop
+     * @return list of assignments to drop, lowest first
      */
     public List<Assignment> getDroppedAssignments(Map<Assignment, Grade> studentGrades) {
-        List<Assignment> eligible = new ArrayList<Assignment>();
-        // getting all graded assignments
-        for (Assignment a : assignments) {
-            if (studentGrades.containsKey(a)) {
-                eligible.add(a);
-            }
+        BitSet dropped = getDroppedPositions(studentGrades);
+        List<Assignment> result = new ArrayList<Assignment>(dropped.cardinality());
+        for (int i = dropped.nextSetBit(0); i >= 0; i = dropped.nextSetBit(i + 1)) {
+            result.add(assignments.get(i));
         }
-        // sorting assignments by score, lowest to highest
-        Collections.sort(eligible, new GradeComparator(studentGrades));
-
-        // returning only the number to drop
-        int dropCount = Math.min(numDropped, eligible.size());
-        return eligible.subList(0, dropCount);
+        // lowest first like the old sorted list.
+        Collections.sort(result, (a1, a2) -> Double.compare(rankScore(a1, studentGrades.get(a1)), rankScore(a2, studentGrades.get(a2))));
+        return result;
     }
-    
-    /*
-     * Helper class for comparing assignments by grade
+
+    /**
+     * Same as getDroppedAssignments but as a set that checks by identity,
+     * so contains is constant time instead of a list scan.
+     * @param studentGrades: map of the student's grades
+     * @return new set of the assignments to drop
      */
-    private class GradeComparator implements Comparator<Assignment> {
-        private Map<Assignment, Grade> grades;
-        
-        public GradeComparator(Map<Assignment, Grade> grades) {
-            this.grades = grades;
+    public Set<Assignment> getDroppedAssignmentSet(Map<Assignment, Grade> studentGrades) {
+        BitSet dropped = getDroppedPositions(studentGrades);
+        Set<Assignment> result = Collections.newSetFromMap(new IdentityHashMap<Assignment, Boolean>());
+        for (int i = dropped.nextSetBit(0); i >= 0; i = dropped.nextSetBit(i + 1)) {
+            result.add(assignments.get(i));
         }
-        
-        public int compare(Assignment a1, Assignment a2) {
-            double g1 = grades.get(a1).getPointsEarned();
-            double g2 = grades.get(a2).getPointsEarned();
-            return Double.compare(g1, g2);
+        return result;
+    }
+
+    /**
+     * Picks the dropped assignments as positions in getAssignments order.
+     * Only assignments the student has a grade for can be dropped.
+     * @param studentGrades: map of the student's grades
+     * @return BitSet with the dropped positions set
+     */
+    public BitSet getDroppedPositions(Map<Assignment, Grade> studentGrades) {
+        int size = assignments.size();
+        double[] scores = new double[size];
+        for (int i = 0; i < size; i++) {
+            Assignment a = assignments.get(i);
+            Grade g = studentGrades.get(a);
+            scores[i] = (g != null) ? rankScore(a, g) : Double.NaN;
         }
+        return DropSelector.selectLowest(scores, size, numDropped);
+    }
+
+    // the score a grade is ranked by for dropping, under this category's policy.
+    private double rankScore(Assignment a, Grade g) {
+        return DropSelector.rankScore(g.getPointsEarned(), a.getPointsWorth(), dropPolicy);
     }
 }
@@ -1,15 +1,25 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Represents a named group of students for organizing course work.
  * Provides basic functionality for managing group membership.
+ * Members are kept in a hash set in the order they joined, so contains is one lookup
+ * instead of a scan. If the group is in a course's GroupRegistry, the registry hears
+ * about every member added or removed so its student to group index stays right.
+ * Membership changes lock the group, and tell the registries while still holding it,
+ * so a registry always hears about one group's changes in the order they happened.
  */
 public class Group {
     private final String name;
-    private final List<Student> members;
+    private final Set<Student> members;
+    // registries this group was added to, usually just its course's. Empty for a loose group.
+    private final List<GroupRegistry> registries = new ArrayList<>(1);
 
     /**
      * Creates a new student group with the specified name.
@@ -17,11 +27,11 @@ public class Group {
      * @throws IllegalArgumentException if name is null or empty
      */
     public Group(String name) {
-        if (name.trim().isEmpty()) {
+        if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Group name cannot be empty");
         }
         this.name = name;
-        this.members = new ArrayList<>();
+        this.members = new LinkedHashSet<>();
     }
 
     /**
@@ -29,20 +39,46 @@ public class Group {
      * @param student The student to add (ignored if null)
      * @return true if student was added, false if already present or null
      */
-    public boolean addMember(Student student) {
-        if (student != null && !members.contains(student)) {
-            return members.add(student);
+    public synchronized boolean addMember(Student student) {
+        if (student != null && members.add(student)) {
+            for (GroupRegistry registry : registries) {
+                registry.memberAdded(this, student);
+            }
+            return true;
         }
         return false;
     }
 
+    /**
+     * Adds a whole list of students, skipping nulls and ones already in.
+     * @param students The students to add
+     * @return how many were actually added
+     */
+    public synchronized int addMembers(Collection<Student> students) {
+        int added = 0;
+        if (students != null) {
+            for (Student s : students) {
+                if (addMember(s)) {
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
     /**
      * Removes a student from this group.
      * @param student The student to remove
      * @return true if student was removed, false if not found or null
      */
-    public boolean removeMember(Student student) {
-        return members.remove(student);
+    public synchronized boolean removeMember(Student student) {
+        if (student != null && members.remove(student)) {
+            for (GroupRegistry registry : registries) {
+                registry.memberRemoved(this, student);
+            }
+            return true;
+        }
+        return false;
     }
     
     /**
@@ -50,16 +86,33 @@ public class Group {
      * @param student The student to check
      * @return true if student is a member, false otherwise (including null case)
      */
-    public boolean contains(Student student) {
-        return members.contains(student);
+    public synchronized boolean contains(Student student) {
+        return student != null && members.contains(student);
+    }
+
+    /** How many students are in the group. */
+    public synchronized int size() {
+        return members.size();
     }
 
     // Basic getters
     public String getGroupName() { return name; }
-    public List<Student> getMembers() { return new ArrayList<>(members); }
+    public synchronized List<Student> getMembers() { return new ArrayList<>(members); }
+
+    // --- used by GroupRegistry ---
+
+    synchronized void attach(GroupRegistry registry) {
+        if (!registries.contains(registry)) {
+            registries.add(registry);
+        }
+    }
+
+    synchronized void detach(GroupRegistry registry) {
+        registries.remove(registry);
+    }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return "Group " + name + " [" + members.size() + " members]";
     }
 }
\ No newline at end of file
@@ -0,0 +1,216 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * GroupRegistry holds a course's groups with two indexes, so nothing has to scan.
+ *   - name to group, ignoring case, so "Team 1" and "team 1" are the same group.
+ *   - student to the groups they're in, for "which group is this student in".
+ * Course used to keep a plain list and stream().filter it for every lookup, and Group
+ * used ArrayList.contains, so setting up hundreds of groups went quadratic.
+ *
+ * Groups tell the registry when members are added or removed, even when that's done
+ * straight on the Group, so the student index can't go stale.
+ *
+ * It can be used from more than one thread. When both locks are needed the Group's is
+ * always taken first and the registry's second, the same order Group.addMember takes them,
+ * so nothing here ever waits on a group while holding the registry.
+ */
+public class GroupRegistry {
+    // lower case name -> group, in the order the groups were added.
+    private final Map<String, Group> groupsByName = new LinkedHashMap<>();
+    // student -> groups they're a member of, in the order they joined.
+    private final Map<Student, Set<Group>> groupsByStudent = new HashMap<>();
+
+    /**
+     * Makes a new empty group and adds it.
+     * @param groupName name for the group, has to be new ignoring case.
+     * @return the new group.
+     * @throws IllegalArgumentException if the name is empty or already used.
+     */
+    public Group create(String groupName) {
+        if (groupName == null || groupName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Group name cannot be empty");
+        }
+        // add checks the name and takes it in one step, so two threads can't both make it.
+        Group group = new Group(groupName);
+        if (!add(group)) {
+            throw new IllegalArgumentException("Group name already exists");
+        }
+        return group;
+    }
+
+    /**
+     * Finds a group by name, or makes it if there isn't one yet.
+     * @param groupName the name, case doesn't matter.
+     * @return the group, null if the name was null or empty.
+     */
+    public Group getOrCreate(String groupName) {
+        Group existing = find(groupName);
+        if (existing != null) {
+            return existing;
+        }
+        if (groupName == null || groupName.trim().isEmpty()) {
+            return null;
+        }
+        Group made = new Group(groupName);
+        // someone else may have made it in the meantime, then theirs is the one.
+        return add(made) ? made : find(groupName);
+    }
+
+    /**
+     * Adds a group that was made somewhere else, along with its members.
+     * @param group the group to add.
+     * @return true if added, false if null or another group already has the name.
+     */
+    public boolean add(Group group) {
+        if (group == null) {
+            return false;
+        }
+        String key = keyFor(group.getGroupName());
+        synchronized (this) {
+            Group existing = groupsByName.get(key);
+            if (existing != null) {
+                return existing == group;
+            }
+            groupsByName.put(key, group);
+        }
+        // group first, then this, see the class comment.
+        synchronized (group) {
+            // it could have been removed again before we got the group's lock.
+            if (find(group.getGroupName()) == group) {
+                group.attach(this);
+                for (Student member : group.getMembers()) {
+                    memberAdded(group, member);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes a group out of the registry. Its members stay in the Group object.
+     * @param groupName the name, case doesn't matter.
+     * @return true if there was a group to remove.
+     */
+    public boolean remove(String groupName) {
+        if (groupName == null) {
+            return false;
+        }
+        Group removed;
+        synchronized (this) {
+            removed = groupsByName.remove(keyFor(groupName));
+        }
+        if (removed == null) {
+            return false;
+        }
+        synchronized (removed) {
+            removed.detach(this);
+            for (Student member : removed.getMembers()) {
+                memberRemoved(removed, member);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds a group by name, ignoring case.
+     * @return the group, or null if there isn't one.
+     */
+    public synchronized Group find(String groupName) {
+        if (groupName == null) {
+            return null;
+        }
+        return groupsByName.get(keyFor(groupName));
+    }
+
+    /**
+     * Puts one student in a group.
+     * @return true if they were added, false if the group doesn't exist, the student is null or already in it.
+     */
+    public boolean assign(String groupName, Student student) {
+        Group group = find(groupName);
+        return group != null && group.addMember(student);
+    }
+
+    /**
+     * Puts a whole list of students in a group, like setting up project teams.
+     * @return how many were newly added, 0 if the group doesn't exist.
+     */
+    public int assignAll(String groupName, Collection<Student> students) {
+        Group group = find(groupName);
+        return (group != null) ? group.addMembers(students) : 0;
+    }
+
+    /**
+     * Checks if a student is in a group without going through its members.
+     */
+    public boolean isMember(String groupName, Student student) {
+        Group group = find(groupName);
+        return group != null && group.contains(student);
+    }
+
+    /**
+     * Finds the group a student is in. If they're in more than one this is the first one they joined.
+     * @return the group, or null if they aren't in any.
+     */
+    public synchronized Group findGroupOf(Student student) {
+        Set<Group> groups = (student != null) ? groupsByStudent.get(student) : null;
+        return (groups == null || groups.isEmpty()) ? null : groups.iterator().next();
+    }
+
+    /**
+     * Finds every group a student is in.
+     * @return list of groups, empty if none.
+     */
+    public synchronized List<Group> findGroupsOf(Student student) {
+        Set<Group> groups = (student != null) ? groupsByStudent.get(student) : null;
+        return (groups == null) ? new ArrayList<>() : new ArrayList<>(groups);
+    }
+
+    /** Gets every group in the order they were added, as a copy. */
+    public synchronized List<Group> getGroups() {
+        return new ArrayList<>(groupsByName.values());
+    }
+
+    public synchronized int size() {
+        return groupsByName.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return groupsByName.isEmpty();
+    }
+
+    // --- called by Group ---
+
+    synchronized void memberAdded(Group group, Student student) {
+        groupsByStudent.computeIfAbsent(student, s -> new LinkedHashSet<>(2)).add(group);
+    }
+
+    synchronized void memberRemoved(Group group, Student student) {
+        Set<Group> groups = groupsByStudent.get(student);
+        if (groups != null) {
+            groups.remove(group);
+            if (groups.isEmpty()) {
+                groupsByStudent.remove(student);
+            }
+        }
+    }
+
+    private static String keyFor(String groupName) {
+        return groupName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "GroupRegistry [groups=" + groupsByName.size() + ", studentsInGroups=" + groupsByStudent.size() + "]";
+    }
+}
@@ -0,0 +1,166 @@
+package model;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+/**
+ * PasswordPolicy decides how strong the BCrypt hashes are.
+ * BCrypt's cost is a power of two, every step up doubles how long a hash takes.
+ * It used to always be the library default of 10. Now the cost can be set in the
+ * config, or picked at startup by timing a hash on this machine and going as high
+ * as fits under a target time, but never under the minimum.
+ *
+ * Config comes from system properties:
+ * gradebook.bcrypt.cost fixes the cost,
+ * gradebook.bcrypt.targetMillis is the target time when calibrating (default 250),
+ * gradebook.bcrypt.minCost is the lowest cost calibration can pick (default 10).
+ *
+ * Accounts hashed with a different cost get rehashed the next time they log in,
+ * see needsRehash.
+ */
+public class PasswordPolicy {
+    public static final String COST_PROPERTY = "gradebook.bcrypt.cost";
+    public static final String TARGET_MILLIS_PROPERTY = "gradebook.bcrypt.targetMillis";
+    public static final String MIN_COST_PROPERTY = "gradebook.bcrypt.minCost";
+
+    public static final int DEFAULT_COST = 10;
+    public static final long DEFAULT_TARGET_MILLIS = 250;
+    // BCrypt only takes costs from 4 to 30.
+    public static final int LOWEST_COST = 4;
+    public static final int HIGHEST_COST = 30;
+    // cost timed during calibration, fast enough to not slow startup much.
+    private static final int PROBE_COST = 8;
+
+    // the policy new hashes use, the plain default until the app sets one.
+    private static volatile PasswordPolicy current = new PasswordPolicy(DEFAULT_COST);
+
+    private final int cost;
+
+    /**
+     * Makes a policy with a fixed cost.
+     * @param cost the BCrypt log rounds, 4 to 30.
+     */
+    public PasswordPolicy(int cost) {
+        if (cost < LOWEST_COST || cost > HIGHEST_COST) {
+            throw new IllegalArgumentException("BCrypt cost must be between " + LOWEST_COST + " and " + HIGHEST_COST);
+        }
+        this.cost = cost;
+    }
+
+    /** Gets the policy that User uses for new hashes. */
+    public static PasswordPolicy getCurrent() {
+        return current;
+    }
+
+    /** Sets the policy that User uses for new hashes. */
+    public static void setCurrent(PasswordPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy can't be null");
+        }
+        current = policy;
+    }
+
+    /**
+     * Makes the policy from the system properties.
+     * A fixed cost wins, otherwise it calibrates to the target time.
+     * @return the policy.
+     */
+    public static PasswordPolicy fromConfiguration() {
+        String fixedCost = System.getProperty(COST_PROPERTY);
+        if (fixedCost != null) {
+            try {
+                return new PasswordPolicy(Integer.parseInt(fixedCost.trim()));
+            } catch (IllegalArgumentException badCost) {
+                System.out.println("PasswordPolicy problem: ignoring bad " + COST_PROPERTY + " " + fixedCost);
+            }
+        }
+        long targetMillis = Long.getLong(TARGET_MILLIS_PROPERTY, DEFAULT_TARGET_MILLIS);
+        int minCost = Integer.getInteger(MIN_COST_PROPERTY, DEFAULT_COST);
+        return calibrate(targetMillis, Math.max(LOWEST_COST, Math.min(HIGHEST_COST, minCost)));
+    }
+
+    /**
+     * Times a hash on this machine and picks the highest cost that still takes
+     * about targetMillis or less.
+     * Hashes at a low cost and doubles or halves from there, since every cost step doubles the time.
+     * @param targetMillis how long one hash should take at most.
+     * @param minCost the lowest cost to pick even if the machine is slow.
+     * @return the calibrated policy.
+     */
+    public static PasswordPolicy calibrate(long targetMillis, int minCost) {
+        if (targetMillis <= 0) {
+            throw new IllegalArgumentException("targetMillis must be positive");
+        }
+        String salt = BCrypt.gensalt(PROBE_COST);
+        // first one warms up the JIT, keep the fastest of the rest.
+        BCrypt.hashpw("calibration", salt);
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw("calibration", salt);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        double probeMillis = Math.max(bestNanos / 1_000_000.0, 0.001);
+
+        int cost = PROBE_COST;
+        double expectedMillis = probeMillis;
+        while (cost < HIGHEST_COST && expectedMillis * 2 <= targetMillis) {
+            expectedMillis *= 2;
+            cost++;
+        }
+        while (cost > LOWEST_COST && expectedMillis > targetMillis) {
+            expectedMillis /= 2;
+            cost--;
+        }
+        cost = Math.max(cost, minCost);
+        System.out.println(String.format("PasswordPolicy calibrated cost %d (cost %d took %.1fms, target %dms)",
+            cost, PROBE_COST, probeMillis, targetMillis));
+        return new PasswordPolicy(cost);
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * Hashes a password at this policy's cost.
+     * @param password the plain password.
+     * @return the BCrypt hash.
+     */
+    public String hash(String password) {
+        return BCrypt.hashpw(password, BCrypt.gensalt(cost));
+    }
+
+    /**
+     * Checks if a stored hash was made with a different cost than this policy's.
+     * @param hashedPass a stored BCrypt hash.
+     * @return true if it should be hashed again, false if it's fine or can't be read.
+     */
+    public boolean needsRehash(String hashedPass) {
+        int storedCost = costOf(hashedPass);
+        return storedCost > 0 && storedCost != cost;
+    }
+
+    /**
+     * Reads the cost out of a BCrypt hash, it's the two digits in $2a$10$...
+     * @return the cost, or -1 if the hash doesn't look like BCrypt.
+     */
+    public static int costOf(String hashedPass) {
+        if (hashedPass == null || hashedPass.length() < 7 || hashedPass.charAt(0) != '$') {
+            return -1;
+        }
+        int costStart = hashedPass.indexOf('$', 1) + 1;
+        if (costStart <= 0 || costStart + 3 > hashedPass.length() || hashedPass.charAt(costStart + 2) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hashedPass.substring(costStart, costStart + 2));
+        } catch (NumberFormatException notANumber) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PasswordPolicy [cost=" + cost + "]";
+    }
+}
@@ -0,0 +1,184 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * ScoreStatistics keeps running numbers for one assignment's scores.
+ * Count, sum, min, max and variance are updated as each grade comes in or goes out,
+ * so reading them doesn't loop over every grade.
+ * For the median and percentiles the scores are also kept in a sorted double array.
+ * Adding or removing a score is a binary search plus one array shift, and any rank
+ * can then be read straight out of the array.
+ *
+ * The variance uses Welford's method so it stays accurate with lots of scores,
+ * and it's the population variance, divided by the count.
+ */
+public final class ScoreStatistics {
+    private double[] sorted = new double[8];
+    private int count = 0;
+    private double sum = 0.0;
+    // Welford running mean and sum of squared differences from it.
+    private double mean = 0.0;
+    private double squaredDiffs = 0.0;
+
+    /**
+     * Makes statistics for some scores already there, like a column that was just read.
+     * @param scores the scores, in any order. The array isn't kept.
+     * @return the statistics.
+     */
+    public static ScoreStatistics of(double[] scores) {
+        ScoreStatistics stats = new ScoreStatistics();
+        stats.sorted = Arrays.copyOf(scores, Math.max(8, scores.length));
+        Arrays.sort(stats.sorted, 0, scores.length);
+        for (double score : scores) {
+            stats.count++;
+            stats.sum += score;
+            double delta = score - stats.mean;
+            stats.mean += delta / stats.count;
+            stats.squaredDiffs += delta * (score - stats.mean);
+        }
+        return stats;
+    }
+
+    /** Adds one score. */
+    public void add(double score) {
+        if (count == sorted.length) {
+            sorted = Arrays.copyOf(sorted, sorted.length * 2);
+        }
+        int at = insertionPoint(score);
+        System.arraycopy(sorted, at, sorted, at + 1, count - at);
+        sorted[at] = score;
+        count++;
+        sum += score;
+        double delta = score - mean;
+        mean += delta / count;
+        squaredDiffs += delta * (score - mean);
+    }
+
+    /**
+     * Takes out one score that was added before.
+     * @return false if that score wasn't there.
+     */
+    public boolean remove(double score) {
+        int at = indexOf(score);
+        if (at < 0) {
+            return false;
+        }
+        System.arraycopy(sorted, at + 1, sorted, at, count - at - 1);
+        count--;
+        if (count == 0) {
+            clear();
+            return true;
+        }
+        sum -= score;
+        // Welford run backwards.
+        double oldMean = mean;
+        mean = (oldMean * (count + 1) - score) / count;
+        squaredDiffs -= (score - oldMean) * (score - mean);
+        if (squaredDiffs < 0) {
+            squaredDiffs = 0.0; // rounding after lots of removes
+        }
+        return true;
+    }
+
+    /**
+     * Swaps an old score for a new one, like when a grade is changed.
+     */
+    public void replace(double oldScore, double newScore) {
+        remove(oldScore);
+        add(newScore);
+    }
+
+    /** Forgets every score. */
+    public void clear() {
+        count = 0;
+        sum = 0.0;
+        mean = 0.0;
+        squaredDiffs = 0.0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /** Average score, 0.0 if there aren't any. */
+    public double getAverage() {
+        return (count == 0) ? 0.0 : sum / count;
+    }
+
+    /** Lowest score, 0.0 if there aren't any. */
+    public double getMin() {
+        return (count == 0) ? 0.0 : sorted[0];
+    }
+
+    /** Highest score, 0.0 if there aren't any. */
+    public double getMax() {
+        return (count == 0) ? 0.0 : sorted[count - 1];
+    }
+
+    /** Population variance of the scores, 0.0 if there aren't any. */
+    public double getVariance() {
+        return (count == 0) ? 0.0 : squaredDiffs / count;
+    }
+
+    /** Median score, the two middle ones averaged for an even count. 0.0 if there aren't any. */
+    public double getMedian() {
+        if (count == 0) {
+            return 0.0;
+        }
+        int middle = count / 2;
+        if (count % 2 == 0) {
+            return (sorted[middle - 1] + sorted[middle]) / 2.0;
+        }
+        return sorted[middle];
+    }
+
+    /**
+     * Gets a percentile, going in a straight line between the two closest scores.
+     * 50 gives the median, 0 the min and 100 the max.
+     * @param percentile from 0 to 100.
+     * @return the score at that percentile, 0.0 if there aren't any.
+     */
+    public double getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100 || Double.isNaN(percentile)) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        if (count == 0) {
+            return 0.0;
+        }
+        double rank = percentile / 100.0 * (count - 1);
+        int below = (int) Math.floor(rank);
+        int above = Math.min(below + 1, count - 1);
+        double fraction = rank - below;
+        return sorted[below] + (sorted[above] - sorted[below]) * fraction;
+    }
+
+    /** First spot in the sorted array where score can go. */
+    private int insertionPoint(double score) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Double.compare(sorted[mid], score) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int indexOf(double score) {
+        int at = insertionPoint(score);
+        return (at < count && Double.compare(sorted[at], score) == 0) ? at : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "ScoreStatistics [count=" + count + ", average=" + getAverage() + ", min=" + getMin() + ", max=" + getMax() + "]";
+    }
+}
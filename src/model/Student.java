@@ -5,6 +5,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects; // Needed for equals/hashCode maybe
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 //import java.util.Iterator; // Not needed currently
 
 import model.grading.GradeCalculator;
@@ -24,12 +27,17 @@ import java.beans.PropertyChangeListener;
 public class Student extends User {
     private final String studentId;
     // This list holds the Course objects the student is currently taking.
+    // The course lists and finalGrades are safe to read from any thread, since a course
+    // can be closed on a background thread while the views read them on the Swing thread.
+    // Moving a course between the lists is done holding the currentCourses lock.
     private final List<Course> currentCourses;
 
     // This list holds Course objects the student has finished.
     private final List<Course> completedCourses;
 
-    // This map stores the actual grades the student got on assignments.
+    // This map stores grades the student got on assignments that aren't in a course yet.
+    // Once an assignment is added to a course its grades live in the course's GradeMatrix,
+    // so they aren't stored here too.
     // Key is Assignment object, Value is Grade object.
     private final Map<Assignment, Grade> grades;
 
@@ -40,6 +48,12 @@ public class Student extends User {
     // This is for the Observer pattern using standard Java stuff PropertyChangeSupport.
     // transient means gson wont try to save this special object to the JSON file.
     private transient PropertyChangeSupport pcs; // Initialize in init method
+    // goes up every time addGrade or removeGradeForAssignment changes a grade,
+    // so a course's saved average for this student can tell it's out of date.
+    // volatile and bumped through GRADE_VERSION, since graders on different threads can both change it.
+    private transient volatile long gradeVersion = 0L;
+    private static final AtomicLongFieldUpdater<Student> GRADE_VERSION =
+        AtomicLongFieldUpdater.newUpdater(Student.class, "gradeVersion");
 
     //Constructor
     /**
@@ -49,19 +63,38 @@ public class Student extends User {
      * Needs initTransientFields called after loading from JSON.
      */
     public Student(String firstName, String lastName, String email, String password, String username, String studentId) {
+        this(firstName, lastName, email, password, username, studentId, false);
+    }
+
+    /**
+     * Constructor that can skip hashing the password, for loading saved accounts.
+     */
+    private Student(String firstName, String lastName, String email, String password, String username, String studentId, boolean passwordIsHashed) {
         // Call User constructor, pass Role.STUDENT this time.
-        super(firstName, lastName, email, password, username, Role.STUDENT);
+        super(firstName, lastName, email, password, username, Role.STUDENT, passwordIsHashed);
         // Store the student specific ID.
         this.studentId = studentId;
         //make the empty lists and maps ready to use.
-        this.currentCourses = new ArrayList<>();
-        this.completedCourses = new ArrayList<>();
-        this.grades = new HashMap<>();
-        this.finalGrades = new HashMap<>();
+        // copy on write, the lists are short and read far more often than changed.
+        this.currentCourses = new CopyOnWriteArrayList<>();
+        this.completedCourses = new CopyOnWriteArrayList<>();
+        this.grades = new ConcurrentHashMap<>(); // grades can come in from more than one thread
+        this.finalGrades = new ConcurrentHashMap<>();
         // Initialize observer helper here too maybe? No, do it in init method.
         // this.pcs = new PropertyChangeSupport(this);
     }
 
+    /**
+     * fromStoredAccount makes a Student from a saved account file.
+     * The password is already hashed so it's kept as is, and the observer helper
+     * is set up right away so initTransientFields isn't needed after this.
+     */
+    public static Student fromStoredAccount(String firstName, String lastName, String email, String hashedPass, String username, String studentId) {
+        Student student = new Student(firstName, lastName, email, hashedPass, username, studentId, true);
+        student.initTransientFields();
+        return student;
+    }
+
     /**
      * initTransientFields needs to be called after a Student object is loaded from JSON.
      * Because the PropertyChangeSupport helper 'pcs' is marked transient,
@@ -101,11 +134,24 @@ public class Student extends User {
 
     /** Gets a copy of the map holding the student's grades.
      *  Key is Assignment object, value is Grade object.
+     *  Includes the grades stored in each current or completed course's matrix.
      *  ENCAPSULATION, returns a copy.
      */
     public Map<Assignment, Grade> getGrades() {
         // Make a new map copy.
-        return new HashMap<Assignment, Grade>(grades);
+        Map<Assignment, Grade> allGrades = new HashMap<Assignment, Grade>(grades);
+        for (Course course : currentCourses) {
+            allGrades.putAll(course.getGradesForStudent(this));
+        }
+        for (Course course : completedCourses) {
+            allGrades.putAll(course.getGradesForStudent(this));
+        }
+        return allGrades;
+    }
+
+    /** Gets how many times addGrade or removeGradeForAssignment changed one of this student's grades. */
+    public long getGradeVersion() {
+        return gradeVersion;
     }
 
 
@@ -117,10 +163,15 @@ public class Student extends User {
      * @param course The Course object to add.
      */
     public void enrollInCourse(Course course) {
-        //check if course not null and not already in the current list.
-        if (course != null && !currentCourses.contains(course)) {
-        	//add it to the student's list of current courses.
-            currentCourses.add(course);
+        if (course == null) {
+            return;
+        }
+        boolean added;
+        synchronized (currentCourses) {
+            //check it's not already in the current list, then add it.
+            added = !currentCourses.contains(course) && currentCourses.add(course);
+        }
+        if (added) {
             //send out notification signal "courseEnrolled".
             // Make sure pcs is initialized first! Call initTransientFields after loading.
             if (pcs != null) {
@@ -141,19 +192,15 @@ public class Student extends User {
     public void completeCourse(Course course) {
         //check if valid course and if it's actually in the current courses list.
         if (course != null && currentCourses.contains(course)) {
-            //remove it from the current list.
-            currentCourses.remove(course);
-            //add it to the completed list.
-            completedCourses.add(course);
-
             // calculate final grade average percentage for this course.
+            // Has to happen before the move, calculateClassAverage only works on current courses.
             double averagePercentage = calculateClassAverage(course);
 
             // Convert percentage to letter grade. Use GradeScale. Handles negative average by returning E maybe.
             String letterGrade = getLetterGrade(averagePercentage);
 
-            // Store this letter grade in the finalGrades map.
-            finalGrades.put(course, letterGrade);
+            // move it to the completed list and store the letter grade.
+            completeCourseWithGrade(course, letterGrade);
 
             //send notification that a course was completed. Event name "courseCompleted".
             if (pcs != null) {
@@ -163,6 +210,81 @@ public class Student extends User {
             }
         }
     }
+    /**
+     * completeCourseWithGrade moves a current course to the completed list with a final grade
+     * that was already worked out, like when Course.closeCourse closes the whole class at once.
+     * It doesn't calculate anything or fire an event, Course.closeCourse calls
+     * courseClosed for each student once everybody has been moved.
+     * @param course The Course to mark as completed.
+     * @param letterGrade The final letter grade, can be null to not store one.
+     * @return true if the course was moved, false if it's null or not a current course.
+     */
+    public boolean completeCourseWithGrade(Course course, String letterGrade) {
+        if (course == null) {
+            return false;
+        }
+        synchronized (currentCourses) {
+            if (!currentCourses.contains(course)) {
+                return false;
+            }
+            moveToCompleted(course, letterGrade);
+        }
+        return true;
+    }
+
+    /**
+     * courseClosed tells this student's listeners (like their StudentView) that one of their
+     * courses was closed for the whole class, so it shows as completed with its final grade.
+     * Called by Course.closeCourse after the student's course was moved with completeCourseWithGrade.
+     * Fires "courseCompleted" the same as completeCourse does, new value is the Course.
+     * @param course The Course that was closed.
+     */
+    public void courseClosed(Course course) {
+        if (course == null || !hasCompletedCourse(course)) {
+            return;
+        }
+        if (pcs != null) {
+            pcs.firePropertyChange("courseCompleted", null, course);
+        }
+    }
+
+    // the grade goes in first and the course leaves current last, so another thread
+    // reading along never sees the course in neither list or completed without its grade.
+    private void moveToCompleted(Course course, String letterGrade) {
+        if (letterGrade != null) {
+            finalGrades.put(course, letterGrade);
+        }
+        completedCourses.add(course);
+        currentCourses.remove(course);
+    }
+
+    /**
+     * hasCompletedCourse checks if a course is in the completed list, without copying it.
+     * @param course The Course object.
+     * @return true if the student finished the course.
+     */
+    public boolean hasCompletedCourse(Course course) {
+        return course != null && completedCourses.contains(course);
+    }
+
+    /**
+     * addCompletedCourse puts a course straight into the completed list with its final grade.
+     * Used when loading a saved student, where the final grade was already worked out,
+     * so unlike completeCourse it doesn't calculate anything or fire an event.
+     * @param course The completed Course.
+     * @param letterGrade The stored final letter grade, can be null if there isn't one.
+     */
+    public void addCompletedCourse(Course course, String letterGrade) {
+        if (course == null) {
+            return;
+        }
+        synchronized (currentCourses) {
+            if (!completedCourses.contains(course)) {
+                moveToCompleted(course, letterGrade);
+            }
+        }
+    }
+
     /////////
     //grade management
 
@@ -177,8 +299,16 @@ public class Student extends User {
     public void addGrade(Assignment assignment, Grade grade) {
         // Check inputs arent null.
         if (assignment != null && grade != null) {
-        	//put the assignment grade pair into the map. Overwrites if key already exists.
-            Grade oldGrade = grades.put(assignment, grade); // put returns previous value or null
+            Grade oldGrade;
+            if (assignment.getGradeMatrix() != null) {
+                // assignment is in a course, so the course's matrix is the one place to store it.
+                oldGrade = assignment.getGrade(getUsername());
+                assignment.addGrade(getUsername(), grade);
+            } else {
+                //put the assignment grade pair into the map. Overwrites if key already exists.
+                oldGrade = grades.put(assignment, grade); // put returns previous value or null
+            }
+            GRADE_VERSION.incrementAndGet(this);
 
             //send notification that grades changed. Event name "gradeAdded".
             // Send assignment as context maybe? Old grade could be useful too.
@@ -205,8 +335,11 @@ public class Student extends User {
         if (assignment != null) {
         	// Use the map's remove method. Returns removed Grade object or null.
             Grade removedGrade = grades.remove(assignment);
+            // Also clear the cell if the grade is stored in a course matrix.
+            boolean removedFromMatrix = (assignment.getGradeMatrix() != null && assignment.removeGrade(getUsername()));
             //check if something was actually removed.
-            if (removedGrade != null) {
+            if (removedGrade != null || removedFromMatrix) {
+                GRADE_VERSION.incrementAndGet(this);
             	//if yes, notify listeners that a grade was removed. Event name "gradeRemoved".
                 // Send assignment as context.
                 if (pcs != null) {
@@ -230,11 +363,39 @@ public class Student extends User {
         if (assignment == null) {
             return null;
         }
+        // if the assignment is in a course, read it from the course's matrix first.
+        if (assignment.getGradeMatrix() != null) {
+            Grade storedGrade = assignment.getGrade(getUsername());
+            if (storedGrade != null) {
+                return storedGrade;
+            }
+        }
         //get from the map using the Assignment object itself as the key.
         // Returns null if key not found.
         return grades.get(assignment);
     }
 
+    /** Checks if this student has any grades not stored in a course matrix yet. */
+    boolean hasUnstoredGrades() {
+        return !grades.isEmpty();
+    }
+
+    /**
+     * Moves this student's grade for an assignment into its course matrix.
+     * Called by Course when an assignment or student joins a course, so grades
+     * entered before that end up in the one store. A grade already in the matrix wins.
+     * @param assignment The Assignment that is now in a course.
+     */
+    void moveGradeIntoMatrix(Assignment assignment) {
+        if (assignment.getGradeMatrix() == null) {
+            return;
+        }
+        Grade unstoredGrade = grades.remove(assignment);
+        if (unstoredGrade != null && !assignment.hasSubmission(getUsername())) {
+            assignment.addGrade(getUsername(), unstoredGrade);
+        }
+    }
+
     //calculations
     /**
      * calculateGPA calculates the student's overall Grade Point Average.
@@ -305,8 +466,8 @@ public class Student extends User {
         //check if the course has one set.
         boolean calculatorExists = (calculator != null);
         if (calculatorExists) {
-            //if yes, give the work to the calculator object.
-            return calculator.calculateFinalAverage(theCourse, this);
+            //if yes, give the work to the calculator object, the course hands back a saved average if nothing changed.
+            return theCourse.calculateStudentAverage(this);
         } else {
             //if no calculator set, print error and return 0.
              System.out.println("Student problem: calculateClassAverage course " + theCourse.getName() + " has no calculator strategy set");
@@ -43,8 +43,16 @@ public class Teacher extends User {
         String teacherUsername,
         String teacherSpecificId
     ) {
+        this(teacherFirstName, teacherLastName, teacherEmail, teacherPassword, teacherUsername, teacherSpecificId, false);
+    }
+
+    /**
+     * Constructor that can skip hashing the password, for loading saved accounts.
+     */
+    private Teacher(String teacherFirstName, String teacherLastName, String teacherEmail, String teacherPassword,
+                    String teacherUsername, String teacherSpecificId, boolean passwordIsHashed) {
         // User constructor handles name, email, username, password hashing.
-        super(teacherFirstName, teacherLastName, teacherEmail, teacherPassword, teacherUsername,Role.TEACHER);
+        super(teacherFirstName, teacherLastName, teacherEmail, teacherPassword, teacherUsername, Role.TEACHER, passwordIsHashed);
 
         //set the teacher specific id.
         this.teacherId = teacherSpecificId;
@@ -53,6 +61,13 @@ public class Teacher extends User {
         this.coursesTaught = new ArrayList<>();
     }
 
+    /**
+     * Makes a Teacher from a saved account file, the password stays as the stored hash.
+     */
+    public static Teacher fromStoredAccount(String firstName, String lastName, String email, String hashedPass, String username, String teacherId) {
+        return new Teacher(firstName, lastName, email, hashedPass, username, teacherId, true);
+    }
+
     /////////GETTERS
 
     /**
@@ -13,14 +13,30 @@ public class User {
 	private Role role;
 	
 	public User(String firstName, String lastName, String email, String pass, String username, Role role) {
+		this(firstName, lastName, email, pass, username, role, false);
+	}
+
+	/**
+	 * Constructor that can skip hashing, for accounts loaded from a file
+	 * where the password was already hashed when the account was made.
+	 * @param passIsHashed true if pass is already a BCrypt hash.
+	 */
+	protected User(String firstName, String lastName, String email, String pass, String username, Role role, boolean passIsHashed) {
 		super();
 		this.firstName = firstName;
 		this.lastName = lastName;
 		this.email = email;
-		this.hashedPass = hashPassword(pass);
+		this.hashedPass = passIsHashed ? pass : hashPassword(pass);
 		this.username = username;
 		this.role =role;
 	}
+
+	/**
+	 * Makes a plain User from a saved account, the password stays as the stored hash.
+	 */
+	public static User fromStoredAccount(String firstName, String lastName, String email, String hashedPass, String username, Role role) {
+		return new User(firstName, lastName, email, hashedPass, username, role, true);
+	}
 	
 	public String getUsername() {
         return username;
@@ -41,13 +57,34 @@ public class User {
     public Role getRole() {
         return role;
     }
+
+    /** Gets the BCrypt hash of the password, used when saving the account. */
+    public String getHashedPassword() {
+        return hashedPass;
+    }
 	
 	public boolean checkPassword(String inputPassword) {
         return BCrypt.checkpw(inputPassword, hashedPass);
     }
 	
+	/**
+	 * Hashes the password again if the stored hash doesn't have the policy's cost.
+	 * Only call this after checkPassword said the password is right.
+	 * @param password the plain password that was just checked.
+	 * @param policy the policy the hash should follow.
+	 * @return true if the hash changed and the account needs saving.
+	 */
+	public boolean rehashPasswordIfNeeded(String password, PasswordPolicy policy) {
+		if (password == null || !policy.needsRehash(hashedPass)) {
+			return false;
+		}
+		this.hashedPass = policy.hash(password);
+		return true;
+	}
+	
 	private String hashPassword(String password) {
-        return BCrypt.hashpw(password, BCrypt.gensalt());
+        // cost comes from the current PasswordPolicy instead of the library default.
+        return PasswordPolicy.getCurrent().hash(password);
     }
 
 	
@@ -1,13 +1,17 @@
 package model.grading;
 
 import model.Course;
+import model.CourseSnapshot;
 import model.Student;
-import model.Assignment;
 import model.Grade;
-import model.GradingCategory;
+import model.GradeMatrix;
+import model.GradeSource;
+import model.DropPolicy;
+import model.DropSelector;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 
 /**
  * CategoryBasedCalculator.java is the 2nd grade calculation strategy
@@ -42,124 +46,169 @@ public class CategoryBasedCalculator implements GradeCalculator {
             return 0.0;
         }
 
+        // The course's compiled plan has the categories, weights, drop counts and
+        // each category's assignments already flattened out.
+        GradingPlan plan = theCourse.getGradingPlan();
+        GradeMatrix gradeMatrix = theCourse.getGradeMatrix();
+        double[] courseScores = new double[plan.biggestCategory];
+        double[] rankScores = new double[plan.biggestCategory];
+
         //variables to accumulate the final score.
         double finalWeightedAverageScore = 0.0;
 
-        // first, get all the GradingCategory objects defined for this course.
-        // Course object gives us a map where key is category name, value is the object.
-        Map<String, GradingCategory> categoriesForTheCourse = theCourse.getGradingCategories();
-
-        // Next, loop through each GradingCategory object in the map.
-        boolean categoriesExist = (categoriesForTheCourse != null);
-        
-        if (categoriesExist) {
-           for (GradingCategory currentCategory : categoriesForTheCourse.values()) {
-
-                // Next, get the weight for this specific category (like 0.4 for 40%).
-                double categoryWeight = currentCategory.getWeight();
-
-                // Next, call the helper method to get the student's percentage score
-                // just for this category, after applying any drop rules.
-                double averagePercentForThisCategory = calculateCategorySubAverageAfterDrops(currentCategory, theStudent, theCourse);
-
-                // Next, check if the helper returned a valid number, so not NaN.
-                // NaN means the category was empty or had no graded assignments after drops.
-                boolean isValidCategoryAverage = !Double.isNaN(averagePercentForThisCategory);
-                
-                if (isValidCategoryAverage) {
-                    // if the average is valid, calculate this category's contribution
-                    // to the final grade by multiplying the average by the weight.
-                    double weightedScoreForCategory = averagePercentForThisCategory * categoryWeight;
-                    
-                    // add it to the overall final grade total
-                    finalWeightedAverageScore = finalWeightedAverageScore + weightedScoreForCategory;
-
-                } 
-                
-                else {
-                    //if category average was NaN, just print a note, it contributes nothing.
-                    System.out.println("Category '" + currentCategory.getName() + "' average is NaN for student " + theStudent.getUsername());
-                }
-           } //end loop through categories
-           
+        // loop through each category in the plan.
+        for (int c = 0; c < plan.categoryNames.length; c++) {
+            // call the helper to get the student's percentage score just for this category,
+            // after applying any drop rules.
+            double averagePercentForThisCategory = categoryAverageAfterDrops(plan, c, gradeMatrix, theStudent, courseScores, rankScores);
+
+            // NaN means the category was empty or had no graded assignments after drops.
+            boolean isValidCategoryAverage = !Double.isNaN(averagePercentForThisCategory);
+            if (isValidCategoryAverage) {
+                // this category's share of the final grade is its average times its weight.
+                finalWeightedAverageScore = finalWeightedAverageScore + averagePercentForThisCategory * plan.categoryWeights[c];
+            } else {
+                //if category average was NaN, just print a note, it contributes nothing.
+                System.out.println("Category '" + plan.categoryNames[c] + "' average is NaN for student " + theStudent.getUsername());
+            }
         }
 
         return finalWeightedAverageScore;
     }
 
+    /**
+     * Same as calculateFinalAverage but reads the plan and grades out of a CourseSnapshot.
+     * It doesn't print a note for empty categories, so many students can be worked out at once quietly.
+     * @param snapshot The snapshot of the course.
+     * @param theStudent The Student object.
+     * @return the weighted average, or 0.0 if inputs are null or the course isn't using categories.
+     */
+    @Override
+    public double calculateFromSnapshot(CourseSnapshot snapshot, Student theStudent) {
+        boolean courseUsesPoints = (snapshot != null && !snapshot.getCourse().usesCategories());
+        if (snapshot == null || theStudent == null || courseUsesPoints) {
+            System.out.println("invalid input or course not using categories");
+            return 0.0;
+        }
+        GradingPlan plan = snapshot.getGradingPlan();
+        return weightedAverage(plan, snapshot, theStudent, new double[plan.biggestCategory], new double[plan.biggestCategory]);
+    }
+
     // --- Helper Method ---
 
+    // adds up every category's average times its weight, empty categories add nothing.
+    private double weightedAverage(GradingPlan plan, GradeSource cells, Student student,
+                                   double[] courseScores, double[] rankScores) {
+        double finalWeightedAverageScore = 0.0;
+        for (int c = 0; c < plan.categoryNames.length; c++) {
+            double averagePercentForThisCategory = categoryAverageAfterDrops(plan, c, cells, student, courseScores, rankScores);
+            if (!Double.isNaN(averagePercentForThisCategory)) {
+                finalWeightedAverageScore = finalWeightedAverageScore + averagePercentForThisCategory * plan.categoryWeights[c];
+            }
+        }
+        return finalWeightedAverageScore;
+    }
+
     /**
-     * Helper method to calculate the average percentage for a list of grades
-     * within one category, after applying drop rules defined by the category.
-     * It gets all assignments in the category, finds which ones to drop for this student,
-     * then calculates the earned or possible sum for the remaining graded assignments.
+     * Helper method to calculate the average percentage for one category of the plan.
+     * First it finds which of the student's grades get dropped, by the category's drop
+     * policy, then it sums earned and possible points for the graded ones that are left.
+     * Only grades from this course can be dropped, same as GradingCategory.getDroppedAssignments.
      *
-     * @param category The GradingCategory object we're calculating for.
+     * @param plan The course's GradingPlan.
+     * @param category Which category of the plan.
+     * @param cells The course's grade matrix, or a snapshot of it.
      * @param student The Student whose grades we need.
-     * @param course The Course object (needed to get all student grades maybe).
+     * @param courseScores scratch array at least as big as the biggest category.
+     * @param rankScores scratch array at least as big as the biggest category.
      * @return The average percentage (double), or Double.NaN if there's no countable grades.
      */
-    private double calculateCategorySubAverageAfterDrops(GradingCategory category, Student student, Course course) {
-        // get all assignments that belong to this category.
-        List<Assignment> assignmentsInCategory = category.getAssignments(); //gets a copy
-
-        // Get all of the student's grades for the entire course first.
-        // This is needed by the getDroppedAssignments helper in GradingCategory.
-        // Using the Course method to get grades for this student.
-        Map<Assignment, Grade> studentGradesMap = course.getGradesForStudent(student); // Gets a copy
-
-        // Ask the GradingCategory object itself to figure out which assignments to drop for this student.
-        // It needs the student's grades map to compare scores.
-        List<Assignment> droppedAssignments = category.getDroppedAssignments(studentGradesMap);
+    private double categoryAverageAfterDrops(GradingPlan plan, int category, GradeSource cells, Student student,
+                                             double[] courseScores, double[] rankScores) {
+        String studentUsername = student.getUsername();
+        int studentRow = cells.indexOfStudent(studentUsername);
+        int first = plan.memberStart[category];
+        int categorySize = plan.memberStart[category + 1] - first;
+
+        // collect the eligible scores in category order, NaN for ones that can't be dropped.
+        DropPolicy dropPolicy = plan.categoryDropPolicies[category];
+        for (int i = 0; i < categorySize; i++) {
+            int member = first + i;
+            courseScores[i] = plan.memberCountsForDrops[member]
+                ? plan.memberPointsInCourse(cells, studentRow, member, studentUsername)
+                : Double.NaN;
+            rankScores[i] = DropSelector.rankScore(courseScores[i], plan.memberPoints[member], dropPolicy);
+        }
+        BitSet dropped = DropSelector.selectLowest(rankScores, categorySize, plan.categoryDropCounts[category]);
 
-        // Variables to sum points for this category only, after drops.
+        // sum the graded, not dropped assignments.
         double categoryPointsEarned = 0.0;
         double categoryPointsPossible = 0.0;
-
-        //now loop through the assignments actually in this category.
-        for (Assignment assignment : assignmentsInCategory) {
-            //check if this assignment is marked as graded for the course overall.
-            boolean assignmentIsGraded = assignment.isGraded();
-
-            if (assignmentIsGraded) {
-                //check if this specific assignment is in the list of ones we should drop
-                boolean shouldDropThisOne = droppedAssignments.contains(assignment);
-
-                //if this assignment is not dropped, include it in the category average.
-                if (!shouldDropThisOne) {
-                    //get the points possible for this assignment
-                    double pointsPossible = assignment.getPointsWorth();
-                    // Add it to the total possible points for this category.
-                    categoryPointsPossible = categoryPointsPossible + pointsPossible;
-
-                    //get the student's grade for this assignment.
-                    //we can use the student's getGradeForAssignment method directly here.
-                    Grade grade = student.getGradeForAssignment(assignment);
-                    if (grade != null) {
-                        //if a grade exists, add the earned points.
-                        categoryPointsEarned = categoryPointsEarned + grade.getPointsEarned();
-                    }
-                    //if grade is null for a not dropped, graded assignment, adds 0 earned points.
+        for (int i = 0; i < categorySize; i++) {
+            int member = first + i;
+            if (plan.memberGraded[member] && !dropped.get(i)) {
+                categoryPointsPossible = categoryPointsPossible + plan.memberPoints[member];
+                double pointsEarned = plan.memberCountsForDrops[member]
+                    ? courseScores[i]
+                    : plan.memberPointsInCourse(cells, studentRow, member, studentUsername);
+                if (Double.isNaN(pointsEarned)) {
+                    //not in this course's matrix, the student may still have one of their own.
+                    Grade grade = student.getGradeForAssignment(plan.memberAssignments[member]);
+                    pointsEarned = (grade != null) ? grade.getPointsEarned() : Double.NaN;
+                }
+                if (!Double.isNaN(pointsEarned)) {
+                    categoryPointsEarned = categoryPointsEarned + pointsEarned;
                 }
-                // if shouldDropThisOne is true, we just ignore this assignment.
+                //if there's no grade for a not dropped, graded assignment, it adds 0 earned points.
             }
-            // if assignmentIsGraded is false, we ignore it.
-            
-        } //end loop through assignments in category
-
-        //calculate the final percentage average for this category.
-        boolean canCalculateCategoryAverage = (categoryPointsPossible > 0.0);
-        
-        if (canCalculateCategoryAverage) {
-            //return the percentage.
+        }
+
+        //if no points were possible in this category after drops, return NaN.
+        //This signals to the caller that this category contributes nothing.
+        if (categoryPointsPossible > 0.0) {
             return (categoryPointsEarned / categoryPointsPossible) * 100.0;
-        } 
-        
-        else {
-            //if no points were possible in this category after drops, return NaN.
-            //This signals to the main method that this category contributes nothing.
-            return Double.NaN;
         }
+        return Double.NaN;
+    }
+
+    /**
+     * Batch version for the whole roster.
+     * The course's GradingPlan already has every category's layout flattened out,
+     * so every enrolled student is swept in one pass, reusing the same score buffers,
+     * and DropSelector picks the lowest scores with a small heap.
+     * Everything is read from one CourseSnapshot, so the whole roster is worked out
+     * from the same moment even if grades are being entered meanwhile.
+     *
+     * @param theCourse The Course object, which knows its categories and roster.
+     * @return Map of username to weighted average, in roster order. Empty if course null.
+     */
+    @Override
+    public Map<String, Double> calculateAllFinalAverages(Course theCourse) {
+        Map<String, Double> averagesByUsername = new LinkedHashMap<>();
+        if (theCourse == null) {
+            System.out.println("invalid input, null course for batch calculation");
+            return averagesByUsername;
+        }
+
+        CourseSnapshot snapshot = theCourse.snapshot();
+        List<Student> roster = snapshot.getStudents();
+        // same rule as the single student version, points courses get 0.
+        if (!theCourse.usesCategories()) {
+            System.out.println("course not using categories, batch average is 0 for all " + roster.size() + " students");
+            for (Student student : roster) {
+                averagesByUsername.put(student.getUsername(), 0.0);
+            }
+            return averagesByUsername;
+        }
+
+        GradingPlan plan = snapshot.getGradingPlan();
+        // scratch buffers reused for every student and category.
+        double[] courseScores = new double[plan.biggestCategory];
+        double[] rankScores = new double[plan.biggestCategory];
+
+        for (Student student : roster) {
+            averagesByUsername.put(student.getUsername(), weightedAverage(plan, snapshot, student, courseScores, rankScores));
+        }
+        return averagesByUsername;
     }
-}
\ No newline at end of file
+}
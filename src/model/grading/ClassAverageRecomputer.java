@@ -0,0 +1,198 @@
+package model.grading;
+
+import model.AverageCache;
+import model.Course;
+import model.CourseSnapshot;
+import model.GradeScale;
+import model.Student;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ClassAverageRecomputer works out every enrolled student's average and letter grade
+ * in a course at once, like right after the teacher switches between points and
+ * category grading and every saved average is out of date.
+ *
+ * How it works:
+ *   1. takes one CourseSnapshot, so every student is worked out from the same moment.
+ *   2. splits the roster in half over and over on a ForkJoinPool until the pieces
+ *      are at most chunkStudents long, and each piece is worked out on whichever
+ *      worker is free. Idle workers steal pieces from busy ones.
+ *   3. each piece writes its averages and letters into its own part of shared arrays,
+ *      so nothing is locked, and they're put together in roster order at the end.
+ *   4. if the course didn't change while it ran, every average is saved in the course's
+ *      AverageCache, so the views asking for them one by one afterwards get cache hits.
+ * A roster no bigger than one chunk is just worked out on the calling thread.
+ *
+ * The pool lives as long as the recomputer, its threads are daemons. close() stops it.
+ * The controllers all use shared(), so there's one pool for the whole app.
+ */
+public class ClassAverageRecomputer implements AutoCloseable {
+    /** Students per chunk if none is given. */
+    public static final int DEFAULT_CHUNK_STUDENTS = 64;
+
+    // made the first time shared() is called.
+    private static class SharedHolder {
+        static final ClassAverageRecomputer SHARED = new ClassAverageRecomputer();
+    }
+
+    private final int parallelism;
+    private final int chunkStudents;
+    private final ForkJoinPool pool;
+
+    /**
+     * Makes a recomputer that uses every core.
+     */
+    public ClassAverageRecomputer() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_STUDENTS);
+    }
+
+    /**
+     * Makes a recomputer with a set number of threads and chunk size.
+     * @param parallelism how many threads can work at once, at least 1.
+     * @param chunkStudents most students one chunk works out, at least 1.
+     */
+    public ClassAverageRecomputer(int parallelism, int chunkStudents) {
+        if (parallelism < 1 || chunkStudents < 1) {
+            throw new IllegalArgumentException("parallelism and chunkStudents must be at least 1");
+        }
+        this.parallelism = parallelism;
+        this.chunkStudents = chunkStudents;
+        this.pool = new ForkJoinPool(parallelism, ClassAverageRecomputer::newWorker, null, false);
+    }
+
+    /**
+     * Gets the recomputer the controllers share, it uses every core.
+     */
+    public static ClassAverageRecomputer shared() {
+        return SharedHolder.SHARED;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getChunkStudents() {
+        return chunkStudents;
+    }
+
+    /**
+     * Works out every enrolled student's average and letter with the course's calculator.
+     * @param course the course.
+     * @return the averages and letters, in roster order.
+     * @throws IllegalArgumentException if the course is null or has no calculator set.
+     */
+    public ClassAverages recompute(Course course) {
+        if (course == null) {
+            throw new IllegalArgumentException("course cannot be null");
+        }
+        long startNanos = System.nanoTime();
+        CourseSnapshot snapshot = course.snapshot();
+        // read after the snapshot, so a calculator set after it moves the version and nothing gets saved below.
+        GradeCalculator calculator = course.getGradeCalculator();
+        if (calculator == null) {
+            throw new IllegalArgumentException("Course " + course.getName() + " has no grade calculator set");
+        }
+
+        Job job = new Job(course, snapshot, calculator);
+        int students = job.roster.size();
+        if (students <= chunkStudents) {
+            job.computeRange(0, students);
+        } else {
+            pool.invoke(new Chunk(job, 0, students));
+        }
+
+        // only saved if nothing changed since the snapshot, so the stamps go with these averages.
+        long courseVersion = course.getVersion();
+        if (snapshot.isCurrent()) {
+            AverageCache cache = course.getAverageCache();
+            for (int i = 0; i < students; i++) {
+                cache.put(job.usernames[i], courseVersion, job.studentVersions[i], job.averages[i]);
+            }
+        }
+        return new ClassAverages(course.getCourseId(), job.usernames, job.averages, job.letters,
+            job.chunks.get(), (students <= chunkStudents) ? 1 : parallelism, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Stops the pool's threads. The recomputer can't be used after.
+     * Don't close the shared() one.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // everything the chunks share. Each chunk only writes its own indexes of the arrays.
+    private static final class Job {
+        final Course course;
+        final CourseSnapshot snapshot;
+        final GradeCalculator calculator;
+        final List<Student> roster;
+        final String[] usernames;
+        final double[] averages;
+        final GradeScale[] letters;
+        final long[] studentVersions;
+        final AtomicInteger chunks = new AtomicInteger();
+
+        Job(Course course, CourseSnapshot snapshot, GradeCalculator calculator) {
+            this.course = course;
+            this.snapshot = snapshot;
+            this.calculator = calculator;
+            this.roster = snapshot.getStudents();
+            int students = roster.size();
+            this.usernames = new String[students];
+            this.averages = new double[students];
+            this.letters = new GradeScale[students];
+            this.studentVersions = new long[students];
+        }
+
+        void computeRange(int from, int to) {
+            chunks.incrementAndGet();
+            for (int i = from; i < to; i++) {
+                Student student = roster.get(i);
+                usernames[i] = student.getUsername();
+                // stamp before the average, so a grade changed meanwhile makes the saved one look old.
+                studentVersions[i] = course.getStudentVersion(student);
+                averages[i] = calculator.calculateFromSnapshot(snapshot, student);
+                letters[i] = GradeScale.fromPercentage(averages[i]);
+            }
+        }
+    }
+
+    // one piece of the roster, split in two until it's small enough.
+    // RecursiveAction is Serializable, but chunks only ever live inside the pool.
+    @SuppressWarnings("serial")
+    private final class Chunk extends RecursiveAction {
+        private final Job job;
+        private final int from;
+        private final int to;
+
+        Chunk(Job job, int from, int to) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkStudents) {
+                job.computeRange(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Chunk(job, from, middle), new Chunk(job, middle, to));
+        }
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        worker.setName("average-recompute-" + worker.getPoolIndex());
+        worker.setDaemon(true);
+        return worker;
+    }
+}
@@ -0,0 +1,99 @@
+package model.grading;
+
+import model.GradeScale;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ClassAverages is what a ClassAverageRecomputer worked out for one course:
+ * every enrolled student's average and letter grade, in roster order.
+ * It doesn't change after it's made.
+ */
+public final class ClassAverages {
+    private final String courseId;
+    private final Map<String, Double> averages;
+    private final Map<String, GradeScale> letters;
+    private final int chunks;
+    private final int parallelism;
+    private final long elapsedNanos;
+
+    ClassAverages(String courseId, String[] usernames, double[] averages, GradeScale[] letters,
+                  int chunks, int parallelism, long elapsedNanos) {
+        // the chunks each filled their own part of the arrays, put them together in roster order.
+        Map<String, Double> averagesByUsername = new LinkedHashMap<>();
+        Map<String, GradeScale> lettersByUsername = new LinkedHashMap<>();
+        for (int i = 0; i < usernames.length; i++) {
+            averagesByUsername.put(usernames[i], averages[i]);
+            lettersByUsername.put(usernames[i], letters[i]);
+        }
+        this.courseId = courseId;
+        this.averages = Collections.unmodifiableMap(averagesByUsername);
+        this.letters = Collections.unmodifiableMap(lettersByUsername);
+        this.chunks = chunks;
+        this.parallelism = parallelism;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getCourseId() {
+        return courseId;
+    }
+
+    /** Username to average percentage, in roster order. Can't be changed. */
+    public Map<String, Double> getAverages() {
+        return averages;
+    }
+
+    /** Username to letter grade, in roster order. Can't be changed. */
+    public Map<String, GradeScale> getLetters() {
+        return letters;
+    }
+
+    /** One student's average, or Double.NaN if they weren't enrolled. */
+    public double getAverage(String username) {
+        Double average = averages.get(username);
+        return (average != null) ? average : Double.NaN;
+    }
+
+    /** One student's letter grade, or null if they weren't enrolled. */
+    public GradeScale getLetter(String username) {
+        return letters.get(username);
+    }
+
+    public int getStudentCount() {
+        return averages.size();
+    }
+
+    /** Average of every student's average, 0.0 for an empty roster. */
+    public double getClassAverage() {
+        if (averages.isEmpty()) {
+            return 0.0;
+        }
+        double total = 0.0;
+        for (double average : averages.values()) {
+            total = total + average;
+        }
+        return total / averages.size();
+    }
+
+    /** How many chunks the roster was split into. */
+    public int getChunkCount() {
+        return chunks;
+    }
+
+    /** How many threads could work on the chunks at once. */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000L;
+    }
+
+    @Override
+    public String toString() {
+        return "ClassAverages [course=" + courseId + ", students=" + averages.size() + ", chunks=" + chunks
+            + ", parallelism=" + parallelism + ", millis=" + getElapsedMillis() + "]";
+    }
+}
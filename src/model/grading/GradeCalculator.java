@@ -1,8 +1,12 @@
 package model.grading;
 
 import model.Course;
+import model.CourseSnapshot;
 import model.Student;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * 
  * GradeCalculator is an interface. It's part of the Strategy pattern we need for the two different grading modes. 
@@ -22,4 +26,39 @@ public interface GradeCalculator {
      */
     double calculateFinalAverage(Course theCourse, Student theStudent);
 
-}
\ No newline at end of file
+    /**
+     * Calculates one student's final average from a CourseSnapshot instead of the live course,
+     * so several threads can each work on part of the roster from the same moment.
+     * The default just calls the Course version with the snapshot's course, PointsBased
+     * and CategoryBased override it to read the snapshot's plan and grade cells.
+     *
+     * @param snapshot The snapshot of the course.
+     * @param theStudent The student we're calculating for.
+     * @return The final average grade as a double.
+     */
+    default double calculateFromSnapshot(CourseSnapshot snapshot, Student theStudent) {
+        return calculateFinalAverage((snapshot != null) ? snapshot.getCourse() : null, theStudent);
+    }
+
+    /**
+     * Batch version of calculateFinalAverage for every enrolled student in a course.
+     * The default just calls calculateFinalAverage once per student, so any strategy works.
+     * PointsBased and CategoryBased override it to look at the course layout only once
+     * and then sweep the whole roster in one pass.
+     *
+     * @param theCourse The course whose roster we're calculating for.
+     * @return Map of student username to final average, in roster order. Empty if course null.
+     */
+    default Map<String, Double> calculateAllFinalAverages(Course theCourse) {
+        Map<String, Double> averagesByUsername = new LinkedHashMap<>();
+        if (theCourse == null) {
+            System.out.println("GradeCalculator problem: calculateAllFinalAverages got null course");
+            return averagesByUsername;
+        }
+        for (Student student : theCourse.snapshot().getStudents()) {
+            averagesByUsername.put(student.getUsername(), calculateFinalAverage(theCourse, student));
+        }
+        return averagesByUsername;
+    }
+
+}
@@ -0,0 +1,186 @@
+package model.grading;
+
+import model.Assignment;
+import model.Course;
+import model.DropPolicy;
+import model.Grade;
+import model.GradeMatrix;
+import model.GradeSource;
+import model.GradingCategory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * GradingPlan is a course's grading layout worked out ahead of time.
+ * The calculators used to copy the category map, every category's assignment list
+ * and check isGraded on each assignment for every student. The plan does that once
+ * and keeps the answers in flat arrays: each assignment's matrix column, points
+ * possible and graded flag, and for categories their weights, drop counts and
+ * which assignments are in each one.
+ *
+ * A plan never changes after it's made. Course keeps one and makes a new one after
+ * assignmentAdded, assignmentRemoved, categoryAdded or categoriesCleared, or when an
+ * assignment's points or graded flag was edited (those bump the matrix layout version).
+ */
+public final class GradingPlan {
+    // the matrix layout version the plan was made at.
+    private final int layoutVersion;
+
+    // course assignments, in course order.
+    final Assignment[] assignments;
+    final int[] columns;
+    final double[] pointsPossible;
+    // positions into the arrays above of the graded assignments.
+    final int[] gradedPositions;
+    final double gradedPointsPossible;
+
+    // categories, in the order getGradingCategories gives them.
+    final String[] categoryNames;
+    final double[] categoryWeights;
+    final int[] categoryDropCounts;
+    final DropPolicy[] categoryDropPolicies;
+    // members of category c are at memberStart[c] up to memberStart[c + 1] in the member arrays.
+    final int[] memberStart;
+    final Assignment[] memberAssignments;
+    final int[] memberColumns;
+    final double[] memberPoints;
+    final boolean[] memberGraded;
+    // false for category assignments that aren't in this course, those can't be dropped.
+    final boolean[] memberCountsForDrops;
+    final int biggestCategory;
+
+    private GradingPlan(Course course, int layoutVersion) {
+        this.layoutVersion = layoutVersion;
+        GradeMatrix gradeMatrix = course.getGradeMatrix();
+
+        List<Assignment> courseAssignments = course.getAllAssignments();
+        int count = courseAssignments.size();
+        assignments = courseAssignments.toArray(new Assignment[count]);
+        columns = new int[count];
+        pointsPossible = new double[count];
+        int[] graded = new int[count];
+        int gradedCount = 0;
+        double totalPossible = 0.0;
+        for (int i = 0; i < count; i++) {
+            columns[i] = gradeMatrix.columnOf(assignments[i]);
+            pointsPossible[i] = assignments[i].getPointsWorth();
+            if (assignments[i].isGraded()) {
+                graded[gradedCount++] = i;
+                totalPossible = totalPossible + pointsPossible[i];
+            }
+        }
+        gradedPositions = Arrays.copyOf(graded, gradedCount);
+        gradedPointsPossible = totalPossible;
+
+        Map<String, GradingCategory> categories = course.getGradingCategories();
+        int categoryCount = categories.size();
+        categoryNames = new String[categoryCount];
+        categoryWeights = new double[categoryCount];
+        categoryDropCounts = new int[categoryCount];
+        categoryDropPolicies = new DropPolicy[categoryCount];
+        memberStart = new int[categoryCount + 1];
+        Set<Assignment> inCourse = new HashSet<>(courseAssignments);
+        List<Assignment> members = new ArrayList<>();
+        int c = 0;
+        int biggest = 0;
+        for (GradingCategory category : categories.values()) {
+            categoryNames[c] = category.getName();
+            categoryWeights[c] = category.getWeight();
+            categoryDropCounts[c] = category.getNumDropped();
+            categoryDropPolicies[c] = category.getDropPolicy();
+            memberStart[c] = members.size();
+            List<Assignment> categoryAssignments = category.getAssignments();
+            members.addAll(categoryAssignments);
+            biggest = Math.max(biggest, categoryAssignments.size());
+            c++;
+        }
+        memberStart[categoryCount] = members.size();
+        biggestCategory = biggest;
+
+        int memberCount = members.size();
+        memberAssignments = members.toArray(new Assignment[memberCount]);
+        memberColumns = new int[memberCount];
+        memberPoints = new double[memberCount];
+        memberGraded = new boolean[memberCount];
+        memberCountsForDrops = new boolean[memberCount];
+        for (int m = 0; m < memberCount; m++) {
+            Assignment a = memberAssignments[m];
+            memberColumns[m] = gradeMatrix.columnOf(a);
+            memberPoints[m] = a.getPointsWorth();
+            memberGraded[m] = a.isGraded();
+            // only this course's assignments show up in Course.getGradesForStudent
+            memberCountsForDrops[m] = inCourse.contains(a);
+        }
+    }
+
+    /**
+     * Works out the plan for a course as it is right now.
+     * @param course the course.
+     * @return the new plan.
+     */
+    public static GradingPlan compile(Course course) {
+        return new GradingPlan(course, course.getGradeMatrix().getLayoutVersion());
+    }
+
+    /** Gets the matrix layout version this plan was made at. */
+    public int getLayoutVersion() {
+        return layoutVersion;
+    }
+
+    public int getAssignmentCount() {
+        return assignments.length;
+    }
+
+    public int getGradedCount() {
+        return gradedPositions.length;
+    }
+
+    /** Total points possible over the graded assignments. */
+    public double getGradedPointsPossible() {
+        return gradedPointsPossible;
+    }
+
+    public int getCategoryCount() {
+        return categoryNames.length;
+    }
+
+    /**
+     * Reads a student's points on one course assignment, from the live matrix or a snapshot.
+     * @return points earned, or Double.NaN if there's no grade.
+     */
+    double pointsEarned(GradeSource cells, int studentRow, int position, String username) {
+        int column = columns[position];
+        if (column >= 0) {
+            return cells.pointsAt(studentRow, column);
+        }
+        // assignment stored by another course, ask it directly.
+        Grade grade = assignments[position].getGrade(username);
+        return (grade != null) ? grade.getPointsEarned() : Double.NaN;
+    }
+
+    /**
+     * Reads a student's points on one category member the way drops see them,
+     * from this course only.
+     * @return points earned, or Double.NaN if there's no grade.
+     */
+    double memberPointsInCourse(GradeSource cells, int studentRow, int member, String username) {
+        int column = memberColumns[member];
+        if (column >= 0) {
+            return cells.pointsAt(studentRow, column);
+        }
+        // not in this course's matrix, ask the assignment directly.
+        Grade grade = memberAssignments[member].getGrade(username);
+        return (grade != null) ? grade.getPointsEarned() : Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        return "GradingPlan [assignments=" + assignments.length + ", graded=" + gradedPositions.length
+            + ", categories=" + categoryNames.length + ", layoutVersion=" + layoutVersion + "]";
+    }
+}
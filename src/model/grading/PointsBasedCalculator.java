@@ -1,9 +1,10 @@
 package model.grading;
 
 import model.Course;
+import model.CourseSnapshot;
 import model.Student;
-import model.Assignment;
-import model.Grade;
+import model.GradeSource;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -17,12 +18,10 @@ public class PointsBasedCalculator implements GradeCalculator {
 
     /**
      * Calculates the average using the total points method.
-     * It gets all the assignments that belong to the course.
-     * Then it loops through each one. For the specific student we care about,
-     * it checks if the assignment was graded. If it was, it adds the assignment's
-     * total possible points to a running total. Then it checks if the student
-     * actually got a grade for that assignment using the assignment's own grade map.
-     * If the student did get a grade, it adds the points they earned to another running total.
+     * It gets the course's GradingPlan, which already has the graded assignments
+     * and the total of their possible points. Then it loops through the graded ones
+     * and checks if the student actually got a grade for each in the grade matrix.
+     * If the student did get a grade, it adds the points they earned to a running total.
      * Then, it divides the total points the student earned by the total possible points
      * for all the graded assignments in the course to get the percentage average.
      * Uses the real Course and Student types now.
@@ -43,50 +42,46 @@ public class PointsBasedCalculator implements GradeCalculator {
             return 0.0;
         }
 
-        //initialize variables to keep track of points. Start them at zero.
-        double totalPointsEarnedByThisStudent = 0.0;
-        double totalPointsPossibleOverall = 0.0;
-
-        // First, get the list of all assignments for this specific course.
-        // The Course object should give us this list. Using its getter.
-        List<Assignment> assignmentsInThisCourse = theCourse.getAllAssignments();
-
-        // Next, go through every assignment in that list.
-        boolean assignmentsListExists = (assignmentsInThisCourse != null);
-        if (assignmentsListExists) {
-            for (Assignment currentAssignment : assignmentsInThisCourse) {
+        // The course's compiled plan already knows the graded assignments and their total possible points.
+        // The course's grade matrix holds the grade cells.
+        return averageFrom(theCourse.getGradingPlan(), theCourse.getGradeMatrix(), theStudent);
+    }
 
-                //Next, check if this assignment is actually marked as graded.
-                // We only count graded assignments in the average.
-                boolean isThisAssignmentGraded = currentAssignment.isGraded();
+    /**
+     * Same as calculateFinalAverage but reads the plan and grades out of a CourseSnapshot.
+     * @param snapshot The snapshot of the course.
+     * @param theStudent The Student object.
+     * @return The calculated average double percentage, or 0.0 if no points possible.
+     */
+    @Override
+    public double calculateFromSnapshot(CourseSnapshot snapshot, Student theStudent) {
+        if (snapshot == null || theStudent == null) {
+            System.out.println("in PointsBasedCalculator, got null snapshot or student, can't calculate");
+            return 0.0;
+        }
+        return averageFrom(snapshot.getGradingPlan(), snapshot, theStudent);
+    }
 
-                if (isThisAssignmentGraded) {
-                    // Next, if it's graded, get how many points it was worth.
-                    double pointsPossibleForThisAssignment = currentAssignment.getPointsWorth();
-                    // add this amount to the total possible points for the course average.
-                    totalPointsPossibleOverall = totalPointsPossibleOverall + pointsPossibleForThisAssignment;
+    // the points average itself, reading grade cells from the live matrix or a snapshot.
+    private double averageFrom(GradingPlan plan, GradeSource cells, Student theStudent) {
+        double totalPointsPossibleOverall = plan.gradedPointsPossible;
+        double totalPointsEarnedByThisStudent = 0.0;
 
-                    // Next, find the specific Grade object for this student on this assignment.
-                    // The Assignment object itself holds a map of grades keyed by username.
-                    String studentUsername = theStudent.getUsername();
-                    Grade studentGradeForThisAssignment = currentAssignment.getGrade(studentUsername);
+        // find this student's row once.
+        String studentUsername = theStudent.getUsername();
+        int studentRow = cells.indexOfStudent(studentUsername);
 
-                    // Next, check if the student actually received a grade.
-                    boolean studentHasGrade = (studentGradeForThisAssignment != null);
-                    if (studentHasGrade) {
-                        // if they did, get the points they earned from the Grade object.
-                        double pointsEarned = studentGradeForThisAssignment.getPointsEarned();
-                        
-                        // add these earned points to the student's running total.
-                        totalPointsEarnedByThisStudent = totalPointsEarnedByThisStudent + pointsEarned;
-                    }
-                    // if studentHasGrade is false, they get 0 points implicitly for this assignment.
-                }
-                //if isThisAssignmentGraded is false, skip it entirely.
-                
-            } //end loop through assignments
-            
-        } // End if assignments list exists
+        // Next, go through only the graded assignments, ungraded ones don't count.
+        for (int position : plan.gradedPositions) {
+            // read this student's points for this assignment, NaN means there's no grade in that cell.
+            double pointsEarned = plan.pointsEarned(cells, studentRow, position, studentUsername);
+            boolean studentHasGrade = !Double.isNaN(pointsEarned);
+            if (studentHasGrade) {
+                // add these earned points to the student's running total.
+                totalPointsEarnedByThisStudent = totalPointsEarnedByThisStudent + pointsEarned;
+            }
+            // if studentHasGrade is false, they get 0 points implicitly for this assignment.
+        }
 
         // Next, calculate the final percentage average.
         double finalAverageResult = 0.0;
@@ -106,4 +101,55 @@ public class PointsBasedCalculator implements GradeCalculator {
         // return the final calculated average
         return finalAverageResult;
     }
+
+    /**
+     * Batch version for the whole roster.
+     * Instead of walking the assignment list again for every student, it uses the
+     * course's GradingPlan for the graded assignments and the total possible points. The total possible
+     * is the same for everyone in points mode, so only the earned points change per student.
+     * Then it sweeps every enrolled student and adds up their earned points.
+     * Everything is read from one CourseSnapshot, so the whole roster is worked out
+     * from the same moment even if grades are being entered meanwhile.
+     *
+     * @param theCourse The Course object with the assignments and roster.
+     * @return Map of username to average percentage, in roster order. Empty if course null.
+     */
+    @Override
+    public Map<String, Double> calculateAllFinalAverages(Course theCourse) {
+        Map<String, Double> averagesByUsername = new LinkedHashMap<>();
+        if (theCourse == null) {
+            System.out.println("in PointsBasedCalculator, got null course, can't calculate batch");
+            return averagesByUsername;
+        }
+
+        // The compiled plan has the graded assignments, their matrix columns and total possible points.
+        CourseSnapshot snapshot = theCourse.snapshot();
+        GradingPlan plan = snapshot.getGradingPlan();
+        double totalPointsPossibleOverall = plan.gradedPointsPossible;
+
+        List<Student> roster = snapshot.getStudents();
+        // If nothing is possible, everyone is at 0, same as the single student version.
+        if (totalPointsPossibleOverall <= 0.0) {
+            System.out.println("In PointsBasedCalculator, total possible points is zero, average is 0 for all " + roster.size() + " students");
+            for (Student student : roster) {
+                averagesByUsername.put(student.getUsername(), 0.0);
+            }
+            return averagesByUsername;
+        }
+
+        // Next, sweep the roster once, only summing earned points per student.
+        for (Student student : roster) {
+            String studentUsername = student.getUsername();
+            int studentRow = snapshot.indexOfStudent(studentUsername);
+            double totalPointsEarnedByThisStudent = 0.0;
+            for (int position : plan.gradedPositions) {
+                double pointsEarned = plan.pointsEarned(snapshot, studentRow, position, studentUsername);
+                if (!Double.isNaN(pointsEarned)) {
+                    totalPointsEarnedByThisStudent = totalPointsEarnedByThisStudent + pointsEarned;
+                }
+            }
+            averagesByUsername.put(studentUsername, (totalPointsEarnedByThisStudent / totalPointsPossibleOverall) * 100.0);
+        }
+        return averagesByUsername;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package persistence;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import model.Assignment;
+import model.Grade;
+import model.Group;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * AssignmentTypeAdapter streams an Assignment and its grades.
+ * The group is written by name only, since a Group points back at Student objects.
+ * Grades are written as an object from username to Grade.
+ * Reading also takes the field names the old reflection based files used,
+ * like categoryName, isGraded and studentGrades.
+ */
+public class AssignmentTypeAdapter extends TypeAdapter<Assignment> {
+    private final GradeTypeAdapter gradeAdapter;
+
+    public AssignmentTypeAdapter(GradeTypeAdapter gradeAdapter) {
+        this.gradeAdapter = gradeAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, Assignment a) throws IOException {
+        if (a == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("name").value(a.getName());
+        out.name("pointsWorth").value(a.getPointsWorth());
+        out.name("dueDate").value(a.getDueDate());
+        out.name("category").value(a.getCategoryName());
+        if (a.getGroup() != null) {
+            out.name("group").value(a.getGroup().getGroupName());
+        }
+        if (a.getDescription() != null) {
+            out.name("description").value(a.getDescription());
+        }
+        out.name("graded").value(a.isGraded());
+        out.name("grades").beginObject();
+        for (Map.Entry<String, Grade> entry : a.getAllGrades().entrySet()) {
+            out.name(entry.getKey());
+            gradeAdapter.write(out, entry.getValue());
+        }
+        out.endObject();
+        out.endObject();
+    }
+
+    @Override
+    public Assignment read(JsonReader in) throws IOException {
+        return read(in, Group::new);
+    }
+
+    /**
+     * Reads an assignment, using groupFor to turn the stored group name into a Group.
+     * CourseTypeAdapter passes one that hands back the course's own groups.
+     */
+    Assignment read(JsonReader in, Function<String, Group> groupFor) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String name = null;
+        double pointsWorth = 0.0;
+        String dueDate = null;
+        String category = null;
+        String groupName = null;
+        String description = null;
+        boolean graded = false;
+        Map<String, Grade> grades = new LinkedHashMap<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "name":
+                    name = GradebookJson.nextStringOrNull(in);
+                    break;
+                case "pointsWorth":
+                    pointsWorth = in.nextDouble();
+                    break;
+                case "dueDate":
+                    dueDate = GradebookJson.nextStringOrNull(in);
+                    break;
+                case "category":
+                case "categoryName":
+                    category = GradebookJson.nextStringOrNull(in);
+                    break;
+                case "group":
+                    groupName = GradebookJson.readNameOrObjectField(in, "name");
+                    break;
+                case "description":
+                    description = GradebookJson.nextStringOrNull(in);
+                    break;
+                case "graded":
+                case "isGraded":
+                    graded = in.nextBoolean();
+                    break;
+                case "grades":
+                case "studentGrades":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        String username = in.nextName();
+                        Grade grade = gradeAdapter.read(in);
+                        if (grade != null) {
+                            grades.put(username, grade);
+                        }
+                    }
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        Group group = (groupName != null) ? groupFor.apply(groupName) : null;
+        Assignment a;
+        try {
+            a = new Assignment(name, pointsWorth, dueDate, category, group);
+        } catch (IllegalArgumentException badAssignment) {
+            throw new JsonParseException("bad assignment " + name + ": " + badAssignment.getMessage());
+        }
+        if (description != null) {
+            a.setDescription(description);
+        }
+        for (Map.Entry<String, Grade> entry : grades.entrySet()) {
+            a.addGrade(entry.getKey(), entry.getValue());
+        }
+        if (graded) {
+            a.markGraded();
+        }
+        return a;
+    }
+}
@@ -0,0 +1,491 @@
+package persistence;
+
+import model.Assignment;
+import model.Course;
+import model.CourseSnapshot;
+import model.Grade;
+import model.GradeMatrix;
+import model.Group;
+import model.Student;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * BinaryCourseFile is a compact binary file for one course, read through a memory map.
+ * Loading a big course with Gson parses every object before anything shows up. This
+ * format is laid out so a reader can jump straight to what it needs instead:
+ *
+ *   header        magic, version, flags, counts and the offset of each section below
+ *   string table  every name, username and feedback string once, as length + UTF-8 bytes
+ *   assignments   one fixed size entry per assignment, strings as string table indexes
+ *   roster        one entry per student row, username index and an enrolled flag
+ *   grade matrix  per assignment column, a presence bitmap then one double per row
+ *   feedback      per column, one string table index per row, -1 for no feedback
+ *
+ * Opening just maps the file and reads the header. Strings are decoded the first time
+ * they're asked for, and a cell is read straight from the map at a computed offset.
+ * toCourse builds a real Course whose GradeMatrix columns are loaded lazily, so a column
+ * only gets decoded when CourseView or a GradeCalculator looks at it.
+ */
+public class BinaryCourseFile {
+    public static final String FILE_EXTENSION = ".gbc";
+
+    private static final int MAGIC = 0x47424346; // "GBCF"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 72;
+    private static final int ASSIGNMENT_ENTRY_SIZE = 40;
+    private static final int ROSTER_ENTRY_SIZE = 8;
+    private static final int NO_STRING = -1;
+
+    private static final int FLAG_USES_CATEGORIES = 1;
+    private static final int FLAG_GRADED = 1;
+    private static final int FLAG_ENROLLED = 1;
+
+    private final Path path;
+    private final MappedByteBuffer map;
+    private final boolean usesCategories;
+    private final int rowCount;
+    private final int assignmentCount;
+    private final int nameIndex;
+    private final int courseIdIndex;
+    private final int semesterIndex;
+    private final int stringCount;
+    private final int stringOffsetsStart;
+    private final int stringDataStart;
+    private final int assignmentTableStart;
+    private final int rosterStart;
+    private final int matrixStart;
+    private final int feedbackStart; // 0 when no cell has feedback
+    private final int bitmapWords;
+    private final int columnStride;
+
+    // strings decoded so far, filled in as they're asked for.
+    private final String[] decodedStrings;
+    // username to row, only built if somebody looks a student up by name.
+    private Map<String, Integer> rowByUsername;
+
+    private BinaryCourseFile(Path path, MappedByteBuffer map) throws IOException {
+        this.path = path;
+        this.map = map;
+        if (map.capacity() < HEADER_SIZE || map.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a course file");
+        }
+        int version = map.getInt(4);
+        if (version != VERSION) {
+            throw new IOException(path + " has course file version " + version + ", expected " + VERSION);
+        }
+        this.usesCategories = (map.getInt(8) & FLAG_USES_CATEGORIES) != 0;
+        this.nameIndex = map.getInt(12);
+        this.courseIdIndex = map.getInt(16);
+        this.semesterIndex = map.getInt(20);
+        this.rowCount = map.getInt(24);
+        this.assignmentCount = map.getInt(28);
+        int stringTableStart = checkedOffset(map.getLong(32));
+        this.assignmentTableStart = checkedOffset(map.getLong(40));
+        this.rosterStart = checkedOffset(map.getLong(48));
+        this.matrixStart = checkedOffset(map.getLong(56));
+        this.feedbackStart = checkedOffset(map.getLong(64));
+        this.stringCount = map.getInt(stringTableStart);
+        this.stringOffsetsStart = stringTableStart + 4;
+        this.stringDataStart = stringOffsetsStart + 4 * stringCount;
+        this.bitmapWords = (rowCount + 63) >>> 6;
+        this.columnStride = 8 * bitmapWords + 8 * rowCount;
+        this.decodedStrings = new String[stringCount];
+    }
+
+    private int checkedOffset(long offset) throws IOException {
+        if (offset < 0 || offset > map.capacity()) {
+            throw new IOException(path + " has a bad section offset " + offset);
+        }
+        return (int) offset;
+    }
+
+    /**
+     * Maps a course file for reading. Only the header is read here.
+     * @param path the .gbc file.
+     * @return the opened file.
+     * @throws IOException if it can't be read or isn't a course file.
+     */
+    public static BinaryCourseFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too big to map in one piece");
+            }
+            // the mapping stays valid after the channel is closed.
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new BinaryCourseFile(path, map);
+        }
+    }
+
+    //course info
+
+    public Path getPath() { return path; }
+    public String getName() { return string(nameIndex); }
+    public String getCourseId() { return string(courseIdIndex); }
+    public String getSemester() { return string(semesterIndex); }
+    public boolean usesCategories() { return usesCategories; }
+    public int getStudentCount() { return rowCount; }
+    public int getAssignmentCount() { return assignmentCount; }
+
+    //roster
+
+    public String getUsername(int row) {
+        checkRow(row);
+        return string(map.getInt(rosterStart + row * ROSTER_ENTRY_SIZE));
+    }
+
+    /** Checks if the student in a row was enrolled, rows can also be students with leftover grades. */
+    public boolean isEnrolled(int row) {
+        checkRow(row);
+        return (map.getInt(rosterStart + row * ROSTER_ENTRY_SIZE + 4) & FLAG_ENROLLED) != 0;
+    }
+
+    /**
+     * Finds a student's row. Builds the username index the first time it's called.
+     * @return the row, or -1 if the username isn't in the file.
+     */
+    public int indexOfStudent(String username) {
+        if (rowByUsername == null) {
+            Map<String, Integer> index = new HashMap<>(rowCount * 2);
+            for (int row = 0; row < rowCount; row++) {
+                index.put(getUsername(row), row);
+            }
+            rowByUsername = index;
+        }
+        Integer row = rowByUsername.get(username);
+        return (row != null) ? row : -1;
+    }
+
+    //assignments
+
+    public String getAssignmentName(int col) { return string(assignmentInt(col, 0)); }
+    public String getCategoryName(int col) { return string(assignmentInt(col, 4)); }
+    public String getDueDate(int col) { return string(assignmentInt(col, 8)); }
+    public String getGroupName(int col) { return string(assignmentInt(col, 12)); }
+    public String getDescription(int col) { return string(assignmentInt(col, 16)); }
+    public boolean isGraded(int col) { return (assignmentInt(col, 20) & FLAG_GRADED) != 0; }
+    public double getPointsWorth(int col) { return map.getDouble(assignmentEntry(col) + 24); }
+    public int getGradeCount(int col) { return assignmentInt(col, 32); }
+
+    //cells, read straight from the map
+
+    public boolean hasGrade(int row, int col) {
+        checkRow(row);
+        long word = map.getLong(columnStart(col) + 8 * (row >>> 6));
+        return (word & (1L << row)) != 0;
+    }
+
+    /** Points in a cell, only meaningful if hasGrade is true. */
+    public double getPointsEarned(int row, int col) {
+        checkRow(row);
+        return map.getDouble(columnStart(col) + 8 * bitmapWords + 8 * row);
+    }
+
+    /** Feedback in a cell, or null if none. */
+    public String getFeedback(int row, int col) {
+        checkRow(row);
+        if (feedbackStart == 0) {
+            return null;
+        }
+        checkColumn(col);
+        return string(map.getInt(feedbackStart + 4 * (col * rowCount + row)));
+    }
+
+    /**
+     * Builds a Course from the file. Assignments and the roster are made right away,
+     * but every grade column gets a loader, so its cells are only decoded from the map
+     * the first time the column is read.
+     * @param studentLookup finds the Student for an enrolled username, can return null to skip them.
+     * @return the new Course.
+     */
+    public Course toCourse(Function<String, Student> studentLookup) {
+        Course course = new Course(getName(), getCourseId(), getSemester(), usesCategories);
+
+        // rows first, in file order, so lazy columns land in the same row numbers.
+        GradeMatrix matrix = course.getGradeMatrix();
+        for (int row = 0; row < rowCount; row++) {
+            matrix.reserveRow(getUsername(row));
+        }
+
+        for (int col = 0; col < assignmentCount; col++) {
+            String groupName = getGroupName(col);
+            Group group = (groupName != null) ? GradebookJournal.findOrMakeGroup(course, groupName) : null;
+            Assignment a = new Assignment(getAssignmentName(col), getPointsWorth(col), getDueDate(col), getCategoryName(col), group);
+            String description = getDescription(col);
+            if (description != null) {
+                a.setDescription(description);
+            }
+            if (isGraded(col)) {
+                a.markGraded();
+            }
+            course.addAssignment(a);
+            final int fileColumn = col;
+            matrix.setColumnLoader(a, sink -> loadColumn(fileColumn, sink));
+        }
+
+        for (int row = 0; row < rowCount; row++) {
+            if (isEnrolled(row) && studentLookup != null) {
+                Student student = studentLookup.apply(getUsername(row));
+                if (student != null) {
+                    course.enrollStudent(student);
+                }
+            }
+        }
+        return course;
+    }
+
+    /** Decodes one column into a GradeMatrix, walking the bitmap to find the graded rows. */
+    private void loadColumn(int col, GradeMatrix.CellSink sink) {
+        int start = columnStart(col);
+        int pointsStart = start + 8 * bitmapWords;
+        for (int word = 0; word < bitmapWords; word++) {
+            long bits = map.getLong(start + 8 * word);
+            while (bits != 0) {
+                int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+                sink.put(getUsername(row), map.getDouble(pointsStart + 8 * row), getFeedback(row, col));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    //helpers
+
+    private String string(int index) {
+        if (index == NO_STRING) {
+            return null;
+        }
+        if (index < 0 || index >= stringCount) {
+            throw new IllegalStateException(path + " has a bad string index " + index);
+        }
+        String decoded = decodedStrings[index];
+        if (decoded == null) {
+            int at = stringDataStart + map.getInt(stringOffsetsStart + 4 * index);
+            int length = map.getInt(at);
+            byte[] bytes = new byte[length];
+            ByteBuffer view = map.duplicate();
+            view.position(at + 4);
+            view.get(bytes);
+            decoded = new String(bytes, StandardCharsets.UTF_8);
+            decodedStrings[index] = decoded;
+        }
+        return decoded;
+    }
+
+    private int assignmentEntry(int col) {
+        checkColumn(col);
+        return assignmentTableStart + col * ASSIGNMENT_ENTRY_SIZE;
+    }
+
+    private int assignmentInt(int col, int fieldOffset) {
+        return map.getInt(assignmentEntry(col) + fieldOffset);
+    }
+
+    private int columnStart(int col) {
+        checkColumn(col);
+        return matrixStart + col * columnStride;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("row " + row + " out of " + rowCount);
+        }
+    }
+
+    private void checkColumn(int col) {
+        if (col < 0 || col >= assignmentCount) {
+            throw new IndexOutOfBoundsException("column " + col + " out of " + assignmentCount);
+        }
+    }
+
+    //writing
+
+    /**
+     * Writes a course to a binary course file. The file is written next to the target
+     * and renamed into place so readers never see half of one.
+     * Rows are every student with a grade in the course's matrix plus every enrolled student.
+     * @param course the course to save.
+     * @param target the .gbc file to write.
+     * @throws IOException if writing fails.
+     */
+    public static void write(Course course, Path target) throws IOException {
+        if (course == null) {
+            throw new IllegalArgumentException("course cannot be null");
+        }
+        StringTable strings = new StringTable();
+        // everything is written from one snapshot, so grades entered while saving can't
+        // end up half in the file.
+        CourseSnapshot snapshot = course.snapshot();
+        List<Assignment> assignments = snapshot.getAssignments();
+
+        // roster, matrix rows first so their order matches, then enrolled students with no grades yet.
+        Map<String, Boolean> roster = new LinkedHashMap<>();
+        for (int row = 0; row < snapshot.getRowCount(); row++) {
+            roster.put(snapshot.getUsername(row), Boolean.FALSE);
+        }
+        for (Student student : snapshot.getStudents()) {
+            roster.put(student.getUsername(), Boolean.TRUE);
+        }
+        List<String> usernames = new ArrayList<>(roster.keySet());
+        int rows = usernames.size();
+        int words = (rows + 63) >>> 6;
+
+        int nameIndex = strings.add(course.getName());
+        int courseIdIndex = strings.add(course.getCourseId());
+        int semesterIndex = strings.add(course.getSemester());
+
+        ByteBuffer assignmentTable = ByteBuffer.allocate(assignments.size() * ASSIGNMENT_ENTRY_SIZE);
+        ByteBuffer rosterTable = ByteBuffer.allocate(rows * ROSTER_ENTRY_SIZE);
+        ByteBuffer matrixSection = ByteBuffer.allocate(assignments.size() * (8 * words + 8 * rows));
+        int[] feedbackIndexes = new int[assignments.size() * rows];
+        Arrays.fill(feedbackIndexes, NO_STRING);
+        boolean anyFeedback = false;
+
+        for (String username : usernames) {
+            rosterTable.putInt(strings.add(username));
+            rosterTable.putInt(roster.get(username) ? FLAG_ENROLLED : 0);
+        }
+
+        for (int col = 0; col < assignments.size(); col++) {
+            Assignment a = assignments.get(col);
+            long[] present = new long[words];
+            double[] points = new double[rows];
+            int gradeCount = 0;
+            int matrixColumn = snapshot.columnOf(a);
+            for (int row = 0; row < rows; row++) {
+                String feedback;
+                if (matrixColumn >= 0) {
+                    // the matrix rows come first in the roster, so row numbers line up.
+                    double earned = snapshot.pointsAt(row, matrixColumn);
+                    if (Double.isNaN(earned)) {
+                        continue;
+                    }
+                    points[row] = earned;
+                    feedback = snapshot.feedbackAt(row, matrixColumn);
+                } else {
+                    // assignment stored in another course, ask it directly.
+                    Grade grade = a.getGrade(usernames.get(row));
+                    if (grade == null) {
+                        continue;
+                    }
+                    points[row] = grade.getPointsEarned();
+                    feedback = grade.getFeedback();
+                }
+                present[row >>> 6] |= 1L << row;
+                gradeCount++;
+                if (feedback != null) {
+                    feedbackIndexes[col * rows + row] = strings.add(feedback);
+                    anyFeedback = true;
+                }
+            }
+            for (long word : present) {
+                matrixSection.putLong(word);
+            }
+            for (double earned : points) {
+                matrixSection.putDouble(earned);
+            }
+
+            assignmentTable.putInt(strings.add(a.getName()));
+            assignmentTable.putInt(strings.add(a.getCategoryName()));
+            assignmentTable.putInt(strings.add(a.getDueDate()));
+            assignmentTable.putInt(strings.add(a.getGroup() != null ? a.getGroup().getGroupName() : null));
+            assignmentTable.putInt(strings.add(a.getDescription()));
+            assignmentTable.putInt(a.isGraded() ? FLAG_GRADED : 0);
+            assignmentTable.putDouble(a.getPointsWorth());
+            assignmentTable.putInt(gradeCount);
+            assignmentTable.putInt(0); // padding
+        }
+
+        ByteBuffer stringSection = strings.encode();
+        ByteBuffer feedbackSection = ByteBuffer.allocate(anyFeedback ? 4 * feedbackIndexes.length : 0);
+        if (anyFeedback) {
+            for (int index : feedbackIndexes) {
+                feedbackSection.putInt(index);
+            }
+        }
+
+        long stringTableStart = HEADER_SIZE;
+        long assignmentTableStart = stringTableStart + stringSection.capacity();
+        long rosterStart = assignmentTableStart + assignmentTable.capacity();
+        long matrixStart = rosterStart + rosterTable.capacity();
+        long feedbackStart = anyFeedback ? matrixStart + matrixSection.capacity() : 0;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(course.usesCategories() ? FLAG_USES_CATEGORIES : 0);
+        header.putInt(nameIndex).putInt(courseIdIndex).putInt(semesterIndex);
+        header.putInt(rows).putInt(assignments.size());
+        header.putLong(stringTableStart).putLong(assignmentTableStart).putLong(rosterStart).putLong(matrixStart).putLong(feedbackStart);
+
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer section : new ByteBuffer[] {header, stringSection, assignmentTable, rosterTable, matrixSection, feedbackSection}) {
+                section.flip();
+                while (section.hasRemaining()) {
+                    channel.write(section);
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Collects strings for the string table, each distinct string stored once.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indexByString = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private int dataBytes = 0;
+
+        int add(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer existing = indexByString.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int index = encoded.size();
+            encoded.add(bytes);
+            indexByString.put(value, index);
+            dataBytes += 4 + bytes.length;
+            return index;
+        }
+
+        /** Count, then one offset per string, then each string as length + bytes. */
+        ByteBuffer encode() {
+            ByteBuffer buffer = ByteBuffer.allocate(4 + 4 * encoded.size() + dataBytes);
+            buffer.putInt(encoded.size());
+            int offset = 0;
+            for (byte[] bytes : encoded) {
+                buffer.putInt(offset);
+                offset += 4 + bytes.length;
+            }
+            for (byte[] bytes : encoded) {
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package persistence;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import model.Assignment;
+import model.Course;
+import model.CourseSnapshot;
+import model.DropPolicy;
+import model.GradingCategory;
+import model.Group;
+import model.Student;
+import model.grading.CategoryBasedCalculator;
+import model.grading.GradeCalculator;
+import model.grading.PointsBasedCalculator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * CourseTypeAdapter streams a Course.
+ * Course and Student point at each other, so enrolled students and group members
+ * are written as usernames, and the student files only keep course ids. When reading,
+ * usernames are turned back into Student objects with the student resolver, any it
+ * can't find are left out.
+ * The grade calculator is written as POINTS or CATEGORY instead of the object.
+ */
+public class CourseTypeAdapter extends TypeAdapter<Course> {
+    private static final String POINTS_MODE = "POINTS";
+    private static final String CATEGORY_MODE = "CATEGORY";
+
+    private final AssignmentTypeAdapter assignmentAdapter;
+    private final Function<String, Student> studentResolver;
+
+    /**
+     * @param assignmentAdapter used for each assignment in the course.
+     * @param studentResolver finds a Student by username, can be null to skip enrollments.
+     */
+    public CourseTypeAdapter(AssignmentTypeAdapter assignmentAdapter, Function<String, Student> studentResolver) {
+        this.assignmentAdapter = assignmentAdapter;
+        this.studentResolver = studentResolver;
+    }
+
+    @Override
+    public void write(JsonWriter out, Course course) throws IOException {
+        if (course == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("courseId").value(course.getCourseId());
+        out.name("name").value(course.getName());
+        out.name("semester").value(course.getSemester());
+        out.name("useCategories").value(course.usesCategories());
+        String mode = calculatorMode(course.getGradeCalculator());
+        if (mode != null) {
+            out.name("calculator").value(mode);
+        }
+
+        out.name("groups").beginArray();
+        for (Group group : course.getGroups()) {
+            out.beginObject();
+            out.name("name").value(group.getGroupName());
+            out.name("members").beginArray();
+            for (Student member : group.getMembers()) {
+                out.value(member.getUsername());
+            }
+            out.endArray();
+            out.endObject();
+        }
+        out.endArray();
+
+        // one snapshot for the lists below, so they all agree with each other.
+        CourseSnapshot snapshot = course.snapshot();
+        out.name("categories").beginArray();
+        for (GradingCategory category : snapshot.getCategories().values()) {
+            out.beginObject();
+            out.name("name").value(category.getName());
+            out.name("weight").value(category.getWeight());
+            out.name("numDropped").value(category.getNumDropped());
+            out.name("dropPolicy").value(category.getDropPolicy().name());
+            out.endObject();
+        }
+        out.endArray();
+
+        out.name("assignments").beginArray();
+        for (Assignment a : snapshot.getAssignments()) {
+            assignmentAdapter.write(out, a);
+        }
+        out.endArray();
+
+        out.name("enrolled").beginArray();
+        for (Student student : snapshot.getStudents()) {
+            out.value(student.getUsername());
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    @Override
+    public Course read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String courseId = null;
+        String name = null;
+        String semester = null;
+        boolean useCategories = false;
+        String mode = null;
+        Map<String, List<String>> groupMembers = new LinkedHashMap<>();
+        List<GradingCategory> categories = new ArrayList<>();
+        List<Assignment> assignments = new ArrayList<>();
+        List<String> enrolled = new ArrayList<>();
+        // placeholder groups for the assignments, swapped for the course's own at the end.
+        Map<String, Group> placeholderGroups = new HashMap<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "courseId":
+                    courseId = GradebookJson.nextStringOrNull(in);
+                    break;
+                case "name":
+                    name = GradebookJson.nextStringOrNull(in);
+                    break;
+                case "semester":
+                    semester = GradebookJson.nextStringOrNull(in);
+                    break;
+                case "useCategories":
+                    useCategories = in.nextBoolean();
+                    break;
+                case "calculator":
+                    mode = GradebookJson.nextStringOrNull(in);
+                    break;
+                case "groups":
+                    readGroups(in, groupMembers);
+                    break;
+                case "categories":
+                    readCategories(in, categories);
+                    break;
+                case "assignments":
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        Assignment a = assignmentAdapter.read(in, groupName -> placeholderGroups.computeIfAbsent(groupName, Group::new));
+                        if (a != null) {
+                            assignments.add(a);
+                        }
+                    }
+                    in.endArray();
+                    break;
+                case "enrolled":
+                case "enrolledStudents":
+                    readUsernames(in, enrolled);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        Course course;
+        try {
+            course = new Course(name, courseId, semester, useCategories);
+        } catch (IllegalArgumentException badCourse) {
+            throw new JsonParseException("bad course " + courseId + ": " + badCourse.getMessage());
+        }
+        GradeCalculator calculator = calculatorFor(mode);
+        if (calculator != null) {
+            course.setGradeCalculator(calculator);
+        }
+        for (String groupName : groupMembers.keySet()) {
+            if (course.findGroupByName(groupName) == null) {
+                try {
+                    course.createGroup(groupName);
+                } catch (IllegalArgumentException sameNameDifferentCase) {
+                    throw new JsonParseException("course " + courseId + " has two groups named " + groupName);
+                }
+            }
+        }
+        // categories before assignments so addAssignment files each one under its category.
+        for (GradingCategory category : categories) {
+            course.addGradingCategory(category);
+        }
+        for (Assignment a : assignments) {
+            if (a.getGroup() != null) {
+                Group courseGroup = course.findGroupByName(a.getGroup().getGroupName());
+                if (courseGroup != null) {
+                    a.setGroupName(courseGroup);
+                }
+            }
+            course.addAssignment(a);
+        }
+        if (studentResolver != null) {
+            for (String username : enrolled) {
+                Student student = studentResolver.apply(username);
+                if (student != null) {
+                    course.enrollStudent(student);
+                }
+            }
+            for (Map.Entry<String, List<String>> entry : groupMembers.entrySet()) {
+                for (String username : entry.getValue()) {
+                    Student member = course.getEnrolledStudent(username);
+                    if (member != null) {
+                        course.addStudentToGroup(entry.getKey(), member);
+                    }
+                }
+            }
+        }
+        return course;
+    }
+
+    private static void readGroups(JsonReader in, Map<String, List<String>> groupMembers) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            String groupName = null;
+            List<String> members = new ArrayList<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name":
+                        groupName = GradebookJson.nextStringOrNull(in);
+                        break;
+                    case "members":
+                        readUsernames(in, members);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            if (groupName != null) {
+                groupMembers.put(groupName, members);
+            }
+        }
+        in.endArray();
+    }
+
+    /**
+     * Reads categories from an array, or from an object keyed by name like the old
+     * reflection files wrote the categories map.
+     */
+    private static void readCategories(JsonReader in, List<GradingCategory> categories) throws IOException {
+        if (in.peek() == JsonToken.BEGIN_OBJECT) {
+            in.beginObject();
+            while (in.hasNext()) {
+                String key = in.nextName();
+                categories.add(readCategory(in, key));
+            }
+            in.endObject();
+            return;
+        }
+        in.beginArray();
+        while (in.hasNext()) {
+            categories.add(readCategory(in, null));
+        }
+        in.endArray();
+    }
+
+    /** Reads one category object, the name field wins over the map key if both are there. */
+    private static GradingCategory readCategory(JsonReader in, String keyName) throws IOException {
+        String categoryName = keyName;
+        double weight = 0.0;
+        int numDropped = 0;
+        DropPolicy dropPolicy = DropPolicy.LOWEST_POINTS;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "name":
+                    String fieldName = GradebookJson.nextStringOrNull(in);
+                    if (fieldName != null) {
+                        categoryName = fieldName;
+                    }
+                    break;
+                case "weight":
+                    weight = in.nextDouble();
+                    break;
+                case "numDropped":
+                    numDropped = in.nextInt();
+                    break;
+                case "dropPolicy":
+                    String policyName = GradebookJson.nextStringOrNull(in);
+                    try {
+                        dropPolicy = (policyName != null) ? DropPolicy.valueOf(policyName) : DropPolicy.LOWEST_POINTS;
+                    } catch (IllegalArgumentException unknownPolicy) {
+                        throw new JsonParseException("unknown drop policy " + policyName);
+                    }
+                    break;
+                default:
+                    // old files also have the category's assignments, the course has those already.
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        try {
+            return new GradingCategory(categoryName, weight, numDropped, dropPolicy);
+        } catch (IllegalArgumentException badCategory) {
+            throw new JsonParseException("bad category " + categoryName + ": " + badCategory.getMessage());
+        }
+    }
+
+    /**
+     * Reads usernames from an array of strings or old style student objects,
+     * or from an object keyed by username like the old enrolledStudents map.
+     */
+    private static void readUsernames(JsonReader in, List<String> usernames) throws IOException {
+        if (in.peek() == JsonToken.BEGIN_OBJECT) {
+            in.beginObject();
+            while (in.hasNext()) {
+                usernames.add(in.nextName());
+                in.skipValue();
+            }
+            in.endObject();
+            return;
+        }
+        in.beginArray();
+        while (in.hasNext()) {
+            String username = GradebookJson.readNameOrObjectField(in, "username");
+            if (username != null) {
+                usernames.add(username);
+            }
+        }
+        in.endArray();
+    }
+
+    /** POINTS or CATEGORY for a calculator, null for any other kind. The journal uses this too. */
+    static String calculatorMode(GradeCalculator calculator) {
+        if (calculator instanceof CategoryBasedCalculator) {
+            return CATEGORY_MODE;
+        }
+        if (calculator instanceof PointsBasedCalculator) {
+            return POINTS_MODE;
+        }
+        return null;
+    }
+
+    /** A new calculator for POINTS or CATEGORY, null for anything else. */
+    static GradeCalculator calculatorFor(String mode) {
+        if (CATEGORY_MODE.equals(mode)) {
+            return new CategoryBasedCalculator();
+        }
+        if (POINTS_MODE.equals(mode)) {
+            return new PointsBasedCalculator();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,212 @@
+package persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import model.User;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * FileUserRepository keeps the accounts folder indexed in memory.
+ * Every account file is read once when the repository is made, and its JSON text
+ * is kept in a map by username. Saving a new account writes its file and puts the
+ * text straight in the map.
+ * Every lookup parses a new User from the kept text, so the disk is never touched
+ * but each login gets its own object, like when every lookup read the file. A User
+ * holds session state, its courses and grades, so handing the same object to the
+ * next login would carry the last session's courses over.
+ * To notice files changed or deleted outside the app, each index entry remembers
+ * the file's last modified time and length. A lookup only checks those two
+ * numbers, it only reads the file again if they changed.
+ */
+public class FileUserRepository implements UserRepository {
+    private static final String FILE_EXTENSION = ".json";
+
+    private final File folder;
+    private final Gson gson;
+    // username -> account JSON plus the file info it was read from.
+    private final Map<String, IndexEntry> index = new HashMap<>();
+
+    /**
+     * Makes the repository and loads every account in the folder.
+     * @param folderPath The accounts folder, made if it doesn't exist.
+     * @param gson The Gson used to read and write account files, it needs the
+     *             UserTypeAdapter from GradebookJson to tell students from teachers.
+     */
+    public FileUserRepository(String folderPath, Gson gson) {
+        this.folder = new File(folderPath);
+        this.gson = gson;
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+        reload();
+    }
+
+    @Override
+    public synchronized void reload() {
+        index.clear();
+        File[] accountFiles = folder.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (accountFiles == null) {
+            return;
+        }
+        for (File file : accountFiles) {
+            String username = file.getName().substring(0, file.getName().length() - FILE_EXTENSION.length());
+            if (!username.isEmpty()) {
+                loadIntoIndex(username, file);
+            }
+        }
+        System.out.println("FileUserRepository loaded " + index.size() + " accounts from " + folder.getPath());
+    }
+
+    @Override
+    public synchronized User findByUsername(String username) {
+        if (username == null || username.isEmpty()) {
+            return null;
+        }
+        File file = fileFor(username);
+        IndexEntry entry = index.get(username);
+        // fast path, index entry still matches the file on disk.
+        if (entry != null && entry.matches(file)) {
+            return parse(username, entry.json);
+        }
+        // changed, deleted or created outside the app since we last looked.
+        if (!file.exists()) {
+            index.remove(username);
+            return null;
+        }
+        return loadIntoIndex(username, file);
+    }
+
+    @Override
+    public synchronized Map<String, User> findUsersByUsernames(Collection<String> usernames) {
+        Map<String, User> found = new LinkedHashMap<>();
+        if (usernames == null) {
+            return found;
+        }
+        for (String username : usernames) {
+            if (found.containsKey(username)) {
+                continue;
+            }
+            User user = findByUsername(username);
+            if (user != null) {
+                found.put(username, user);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Checks for an account without making a User out of it.
+     * If the index entry still matches the file on disk that's the answer, only a file
+     * changed or made outside the app is read (and checked) again.
+     */
+    @Override
+    public synchronized boolean exists(String username) {
+        if (username == null || username.isEmpty()) {
+            return false;
+        }
+        File file = fileFor(username);
+        IndexEntry entry = index.get(username);
+        if (entry != null && entry.matches(file)) {
+            return true;
+        }
+        if (!file.exists()) {
+            index.remove(username);
+            return false;
+        }
+        return loadIntoIndex(username, file) != null;
+    }
+
+    @Override
+    public synchronized boolean save(User user) {
+        if (user == null || user.getUsername() == null || user.getUsername().isEmpty()) {
+            return false;
+        }
+        File file = fileFor(user.getUsername());
+        String json = gson.toJson(user, User.class);
+        try {
+            Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        index.put(user.getUsername(), new IndexEntry(json, file));
+        return true;
+    }
+
+    private File fileFor(String username) {
+        return new File(folder, username + FILE_EXTENSION);
+    }
+
+    /**
+     * Reads one account file and puts its text in the index.
+     * It's parsed right away too, so a broken file is never indexed.
+     * @return the loaded user, or null if the file couldn't be read.
+     */
+    private User loadIntoIndex(String username, File file) {
+        // file info first, so a write that lands while reading makes the next lookup read again.
+        long lastModified = file.lastModified();
+        long length = file.length();
+        String json;
+        try {
+            json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("FileUserRepository problem: couldn't read account file " + file.getName() + ": " + e.getMessage());
+            index.remove(username);
+            return null;
+        }
+        User user = parse(username, json);
+        if (user == null) {
+            index.remove(username);
+            return null;
+        }
+        index.put(username, new IndexEntry(json, lastModified, length));
+        return user;
+    }
+
+    /**
+     * Makes a new User from account JSON.
+     * The UserTypeAdapter reads the role and the fields in the same pass, straight
+     * into a Student, Teacher or User.
+     * @return the user, or null if the text isn't a readable account.
+     */
+    private User parse(String username, String json) {
+        try {
+            return gson.fromJson(json, User.class);
+        } catch (JsonParseException | IllegalStateException | IllegalArgumentException e) {
+            System.out.println("FileUserRepository problem: couldn't read account " + username + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * One account's JSON and the file info it came from.
+     */
+    private static class IndexEntry {
+        private final String json;
+        private final long lastModified;
+        private final long length;
+
+        IndexEntry(String json, File file) {
+            this(json, file.lastModified(), file.length());
+        }
+
+        IndexEntry(String json, long lastModified, long length) {
+            this.json = json;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        boolean matches(File file) {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package persistence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import model.Grade;
+
+import java.io.IOException;
+
+/**
+ * GradeTypeAdapter reads and writes a Grade as {"pointsEarned": 90.0, "feedback": "..."}
+ * straight off the stream, without Gson's reflection.
+ */
+public class GradeTypeAdapter extends TypeAdapter<Grade> {
+
+    @Override
+    public void write(JsonWriter out, Grade grade) throws IOException {
+        if (grade == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("pointsEarned").value(grade.getPointsEarned());
+        if (grade.getFeedback() != null) {
+            out.name("feedback").value(grade.getFeedback());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Grade read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        double pointsEarned = 0.0;
+        String feedback = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "pointsEarned":
+                    pointsEarned = in.nextDouble();
+                    break;
+                case "feedback":
+                    feedback = GradebookJson.nextStringOrNull(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Grade(pointsEarned, feedback);
+    }
+}
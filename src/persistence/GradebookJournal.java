@@ -0,0 +1,778 @@
+package persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import model.Assignment;
+import model.Course;
+import model.Grade;
+import model.GradingCategory;
+import model.Group;
+import model.Student;
+import model.User;
+import model.grading.GradeCalculator;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * GradebookJournal is an append only log of gradebook mutations.
+ * Before this, courses, assignments and grades only lived in memory and were lost
+ * when the app closed. Now TeacherController appends one JournalRecord per mutation,
+ * written as one line of compact JSON, and the state gets rebuilt at startup by
+ * replaying it on top of the newest snapshot, see GradebookStore.
+ *
+ * Writes use group commit. append just puts the record on a queue and returns right
+ * away, so entering a grade never waits on the disk. One writer thread takes everything
+ * that piled up, writes it in one go and calls force once for the whole batch, so bulk
+ * grading pays for one fsync per batch instead of one per grade. The future returned
+ * by append completes once that record's batch is on disk.
+ *
+ * The journal is split into segment files in one directory, each named after the
+ * sequence number of its first record. rollSegment starts a new one, which GradebookStore
+ * does when it takes a snapshot, so compact can then rewrite or delete the older
+ * segments the snapshot already covers.
+ */
+public class GradebookJournal implements Closeable {
+    public static final String DEFAULT_DIRECTORY = "data/journal";
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    // most records written in one batch before forcing to disk.
+    private static final int MAX_BATCH = 1024;
+    // how many bytes to read at a time when looking back from the end of the file.
+    private static final int TAIL_SCAN_BYTES = 8192;
+
+    private final Path directory;
+    // the segment being written to and its channel, only changed by the writer thread.
+    private volatile Path activeSegment;
+    private FileChannel channel;
+    private final Gson gson = new Gson();
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private final PendingWrite stopMarker = new PendingWrite(-1, new byte[0]);
+    // replay and compact both go over the closed segments, only one at a time.
+    private final Object segmentLock = new Object();
+    private volatile boolean closed = false;
+    // next sequence number to hand out, guarded by this.
+    private long nextSeq;
+
+    /**
+     * Opens the journal directory, making it if needed, and starts the writer thread.
+     * Appends go to the newest segment. If the app died in the middle of writing a line,
+     * that half line is cut off so new records start on a clean line.
+     * @param directory the folder the segment files live in.
+     * @throws IOException if the segment can't be opened.
+     */
+    public GradebookJournal(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            this.activeSegment = segmentPath(1);
+        } else {
+            this.activeSegment = segments.get(segments.size() - 1);
+        }
+        this.channel = openSegment(activeSegment);
+        this.nextSeq = Math.max(recoverTail() + 1, firstSeqOf(activeSegment));
+        channel.position(channel.size());
+
+        this.writerThread = new Thread(this::writeLoop, "gradebook-journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /** Gets the folder the segment files are in. */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /** Gets the sequence number the last appended record got, 0 if none yet. */
+    public synchronized long getLastSeq() {
+        return nextSeq - 1;
+    }
+
+    /**
+     * Appends one record. Doesn't wait for the disk.
+     * @param record the mutation to log.
+     * @return future with the record's sequence number, done when it's on disk.
+     */
+    public synchronized CompletableFuture<Long> append(JournalRecord record) {
+        if (closed) {
+            CompletableFuture<Long> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("journal is closed"));
+            return failed;
+        }
+        record.setSeq(nextSeq++);
+        byte[] line = (gson.toJson(record) + "\n").getBytes(StandardCharsets.UTF_8);
+        PendingWrite write = new PendingWrite(record.getSeq(), line);
+        queue.add(write);
+        return write.done;
+    }
+
+    /**
+     * Appends several records as one write. They get back to back sequence numbers and
+     * go to disk together with one force, so a whole class's final grades cost one fsync.
+     * @param records the mutations to log, in order.
+     * @return future with the last record's sequence number, done when they're all on disk.
+     */
+    public synchronized CompletableFuture<Long> appendAll(List<JournalRecord> records) {
+        if (closed) {
+            CompletableFuture<Long> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("journal is closed"));
+            return failed;
+        }
+        if (records.isEmpty()) {
+            return CompletableFuture.completedFuture(nextSeq - 1);
+        }
+        StringBuilder lines = new StringBuilder();
+        for (JournalRecord record : records) {
+            record.setSeq(nextSeq++);
+            lines.append(gson.toJson(record)).append('\n');
+        }
+        // one pending write, so the writer can't split them across batches or segments.
+        PendingWrite write = new PendingWrite(nextSeq - 1, lines.toString().getBytes(StandardCharsets.UTF_8));
+        queue.add(write);
+        return write.done;
+    }
+
+    /**
+     * Starts a new segment file. Everything appended before this call stays in the
+     * old segment and everything after goes in the new one.
+     * @return future done once the new segment is open, with the last sequence number
+     *         in the old segments.
+     */
+    public synchronized CompletableFuture<Long> rollSegment() {
+        if (closed) {
+            CompletableFuture<Long> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("journal is closed"));
+            return failed;
+        }
+        PendingWrite roll = new PendingWrite(nextSeq - 1, new byte[0]);
+        roll.rollTo = segmentPath(nextSeq);
+        queue.add(roll);
+        return roll.done;
+    }
+
+    /**
+     * Waits until everything appended so far is on disk.
+     */
+    public void flush() {
+        CompletableFuture<Long> marker;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            PendingWrite write = new PendingWrite(nextSeq - 1, new byte[0]);
+            queue.add(write);
+            marker = write.done;
+        }
+        marker.join();
+    }
+
+    /**
+     * Writes whatever is still queued, stops the writer thread and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(stopMarker);
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    //writer thread
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            // group commit, grab everything else that's already waiting.
+            queue.drainTo(batch, MAX_BATCH - 1);
+            stopping = batch.remove(stopMarker);
+            // roll markers split the batch, records before one go in the old segment.
+            int start = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                PendingWrite write = batch.get(i);
+                if (write.rollTo != null) {
+                    writeBatch(batch.subList(start, i));
+                    switchSegment(write);
+                    start = i + 1;
+                }
+            }
+            writeBatch(batch.subList(start, batch.size()));
+            batch.clear();
+        }
+    }
+
+    private void switchSegment(PendingWrite roll) {
+        if (roll.rollTo.equals(activeSegment)) {
+            roll.done.complete(roll.seq); // nothing written since the last roll
+            return;
+        }
+        try {
+            FileChannel next = openSegment(roll.rollTo);
+            channel.close();
+            channel = next;
+            activeSegment = roll.rollTo;
+            roll.done.complete(roll.seq);
+        } catch (IOException e) {
+            System.out.println("GradebookJournal problem: couldn't start segment " + roll.rollTo + ": " + e.getMessage());
+            roll.done.completeExceptionally(e);
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int totalBytes = 0;
+        for (PendingWrite write : batch) {
+            totalBytes += write.bytes.length;
+        }
+        try {
+            if (totalBytes > 0) {
+                ByteBuffer buffer = ByteBuffer.allocate(totalBytes);
+                for (PendingWrite write : batch) {
+                    buffer.put(write.bytes);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                // one fsync for the whole batch.
+                channel.force(false);
+            }
+            for (PendingWrite write : batch) {
+                write.done.complete(write.seq);
+            }
+        } catch (IOException e) {
+            System.out.println("GradebookJournal problem: failed writing " + batch.size() + " records: " + e.getMessage());
+            for (PendingWrite write : batch) {
+                write.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Looks at the end of the file for the last sequence number, and cuts off a
+     * half written last line if there is one.
+     * It reads backwards a window at a time until it finds the newline it needs, so a
+     * record longer than one window (like a grade with long feedback) is still found
+     * whole, and a torn one is cut off at its start instead of in the middle.
+     * @return the last sequence number in the file, 0 if empty.
+     */
+    private long recoverTail() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return 0;
+        }
+        long lastNewline = lastNewlineBefore(size);
+        if (lastNewline != size - 1) {
+            // torn write from a crash, drop the partial line.
+            System.out.println("GradebookJournal: cutting off partial record at end of " + activeSegment);
+            size = lastNewline + 1;
+            channel.truncate(size);
+        }
+
+        // go back one whole line at a time until one of them reads.
+        long lineEnd = size - 1;
+        while (lineEnd >= 0) {
+            long lineStart = lastNewlineBefore(lineEnd) + 1;
+            String line = new String(readBytes(lineStart, lineEnd), StandardCharsets.UTF_8).trim();
+            if (!line.isEmpty()) {
+                try {
+                    JournalRecord last = gson.fromJson(line, JournalRecord.class);
+                    if (last != null) {
+                        return last.getSeq();
+                    }
+                } catch (JsonParseException e) {
+                    // garbage line, the one before it may still be good.
+                }
+            }
+            lineEnd = lineStart - 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the last newline in the file before a position.
+     * @param end look at the bytes before this position.
+     * @return where the newline is, -1 if there isn't one.
+     */
+    private long lastNewlineBefore(long end) throws IOException {
+        long windowEnd = end;
+        while (windowEnd > 0) {
+            int windowLength = (int) Math.min(windowEnd, TAIL_SCAN_BYTES);
+            long windowStart = windowEnd - windowLength;
+            byte[] window = readBytes(windowStart, windowEnd);
+            for (int i = window.length - 1; i >= 0; i--) {
+                // a '\n' byte is never part of a longer UTF-8 character, so this is safe.
+                if (window[i] == '\n') {
+                    return windowStart + i;
+                }
+            }
+            windowEnd = windowStart;
+        }
+        return -1;
+    }
+
+    private byte[] readBytes(long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("segment got shorter while reading " + activeSegment);
+            }
+        }
+        return buffer.array();
+    }
+
+    //replay
+
+    /**
+     * Rebuilds state by applying every record in the journal, oldest first.
+     * Records for courses that aren't in the map, or that name students or
+     * assignments that can't be found, are skipped and counted.
+     * @param coursesById the courses to apply records to, keyed by course id.
+     * @param userLookup finds a user by username, for students not enrolled yet.
+     * @return counts of what was applied and skipped.
+     */
+    public ReplayResult replay(Map<String, Course> coursesById, Function<String, User> userLookup) {
+        return replay(coursesById, userLookup, Collections.emptyMap());
+    }
+
+    /**
+     * Replays only the records a snapshot doesn't already have.
+     * A record is applied if its course isn't in coveredUpTo, or if its sequence number
+     * is after the one the course was captured at.
+     * @param coveredUpTo course id to the last sequence number already in the snapshot.
+     */
+    public ReplayResult replay(Map<String, Course> coursesById, Function<String, User> userLookup, Map<String, Long> coveredUpTo) {
+        return replay(coursesById, userLookup, coveredUpTo, new HashMap<>());
+    }
+
+    /**
+     * Same as above, but keeps track of removed assignments in the map passed in,
+     * so a snapshot's list of removed assignments carries on through the replay.
+     */
+    ReplayResult replay(Map<String, Course> coursesById, Function<String, User> userLookup,
+                        Map<String, Long> coveredUpTo, Map<String, Set<String>> removedAssignments) {
+        ReplayResult result = new ReplayResult(removedAssignments);
+        flush();
+        synchronized (segmentLock) {
+            try {
+                for (Path segment : listSegments()) {
+                    if (!replaySegment(segment, coursesById, userLookup, coveredUpTo, result)) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("GradebookJournal problem: couldn't replay " + directory + ": " + e.getMessage());
+            }
+        }
+        System.out.println("GradebookJournal replayed " + result);
+        return result;
+    }
+
+    /**
+     * Replays one segment file.
+     * @return false if an unreadable record was found and replay should stop.
+     */
+    private boolean replaySegment(Path segment, Map<String, Course> coursesById, Function<String, User> userLookup,
+                                  Map<String, Long> coveredUpTo, ReplayResult result) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JournalRecord record;
+                try {
+                    record = gson.fromJson(line, JournalRecord.class);
+                } catch (JsonParseException e) {
+                    System.out.println("GradebookJournal problem: unreadable record after seq " + result.lastSeq + ", stopping replay");
+                    return false;
+                }
+                if (record == null || record.getType() == null) {
+                    result.skipped++;
+                    continue;
+                }
+                result.lastSeq = Math.max(result.lastSeq, record.getSeq());
+                if (isCovered(record, coveredUpTo)) {
+                    result.covered++;
+                } else if (apply(record, coursesById, userLookup)) {
+                    result.applied++;
+                    trackRemoval(result.removedAssignments, record);
+                } else {
+                    result.skipped++;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keeps a course id to removed assignment names map up to date with one record.
+     * A removal adds the name, adding the assignment back takes it out again.
+     */
+    static void trackRemoval(Map<String, Set<String>> removedAssignments, JournalRecord record) {
+        if (record.getType() == JournalRecord.Type.EDIT_ASSIGNMENT && record.getNewName() != null
+                && !record.getNewName().equals(record.getAssignment())) {
+            // a rename takes the old name away and brings the new one in.
+            removedAssignments.computeIfAbsent(record.getCourseId(), id -> new HashSet<>()).add(record.getAssignment());
+            removedAssignments.get(record.getCourseId()).remove(record.getNewName());
+        } else if (record.getType() == JournalRecord.Type.REMOVE_ASSIGNMENT) {
+            removedAssignments.computeIfAbsent(record.getCourseId(), id -> new HashSet<>()).add(record.getAssignment());
+        } else if (record.getType() == JournalRecord.Type.ADD_ASSIGNMENT) {
+            Set<String> removed = removedAssignments.get(record.getCourseId());
+            if (removed != null) {
+                removed.remove(record.getAssignment());
+            }
+        }
+    }
+
+    private static boolean isCovered(JournalRecord record, Map<String, Long> coveredUpTo) {
+        Long capturedAt = coveredUpTo.get(record.getCourseId());
+        return capturedAt != null && record.getSeq() <= capturedAt;
+    }
+
+    //compaction
+
+    /**
+     * Compacts the closed segments that end at or before upToSeq.
+     * Records a snapshot already covers are dropped. A segment with nothing left
+     * gets deleted, otherwise it's rewritten with only the records that are still needed,
+     * like ones for courses that weren't in the snapshot.
+     * The segment being written to is never touched.
+     * @param upToSeq only segments whose records are all at or before this get compacted.
+     * @param coveredUpTo course id to the last sequence number already in the snapshot.
+     * @return how many segment files were deleted.
+     */
+    public int compact(long upToSeq, Map<String, Long> coveredUpTo) {
+        int deleted = 0;
+        synchronized (segmentLock) {
+            try {
+                List<Path> segments = listSegments();
+                for (int i = 0; i + 1 < segments.size(); i++) {
+                    Path segment = segments.get(i);
+                    boolean closedSegment = !segment.equals(activeSegment);
+                    // the next segment's first seq tells us where this one ends.
+                    boolean allCovered = firstSeqOf(segments.get(i + 1)) - 1 <= upToSeq;
+                    if (closedSegment && allCovered && compactSegment(segment, coveredUpTo)) {
+                        deleted++;
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("GradebookJournal problem: compaction failed: " + e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Rewrites one segment without the covered records.
+     * @return true if the segment ended up empty and was deleted.
+     */
+    private boolean compactSegment(Path segment, Map<String, Long> coveredUpTo) throws IOException {
+        List<String> keep = new ArrayList<>();
+        boolean droppedAny = false;
+        for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            JournalRecord record;
+            try {
+                record = gson.fromJson(line, JournalRecord.class);
+            } catch (JsonParseException e) {
+                keep.add(line); // leave anything we can't read alone
+                continue;
+            }
+            if (record != null && isCovered(record, coveredUpTo)) {
+                droppedAny = true;
+            } else {
+                keep.add(line);
+            }
+        }
+        if (keep.isEmpty()) {
+            Files.delete(segment);
+            return true;
+        }
+        if (droppedAny) {
+            // write the smaller copy next to it, then swap it in.
+            Path temp = segment.resolveSibling(segment.getFileName() + ".tmp");
+            Files.write(temp, keep, StandardCharsets.UTF_8);
+            Files.move(temp, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return false;
+    }
+
+    //segment files
+
+    private Path segmentPath(long firstSeq) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%020d", firstSeq) + SEGMENT_SUFFIX);
+    }
+
+    private static long firstSeqOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /** Lists the segment files oldest first, the zero padded names sort by sequence. */
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static FileChannel openSegment(Path segment) throws IOException {
+        FileChannel opened = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        opened.position(opened.size());
+        return opened;
+    }
+
+    /**
+     * Applies one record straight to the model.
+     * @return true if it was applied.
+     */
+    static boolean apply(JournalRecord record, Map<String, Course> coursesById, Function<String, User> userLookup) {
+        Course course = coursesById.get(record.getCourseId());
+        if (course == null) {
+            return false;
+        }
+        try {
+            switch (record.getType()) {
+                case ADD_ASSIGNMENT: {
+                    if (course.findAssignmentByName(record.getAssignment()) != null) {
+                        return true; // already there
+                    }
+                    Group group = findOrMakeGroup(course, record.getGroup());
+                    course.addAssignment(new Assignment(record.getAssignment(), record.getPoints(), record.getDueDate(), record.getCategory(), group));
+                    return true;
+                }
+                case REMOVE_ASSIGNMENT: {
+                    Assignment a = course.findAssignmentByName(record.getAssignment());
+                    if (a == null) {
+                        return false;
+                    }
+                    course.removeAssignment(a);
+                    return true;
+                }
+                case ENROLL_STUDENT: {
+                    Student s = findStudent(course, record.getUsername(), userLookup);
+                    if (s == null) {
+                        return false;
+                    }
+                    course.enrollStudent(s);
+                    return true;
+                }
+                case ADD_GRADE: {
+                    Student s = findStudent(course, record.getUsername(), userLookup);
+                    Assignment a = course.findAssignmentByName(record.getAssignment());
+                    if (s == null || a == null) {
+                        return false;
+                    }
+                    s.addGrade(a, new Grade(record.getPoints(), record.getFeedback()));
+                    a.markGraded();
+                    return true;
+                }
+                case SET_FINAL_GRADE: {
+                    Student s = findStudent(course, record.getUsername(), userLookup);
+                    if (s == null) {
+                        return false;
+                    }
+                    s.setFinalGradeForCourse(course, record.getLetterGrade());
+                    return true;
+                }
+                case COMPLETE_COURSE: {
+                    Student s = findStudent(course, record.getUsername(), userLookup);
+                    if (s == null) {
+                        return false;
+                    }
+                    // already finished counts as applied, the record is still right.
+                    return s.completeCourseWithGrade(course, record.getLetterGrade()) || s.hasCompletedCourse(course);
+                }
+                case REMOVE_STUDENT: {
+                    Student s = course.getEnrolledStudent(record.getUsername());
+                    if (s == null) {
+                        return false;
+                    }
+                    course.removeStudent(s);
+                    return true;
+                }
+                case EDIT_ASSIGNMENT: {
+                    Assignment a = course.findAssignmentByName(record.getAssignment());
+                    if (a == null) {
+                        a = course.findAssignmentByName(record.getNewName());
+                    }
+                    if (a == null) {
+                        return false;
+                    }
+                    if (record.getNewName() != null && !record.getNewName().equals(a.getName())) {
+                        a.setAssignmentName(record.getNewName());
+                    }
+                    if (record.getPointsOrNull() != null) {
+                        a.setPointsPossible(record.getPointsOrNull());
+                    }
+                    if (record.getGraded() != null) {
+                        a.setGraded(record.getGraded());
+                    }
+                    return true;
+                }
+                case SET_GRADING_MODE: {
+                    GradeCalculator calculator = CourseTypeAdapter.calculatorFor(record.getCalculator());
+                    if (calculator == null) {
+                        return false;
+                    }
+                    course.setGradeCalculator(calculator);
+                    return true;
+                }
+                case SET_CATEGORIES: {
+                    course.clearGradingCategories();
+                    for (GradingCategory category : record.getCategories()) {
+                        course.addGradingCategory(category);
+                    }
+                    return true;
+                }
+                case CREATE_GROUP: {
+                    if (course.findGroupByName(record.getGroup()) == null) {
+                        course.createGroup(record.getGroup());
+                    }
+                    return true;
+                }
+                case ADD_GROUP_MEMBER: {
+                    Student s = course.getEnrolledStudent(record.getUsername());
+                    Group group = course.findGroupByName(record.getGroup());
+                    if (s == null || group == null) {
+                        return false;
+                    }
+                    return group.contains(s) || course.addStudentToGroup(record.getGroup(), s);
+                }
+                case REMOVE_GROUP: {
+                    // already gone is fine, the record just gets replayed twice.
+                    course.removeGroup(record.getGroup());
+                    return true;
+                }
+                case REMOVE_GROUP_MEMBER: {
+                    Student s = course.getEnrolledStudent(record.getUsername());
+                    Group group = course.findGroupByName(record.getGroup());
+                    if (s == null || group == null) {
+                        return false;
+                    }
+                    group.removeMember(s);
+                    return true;
+                }
+                default:
+                    return false;
+            }
+        } catch (IllegalArgumentException badRecord) {
+            System.out.println("GradebookJournal problem: couldn't apply " + record + ": " + badRecord.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Finds the course's group with this name. Groups that were never registered with
+     * the course, like the demo ones, get a new Group so the name isn't lost.
+     */
+    static Group findOrMakeGroup(Course course, String groupName) {
+        if (groupName == null) {
+            return null;
+        }
+        Group group = course.findGroupByName(groupName);
+        return (group != null) ? group : new Group(groupName);
+    }
+
+    static Student findStudent(Course course, String username, Function<String, User> userLookup) {
+        Student enrolled = course.getEnrolledStudent(username);
+        if (enrolled != null) {
+            return enrolled;
+        }
+        User user = (userLookup != null) ? userLookup.apply(username) : null;
+        return (user instanceof Student) ? (Student) user : null;
+    }
+
+    /**
+     * Counts from one replay.
+     */
+    public static class ReplayResult {
+        private int applied;
+        private int skipped;
+        private int covered;
+        private long lastSeq;
+        // course id to assignments whose last record was a removal.
+        private final Map<String, Set<String>> removedAssignments;
+
+        ReplayResult(Map<String, Set<String>> removedAssignments) {
+            this.removedAssignments = removedAssignments;
+        }
+
+        public int getApplied() { return applied; }
+        public int getSkipped() { return skipped; }
+        /** Records left out because a snapshot already had them. */
+        public int getCovered() { return covered; }
+        public long getLastSeq() { return lastSeq; }
+        /** Assignment names removed by the replayed records, by course id. */
+        public Map<String, Set<String>> getRemovedAssignments() { return removedAssignments; }
+
+        @Override
+        public String toString() {
+            return "ReplayResult [applied=" + applied + ", skipped=" + skipped + ", covered=" + covered + ", lastSeq=" + lastSeq + "]";
+        }
+    }
+
+    /**
+     * One queued line and the future to complete once it's written.
+     */
+    private static class PendingWrite {
+        private final long seq;
+        private final byte[] bytes;
+        private final CompletableFuture<Long> done = new CompletableFuture<>();
+        // set on roll markers, the segment to switch to.
+        private Path rollTo;
+
+        PendingWrite(long seq, byte[] bytes) {
+            this.seq = seq;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import model.Assignment;
+import model.Course;
+import model.Grade;
+import model.Student;
+import model.Teacher;
+import model.User;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * GradebookJson makes the Gson used for account and course files.
+ * It registers the hand written streaming adapters for User, Student, Teacher,
+ * Course, Assignment and Grade, so reading and writing goes straight between the
+ * stream and the objects without reflection or a JsonObject tree.
+ * Also has the small JsonReader helpers the adapters share.
+ */
+public final class GradebookJson {
+
+    private GradebookJson() {
+    }
+
+    /**
+     * Makes a Gson with the adapters and no resolvers, students' course ids and
+     * courses' enrolled usernames are left out when reading.
+     */
+    public static Gson create(boolean prettyPrinting) {
+        return create(prettyPrinting, null, null);
+    }
+
+    /**
+     * Makes a Gson with the adapters.
+     * @param prettyPrinting true to indent the output like the account files always were.
+     * @param courseResolver finds a Course by id when reading a student, can be null.
+     * @param studentResolver finds a Student by username when reading a course, can be null.
+     * @return the Gson.
+     */
+    public static Gson create(boolean prettyPrinting, Function<String, Course> courseResolver, Function<String, Student> studentResolver) {
+        GradeTypeAdapter gradeAdapter = new GradeTypeAdapter();
+        AssignmentTypeAdapter assignmentAdapter = new AssignmentTypeAdapter(gradeAdapter);
+        CourseTypeAdapter courseAdapter = new CourseTypeAdapter(assignmentAdapter, studentResolver);
+        UserTypeAdapter userAdapter = new UserTypeAdapter(courseAdapter, courseResolver);
+
+        GsonBuilder builder = new GsonBuilder()
+            .registerTypeAdapter(Grade.class, gradeAdapter)
+            .registerTypeAdapter(Assignment.class, assignmentAdapter)
+            .registerTypeAdapter(Course.class, courseAdapter)
+            .registerTypeAdapter(User.class, userAdapter)
+            .registerTypeAdapter(Student.class, userAdapter)
+            .registerTypeAdapter(Teacher.class, userAdapter);
+        if (prettyPrinting) {
+            builder.setPrettyPrinting();
+        }
+        return builder.create();
+    }
+
+    //reader helpers for the adapters
+
+    /** Reads a string, or a JSON null as null. */
+    static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Reads a value that's either a plain string, or an object that has the string in
+     * one field, like a course id or an old style full Course object. The rest of the
+     * object is skipped.
+     * @return the string, or null if there wasn't one.
+     */
+    static String readNameOrObjectField(JsonReader in, String fieldName) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.STRING) {
+            return in.nextString();
+        }
+        if (token != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return null;
+        }
+        String found = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals(fieldName) && in.peek() == JsonToken.STRING) {
+                found = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return found;
+    }
+}
@@ -0,0 +1,431 @@
+package persistence;
+
+import model.Assignment;
+import model.Course;
+import model.CourseSnapshot;
+import model.DropPolicy;
+import model.Grade;
+import model.GradingCategory;
+import model.Group;
+import model.Student;
+import model.User;
+import model.grading.GradeCalculator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * GradebookSnapshot is a saved copy of the whole gradebook at one point in the journal.
+ * Each course keeps its assignments, categories, groups, roster, grades and final grades,
+ * all by name or username like JournalRecord, so Gson can write it without following
+ * the Student to Course links around in circles.
+ * Every course also remembers the journal sequence number it was captured at. Startup
+ * restores the snapshot and then only replays journal records after that number, which
+ * keeps startup from getting slower the longer the term goes.
+ */
+public class GradebookSnapshot {
+    /** Bumped whenever the layout of the snapshot file changes. */
+    public static final int FORMAT_VERSION = 1;
+
+    private int formatVersion = FORMAT_VERSION;
+    // last journal sequence number when this snapshot was taken.
+    private long lastSeq;
+    private long createdAtMillis;
+    private List<CourseState> courses = new ArrayList<>();
+
+    // Gson uses this one when reading snapshots back.
+    private GradebookSnapshot() {
+    }
+
+    /**
+     * Copies the current state of some courses. Has to run on the thread that changes
+     * the model, the copy is plain data after that so it can be written anywhere.
+     * @param coursesToCapture the courses to save.
+     * @param lastSeq the journal's last sequence number, everything up to it is in these courses.
+     * @param removedByCourse course id to names of assignments removed through the journal,
+     *        restore removes these again. Can be empty.
+     * @param older the previous snapshot, courses in it that aren't being captured now are kept. Can be null.
+     * @return the new snapshot.
+     */
+    public static GradebookSnapshot capture(Iterable<Course> coursesToCapture, long lastSeq,
+                                            Map<String, Set<String>> removedByCourse, GradebookSnapshot older) {
+        GradebookSnapshot snapshot = new GradebookSnapshot();
+        snapshot.lastSeq = lastSeq;
+        snapshot.createdAtMillis = System.currentTimeMillis();
+        Set<String> captured = new HashSet<>();
+        for (Course course : coursesToCapture) {
+            if (course != null && captured.add(course.getCourseId())) {
+                Set<String> removed = removedByCourse.get(course.getCourseId());
+                snapshot.courses.add(CourseState.capture(course, lastSeq, removed));
+            }
+        }
+        if (older != null) {
+            for (CourseState state : older.courses) {
+                if (!captured.contains(state.courseId)) {
+                    snapshot.courses.add(state);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    public int getFormatVersion() {
+        return formatVersion;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    /**
+     * Gets the journal sequence number each course was captured at.
+     * Journal records for a course at or before its number are already in here.
+     * @return map of course id to sequence number.
+     */
+    public Map<String, Long> getCoveredUpTo() {
+        Map<String, Long> coveredUpTo = new HashMap<>();
+        for (CourseState state : courses) {
+            coveredUpTo.put(state.courseId, state.capturedAtSeq);
+        }
+        return coveredUpTo;
+    }
+
+    /**
+     * Gets the names of assignments removed from each course, so they stay removed.
+     * @return map of course id to a new set of assignment names.
+     */
+    public Map<String, Set<String>> getRemovedAssignments() {
+        Map<String, Set<String>> removedByCourse = new HashMap<>();
+        for (CourseState state : courses) {
+            if (!state.removedAssignments.isEmpty()) {
+                removedByCourse.put(state.courseId, new HashSet<>(state.removedAssignments));
+            }
+        }
+        return removedByCourse;
+    }
+
+    /**
+     * Puts the saved state back into the matching courses.
+     * Courses are matched by id, ones that aren't in the map are left alone.
+     * The snapshot wins over whatever the course was set up with at startup:
+     * categories are swapped for the saved ones if they differ, assignments removed
+     * through the journal get removed again, missing ones are added and ones already
+     * there get their saved points, due date, description and graded flag back.
+     * Saved students are enrolled and anyone not in the saved roster is taken out,
+     * then grades and final grades are set again.
+     * @param coursesById the courses to restore into.
+     * @param userLookup finds a student by username if they aren't enrolled yet.
+     * @return how many courses were restored.
+     */
+    public int restoreInto(Map<String, Course> coursesById, Function<String, User> userLookup) {
+        int restored = 0;
+        for (CourseState state : courses) {
+            Course course = coursesById.get(state.courseId);
+            if (course != null) {
+                state.restoreInto(course, userLookup);
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    @Override
+    public String toString() {
+        return "GradebookSnapshot [lastSeq=" + lastSeq + ", courses=" + courses.size() + "]";
+    }
+
+    //saved pieces
+
+    /**
+     * One course's saved state.
+     */
+    static class CourseState {
+        private String courseId;
+        private long capturedAtSeq;
+        // POINTS, CATEGORY or null if none set, missing in snapshots from before the grading mode was journaled.
+        private String calculator;
+        private List<String> groups = new ArrayList<>();
+        private Map<String, List<String>> groupMembers = new LinkedHashMap<>();
+        private List<CategoryState> categories = new ArrayList<>();
+        private List<AssignmentState> assignments = new ArrayList<>();
+        private List<String> removedAssignments = new ArrayList<>();
+        private List<String> enrolled = new ArrayList<>();
+        private Map<String, String> finalGrades = new LinkedHashMap<>();
+        // enrolled students who finished the course, missing in snapshots from before closing courses.
+        private List<String> completed = new ArrayList<>();
+
+        static CourseState capture(Course course, long capturedAtSeq, Set<String> removed) {
+            CourseState state = new CourseState();
+            state.courseId = course.getCourseId();
+            state.capturedAtSeq = capturedAtSeq;
+            state.calculator = CourseTypeAdapter.calculatorMode(course.getGradeCalculator());
+            if (removed != null) {
+                state.removedAssignments.addAll(removed);
+            }
+            for (Group group : course.getGroups()) {
+                state.groups.add(group.getGroupName());
+                List<String> members = new ArrayList<>();
+                for (Student member : group.getMembers()) {
+                    members.add(member.getUsername());
+                }
+                state.groupMembers.put(group.getGroupName(), members);
+            }
+            // one course snapshot, so the roster, assignments and grades all match.
+            CourseSnapshot snapshot = course.snapshot();
+            for (GradingCategory category : snapshot.getCategories().values()) {
+                state.categories.add(new CategoryState(category));
+            }
+            for (Student student : snapshot.getStudents()) {
+                state.enrolled.add(student.getUsername());
+                String finalGrade = student.getFinalGradeForCourse(course);
+                if (finalGrade != null) {
+                    state.finalGrades.put(student.getUsername(), finalGrade);
+                }
+                if (student.hasCompletedCourse(course)) {
+                    state.completed.add(student.getUsername());
+                }
+            }
+            for (Assignment a : snapshot.getAssignments()) {
+                state.assignments.add(AssignmentState.capture(a, snapshot));
+            }
+            return state;
+        }
+
+        void restoreInto(Course course, Function<String, User> userLookup) {
+            GradeCalculator savedCalculator = CourseTypeAdapter.calculatorFor(calculator);
+            if (savedCalculator != null) {
+                course.setGradeCalculator(savedCalculator);
+            }
+            for (String groupName : groups) {
+                if (course.findGroupByName(groupName) == null) {
+                    try {
+                        course.createGroup(groupName);
+                    } catch (IllegalArgumentException sameNameDifferentCase) {
+                        System.out.println("GradebookSnapshot problem: group " + groupName + " clashes with an existing group");
+                    }
+                }
+            }
+            if (!sameCategories(course.getGradingCategories())) {
+                // the teacher set them up again since startup's copy, the saved ones win.
+                course.clearGradingCategories();
+                for (CategoryState category : categories) {
+                    course.addGradingCategory(category.toCategory());
+                }
+            }
+
+            // take out the ones that were removed, keeping the objects that are already there.
+            for (String removedName : removedAssignments) {
+                Assignment existing = course.findAssignmentByName(removedName);
+                if (existing != null) {
+                    course.removeAssignment(existing);
+                }
+            }
+            for (AssignmentState saved : assignments) {
+                Assignment existing = course.findAssignmentByName(saved.name);
+                if (existing == null) {
+                    course.addAssignment(saved.toAssignment(course));
+                } else {
+                    // edited after startup's copy was made, put the saved details back.
+                    saved.applyTo(existing, course);
+                }
+            }
+
+            for (String username : enrolled) {
+                Student student = GradebookJournal.findStudent(course, username, userLookup);
+                if (student != null) {
+                    course.enrollStudent(student);
+                }
+            }
+            // students who were removed before the snapshot was taken.
+            Set<String> savedRoster = new HashSet<>(enrolled);
+            for (Student student : course.getEnrolledStudents()) {
+                if (!savedRoster.contains(student.getUsername())) {
+                    course.removeStudent(student);
+                }
+            }
+            for (Map.Entry<String, List<String>> entry : groupMembers.entrySet()) {
+                for (String username : entry.getValue()) {
+                    Student member = course.getEnrolledStudent(username);
+                    Group group = course.findGroupByName(entry.getKey());
+                    if (member != null && group != null && !group.contains(member)) {
+                        group.addMember(member);
+                    }
+                }
+            }
+
+            for (AssignmentState saved : assignments) {
+                Assignment a = course.findAssignmentByName(saved.name);
+                for (CellState cell : saved.grades) {
+                    Student student = course.getEnrolledStudent(cell.username);
+                    if (student != null) {
+                        student.addGrade(a, new Grade(cell.points, cell.feedback));
+                    } else {
+                        a.addGrade(cell.username, new Grade(cell.points, cell.feedback));
+                    }
+                }
+                a.setGraded(saved.graded);
+            }
+
+            for (Map.Entry<String, String> entry : finalGrades.entrySet()) {
+                Student student = course.getEnrolledStudent(entry.getKey());
+                if (student != null) {
+                    try {
+                        student.setFinalGradeForCourse(course, entry.getValue());
+                    } catch (IllegalArgumentException badGrade) {
+                        System.out.println("GradebookSnapshot problem: bad final grade " + entry.getValue() + " for " + entry.getKey());
+                    }
+                }
+            }
+            if (completed != null) {
+                for (String username : completed) {
+                    Student student = course.getEnrolledStudent(username);
+                    if (student != null) {
+                        student.completeCourseWithGrade(course, finalGrades.get(username));
+                    }
+                }
+            }
+        }
+
+        // checks if a course's categories are the same as the saved ones.
+        private boolean sameCategories(Map<String, GradingCategory> current) {
+            if (current.size() != categories.size()) {
+                return false;
+            }
+            for (CategoryState saved : categories) {
+                GradingCategory category = current.get(saved.name);
+                boolean same = (category != null) && category.getWeight() == saved.weight
+                    && category.getNumDropped() == saved.numDropped
+                    && category.getDropPolicy() == saved.toCategory().getDropPolicy();
+                if (!same) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * One saved grading category.
+     */
+    static class CategoryState {
+        private String name;
+        private double weight;
+        private int numDropped;
+        // null in snapshots from before drop policies, the constructor treats that as LOWEST_POINTS.
+        private DropPolicy dropPolicy;
+
+        CategoryState(GradingCategory category) {
+            this.name = category.getName();
+            this.weight = category.getWeight();
+            this.numDropped = category.getNumDropped();
+            this.dropPolicy = category.getDropPolicy();
+        }
+
+        GradingCategory toCategory() {
+            return new GradingCategory(name, weight, numDropped, dropPolicy);
+        }
+    }
+
+    /**
+     * One saved assignment and its grades.
+     */
+    static class AssignmentState {
+        private String name;
+        private double pointsWorth;
+        private String dueDate;
+        private String category;
+        private String group;
+        private String description;
+        private boolean graded;
+        private List<CellState> grades = new ArrayList<>();
+
+        static AssignmentState capture(Assignment a, CourseSnapshot snapshot) {
+            AssignmentState state = new AssignmentState();
+            state.name = a.getName();
+            state.pointsWorth = a.getPointsWorth();
+            state.dueDate = a.getDueDate();
+            state.category = a.getCategoryName();
+            state.group = (a.getGroup() != null) ? a.getGroup().getGroupName() : null;
+            state.description = a.getDescription();
+            state.graded = a.isGraded();
+            int col = snapshot.columnOf(a);
+            if (col >= 0) {
+                // read the cells out of the snapshot's copy of the column.
+                for (int row = 0; row < snapshot.getRowCount(); row++) {
+                    double points = snapshot.pointsAt(row, col);
+                    if (!Double.isNaN(points)) {
+                        state.grades.add(new CellState(snapshot.getUsername(row), points, snapshot.feedbackAt(row, col)));
+                    }
+                }
+            } else {
+                for (Map.Entry<String, Grade> entry : a.getAllGrades().entrySet()) {
+                    Grade g = entry.getValue();
+                    state.grades.add(new CellState(entry.getKey(), g.getPointsEarned(), g.getFeedback()));
+                }
+            }
+            return state;
+        }
+
+        /**
+         * Puts the saved details back on an assignment that's already in the course.
+         * Only what's different gets set, so nothing fires for an assignment that didn't change.
+         */
+        void applyTo(Assignment a, Course course) {
+            if (a.getPointsWorth() != pointsWorth) {
+                try {
+                    a.setPointsPossible(pointsWorth);
+                } catch (IllegalArgumentException badPoints) {
+                    System.out.println("GradebookSnapshot problem: bad points " + pointsWorth + " for " + name);
+                }
+            }
+            if (!Objects.equals(a.getDueDate(), dueDate)) {
+                a.setDueDate(dueDate);
+            }
+            if (!Objects.equals(a.getCategoryName(), category)) {
+                a.setCategoryName(category);
+            }
+            String currentGroup = (a.getGroup() != null) ? a.getGroup().getGroupName() : null;
+            if (!Objects.equals(currentGroup, group)) {
+                a.setGroupName(GradebookJournal.findOrMakeGroup(course, group));
+            }
+            if (!Objects.equals(a.getDescription(), description)) {
+                a.setDescription(description);
+            }
+            a.setGraded(graded);
+        }
+
+        Assignment toAssignment(Course course) {
+            Assignment a = new Assignment(name, pointsWorth, dueDate, category, GradebookJournal.findOrMakeGroup(course, group));
+            if (description != null) {
+                a.setDescription(description);
+            }
+            return a;
+        }
+    }
+
+    /**
+     * One saved grade cell.
+     */
+    static class CellState {
+        private String username;
+        private double points;
+        private String feedback;
+
+        CellState(String username, double points, String feedback) {
+            this.username = username;
+            this.points = points;
+            this.feedback = feedback;
+        }
+    }
+}
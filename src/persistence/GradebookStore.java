@@ -0,0 +1,315 @@
+package persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import model.Course;
+import model.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * GradebookStore puts the journal and snapshots together.
+ * Changes get logged to the GradebookJournal like before. Every so many records a
+ * snapshot of the courses is taken, the journal starts a new segment, and a background
+ * thread writes the snapshot to a versioned file and compacts the old segments.
+ * Loading restores the newest snapshot and then only replays what came after it,
+ * so startup stays about the same no matter how long the term has been going.
+ *
+ * Files live under one data folder, journal segments in journal/ and snapshots in
+ * snapshots/ named snapshot-(last sequence number).json.
+ */
+public class GradebookStore implements Closeable {
+    public static final String DEFAULT_DIRECTORY = "data";
+    // take a snapshot after this many logged records.
+    public static final int DEFAULT_SNAPSHOT_EVERY = 2000;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".json";
+    // newest snapshots kept on disk, the one before the newest is a backup.
+    private static final int SNAPSHOTS_TO_KEEP = 2;
+
+    private final GradebookJournal journal;
+    private final Path snapshotDirectory;
+    private final int snapshotEvery;
+    private final Gson gson = new Gson();
+    private final ExecutorService snapshotWriter;
+
+    // everything below is guarded by this.
+    private GradebookSnapshot latestSnapshot;
+    private final Map<String, Set<String>> removedAssignments = new HashMap<>();
+    private int recordsSinceSnapshot = 0;
+    private boolean snapshotInProgress = false;
+    // the snapshot being written, close waits for it. Null if none.
+    private CompletableFuture<GradebookSnapshot> pendingSnapshot;
+
+    /**
+     * Opens the store in a data folder with the default snapshot interval.
+     * @throws IOException if the journal can't be opened.
+     */
+    public GradebookStore(Path dataDirectory) throws IOException {
+        this(dataDirectory, DEFAULT_SNAPSHOT_EVERY);
+    }
+
+    /**
+     * Opens the store in a data folder.
+     * @param dataDirectory folder for the journal and snapshots.
+     * @param snapshotEvery how many records to log between snapshots.
+     * @throws IOException if the journal can't be opened.
+     */
+    public GradebookStore(Path dataDirectory, int snapshotEvery) throws IOException {
+        if (snapshotEvery < 1) {
+            throw new IllegalArgumentException("snapshotEvery must be at least 1");
+        }
+        this.snapshotEvery = snapshotEvery;
+        this.snapshotDirectory = dataDirectory.resolve("snapshots");
+        Files.createDirectories(snapshotDirectory);
+        this.journal = new GradebookJournal(dataDirectory.resolve("journal"));
+        this.latestSnapshot = loadNewestSnapshot();
+        if (latestSnapshot != null) {
+            removedAssignments.putAll(latestSnapshot.getRemovedAssignments());
+        }
+        this.snapshotWriter = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "gradebook-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Gets the journal this store logs to. */
+    public GradebookJournal getJournal() {
+        return journal;
+    }
+
+    /** Gets the newest snapshot, on disk or still being written. Null if none yet. */
+    public synchronized GradebookSnapshot getLatestSnapshot() {
+        return latestSnapshot;
+    }
+
+    /**
+     * Logs one change to the journal.
+     * @return future done once the record is on disk.
+     */
+    public CompletableFuture<Long> log(JournalRecord record) {
+        synchronized (this) {
+            recordsSinceSnapshot++;
+            GradebookJournal.trackRemoval(removedAssignments, record);
+        }
+        return journal.append(record);
+    }
+
+    /**
+     * Logs several changes to the journal as one write, see GradebookJournal.appendAll.
+     * @return future done once every record is on disk.
+     */
+    public CompletableFuture<Long> logAll(List<JournalRecord> records) {
+        synchronized (this) {
+            recordsSinceSnapshot += records.size();
+            for (JournalRecord record : records) {
+                GradebookJournal.trackRemoval(removedAssignments, record);
+            }
+        }
+        return journal.appendAll(records);
+    }
+
+    /**
+     * Loads saved state into the courses, the newest snapshot first and then the
+     * journal records that came after it.
+     * @param coursesById the courses to load into, by course id.
+     * @param userLookup finds a user by username, for students not enrolled yet.
+     * @return what the journal replay did.
+     */
+    public GradebookJournal.ReplayResult load(Map<String, Course> coursesById, Function<String, User> userLookup) {
+        GradebookSnapshot base;
+        Map<String, Set<String>> removed = new HashMap<>();
+        synchronized (this) {
+            base = latestSnapshot;
+        }
+        Map<String, Long> coveredUpTo = Collections.emptyMap();
+        if (base != null) {
+            int restored = base.restoreInto(coursesById, userLookup);
+            System.out.println("GradebookStore restored " + restored + " courses from " + base);
+            coveredUpTo = base.getCoveredUpTo();
+            removed.putAll(base.getRemovedAssignments());
+        }
+        GradebookJournal.ReplayResult result = journal.replay(coursesById, userLookup, coveredUpTo, removed);
+        synchronized (this) {
+            // the replay saw every removal the journal has, so it's the full list now.
+            removedAssignments.putAll(result.getRemovedAssignments());
+        }
+        return result;
+    }
+
+    /**
+     * Takes a snapshot if enough records were logged since the last one.
+     * Call on the thread that changes the courses, right after logging.
+     * @param courses every course to save.
+     * @return true if a snapshot was started.
+     */
+    public boolean snapshotIfDue(Iterable<Course> courses) {
+        synchronized (this) {
+            if (recordsSinceSnapshot < snapshotEvery || snapshotInProgress) {
+                return false;
+            }
+        }
+        snapshotNow(courses);
+        return true;
+    }
+
+    /**
+     * Takes a snapshot now. The courses are copied on the calling thread, which has
+     * to be the thread that changes them, and the file gets written in the background.
+     * After it's safely on disk the covered journal segments are compacted and old
+     * snapshot files deleted.
+     * @param courses every course to save.
+     * @return future with the snapshot, done once it's written and compaction finished.
+     */
+    public CompletableFuture<GradebookSnapshot> snapshotNow(Iterable<Course> courses) {
+        GradebookSnapshot snapshot;
+        synchronized (this) {
+            long lastSeq = journal.getLastSeq();
+            snapshot = GradebookSnapshot.capture(courses, lastSeq, removedAssignments, latestSnapshot);
+            latestSnapshot = snapshot;
+            recordsSinceSnapshot = 0;
+            snapshotInProgress = true;
+        }
+        // new segment first, so the ones before it only hold records the snapshot has.
+        CompletableFuture<GradebookSnapshot> writing = journal.rollSegment()
+            .thenApplyAsync(rolledAt -> {
+                writeSnapshot(snapshot);
+                int deleted = journal.compact(snapshot.getLastSeq(), snapshot.getCoveredUpTo());
+                pruneOldSnapshots();
+                System.out.println("GradebookStore wrote " + snapshot + ", deleted " + deleted + " journal segments");
+                return snapshot;
+            }, snapshotWriter)
+            .whenComplete((written, error) -> {
+                synchronized (this) {
+                    snapshotInProgress = false;
+                }
+                if (error != null) {
+                    System.out.println("GradebookStore problem: snapshot failed: " + error.getMessage());
+                }
+            });
+        synchronized (this) {
+            pendingSnapshot = writing;
+        }
+        return writing;
+    }
+
+    /**
+     * Waits for a snapshot being written, then closes the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        CompletableFuture<GradebookSnapshot> writing;
+        synchronized (this) {
+            writing = pendingSnapshot;
+        }
+        if (writing != null) {
+            // the write only gets handed to snapshotWriter once the journal has rolled,
+            // so shutting it down first could turn the snapshot away.
+            try {
+                writing.join();
+            } catch (RuntimeException failed) {
+                // already printed when it failed.
+            }
+        }
+        snapshotWriter.shutdown();
+        try {
+            snapshotWriter.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    //snapshot files
+
+    /**
+     * Writes a snapshot to a temp file, syncs it, then renames it into place so a
+     * crash never leaves a half written snapshot with the real name.
+     */
+    private void writeSnapshot(GradebookSnapshot snapshot) {
+        Path target = snapshotDirectory.resolve(SNAPSHOT_PREFIX + String.format("%020d", snapshot.getLastSeq()) + SNAPSHOT_SUFFIX);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(snapshot, writer);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("couldn't write snapshot " + target + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Finds the newest snapshot that reads ok and has the current format version.
+     * @return the snapshot, or null if there isn't a usable one.
+     */
+    private GradebookSnapshot loadNewestSnapshot() {
+        List<Path> files = listSnapshots();
+        for (int i = files.size() - 1; i >= 0; i--) {
+            Path file = files.get(i);
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                GradebookSnapshot snapshot = gson.fromJson(reader, GradebookSnapshot.class);
+                if (snapshot != null && snapshot.getFormatVersion() == GradebookSnapshot.FORMAT_VERSION) {
+                    System.out.println("GradebookStore found " + snapshot + " in " + file.getFileName());
+                    return snapshot;
+                }
+                System.out.println("GradebookStore problem: " + file.getFileName() + " has a different format version, skipping");
+            } catch (IOException | JsonParseException e) {
+                System.out.println("GradebookStore problem: couldn't read " + file.getFileName() + ", trying an older one");
+            }
+        }
+        return null;
+    }
+
+    private void pruneOldSnapshots() {
+        List<Path> files = listSnapshots();
+        for (int i = 0; i < files.size() - SNAPSHOTS_TO_KEEP; i++) {
+            try {
+                Files.deleteIfExists(files.get(i));
+            } catch (IOException e) {
+                System.out.println("GradebookStore problem: couldn't delete old snapshot " + files.get(i).getFileName());
+            }
+        }
+    }
+
+    /** Lists snapshot files oldest first, the zero padded names sort by sequence. */
+    private List<Path> listSnapshots() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> found = Files.newDirectoryStream(snapshotDirectory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : found) {
+                files.add(file);
+            }
+        } catch (IOException e) {
+            System.out.println("GradebookStore problem: couldn't list " + snapshotDirectory);
+        }
+        Collections.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,238 @@
+package persistence;
+
+import model.Assignment;
+import model.Course;
+import model.Grade;
+import model.GradingCategory;
+import model.Student;
+import model.grading.GradeCalculator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JournalRecord is one line of the gradebook journal.
+ * Each record is one mutation, like a grade being entered or a student being enrolled.
+ * There's a type for every change the controllers make to a course: assignments added,
+ * edited (name, points, graded) and removed, students enrolled and removed, grades,
+ * final grades, closing the course, the grading mode, the categories, and groups
+ * and their members. A change made straight on the model without a controller isn't logged.
+ * It only keeps ids and plain values, course id, username, assignment name, so it can be
+ * written as one compact JSON line and applied again when the journal is replayed.
+ * Fields that don't apply to a record type are left null and Gson skips them.
+ */
+public class JournalRecord {
+
+    /**
+     * The kinds of mutation the journal knows about.
+     */
+    public enum Type {
+        ADD_ASSIGNMENT,
+        REMOVE_ASSIGNMENT,
+        ENROLL_STUDENT,
+        ADD_GRADE,
+        SET_FINAL_GRADE,
+        COMPLETE_COURSE,
+        REMOVE_STUDENT,
+        EDIT_ASSIGNMENT,
+        SET_GRADING_MODE,
+        SET_CATEGORIES,
+        CREATE_GROUP,
+        ADD_GROUP_MEMBER,
+        REMOVE_GROUP,
+        REMOVE_GROUP_MEMBER
+    }
+
+    // sequence number, set by the journal when the record is appended.
+    private long seq;
+    private Type type;
+    private String courseId;
+    private String username;
+    private String assignment;
+    private Double points;
+    private String feedback;
+    private String dueDate;
+    private String category;
+    private String group;
+    private String letterGrade;
+    // EDIT_ASSIGNMENT, the name after the edit, assignment is the name before it.
+    private String newName;
+    private Boolean graded;
+    // SET_GRADING_MODE, POINTS or CATEGORY.
+    private String calculator;
+    // SET_CATEGORIES, the whole new list.
+    private List<GradebookSnapshot.CategoryState> categories;
+
+    // Gson uses this one when reading records back.
+    private JournalRecord() {
+    }
+
+    private JournalRecord(Type type, Course course) {
+        this.type = type;
+        this.courseId = course.getCourseId();
+    }
+
+    /** Record for Course.addAssignment. */
+    public static JournalRecord addAssignment(Course course, Assignment a) {
+        JournalRecord r = new JournalRecord(Type.ADD_ASSIGNMENT, course);
+        r.assignment = a.getName();
+        r.points = a.getPointsWorth();
+        r.dueDate = a.getDueDate();
+        r.category = a.getCategoryName();
+        r.group = (a.getGroup() != null) ? a.getGroup().getGroupName() : null;
+        return r;
+    }
+
+    /** Record for Course.removeAssignment. */
+    public static JournalRecord removeAssignment(Course course, Assignment a) {
+        JournalRecord r = new JournalRecord(Type.REMOVE_ASSIGNMENT, course);
+        r.assignment = a.getName();
+        return r;
+    }
+
+    /** Record for Course.enrollStudent. */
+    public static JournalRecord enrollStudent(Course course, Student s) {
+        JournalRecord r = new JournalRecord(Type.ENROLL_STUDENT, course);
+        r.username = s.getUsername();
+        return r;
+    }
+
+    /** Record for a grade entered by a teacher. */
+    public static JournalRecord addGrade(Course course, Student s, Assignment a, Grade g) {
+        JournalRecord r = new JournalRecord(Type.ADD_GRADE, course);
+        r.username = s.getUsername();
+        r.assignment = a.getName();
+        r.points = g.getPointsEarned();
+        r.feedback = g.getFeedback();
+        return r;
+    }
+
+    /** Record for Student.setFinalGradeForCourse. */
+    public static JournalRecord setFinalGrade(Course course, Student s, String letterGrade) {
+        JournalRecord r = new JournalRecord(Type.SET_FINAL_GRADE, course);
+        r.username = s.getUsername();
+        r.letterGrade = letterGrade;
+        return r;
+    }
+
+    /** Record for one student in Course.closeCourse, the course moved to completed with its final grade. */
+    public static JournalRecord completeCourse(Course course, Student s, String letterGrade) {
+        JournalRecord r = new JournalRecord(Type.COMPLETE_COURSE, course);
+        r.username = s.getUsername();
+        r.letterGrade = letterGrade;
+        return r;
+    }
+
+    /** Record for Course.removeStudent. */
+    public static JournalRecord removeStudent(Course course, Student s) {
+        JournalRecord r = new JournalRecord(Type.REMOVE_STUDENT, course);
+        r.username = s.getUsername();
+        return r;
+    }
+
+    /**
+     * Record for an assignment edit, with the assignment's name, points and graded flag after it.
+     * @param nameBefore the assignment's name before the edit, it's how replay finds it.
+     */
+    public static JournalRecord editAssignment(Course course, String nameBefore, Assignment a) {
+        JournalRecord r = new JournalRecord(Type.EDIT_ASSIGNMENT, course);
+        r.assignment = nameBefore;
+        r.newName = a.getName();
+        r.points = a.getPointsWorth();
+        r.graded = a.isGraded();
+        return r;
+    }
+
+    /**
+     * Record for Course.setGradeCalculator.
+     * @return the record, or null for a calculator that isn't points or category based.
+     */
+    public static JournalRecord setGradingMode(Course course, GradeCalculator calculator) {
+        String mode = CourseTypeAdapter.calculatorMode(calculator);
+        if (mode == null) {
+            return null;
+        }
+        JournalRecord r = new JournalRecord(Type.SET_GRADING_MODE, course);
+        r.calculator = mode;
+        return r;
+    }
+
+    /** Record for replacing all of a course's grading categories. */
+    public static JournalRecord setCategories(Course course, List<GradingCategory> newCategories) {
+        JournalRecord r = new JournalRecord(Type.SET_CATEGORIES, course);
+        r.categories = new ArrayList<>();
+        for (GradingCategory category : newCategories) {
+            r.categories.add(new GradebookSnapshot.CategoryState(category));
+        }
+        return r;
+    }
+
+    /** Record for Course.createGroup. */
+    public static JournalRecord createGroup(Course course, String groupName) {
+        JournalRecord r = new JournalRecord(Type.CREATE_GROUP, course);
+        r.group = groupName;
+        return r;
+    }
+
+    /** Record for a student being put in one of the course's groups. */
+    public static JournalRecord addGroupMember(Course course, String groupName, Student s) {
+        JournalRecord r = new JournalRecord(Type.ADD_GROUP_MEMBER, course);
+        r.group = groupName;
+        r.username = s.getUsername();
+        return r;
+    }
+
+    /** Record for Course.removeGroup. */
+    public static JournalRecord removeGroup(Course course, String groupName) {
+        JournalRecord r = new JournalRecord(Type.REMOVE_GROUP, course);
+        r.group = groupName;
+        return r;
+    }
+
+    /** Record for a student being taken out of one of the course's groups. */
+    public static JournalRecord removeGroupMember(Course course, String groupName, Student s) {
+        JournalRecord r = new JournalRecord(Type.REMOVE_GROUP_MEMBER, course);
+        r.group = groupName;
+        r.username = s.getUsername();
+        return r;
+    }
+
+    // getters
+    public long getSeq() { return seq; }
+    public Type getType() { return type; }
+    public String getCourseId() { return courseId; }
+    public String getUsername() { return username; }
+    public String getAssignment() { return assignment; }
+    public double getPoints() { return (points != null) ? points : 0.0; }
+    public String getFeedback() { return feedback; }
+    public String getDueDate() { return dueDate; }
+    public String getCategory() { return category; }
+    public String getGroup() { return group; }
+    public String getLetterGrade() { return letterGrade; }
+    public String getNewName() { return newName; }
+    /** The graded flag after an edit, null if the record doesn't have one. */
+    public Boolean getGraded() { return graded; }
+    /** The points, null if the record doesn't have any. */
+    public Double getPointsOrNull() { return points; }
+    public String getCalculator() { return calculator; }
+
+    /** The categories of a SET_CATEGORIES record as new objects, empty for other records. */
+    public List<GradingCategory> getCategories() {
+        List<GradingCategory> result = new ArrayList<>();
+        if (categories != null) {
+            for (GradebookSnapshot.CategoryState category : categories) {
+                result.add(category.toCategory());
+            }
+        }
+        return result;
+    }
+
+    void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalRecord [seq=" + seq + ", type=" + type + ", course=" + courseId + "]";
+    }
+}
@@ -0,0 +1,49 @@
+package persistence;
+
+import model.User;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * UserRepository is where the controllers go to find and save user accounts.
+ * UserController and StudentImporter used to open and parse accounts/username.json
+ * on every single lookup. An implementation of this keeps an index in memory instead,
+ * so looking a username up is just a map get.
+ */
+public interface UserRepository {
+
+    /**
+     * Finds one user by username.
+     * @param username The username to look for.
+     * @return the Student or Teacher for that username, or null if there isn't one.
+     */
+    User findByUsername(String username);
+
+    /**
+     * Finds a whole batch of users at once, like every username in an import file.
+     * Usernames that don't exist are just left out of the result.
+     * @param usernames The usernames to look for.
+     * @return Map of username to User for the ones that were found.
+     */
+    Map<String, User> findUsersByUsernames(Collection<String> usernames);
+
+    /**
+     * Checks if a username is already taken.
+     * @param username The username to check.
+     * @return true if an account exists for it.
+     */
+    boolean exists(String username);
+
+    /**
+     * Saves a user and puts it in the index.
+     * @param user The user to save.
+     * @return true if it was saved, false if writing failed.
+     */
+    boolean save(User user);
+
+    /**
+     * Throws away the index and loads every account again.
+     */
+    void reload();
+}
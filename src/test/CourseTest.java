@@ -680,4 +680,132 @@ public class CourseTest {
         assertEquals("Equal objects must have same hashCode", coursePoints.hashCode(), sameId.hashCode());
     }
 
-}
\ No newline at end of file
+    /** Test a batch holds back per item events and fires one summary of each kind */
+    @Test
+    public void testBatchFiresSummaryEvents() {
+        System.out.println("Testing beginBatch");
+        coursePoints.addAssignment(assignment1);
+        listener.reset();
+
+        coursePoints.runInBatch(() -> {
+            coursePoints.enrollStudent(student1);
+            coursePoints.enrollStudent(student2);
+            coursePoints.runInBatch(() -> { // nested batch
+                student1.addGrade(assignment1, new Grade(90.0, ""));
+                student2.addGrade(assignment1, new Grade(80.0, ""));
+                student1.addGrade(assignment1, new Grade(95.0, ""));
+            });
+            assertTrue("Outer batch still open", coursePoints.isInBatch());
+            assertEquals("No events while the batch is open", 0, listener.eventCount);
+        });
+
+        assertFalse("Batch should be closed", coursePoints.isInBatch());
+        assertEquals("One studentsEnrolled and one gradesChanged", 2, listener.eventCount);
+        assertEquals("gradesChanged comes last", "gradesChanged", listener.lastEvent.getPropertyName());
+        assertEquals("Each username once, in order", List.of("asmith", "bjones"), listener.lastEvent.getNewValue());
+        assertEquals("Grades still stored", 95.0, student1.getGradeForAssignment(assignment1).getPointsEarned(), 0.001);
+
+        // outside a batch the single events come back
+        listener.reset();
+        coursePoints.enrollStudent(student3);
+        assertEquals("Single enroll event", "studentEnrolled", listener.lastEvent.getPropertyName());
+    }
+
+    /** Test the assignment lookups follow setter changes and come back in course order */
+    @Test
+    public void testAssignmentIndexFollowsSetters() {
+        System.out.println("Testing assignment index updates");
+        coursePoints.addAssignment(assignment1); // due 2023-10-10
+        coursePoints.addAssignment(assignment2); // due 2023-09-15
+        coursePoints.addAssignment(assignment3); // due 2023-09-20
+
+        assertEquals("Earliest due first", List.of(assignment2, assignment3, assignment1), coursePoints.getAssignmentsInDueDateOrder());
+        assertEquals("September only", List.of(assignment2, assignment3), coursePoints.getAssignmentsDueBetween("2023-09-01", "2023-09-30"));
+
+        // moving Quiz 1 to Homework keeps it ahead of Array Homework, like the old loop
+        assignment2.setCategoryName("homework");
+        assertEquals("Both homework in course order", List.of(assignment2, assignment3), coursePoints.getAssignmentsByCategory("HOMEWORK"));
+        assertTrue("Quizzes bucket should be empty now", coursePoints.getAssignmentsByCategory("Quizzes").isEmpty());
+
+        assertTrue("All start graded", coursePoints.getUngradedAssignments().isEmpty());
+        assignment2.setGraded(false);
+        assertEquals("Only Quiz 1 ungraded", List.of(assignment2), coursePoints.getUngradedAssignments());
+
+        assignment1.setAssignmentName("Tree Project");
+        assertSame("Found by its new name", assignment1, coursePoints.findAssignmentByName("Tree Project"));
+        assertNull("Old name is gone", coursePoints.findAssignmentByName("LinkedList Project"));
+
+        coursePoints.removeAssignment(assignment1);
+        assertTrue("Removed assignment leaves every index", coursePoints.getGroupAssignments("module2").isEmpty());
+    }
+
+    /** Test closing the course gives everybody their final grade with one event */
+    @Test
+    public void testCloseCourseCompletesEveryoneWithOneEvent() {
+        System.out.println("Testing closing a course");
+        coursePoints.addAssignment(assignment1);
+        coursePoints.enrollStudent(student1);
+        coursePoints.enrollStudent(student2);
+        student1.addGrade(assignment1, new Grade(95.0, ""));
+        student2.addGrade(assignment1, new Grade(72.0, ""));
+
+        ClassAverages finals;
+        try (ClassAverageRecomputer recomputer = new ClassAverageRecomputer(2, 1)) {
+            finals = recomputer.recompute(coursePoints);
+        }
+        listener.reset();
+        TestPropertyChangeListener studentListener = new TestPropertyChangeListener();
+        student1.addPropertyChangeListener(studentListener);
+        Map<Student, GradeScale> completed = coursePoints.closeCourse(finals);
+
+        assertEquals("Both students completed", 2, completed.size());
+        assertEquals("One event for the whole class", 1, listener.eventCount);
+        assertEquals("One event for the student's own screen", 1, studentListener.eventCount);
+        assertEquals("courseCompleted", studentListener.lastEvent.getPropertyName());
+        assertSame(coursePoints, studentListener.lastEvent.getNewValue());
+        assertEquals("courseClosed", listener.lastEvent.getPropertyName());
+        assertEquals("A", student1.getFinalGradeForCourse(coursePoints));
+        assertEquals("C", student2.getFinalGradeForCourse(coursePoints));
+        assertTrue("Moved to completed", student1.hasCompletedCourse(coursePoints));
+        assertFalse("Not current anymore", student1.getCurrentCourses().contains(coursePoints));
+
+        // closing again finds nobody left to complete
+        listener.reset();
+        studentListener.reset();
+        assertTrue("Nobody completes twice", coursePoints.closeCourse(finals).isEmpty());
+        assertEquals("No event when nobody was completed", 0, listener.eventCount);
+        assertEquals("No student event either", 0, studentListener.eventCount);
+    }
+
+    /** Test renaming an assignment tells listeners, with the old name */
+    @Test
+    public void testAssignmentChangedEvent() {
+        coursePoints.addAssignment(assignment1);
+        listener.reset();
+        assignment1.setAssignmentName("Tree Project");
+        assertEquals("One event for the rename", 1, listener.eventCount);
+        assertEquals("assignmentChanged", listener.lastEvent.getPropertyName());
+        assertEquals("Old value is the old name", "LinkedList Project", listener.lastEvent.getOldValue());
+        assertSame("New value is the assignment", assignment1, listener.lastEvent.getNewValue());
+        assertSame("Found under the new name", assignment1, coursePoints.findAssignmentByName("Tree Project"));
+
+        listener.reset();
+        assignment1.setDueDate("2023-11-01");
+        assertEquals("Due date change is an event too", 1, listener.eventCount);
+        assertEquals("Tree Project", listener.lastEvent.getOldValue());
+
+        // an assignment outside the course doesn't fire anything on it.
+        listener.reset();
+        assignment2.setAssignmentName("Quiz One");
+        assertEquals("Not in the course, no event", 0, listener.eventCount);
+    }
+
+    /** Test closeCourse refuses finals from another course */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCloseCourseWrongFinals() {
+        try (ClassAverageRecomputer recomputer = new ClassAverageRecomputer()) {
+            coursePoints.closeCourse(recomputer.recompute(courseCategories));
+        }
+    }
+
+}
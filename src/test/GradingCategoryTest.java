@@ -185,4 +185,40 @@ public class GradingCategoryTest {
         List<Assignment> dropped = empty.getDroppedAssignments(Collections.emptyMap());
         assertTrue("Should drop nothing when there are no grades", dropped.isEmpty());
     }
+
+    /**
+     * Test 14: Percentage policy - Lowest percentage, not lowest points
+     * Verifies a 6/20 drops before a 5/10 when ranking by percentage.
+     */
+    @Test
+    public void testGetDroppedAssignmentsByPercentage() {
+        GradingCategory byPercent = new GradingCategory("Mixed", 0.3, 1, DropPolicy.LOWEST_PERCENTAGE);
+        Assignment big = new Assignment("Big Quiz", 20, "2023-09-22", "Mixed", null);
+        byPercent.addAssignment(a2); // 5/10 = 50%
+        byPercent.addAssignment(big);
+        studentGrades.put(big, new Grade(6.0, "Rough")); // 6/20 = 30%
+        assertEquals("Should drop the lowest percentage", Collections.singletonList(big), byPercent.getDroppedAssignments(studentGrades));
+
+        GradingCategory byPoints = new GradingCategory("Mixed", 0.3, 1);
+        byPoints.addAssignment(a2);
+        byPoints.addAssignment(big);
+        assertEquals("Raw points drops the 5", Collections.singletonList(a2), byPoints.getDroppedAssignments(studentGrades));
+    }
+
+    /**
+     * Test 15: Dropped set - Same picks as the list, ties go to the earlier one
+     */
+    @Test
+    public void testGetDroppedAssignmentSetTies() {
+        GradingCategory dropTwo = new GradingCategory("Ties", 0.3, 2);
+        dropTwo.addAssignment(a1);
+        dropTwo.addAssignment(a2);
+        dropTwo.addAssignment(a3);
+        studentGrades.put(a3, new Grade(5.0, "Tied"));
+        Set<Assignment> dropped = dropTwo.getDroppedAssignmentSet(studentGrades);
+        assertEquals("Should drop two", 2, dropped.size());
+        assertTrue("Should drop Quiz 2", dropped.contains(a2));
+        assertTrue("Should drop Quiz 3 over Quiz 1", dropped.contains(a3));
+        assertFalse("Should keep Quiz 1", dropped.contains(a1));
+    }
 }
@@ -0,0 +1,90 @@
+package test.controller;
+
+import controller.AssignmentController;
+import controller.TeacherController;
+import model.*;
+import persistence.GradebookStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests that edits made through AssignmentController are saved.
+ * We edit an assignment with a controller made from a TeacherController that logs
+ * to a store, then load the store into a fresh course like the next start would.
+ */
+class AssignmentControllerTest {
+
+    private Path folder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        folder = Files.createTempDirectory("assignment-edit-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    // the course like the app sets it up at startup, before the journal is replayed.
+    private static Course startupCourse() {
+        Course course = new Course("Edit Course", "EDT101", "Test Sem", false);
+        course.addAssignment(new Assignment("HW1", 10.0, "2025-01-01", "hw", null));
+        return course;
+    }
+
+    /**
+     * testEditComesBackAfterReplay renames an assignment, changes its points and marks it
+     * graded, and checks all of it is there after replaying the journal.
+     */
+    @Test
+    void testEditComesBackAfterReplay() throws IOException {
+        Course course = startupCourse();
+        Teacher teacher = Teacher.fromStoredAccount("Tom", "Teach", "t@test.com", "hash", "tom", "T1");
+        teacher.addCourse(course);
+        Assignment hw1 = course.findAssignmentByName("HW1");
+
+        try (GradebookStore store = new GradebookStore(folder, 1000)) {
+            AssignmentController assignments = new AssignmentController(new TeacherController(teacher, null, store));
+            assertTrue(assignments.editAssignmentDetails(hw1, "HW1 Revised", 25.0));
+            assertTrue(assignments.markAssignmentGraded(hw1, true));
+        }
+
+        Course restarted = startupCourse();
+        try (GradebookStore store = new GradebookStore(folder, 1000)) {
+            store.load(Map.of("EDT101", restarted), username -> null);
+        }
+        assertNull(restarted.findAssignmentByName("HW1"), "Old name should be gone after the rename");
+        Assignment edited = restarted.findAssignmentByName("HW1 Revised");
+        assertNotNull(edited, "Edit should come back from the journal");
+        assertEquals(25.0, edited.getPointsWorth(), 0.001);
+        assertTrue(edited.isGraded());
+        assertEquals(1, restarted.getAllAssignments().size());
+    }
+
+    /**
+     * testNoTeacherControllerDoesNotLog checks the plain constructor still edits,
+     * it just has nowhere to save to.
+     */
+    @Test
+    void testNoTeacherControllerDoesNotLog() {
+        Course course = startupCourse();
+        Assignment hw1 = course.findAssignmentByName("HW1");
+        assertTrue(new AssignmentController().editAssignmentDetails(hw1, "Renamed", -1));
+        assertSame(hw1, course.findAssignmentByName("Renamed"));
+        assertEquals(10.0, hw1.getPointsWorth(), 0.001, "Negative points means leave them alone");
+    }
+}
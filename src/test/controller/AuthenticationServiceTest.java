@@ -0,0 +1,173 @@
+package test.controller;
+
+import controller.AuthenticationService;
+import controller.UserController;
+import model.*;
+import org.mindrot.jbcrypt.BCrypt;
+import persistence.UserRepository;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests AuthenticationService.
+ * The account lookup can be held up with a latch, so we can fill the one worker
+ * and the queue on purpose and see what happens to the logins after that.
+ */
+class AuthenticationServiceTest {
+
+    private HeldRepository repository;
+    private AuthenticationService service;
+
+    /**
+     * setUp makes a service with one worker and room for one more login in the queue.
+     * Hashes use the lowest BCrypt cost so the tests stay quick.
+     */
+    @BeforeEach
+    void setUp() {
+        repository = new HeldRepository();
+        for (String username : new String[] {"alice", "bob", "carol"}) {
+            repository.users.put(username, Student.fromStoredAccount(username, "Last", username + "@test.com",
+                BCrypt.hashpw("pw-" + username, BCrypt.gensalt(PasswordPolicy.LOWEST_COST)), username, username));
+        }
+        UserController users = new UserController(repository, new PasswordPolicy(PasswordPolicy.LOWEST_COST));
+        service = new AuthenticationService(users, 1, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.release.countDown();
+        service.shutdown();
+    }
+
+    private static User await(CompletableFuture<User> login) throws Exception {
+        return login.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * testRightAndWrongPasswords checks the basic answers and that every BCrypt check is counted.
+     */
+    @Test
+    void testRightAndWrongPasswords() throws Exception {
+        repository.release.countDown();
+        assertEquals("alice", await(service.authenticate("alice", "pw-alice")).getUsername());
+        assertNull(await(service.authenticate("alice", "wrong")));
+        assertNull(await(service.authenticate("nobody", "pw")), "Unknown user should just fail");
+        assertNull(await(service.authenticate(null, "pw")));
+        assertNull(await(service.authenticate("alice", null)));
+        assertEquals(2, service.getHashCount(), "Only real accounts get a BCrypt check");
+        assertTrue(service.getAverageHashMillis() > 0.0);
+        assertTrue(service.getMaxHashMillis() >= service.getAverageHashMillis());
+        assertEquals(0, service.getInFlightCount(), "Finished logins should be taken out");
+    }
+
+    /**
+     * testFullQueueTurnsLoginsAway holds the worker and fills the queue, then checks the
+     * next login fails right away instead of waiting, and the ones let in still finish.
+     */
+    @Test
+    void testFullQueueTurnsLoginsAway() throws Exception {
+        CompletableFuture<User> running = service.authenticate("alice", "pw-alice");
+        assertTrue(repository.started.await(10, TimeUnit.SECONDS), "First login should reach the worker");
+        CompletableFuture<User> queued = service.authenticate("bob", "pw-bob");
+        assertEquals(1, service.getQueueDepth());
+        assertEquals(1, service.getActiveChecks());
+
+        CompletableFuture<User> turnedAway = service.authenticate("carol", "pw-carol");
+        assertTrue(turnedAway.isCompletedExceptionally(), "Login past the queue should fail right away");
+        CompletionException error = assertThrows(CompletionException.class, turnedAway::join);
+        assertTrue(error.getCause() instanceof IllegalStateException);
+        assertEquals(1, service.getRejectedCount());
+        assertEquals(2, service.getInFlightCount(), "Turned away login shouldn't stay in flight");
+
+        repository.release.countDown();
+        assertEquals("alice", await(running).getUsername());
+        assertEquals("bob", await(queued).getUsername());
+        // once there's room again the same login goes through.
+        assertEquals("carol", await(service.authenticate("carol", "pw-carol")).getUsername());
+        assertEquals(1, service.getRejectedCount());
+    }
+
+    /**
+     * testSameLoginSharesOneCheck checks a second identical login gets the running check,
+     * and a different password for the same account is checked on its own.
+     */
+    @Test
+    void testSameLoginSharesOneCheck() throws Exception {
+        CompletableFuture<User> first = service.authenticate("alice", "pw-alice");
+        assertTrue(repository.started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<User> second = service.authenticate("alice", "pw-alice");
+        assertSame(first, second, "Identical login should share the running check");
+        assertEquals(1, service.getDedupedCount());
+
+        CompletableFuture<User> wrong = service.authenticate("alice", "pw-bob");
+        assertNotSame(first, wrong, "A different password must not share the check");
+        assertEquals(1, service.getDedupedCount());
+
+        repository.release.countDown();
+        assertEquals("alice", await(first).getUsername());
+        assertNull(await(wrong), "Wrong password should fail even while the right one is running");
+        assertEquals(2, service.getHashCount());
+
+        // the finished check is gone, so the next login hashes again.
+        assertNotSame(first, service.authenticate("alice", "pw-alice"), "Finished check shouldn't be shared");
+    }
+
+    /**
+     * A repository whose lookups wait until release is counted down, so a test
+     * can keep the worker busy.
+     */
+    private static class HeldRepository implements UserRepository {
+        private final Map<String, User> users = new ConcurrentHashMap<>();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public User findByUsername(String username) {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return users.get(username);
+        }
+
+        @Override
+        public Map<String, User> findUsersByUsernames(Collection<String> usernames) {
+            Map<String, User> found = new LinkedHashMap<>();
+            for (String username : usernames) {
+                if (users.containsKey(username)) {
+                    found.put(username, users.get(username));
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public boolean exists(String username) {
+            return users.containsKey(username);
+        }
+
+        @Override
+        public boolean save(User user) {
+            users.put(user.getUsername(), user);
+            return true;
+        }
+
+        @Override
+        public void reload() {
+        }
+    }
+}
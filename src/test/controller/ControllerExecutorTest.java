@@ -0,0 +1,160 @@
+package test.controller;
+
+import controller.ControllerExecutor;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests ControllerExecutor's fanOut groups.
+ * The tasks hold each other up with latches, so we can make one fail while the
+ * others are still running and see what the group does with them.
+ */
+class ControllerExecutorTest {
+
+    private ControllerExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ControllerExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    /**
+     * testResultsComeBackInInputOrder makes the first items finish last, and checks
+     * the results still line up with the items.
+     */
+    @Test
+    void testResultsComeBackInInputOrder() throws Exception {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            items.add(i);
+        }
+        List<String> results = executor.fanOut(items, i -> {
+            try {
+                Thread.sleep((8 - i) * 10L);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return "item " + i;
+        }).get(10, TimeUnit.SECONDS);
+
+        assertEquals(8, results.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals("item " + i, results.get(i), "Results should be in the items' order");
+        }
+        assertThrows(UnsupportedOperationException.class, () -> results.add("more"));
+        assertTrue(executor.fanOut(new ArrayList<Integer>(), i -> i).get(10, TimeUnit.SECONDS).isEmpty());
+    }
+
+    /**
+     * testFirstFailureCancelsSiblings fails one task while the other two are blocked,
+     * and checks they get interrupted and the group fails with that first error.
+     */
+    @Test
+    void testFirstFailureCancelsSiblings() throws Exception {
+        CountDownLatch siblingsStarted = new CountDownLatch(2);
+        CountDownLatch neverReleased = new CountDownLatch(1);
+        AtomicInteger interrupted = new AtomicInteger();
+        long startNanos = System.nanoTime();
+
+        CompletableFuture<List<String>> group = executor.fanOut(List.of("wait", "fail", "wait"), item -> {
+            if ("fail".equals(item)) {
+                try {
+                    siblingsStarted.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                throw new IllegalArgumentException("bad file");
+            }
+            siblingsStarted.countDown();
+            try {
+                neverReleased.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+                throw new IllegalStateException("cancelled");
+            }
+            return item;
+        });
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> group.get(10, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof IllegalArgumentException, "Group should fail with the first error");
+        assertEquals("bad file", error.getCause().getMessage());
+        assertEquals(2, interrupted.get(), "Both blocked siblings should be interrupted");
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5), "Siblings shouldn't wait out their latch");
+    }
+
+    /**
+     * testGroupWaitsForEveryTask has a sibling that keeps going after it's interrupted,
+     * and checks the group only finishes once that sibling is done too.
+     */
+    @Test
+    void testGroupWaitsForEveryTask() throws Exception {
+        CountDownLatch stubbornStarted = new CountDownLatch(1);
+        AtomicBoolean stubbornFinished = new AtomicBoolean(false);
+
+        CompletableFuture<List<String>> group = executor.fanOut(List.of("stubborn", "fail"), item -> {
+            if ("fail".equals(item)) {
+                try {
+                    stubbornStarted.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                throw new IllegalArgumentException("bad file");
+            }
+            stubbornStarted.countDown();
+            // ignores interrupts, like a task stuck in a read that can't be interrupted.
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+            while (System.nanoTime() < until) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ignored) {
+                    // keep going
+                }
+            }
+            stubbornFinished.set(true);
+            return item;
+        });
+
+        assertThrows(ExecutionException.class, () -> group.get(10, TimeUnit.SECONDS));
+        assertTrue(stubbornFinished.get(), "Group finished while a task was still running");
+    }
+
+    /**
+     * testOnEdtGetsResultsOnSwingThread checks the callback version hands the results
+     * over on the Swing thread.
+     */
+    @Test
+    void testOnEdtGetsResultsOnSwingThread() throws Exception {
+        CountDownLatch called = new CountDownLatch(1);
+        AtomicBoolean onSwingThread = new AtomicBoolean(false);
+        AtomicReference<List<Integer>> got = new AtomicReference<>();
+
+        executor.fanOut(List.of(1, 2, 3), i -> i * 10, (results, error) -> {
+            onSwingThread.set(SwingUtilities.isEventDispatchThread());
+            got.set(results);
+            called.countDown();
+        });
+
+        assertTrue(called.await(10, TimeUnit.SECONDS), "Callback should be called");
+        assertTrue(onSwingThread.get(), "Callback should run on the Swing thread");
+        assertEquals(List.of(10, 20, 30), got.get());
+    }
+}
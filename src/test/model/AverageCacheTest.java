@@ -0,0 +1,94 @@
+package test.model;
+
+import model.*;
+import model.grading.PointsBasedCalculator;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests the saved averages a Course keeps for its students.
+ * A saved average should be handed back while nothing changed, and worked out
+ * again after a grade, an assignment or the calculator changes.
+ */
+class AverageCacheTest {
+
+    private Course course;
+    private Assignment hw1;
+    private Student alice;
+    private Student bob;
+
+    @BeforeEach
+    void setUp() {
+        course = new Course("Cache Course", "CCH101", "Test Sem", false);
+        course.setGradeCalculator(new PointsBasedCalculator());
+        hw1 = new Assignment("HW1", 100.0, "somedate", null, null);
+        hw1.markGraded();
+        course.addAssignment(hw1);
+        alice = Student.fromStoredAccount("Alice", "A", "a@test.com", "hash", "cache_alice", "S1");
+        bob = Student.fromStoredAccount("Bob", "B", "b@test.com", "hash", "cache_bob", "S2");
+        course.enrollStudent(alice);
+        course.enrollStudent(bob);
+        alice.addGrade(hw1, new Grade(80.0, ""));
+        bob.addGrade(hw1, new Grade(60.0, ""));
+    }
+
+    @Test
+    void testSavedAverageReusedUntilGradeChanges() {
+        AverageCache cache = course.getAverageCache();
+        assertEquals(80.0, alice.calculateClassAverage(course), 0.001);
+        assertEquals(80.0, alice.calculateClassAverage(course), 0.001);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount(), "Nothing changed, second one is a hit");
+
+        alice.addGrade(hw1, new Grade(90.0, ""));
+        assertEquals(90.0, alice.calculateClassAverage(course), 0.001, "New grade should be seen");
+        assertEquals(2, cache.getMissCount());
+
+        alice.removeGradeForAssignment(hw1);
+        assertEquals(0.0, alice.calculateClassAverage(course), 0.001, "Removed grade should be seen");
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    void testOtherStudentsGradeDoesNotInvalidate() {
+        AverageCache cache = course.getAverageCache();
+        course.calculateStudentAverage(alice);
+        bob.addGrade(hw1, new Grade(70.0, ""));
+        assertEquals(80.0, course.calculateStudentAverage(alice), 0.001);
+        assertEquals(1, cache.getHitCount(), "Bob's grade shouldn't touch Alice's saved average");
+    }
+
+    @Test
+    void testCourseChangesInvalidate() {
+        AverageCache cache = course.getAverageCache();
+        course.calculateStudentAverage(alice);
+
+        long before = course.getVersion();
+        hw1.setPointsPossible(200.0);
+        assertTrue(course.getVersion() > before, "Points edit should move the course stamp");
+        assertEquals(40.0, course.calculateStudentAverage(alice), 0.001);
+
+        Assignment hw2 = new Assignment("HW2", 100.0, "somedate", null, null);
+        hw2.markGraded();
+        course.addAssignment(hw2);
+        assertEquals(80.0 / 300.0 * 100.0, course.calculateStudentAverage(alice), 0.001);
+
+        before = course.getVersion();
+        course.setGradeCalculator(new PointsBasedCalculator());
+        assertTrue(course.getVersion() > before, "New calculator should move the course stamp");
+        course.calculateStudentAverage(alice);
+        assertEquals(4, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    void testRemovedStudentForgotten() {
+        course.calculateStudentAverage(alice);
+        course.calculateStudentAverage(bob);
+        assertEquals(2, course.getAverageCache().size());
+        course.removeStudent(bob);
+        assertEquals(1, course.getAverageCache().size());
+    }
+}
@@ -0,0 +1,81 @@
+package test.model;
+
+import model.Assignment;
+import model.Course;
+import model.CourseSnapshot;
+import model.Grade;
+import model.Student;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests CourseSnapshot.
+ * We check a snapshot doesn't change after the course does, and that taking
+ * another one reuses the parts that didn't change.
+ */
+class CourseSnapshotTest {
+
+    private Course course;
+    private Student alice;
+    private Student brian;
+    private Assignment hw1;
+    private Assignment hw2;
+
+    @BeforeEach
+    void setUp() {
+        course = new Course("Snapshot Course", "SNP101", "Test Sem", false);
+        alice = Student.fromStoredAccount("Alice", "A", "a@test.com", "hash", "alice", "S1");
+        brian = Student.fromStoredAccount("Brian", "B", "b@test.com", "hash", "brian", "S2");
+        hw1 = new Assignment("HW1", 10.0, "2025-01-01", "hw", null);
+        hw2 = new Assignment("HW2", 20.0, "2025-01-08", "hw", null);
+        course.addAssignment(hw1);
+        course.addAssignment(hw2);
+        course.enrollStudent(alice);
+        course.enrollStudent(brian);
+        hw1.addGrade("alice", new Grade(8.0, "good"));
+    }
+
+    /**
+     * testUnchangedCourseGivesSameSnapshot checks nothing is copied again when
+     * the course didn't change.
+     */
+    @Test
+    void testUnchangedCourseGivesSameSnapshot() {
+        CourseSnapshot first = course.snapshot();
+        assertTrue(first.isCurrent());
+        assertSame(first, course.snapshot(), "Nothing changed, should be the same snapshot");
+        assertEquals(2, first.getStudentCount());
+        assertEquals(8.0, first.getPointsEarned("alice", hw1), 0.001);
+        assertEquals("good", first.getFeedback("alice", hw1));
+        assertTrue(Double.isNaN(first.getPointsEarned("brian", hw1)));
+        assertThrows(UnsupportedOperationException.class, () -> first.getStudents().clear());
+    }
+
+    /**
+     * testSnapshotStaysFrozenAndSharesParts checks a grade change and an enrollment
+     * after the snapshot don't show up in it, and the next snapshot keeps what didn't change.
+     */
+    @Test
+    void testSnapshotStaysFrozenAndSharesParts() {
+        CourseSnapshot before = course.snapshot();
+
+        hw2.addGrade("brian", new Grade(15.0, ""));
+        assertFalse(before.isCurrent());
+        CourseSnapshot afterGrade = course.snapshot();
+        assertNotSame(before, afterGrade, "A grade changed, should be a new snapshot");
+        assertFalse(before.hasGrade("brian", hw2), "Old snapshot shouldn't see the new grade");
+        assertEquals(15.0, afterGrade.getPointsEarned("brian", hw2), 0.001);
+        assertSame(before.getStudents(), afterGrade.getStudents(), "Roster didn't change, should be shared");
+        assertSame(before.getAssignments(), afterGrade.getAssignments(), "Assignments didn't change, should be shared");
+
+        Student carla = Student.fromStoredAccount("Carla", "C", "c@test.com", "hash", "carla", "S3");
+        course.enrollStudent(carla);
+        CourseSnapshot afterEnroll = course.snapshot();
+        assertFalse(afterGrade.isEnrolled("carla"));
+        assertTrue(afterEnroll.isEnrolled("carla"));
+        assertSame(afterGrade.getAssignments(), afterEnroll.getAssignments());
+        assertEquals(8.0, afterEnroll.getPointsEarned("alice", hw1), 0.001);
+    }
+}
@@ -0,0 +1,250 @@
+package test.model;
+
+import model.Assignment;
+import model.Course;
+import model.Grade;
+import model.GradeMatrix;
+import model.Student;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests the GradeMatrix storage inside Course.
+ * We need to make sure grades added through Assignment or Student end up in
+ * the one matrix, and that both sides read the same cell back.
+ */
+class GradeMatrixTest {
+
+    private Course course;
+    private Student student;
+    private Assignment hw1;
+
+    @BeforeEach
+    void setUp() {
+        course = new Course("Matrix Course", "MAT101", "Test Sem", false);
+        student = new Student("Test", "Student", "ts@test.com", "pw", "test_student", "S999");
+        hw1 = new Assignment("HW1", 100.0, "somedate", "hw", null);
+    }
+
+    /**
+     * testGradesMoveIntoMatrix checks grades added before the assignment joined
+     * the course get moved into the course's matrix.
+     */
+    @Test
+    void testGradesMoveIntoMatrix() {
+        hw1.addGrade("test_student", new Grade(80.0, "Okay"));
+        course.addAssignment(hw1);
+
+        GradeMatrix matrix = course.getGradeMatrix();
+        int row = matrix.indexOfStudent("test_student");
+        int col = matrix.columnOf(hw1);
+        assertTrue(col >= 0, "Assignment should have a column");
+        assertTrue(matrix.hasGrade(row, col), "Cell should have the moved grade");
+        assertEquals(80.0, matrix.getPointsEarned(row, col), 0.001);
+        assertEquals("Okay", matrix.getFeedback(row, col));
+        assertEquals(80.0, matrix.lookupPoints(row, hw1, "test_student"), 0.001);
+    }
+
+    /**
+     * testMissingRowReadsAsNoGrade checks every cell read takes a row of -1, which is
+     * what indexOfStudent gives for a student who never had a grade here.
+     */
+    @Test
+    void testMissingRowReadsAsNoGrade() {
+        course.addAssignment(hw1);
+        GradeMatrix matrix = course.getGradeMatrix();
+        int row = matrix.indexOfStudent("nobody");
+        int col = matrix.columnOf(hw1);
+        assertEquals(-1, row);
+        assertFalse(matrix.hasGrade(row, col));
+        assertEquals(0.0, matrix.getPointsEarned(row, col), 0.001);
+        assertNull(matrix.getGrade(row, col));
+        assertTrue(Double.isNaN(matrix.pointsAt(row, col)));
+        assertTrue(Double.isNaN(matrix.lookupPoints(row, hw1, "nobody")));
+    }
+
+    /**
+     * testStudentAndAssignmentShareOneStore checks a grade added through the
+     * Student is visible through the Assignment and the other way around.
+     */
+    @Test
+    void testStudentAndAssignmentShareOneStore() {
+        course.addAssignment(hw1);
+        course.enrollStudent(student);
+
+        student.addGrade(hw1, new Grade(70.0, "From student"));
+        assertEquals(70.0, hw1.getGrade("test_student").getPointsEarned(), 0.001, "Assignment should see student's grade");
+
+        hw1.addGrade("test_student", new Grade(90.0, "From assignment"));
+        Grade fromStudent = student.getGradeForAssignment(hw1);
+        assertEquals(90.0, fromStudent.getPointsEarned(), 0.001, "Student should see assignment's grade");
+        assertEquals("From assignment", fromStudent.getFeedback());
+    }
+
+    /**
+     * testRemoveGradeClearsCell checks removing a grade empties the matrix cell.
+     */
+    @Test
+    void testRemoveGradeClearsCell() {
+        course.addAssignment(hw1);
+        course.enrollStudent(student);
+        student.addGrade(hw1, new Grade(70.0, ""));
+
+        student.removeGradeForAssignment(hw1);
+        assertNull(hw1.getGrade("test_student"), "Grade should be gone");
+        assertFalse(hw1.hasSubmission("test_student"), "Cell should be empty");
+    }
+
+    /**
+     * testManyStudentsGrowRows checks the matrix grows past its first capacity
+     * and the bitmap words, and the column stats still see every grade.
+     */
+    @Test
+    void testManyStudentsGrowRows() {
+        course.addAssignment(hw1);
+        for (int i = 0; i < 150; i++) {
+            hw1.addGrade("student" + i, new Grade(i, ""));
+        }
+        assertEquals(150, course.getGradeMatrix().getStudentCount());
+        assertEquals(150, hw1.getAllGrades().size(), "Every grade should be readable");
+        assertEquals(74.5, hw1.calculateAverageScore(), 0.001, "Average of 0..149");
+        assertEquals(74.5, hw1.calculateMedianScore(), 0.001, "Median of 0..149");
+        assertEquals(149.0, hw1.getGrade("student149").getPointsEarned(), 0.001);
+    }
+
+    /**
+     * testRemoveAssignmentFreesColumn checks a removed assignment no longer reads
+     * from the matrix and its column gets reused.
+     */
+    @Test
+    void testRemoveAssignmentFreesColumn() {
+        course.addAssignment(hw1);
+        hw1.addGrade("test_student", new Grade(50.0, ""));
+        int oldColumn = course.getGradeMatrix().columnOf(hw1);
+
+        course.removeAssignment(hw1);
+        assertEquals(-1, course.getGradeMatrix().columnOf(hw1), "Removed assignment should have no column");
+        assertTrue(hw1.getAllGrades().isEmpty(), "Removed assignment should have no grades");
+
+        Assignment hw2 = new Assignment("HW2", 50.0, "somedate", "hw", null);
+        course.addAssignment(hw2);
+        assertEquals(oldColumn, course.getGradeMatrix().columnOf(hw2), "Free column should be reused");
+        assertNull(hw2.getGrade("test_student"), "Reused column should start empty");
+    }
+
+    /**
+     * testColumnLoaderRunsOnFirstRead checks a lazy column isn't loaded until
+     * something reads it, and then shows the loader's grades.
+     */
+    @Test
+    void testColumnLoaderRunsOnFirstRead() {
+        course.addAssignment(hw1);
+        GradeMatrix matrix = course.getGradeMatrix();
+        int row = matrix.reserveRow("test_student");
+        int col = matrix.columnOf(hw1);
+        int[] loads = {0};
+        matrix.setColumnLoader(hw1, sink -> {
+            loads[0]++;
+            sink.put("test_student", 66.0, "Loaded");
+        });
+
+        assertFalse(matrix.isColumnLoaded(col), "Column should wait for its first read");
+        assertEquals(0, loads[0], "Loader shouldn't run yet");
+
+        assertTrue(matrix.hasGrade(row, col), "Reading should load the column");
+        assertEquals(66.0, hw1.getGrade("test_student").getPointsEarned(), 0.001);
+        assertEquals("Loaded", matrix.getFeedback(row, col));
+        assertEquals(1, loads[0], "Loader should only run once");
+    }
+
+    /**
+     * testGradeChangedFiresPerCell checks the course fires one gradeChanged per grade
+     * set or removed, with the username and assignment, and none for a lazy column loading.
+     */
+    @Test
+    void testGradeChangedFiresPerCell() {
+        course.addAssignment(hw1);
+        course.enrollStudent(student);
+        java.util.List<java.beans.PropertyChangeEvent> events = new java.util.ArrayList<>();
+        course.addPropertyChangeListener(evt -> {
+            if ("gradeChanged".equals(evt.getPropertyName())) {
+                events.add(evt);
+            }
+        });
+
+        student.addGrade(hw1, new Grade(90.0, ""));
+        assertEquals(1, events.size());
+        assertEquals("test_student", events.get(0).getOldValue());
+        assertSame(hw1, events.get(0).getNewValue());
+
+        student.removeGradeForAssignment(hw1);
+        assertEquals(2, events.size());
+
+        GradeMatrix matrix = course.getGradeMatrix();
+        matrix.reserveRow("loaded_student");
+        matrix.setColumnLoader(hw1, sink -> sink.put("loaded_student", 50.0, null));
+        assertNotNull(hw1.getGrade("loaded_student"));
+        assertEquals(2, events.size(), "Loading a column isn't a change");
+    }
+
+    /**
+     * testGradersOnSeparateThreads has a few graders enter grades for different
+     * assignments at the same time while students are still being enrolled.
+     * Every grade should land and fire exactly one gradeChanged.
+     */
+    @Test
+    void testGradersOnSeparateThreads() throws Exception {
+        int graders = 4;
+        int students = 300;
+        Assignment[] columns = new Assignment[graders];
+        for (int g = 0; g < graders; g++) {
+            columns[g] = new Assignment("Part " + g, 10.0, "somedate", "hw", null);
+            course.addAssignment(columns[g]);
+        }
+        java.util.concurrent.atomic.AtomicInteger changedEvents = new java.util.concurrent.atomic.AtomicInteger();
+        course.addPropertyChangeListener(evt -> {
+            if ("gradeChanged".equals(evt.getPropertyName())) {
+                changedEvents.incrementAndGet();
+            }
+        });
+
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(graders + 1);
+        java.util.concurrent.CountDownLatch start = new java.util.concurrent.CountDownLatch(1);
+        java.util.List<java.util.concurrent.Future<?>> work = new java.util.ArrayList<>();
+        work.add(pool.submit(() -> {
+            start.await();
+            for (int i = 0; i < students; i++) {
+                course.enrollStudent(Student.fromStoredAccount("F", "L", "s" + i + "@test.com", "hash", "s" + i, "ID" + i));
+            }
+            return null;
+        }));
+        for (int g = 0; g < graders; g++) {
+            Assignment column = columns[g];
+            work.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < students; i++) {
+                    column.addGrade("s" + i, new Grade(i % 10, ""));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (java.util.concurrent.Future<?> f : work) {
+            f.get(30, java.util.concurrent.TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        GradeMatrix matrix = course.getGradeMatrix();
+        assertEquals(students, course.getEnrolledStudents().size());
+        assertEquals(graders * students, changedEvents.get());
+        for (int g = 0; g < graders; g++) {
+            int col = matrix.columnOf(columns[g]);
+            assertEquals(students, matrix.getGradeCount(col), "Every grade for " + columns[g].getName() + " should be there");
+            for (int i = 0; i < students; i++) {
+                assertEquals(i % 10, columns[g].getGrade("s" + i).getPointsEarned(), 0.001);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package test.model;
+
+import model.Course;
+import model.Group;
+import model.GroupRegistry;
+import model.Student;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests the GroupRegistry behind a course's groups.
+ * We check names ignore case and the student to group index stays right
+ * even when members are changed straight on the Group.
+ */
+class GroupRegistryTest {
+
+    private Course course;
+    private GroupRegistry registry;
+    private Student alice;
+    private Student brian;
+
+    @BeforeEach
+    void setUp() {
+        course = new Course("Group Course", "GRP101", "Test Sem", false);
+        registry = course.getGroupRegistry();
+        alice = Student.fromStoredAccount("Alice", "A", "a@test.com", "hash", "alice", "S1");
+        brian = Student.fromStoredAccount("Brian", "B", "b@test.com", "hash", "brian", "S2");
+    }
+
+    /**
+     * testNamesIgnoreCase checks lookups and duplicate checks don't care about case.
+     */
+    @Test
+    void testNamesIgnoreCase() {
+        course.createGroup("Team Red");
+        assertSame(course.findGroupByName("Team Red"), course.findGroupByName("team red"));
+        assertThrows(IllegalArgumentException.class, () -> course.createGroup("TEAM RED"));
+        assertFalse(course.addGroup(new Group("team red")), "Another group with the same name shouldn't go in");
+        assertSame(course.findGroupByName("Team Red"), registry.getOrCreate("TEAM red"));
+        assertEquals(1, registry.size());
+    }
+
+    /**
+     * testReverseLookupFollowsMembership checks bulk assignment, direct Group
+     * changes and removing a group all update which group a student is in.
+     */
+    @Test
+    void testReverseLookupFollowsMembership() {
+        course.createGroup("Team Red");
+        assertEquals(2, registry.assignAll("team red", List.of(alice, brian)));
+        assertTrue(registry.isMember("TEAM RED", alice));
+        assertEquals("Team Red", registry.findGroupOf(brian).getGroupName());
+
+        // changed straight on the Group, like the Manage Members dialog does.
+        Group red = course.findGroupByName("Team Red");
+        red.removeMember(brian);
+        assertNull(registry.findGroupOf(brian));
+
+        course.removeGroup("team red");
+        assertNull(registry.findGroupOf(alice), "Removed group shouldn't be found anymore");
+        assertTrue(red.contains(alice), "Group object keeps its members");
+        red.addMember(brian);
+        assertNull(registry.findGroupOf(brian), "Detached group shouldn't update the registry");
+    }
+}
@@ -0,0 +1,53 @@
+package test.model;
+
+import model.PasswordPolicy;
+import model.Role;
+import model.User;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for PasswordPolicy, the cost it hashes with and upgrading old hashes.
+ * Low costs are used so the tests stay fast.
+ */
+class PasswordPolicyTest {
+
+    @Test
+    void testHashUsesPolicyCost() {
+        PasswordPolicy policy = new PasswordPolicy(5);
+        String hash = policy.hash("secret");
+        assertEquals(5, PasswordPolicy.costOf(hash), "hash should carry the policy's cost");
+        assertFalse(policy.needsRehash(hash), "a hash at the same cost doesn't need redoing");
+        assertTrue(new PasswordPolicy(6).needsRehash(hash), "a different cost needs redoing");
+    }
+
+    @Test
+    void testCostOfBadHash() {
+        assertEquals(-1, PasswordPolicy.costOf(null));
+        assertEquals(-1, PasswordPolicy.costOf("plaintext"));
+        assertFalse(new PasswordPolicy(5).needsRehash("plaintext"), "can't tell the cost, so leave it alone");
+    }
+
+    @Test
+    void testBadCostRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new PasswordPolicy(3));
+        assertThrows(IllegalArgumentException.class, () -> new PasswordPolicy(31));
+    }
+
+    @Test
+    void testRehashOnLoginKeepsPassword() {
+        User user = User.fromStoredAccount("A", "B", "a@b.com", new PasswordPolicy(4).hash("pw"), "ab", Role.STUDENT);
+        PasswordPolicy policy = new PasswordPolicy(5);
+        assertTrue(user.rehashPasswordIfNeeded("pw", policy), "cost 4 hash should be upgraded");
+        assertEquals(5, PasswordPolicy.costOf(user.getHashedPassword()));
+        assertTrue(user.checkPassword("pw"), "same password should still work");
+        assertFalse(user.rehashPasswordIfNeeded("pw", policy), "already at the policy's cost");
+    }
+
+    @Test
+    void testCalibrateNeverBelowMinimum() {
+        PasswordPolicy policy = PasswordPolicy.calibrate(1, 6);
+        assertEquals(6, policy.getCost(), "a tiny target still gets the minimum cost");
+    }
+}
@@ -0,0 +1,76 @@
+package test.model;
+
+import model.Assignment;
+import model.Course;
+import model.Grade;
+import model.ScoreStatistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for ScoreStatistics and the Assignment stats that use it.
+ * Main thing is the running numbers have to match working them out from scratch
+ * after grades are added, changed and removed.
+ */
+class ScoreStatisticsTest {
+
+    @Test
+    void testRunningNumbersMatchFromScratch() {
+        ScoreStatistics stats = new ScoreStatistics();
+        double[] scores = {70, 95, 82, 60, 88};
+        for (double score : scores) {
+            stats.add(score);
+        }
+        assertEquals(5, stats.getCount());
+        assertEquals(79.0, stats.getAverage(), 0.0001);
+        assertEquals(60.0, stats.getMin(), 0.0001);
+        assertEquals(95.0, stats.getMax(), 0.0001);
+        assertEquals(82.0, stats.getMedian(), 0.0001);
+        // population variance of the five scores
+        assertEquals(157.6, stats.getVariance(), 0.0001);
+
+        stats.replace(60, 100);
+        assertEquals(87.0, stats.getAverage(), 0.0001);
+        assertEquals(70.0, stats.getMin(), 0.0001);
+        assertEquals(100.0, stats.getMax(), 0.0001);
+        assertEquals(ScoreStatistics.of(new double[] {70, 95, 82, 100, 88}).getVariance(), stats.getVariance(), 0.0001);
+
+        assertTrue(stats.remove(100));
+        assertFalse(stats.remove(42), "42 was never added");
+        assertEquals(85.0, stats.getMedian(), 0.0001, "even count averages the middle two");
+    }
+
+    @Test
+    void testPercentiles() {
+        ScoreStatistics stats = ScoreStatistics.of(new double[] {40, 10, 30, 20, 50});
+        assertEquals(10.0, stats.getPercentile(0), 0.0001);
+        assertEquals(30.0, stats.getPercentile(50), 0.0001);
+        assertEquals(50.0, stats.getPercentile(100), 0.0001);
+        assertEquals(15.0, stats.getPercentile(12.5), 0.0001, "goes in a line between the two closest");
+        assertThrows(IllegalArgumentException.class, () -> stats.getPercentile(101));
+    }
+
+    @Test
+    void testAssignmentStatsFollowGradeChanges() {
+        Course course = new Course("Stats Course", "STA101", "Test Sem", false);
+        Assignment hw = new Assignment("HW1", 100.0, "somedate", "hw", null);
+        course.addAssignment(hw);
+        hw.addGrade("a", new Grade(80, ""));
+        hw.addGrade("b", new Grade(90, ""));
+        assertEquals(85.0, hw.calculateAverageScore(), 0.0001);
+
+        // changing a grade swaps the old score out of the running numbers.
+        hw.addGrade("a", new Grade(100, ""));
+        assertEquals(95.0, hw.calculateAverageScore(), 0.0001);
+        assertEquals(90.0, hw.calculateMinScore(), 0.0001);
+
+        hw.removeGrade("b");
+        assertEquals(100.0, hw.calculateMedianScore(), 0.0001);
+        assertEquals(0.0, hw.calculateScoreVariance(), 0.0001);
+
+        hw.clearAllGrades();
+        assertEquals(0.0, hw.calculateAverageScore(), 0.0001);
+        assertEquals(0.0, hw.calculatePercentileScore(90), 0.0001);
+    }
+}
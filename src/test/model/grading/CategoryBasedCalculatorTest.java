@@ -238,4 +238,24 @@ class CategoryBasedCalculatorTest {
         assertEquals(0.0, average, 0.01, "Should return 0.0 for category course with no categories");
     }
 
+
+    /**
+     * testBatchMatchesSingleStudent checks calculateAllFinalAverages gives every
+     * enrolled student the same average as the one at a time calculateFinalAverage.
+     */
+    @Test
+    void testBatchMatchesSingleStudent() {
+        System.out.println("Testing category calculator batch average for whole roster...");
+        Student otherStudent = new Student("Other", "Student", "os@test.com", "pw", "other_student", "S998");
+        otherStudent.addGrade(hw1, new Grade(10.0, ""));
+        otherStudent.addGrade(q1, new Grade(5.0, ""));
+        categoryCourse.enrollStudent(testStudent);
+        categoryCourse.enrollStudent(otherStudent);
+
+        Map<String, Double> averages = calculator.calculateAllFinalAverages(categoryCourse);
+
+        assertEquals(2, averages.size(), "Should have one average per enrolled student");
+        assertEquals(calculator.calculateFinalAverage(categoryCourse, testStudent), averages.get("test_student"), 0.0001, "testStudent should match single calculation");
+        assertEquals(calculator.calculateFinalAverage(categoryCourse, otherStudent), averages.get("other_student"), 0.0001, "otherStudent should match single calculation");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package test.model.grading;
+
+import model.*;
+import model.grading.*;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests the ClassAverageRecomputer class.
+ * We check the parallel averages come out the same as working them out
+ * one student at a time, and that they end up saved in the course.
+ */
+class ClassAverageRecomputerTest {
+
+    private Course course;
+    private Assignment hw1;
+    private Assignment hw2;
+
+    /**
+     * setUp makes a points course with 100 students, each with different grades.
+     */
+    @BeforeEach
+    void setUp() {
+        course = new Course("Recompute Course", "REC101", "Test Sem", false);
+        course.setGradeCalculator(new PointsBasedCalculator());
+        hw1 = new Assignment("HW1", 10.0, "2025-01-01", "hw", null);
+        hw2 = new Assignment("HW2", 20.0, "2025-01-08", "hw", null);
+        course.addAssignment(hw1);
+        course.addAssignment(hw2);
+        for (int i = 0; i < 100; i++) {
+            String username = "student" + i;
+            course.enrollStudent(Student.fromStoredAccount("First" + i, "Last", username + "@test.com", "hash", username, "S" + i));
+            hw1.addGrade(username, new Grade(i % 11, ""));
+            if (i % 3 != 0) {
+                hw2.addGrade(username, new Grade(i % 21, ""));
+            }
+        }
+    }
+
+    /**
+     * testParallelMatchesOneAtATime splits the roster into small chunks and checks
+     * every average and letter against the calculator's own batch method.
+     */
+    @Test
+    void testParallelMatchesOneAtATime() {
+        Map<String, Double> expected = course.getGradeCalculator().calculateAllFinalAverages(course);
+        try (ClassAverageRecomputer recomputer = new ClassAverageRecomputer(4, 8)) {
+            ClassAverages result = recomputer.recompute(course);
+            assertEquals(100, result.getStudentCount());
+            assertTrue(result.getChunkCount() >= 100 / 8, "Roster should have been split into chunks");
+            for (Map.Entry<String, Double> entry : expected.entrySet()) {
+                assertEquals(entry.getValue(), result.getAverage(entry.getKey()), 0.0001, entry.getKey());
+                assertEquals(GradeScale.fromPercentage(entry.getValue()), result.getLetter(entry.getKey()), entry.getKey());
+            }
+            String firstInRoster = course.snapshot().getStudents().get(0).getUsername();
+            assertEquals(firstInRoster, result.getAverages().keySet().iterator().next(), "Should be in roster order");
+        }
+    }
+
+    /**
+     * testSwitchingCalculatorRecomputesEveryone checks the new calculator is used and
+     * the course hands back the recomputed averages afterwards.
+     */
+    @Test
+    void testSwitchingCalculatorRecomputesEveryone() {
+        // both assignments are already in the "hw" category.
+        course.addGradingCategory(new GradingCategory("hw", 1.0, 1));
+        course.setGradeCalculator(new CategoryBasedCalculator());
+        try (ClassAverageRecomputer recomputer = new ClassAverageRecomputer(2, 16)) {
+            ClassAverages result = recomputer.recompute(course);
+            for (Student student : course.getEnrolledStudents()) {
+                double average = result.getAverage(student.getUsername());
+                assertEquals(course.getGradeCalculator().calculateFinalAverage(course, student), average, 0.0001);
+                assertEquals(average, course.calculateStudentAverage(student), 0.0001);
+            }
+        }
+    }
+
+    @Test
+    void testBadArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ClassAverageRecomputer(0, 8));
+        assertThrows(IllegalArgumentException.class, () -> new ClassAverageRecomputer(2, 0));
+        try (ClassAverageRecomputer recomputer = new ClassAverageRecomputer(2, 8)) {
+            assertThrows(IllegalArgumentException.class, () -> recomputer.recompute(null));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package test.model.grading;
+
+import model.*;
+import model.grading.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests the GradingPlan a Course keeps for the calculators.
+ * The plan should be reused while nothing changes and made again after the
+ * course's assignments or categories change, or an assignment's graded flag or points.
+ */
+class GradingPlanTest {
+
+    private Course course;
+    private Assignment hw1;
+
+    @BeforeEach
+    void setUp() {
+        course = new Course("Plan Course", "PLN101", "Test Sem", true);
+        course.addGradingCategory(new GradingCategory("Homework", 1.0, 0));
+        hw1 = new Assignment("HW1", 100.0, "somedate", "Homework", null);
+        hw1.markGraded();
+        course.addAssignment(hw1);
+    }
+
+    @Test
+    void testPlanReusedUntilStructureChanges() {
+        GradingPlan first = course.getGradingPlan();
+        assertSame(first, course.getGradingPlan(), "Nothing changed, same plan");
+        assertEquals(1, first.getGradedCount());
+        assertEquals(100.0, first.getGradedPointsPossible(), 0.001);
+
+        Assignment hw2 = new Assignment("HW2", 50.0, "somedate", "Homework", null);
+        course.addAssignment(hw2);
+        GradingPlan afterAdd = course.getGradingPlan();
+        assertNotSame(first, afterAdd, "assignmentAdded should make a new plan");
+        assertEquals(2, afterAdd.getAssignmentCount());
+        assertEquals(1, afterAdd.getGradedCount(), "HW2 isn't graded yet");
+
+        hw2.markGraded();
+        GradingPlan afterGraded = course.getGradingPlan();
+        assertNotSame(afterAdd, afterGraded, "Graded flag change should make a new plan");
+        assertEquals(150.0, afterGraded.getGradedPointsPossible(), 0.001);
+
+        course.clearGradingCategories();
+        assertEquals(0, course.getGradingPlan().getCategoryCount(), "categoriesCleared should make a new plan");
+    }
+
+    @Test
+    void testCalculatorsSeePointsEdit() {
+        Student student = new Student("Test", "Student", "ts@test.com", "pw", "plan_student", "S998");
+        course.enrollStudent(student);
+        student.addGrade(hw1, new Grade(50.0, ""));
+        CategoryBasedCalculator calculator = new CategoryBasedCalculator();
+        assertEquals(50.0, calculator.calculateFinalAverage(course, student), 0.001);
+
+        hw1.setPointsPossible(200.0);
+        assertEquals(25.0, calculator.calculateFinalAverage(course, student), 0.001, "Plan should pick up the new points");
+        assertEquals(25.0, calculator.calculateAllFinalAverages(course).get("plan_student"), 0.001);
+    }
+}
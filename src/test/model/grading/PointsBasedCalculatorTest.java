@@ -3,6 +3,8 @@ package test.model.grading;
 import model.*;
 import model.grading.*;
 
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -177,4 +179,33 @@ class PointsBasedCalculatorTest {
         assertEquals(0.0, average, 0.01, "Should return 0.0 for course with no assignments");
     }
 
-}
+    /**
+     * testBatchMatchesSingleStudent checks calculateAllFinalAverages gives the
+     * same numbers as calling calculateFinalAverage one student at a time.
+     * Setup: testStudent has 80/100 and 40/50, studentB only has 80/100.
+     */
+    @Test
+    void testBatchMatchesSingleStudent() {
+        System.out.println("Testing points calculator batch average for whole roster");
+        Student studentB = new Student("Student", "B", "sb@test.com", "pw", "student_b", "S002");
+        hw1.addGrade(studentB.getUsername(), new Grade(80.0, "Done"));
+        testCourse.enrollStudent(testStudent);
+        testCourse.enrollStudent(studentB);
+
+        Map<String, Double> averages = calculator.calculateAllFinalAverages(testCourse);
+
+        assertEquals(2, averages.size(), "Should have one average per enrolled student");
+        assertEquals(80.0, averages.get("test_student"), 0.01, "testStudent should match single calculation");
+        assertEquals(80.0 / 150.0 * 100.0, averages.get("student_b"), 0.01, "studentB should match single calculation");
+    }
+
+    /**
+     * testBatchNullCourse checks the batch version returns an empty map for null course.
+     */
+    @Test
+    void testBatchNullCourse() {
+        System.out.println("Testing points calculator batch with null course");
+        assertTrue(calculator.calculateAllFinalAverages(null).isEmpty(), "Should return empty map for null course");
+    }
+
+}
\ No newline at end of file
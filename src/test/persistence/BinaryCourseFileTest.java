@@ -0,0 +1,169 @@
+package test.persistence;
+
+import model.*;
+import persistence.BinaryCourseFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests BinaryCourseFile.
+ * We write a course, open the file again and build a course from it, checking
+ * the details, grades and feedback all come back and columns only load when read.
+ */
+class BinaryCourseFileTest {
+
+    private Path folder;
+    private Course course;
+    private Map<String, Student> students;
+
+    /**
+     * setUp makes a course with three students and three assignments, where one
+     * assignment gets removed so its matrix column is freed and then used again.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        folder = Files.createTempDirectory("course-file-test");
+        course = new Course("Binary Course", "BIN101", "Test Sem", true);
+        students = new HashMap<>();
+        for (String username : new String[] {"alice", "bob", "carol"}) {
+            Student student = Student.fromStoredAccount(username, "Last", username + "@test.com", "hash", username, username);
+            students.put(username, student);
+            course.enrollStudent(student);
+        }
+        course.createGroup("Team 1");
+        Assignment hw1 = new Assignment("HW1", 10.0, "2025-01-01", "hw", null);
+        hw1.setDescription("First homework");
+        Assignment removed = new Assignment("Removed", 5.0, "2025-01-05", "hw", null);
+        Assignment project = new Assignment("Project", 50.0, "2025-02-01", "project", course.findGroupByName("Team 1"));
+        course.addAssignment(hw1);
+        course.addAssignment(removed);
+        course.addAssignment(project);
+
+        students.get("alice").addGrade(hw1, new Grade(9.0, "nice work"));
+        students.get("bob").addGrade(hw1, new Grade(7.5, null));
+        // carol has no HW1 grade, a blank cell.
+        students.get("alice").addGrade(removed, new Grade(5.0, "gone"));
+        students.get("carol").addGrade(removed, new Grade(4.0, "also gone"));
+        students.get("carol").addGrade(project, new Grade(45.0, "great project"));
+        hw1.markGraded();
+
+        course.removeAssignment(removed);
+        // takes the column the removed assignment freed up.
+        Assignment quiz = new Assignment("Quiz", 20.0, "2025-01-10", "quiz", null);
+        course.addAssignment(quiz);
+        students.get("bob").addGrade(quiz, new Grade(18.0, "quiz ok"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    // opens the file and builds a course with new student objects, like another session would.
+    private Course writeAndReopen() throws IOException {
+        Path file = folder.resolve("course" + BinaryCourseFile.FILE_EXTENSION);
+        BinaryCourseFile.write(course, file);
+        BinaryCourseFile opened = BinaryCourseFile.open(file);
+        return opened.toCourse(username -> Student.fromStoredAccount(username, "Last", username + "@test.com", "hash", username, username));
+    }
+
+    /**
+     * testRoundTripKeepsEverything checks the course details, the assignments and every
+     * cell, including blank ones and feedback, come back the same.
+     */
+    @Test
+    void testRoundTripKeepsEverything() throws IOException {
+        Course reopened = writeAndReopen();
+        assertEquals("Binary Course", reopened.getName());
+        assertEquals("BIN101", reopened.getCourseId());
+        assertEquals("Test Sem", reopened.getSemester());
+        assertTrue(reopened.usesCategories());
+        assertEquals(3, reopened.getEnrolledStudents().size());
+
+        assertEquals(3, reopened.getAllAssignments().size(), "Removed assignment shouldn't be written");
+        assertNull(reopened.findAssignmentByName("Removed"));
+        Assignment hw1 = reopened.findAssignmentByName("HW1");
+        assertEquals(10.0, hw1.getPointsWorth(), 0.001);
+        assertEquals("2025-01-01", hw1.getDueDate());
+        assertEquals("hw", hw1.getCategoryName());
+        assertEquals("First homework", hw1.getDescription());
+        assertTrue(hw1.isGraded());
+        Assignment project = reopened.findAssignmentByName("Project");
+        assertNotNull(project.getGroup());
+        assertEquals("Team 1", project.getGroup().getGroupName());
+        assertFalse(project.isGraded());
+        assertEquals("", project.getDescription());
+
+        Student alice = reopened.getEnrolledStudent("alice");
+        Student bob = reopened.getEnrolledStudent("bob");
+        Student carol = reopened.getEnrolledStudent("carol");
+        assertEquals(9.0, alice.getGradeForAssignment(hw1).getPointsEarned(), 0.001);
+        assertEquals("nice work", alice.getGradeForAssignment(hw1).getFeedback());
+        assertEquals(7.5, bob.getGradeForAssignment(hw1).getPointsEarned(), 0.001);
+        assertNull(bob.getGradeForAssignment(hw1).getFeedback(), "No feedback should stay no feedback");
+        assertNull(carol.getGradeForAssignment(hw1), "Blank cell should stay blank");
+        assertEquals(45.0, carol.getGradeForAssignment(project).getPointsEarned(), 0.001);
+        assertEquals("great project", carol.getGradeForAssignment(project).getFeedback());
+        assertNull(alice.getGradeForAssignment(project));
+    }
+
+    /**
+     * testFreedColumnDoesNotLeak checks the assignment that reused a removed assignment's
+     * column only has its own grades, not the removed one's.
+     */
+    @Test
+    void testFreedColumnDoesNotLeak() throws IOException {
+        Course reopened = writeAndReopen();
+        Assignment quiz = reopened.findAssignmentByName("Quiz");
+        assertEquals(20.0, quiz.getPointsWorth(), 0.001);
+        assertEquals(18.0, reopened.getEnrolledStudent("bob").getGradeForAssignment(quiz).getPointsEarned(), 0.001);
+        assertEquals("quiz ok", reopened.getEnrolledStudent("bob").getGradeForAssignment(quiz).getFeedback());
+        assertNull(reopened.getEnrolledStudent("alice").getGradeForAssignment(quiz), "Removed assignment's grade leaked in");
+        assertNull(reopened.getEnrolledStudent("carol").getGradeForAssignment(quiz), "Removed assignment's grade leaked in");
+        assertEquals(1, reopened.getGradeMatrix().getGradeCount(reopened.getGradeMatrix().columnOf(quiz)));
+    }
+
+    /**
+     * testColumnsLoadWhenFirstRead checks no column is decoded by toCourse, and reading
+     * one cell only loads that assignment's column.
+     */
+    @Test
+    void testColumnsLoadWhenFirstRead() throws IOException {
+        Course reopened = writeAndReopen();
+        GradeMatrix matrix = reopened.getGradeMatrix();
+        int hw1Col = matrix.columnOf(reopened.findAssignmentByName("HW1"));
+        int projectCol = matrix.columnOf(reopened.findAssignmentByName("Project"));
+        int quizCol = matrix.columnOf(reopened.findAssignmentByName("Quiz"));
+        assertFalse(matrix.isColumnLoaded(hw1Col), "Columns shouldn't load until read");
+        assertFalse(matrix.isColumnLoaded(projectCol), "Columns shouldn't load until read");
+        assertFalse(matrix.isColumnLoaded(quizCol), "Columns shouldn't load until read");
+
+        int aliceRow = matrix.indexOfStudent("alice");
+        assertEquals(9.0, matrix.getPointsEarned(aliceRow, hw1Col), 0.001);
+        assertTrue(matrix.isColumnLoaded(hw1Col));
+        assertFalse(matrix.isColumnLoaded(projectCol), "Reading one column shouldn't load the others");
+        assertFalse(matrix.isColumnLoaded(quizCol), "Reading one column shouldn't load the others");
+    }
+
+    @Test
+    void testNotACourseFile() throws IOException {
+        Path junk = folder.resolve("junk" + BinaryCourseFile.FILE_EXTENSION);
+        Files.write(junk, new byte[100]);
+        assertThrows(IOException.class, () -> BinaryCourseFile.open(junk));
+        assertThrows(IllegalArgumentException.class, () -> BinaryCourseFile.write(null, junk));
+    }
+}
@@ -0,0 +1,145 @@
+package test.persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import model.*;
+import model.grading.*;
+import persistence.GradebookJson;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests CourseTypeAdapter through GradebookJson.
+ * We write a course and read it back with a resolver that hands out fresh students
+ * by username, like loading the teacher's file after the student files.
+ */
+class CourseTypeAdapterTest {
+
+    private Course course;
+    // the students the reading side knows about, new objects for the same usernames.
+    private Map<String, Student> loadedStudents;
+
+    @BeforeEach
+    void setUp() {
+        course = new Course("Adapter Course", "ADP101", "Spring", true);
+        course.setGradeCalculator(new CategoryBasedCalculator());
+        course.addGradingCategory(new GradingCategory("hw", 0.6, 1, DropPolicy.LOWEST_PERCENTAGE));
+        course.addGradingCategory(new GradingCategory("exam", 0.4, 0));
+        course.createGroup("Team 1");
+        loadedStudents = new HashMap<>();
+        for (String username : new String[] {"alice", "bob"}) {
+            course.enrollStudent(Student.fromStoredAccount(username, "Last", username + "@test.com", "hash", username, username));
+            loadedStudents.put(username, Student.fromStoredAccount(username, "Last", username + "@test.com", "hash", username, username));
+        }
+        course.addStudentToGroup("Team 1", course.getEnrolledStudent("alice"));
+
+        Assignment hw1 = new Assignment("HW1", 10.0, "2025-01-01", "hw", null);
+        hw1.setDescription("Chapter 1");
+        Assignment project = new Assignment("Project", 50.0, "2025-02-01", "exam", course.findGroupByName("Team 1"));
+        course.addAssignment(hw1);
+        course.addAssignment(project);
+        course.getEnrolledStudent("alice").addGrade(hw1, new Grade(9.0, "nice"));
+        course.getEnrolledStudent("bob").addGrade(hw1, new Grade(6.0, null));
+        course.getEnrolledStudent("alice").addGrade(project, new Grade(40.0, "team work"));
+        hw1.markGraded();
+    }
+
+    private Course roundTrip(Gson gson) {
+        String json = gson.toJson(course, Course.class);
+        return gson.fromJson(json, Course.class);
+    }
+
+    /**
+     * testRoundTripKeepsEverything checks the calculator, categories with their drop
+     * policy, groups, roster and assignments with grades all come back.
+     */
+    @Test
+    void testRoundTripKeepsEverything() {
+        Course again = roundTrip(GradebookJson.create(false, null, loadedStudents::get));
+
+        assertEquals("Adapter Course", again.getName());
+        assertEquals("ADP101", again.getCourseId());
+        assertEquals("Spring", again.getSemester());
+        assertTrue(again.usesCategories());
+        assertTrue(again.getGradeCalculator() instanceof CategoryBasedCalculator, "Calculator mode should come back");
+
+        assertEquals(2, again.getGradingCategories().size());
+        GradingCategory hw = again.getGradingCategories().get("hw");
+        assertEquals(0.6, hw.getWeight(), 0.001);
+        assertEquals(1, hw.getNumDropped());
+        assertEquals(DropPolicy.LOWEST_PERCENTAGE, hw.getDropPolicy());
+        assertEquals(DropPolicy.LOWEST_POINTS, again.getGradingCategories().get("exam").getDropPolicy());
+
+        // the roster is by username, so it's the resolver's objects that get enrolled.
+        assertEquals(2, again.getEnrolledStudents().size());
+        Student alice = again.getEnrolledStudent("alice");
+        assertSame(loadedStudents.get("alice"), alice);
+        assertSame(loadedStudents.get("bob"), again.getEnrolledStudent("bob"));
+        Group team = again.findGroupByName("Team 1");
+        assertNotNull(team);
+        assertTrue(team.contains(alice));
+        assertEquals(1, team.size());
+
+        Assignment hw1 = again.findAssignmentByName("HW1");
+        assertEquals(10.0, hw1.getPointsWorth(), 0.001);
+        assertEquals("2025-01-01", hw1.getDueDate());
+        assertEquals("hw", hw1.getCategoryName());
+        assertEquals("Chapter 1", hw1.getDescription());
+        assertTrue(hw1.isGraded());
+        assertEquals(9.0, alice.getGradeForAssignment(hw1).getPointsEarned(), 0.001);
+        assertEquals("nice", alice.getGradeForAssignment(hw1).getFeedback());
+        assertEquals(6.0, again.getEnrolledStudent("bob").getGradeForAssignment(hw1).getPointsEarned(), 0.001);
+        Assignment project = again.findAssignmentByName("Project");
+        assertSame(team, project.getGroup(), "Assignment should share the course's group");
+        assertFalse(project.isGraded());
+        assertEquals(40.0, alice.getGradeForAssignment(project).getPointsEarned(), 0.001);
+    }
+
+    /**
+     * testPointsModeAndMissingStudents checks the points calculator comes back too, and
+     * students the resolver doesn't know are left out of the roster and groups.
+     */
+    @Test
+    void testPointsModeAndMissingStudents() {
+        course.setGradeCalculator(new PointsBasedCalculator());
+        Map<String, Student> onlyBob = new HashMap<>();
+        onlyBob.put("bob", loadedStudents.get("bob"));
+        Course again = roundTrip(GradebookJson.create(false, null, onlyBob::get));
+
+        assertTrue(again.getGradeCalculator() instanceof PointsBasedCalculator);
+        assertEquals(1, again.getEnrolledStudents().size());
+        assertNull(again.getEnrolledStudent("alice"));
+        assertEquals(0, again.findGroupByName("Team 1").size());
+        // grades are kept on the assignment even for a student who isn't loaded.
+        assertEquals(9.0, again.findAssignmentByName("HW1").getGrade("alice").getPointsEarned(), 0.001);
+    }
+
+    /**
+     * testNoResolverSkipsRoster checks reading without a student resolver still gets
+     * the course, just with nobody enrolled.
+     */
+    @Test
+    void testNoResolverSkipsRoster() {
+        Course again = roundTrip(GradebookJson.create(false));
+        assertTrue(again.getEnrolledStudents().isEmpty());
+        assertEquals(2, again.getAllAssignments().size());
+        assertEquals(2, again.getGradingCategories().size());
+    }
+
+    @Test
+    void testBadCourses() {
+        Gson gson = GradebookJson.create(false);
+        assertThrows(JsonParseException.class,
+            () -> gson.fromJson("{\"courseId\": \"X1\", \"name\": \"X\", \"semester\": \"S\","
+                + " \"categories\": [{\"name\": \"hw\", \"weight\": 1.0, \"dropPolicy\": \"HIGHEST\"}]}", Course.class));
+        assertThrows(JsonParseException.class,
+            () -> gson.fromJson("{\"courseId\": \"X1\", \"name\": \"X\", \"semester\": \"S\","
+                + " \"assignments\": [{\"name\": \"HW1\", \"pointsWorth\": 0}]}", Course.class));
+    }
+}
@@ -0,0 +1,125 @@
+package test.persistence;
+
+import model.*;
+import persistence.FileUserRepository;
+import persistence.GradebookJson;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests FileUserRepository.
+ * We check lookups come from the index but every one gets its own object,
+ * that files changed outside the app are noticed, and saving.
+ */
+class FileUserRepositoryTest {
+
+    private Path folder;
+    private FileUserRepository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        folder = Files.createTempDirectory("accounts-test");
+        FileUserRepository writer = new FileUserRepository(folder.toString(), GradebookJson.create(true));
+        writer.save(Student.fromStoredAccount("Alice", "A", "a@test.com", "hashA", "alice", "S1"));
+        writer.save(Teacher.fromStoredAccount("Tom", "T", "t@test.com", "hashT", "tom", "T1"));
+        // a new repository, so everything comes from reading the folder.
+        repository = new FileUserRepository(folder.toString(), GradebookJson.create(true));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * testIndexHitGivesFreshObject checks a student from the index is the right
+     * type and that a second login doesn't get the first one's courses.
+     */
+    @Test
+    void testIndexHitGivesFreshObject() {
+        User first = repository.findByUsername("alice");
+        assertTrue(first instanceof Student, "alice should load as a Student");
+        assertEquals("hashA", first.getHashedPassword());
+        assertTrue(repository.findByUsername("tom") instanceof Teacher, "tom should load as a Teacher");
+
+        Course course = new Course("Session Course", "SES101", "Test Sem", false);
+        course.enrollStudent((Student) first);
+
+        Student second = (Student) repository.findByUsername("alice");
+        assertNotSame(first, second, "Each lookup should get its own object");
+        assertTrue(second.getCurrentCourses().isEmpty(), "Last session's course shouldn't carry over");
+        assertNull(repository.findByUsername("nobody"));
+        assertNull(repository.findByUsername(null));
+    }
+
+    /**
+     * testStaleFileIsReadAgain changes and deletes account files behind the
+     * repository's back and checks the lookups notice.
+     */
+    @Test
+    void testStaleFileIsReadAgain() throws IOException {
+        assertEquals("Alice", repository.findByUsername("alice").getFirstName());
+
+        // another copy of the app saves a change, the length changes so it's read again.
+        FileUserRepository otherApp = new FileUserRepository(folder.toString(), GradebookJson.create(true));
+        otherApp.save(Student.fromStoredAccount("Alicia", "A", "a@test.com", "hashA", "alice", "S1"));
+        assertEquals("Alicia", repository.findByUsername("alice").getFirstName());
+
+        // same length, only the modified time tells them apart.
+        File file = folder.resolve("alice.json").toFile();
+        String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        Files.write(file.toPath(), json.replace("Alicia", "Alisha").getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(file.lastModified() + 5000));
+        assertEquals("Alisha", repository.findByUsername("alice").getFirstName());
+
+        assertTrue(file.delete());
+        assertNull(repository.findByUsername("alice"), "Deleted file should be gone");
+        assertFalse(repository.exists("alice"));
+
+        // made outside the app after startup.
+        otherApp.save(Student.fromStoredAccount("Ben", "B", "b@test.com", "hashB", "ben", "S2"));
+        assertTrue(repository.exists("ben"), "exists should notice a new file too");
+        assertEquals("Ben", repository.findByUsername("ben").getFirstName());
+    }
+
+    /**
+     * testSaveWritesFileAndIndex checks a saved account is on disk and found right away.
+     */
+    @Test
+    void testSaveWritesFileAndIndex() {
+        assertFalse(repository.exists("carla"));
+        assertTrue(repository.save(Student.fromStoredAccount("Carla", "C", "c@test.com", "hashC", "carla", "S3")));
+        assertTrue(folder.resolve("carla.json").toFile().exists(), "Account file should be written");
+        assertTrue(repository.exists("carla"));
+        assertEquals("hashC", repository.findByUsername("carla").getHashedPassword());
+        assertFalse(repository.save(null));
+    }
+
+    /**
+     * testFindUsersByUsernames checks the batch lookup leaves missing ones out and keeps the order.
+     */
+    @Test
+    void testFindUsersByUsernames() {
+        List<String> wanted = Arrays.asList("tom", "nobody", "alice", "tom");
+        Map<String, User> found = repository.findUsersByUsernames(wanted);
+        assertEquals(List.of("tom", "alice"), List.copyOf(found.keySet()));
+        assertTrue(found.get("alice") instanceof Student);
+        assertTrue(repository.findUsersByUsernames(null).isEmpty());
+    }
+}
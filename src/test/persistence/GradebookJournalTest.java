@@ -0,0 +1,306 @@
+package test.persistence;
+
+import model.*;
+import model.grading.*;
+import persistence.GradebookJournal;
+import persistence.JournalRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests GradebookJournal.
+ * We write records, close the journal, open it again and replay into fresh
+ * courses, like the app does after a restart.
+ */
+class GradebookJournalTest {
+
+    private Path folder;
+    private Student alice;
+    private Student bob;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        folder = Files.createTempDirectory("journal-test");
+        alice = Student.fromStoredAccount("Alice", "A", "a@test.com", "hash", "alice", "S1");
+        bob = Student.fromStoredAccount("Bob", "B", "b@test.com", "hash", "bob", "S2");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    // the course like the app sets it up at startup, before anything is replayed.
+    private static Course freshCourse() {
+        Course course = new Course("Journal Course", "JRN101", "Test Sem", false);
+        course.setGradeCalculator(new PointsBasedCalculator());
+        course.addAssignment(new Assignment("HW1", 10.0, "2025-01-01", "hw", null));
+        return course;
+    }
+
+    // the newest segment file, the one being written to.
+    private Path activeSegment() throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.filter(f -> f.toString().endsWith(".journal")).max(Comparator.naturalOrder()).orElseThrow();
+        }
+    }
+
+    // like the app dying halfway through writing a line.
+    private void tear(String partialLine) throws IOException {
+        Files.write(activeSegment(), partialLine.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static String longFeedback() {
+        StringBuilder feedback = new StringBuilder();
+        while (feedback.length() < 20000) {
+            feedback.append("Good work on part ").append(feedback.length()).append(". ");
+        }
+        return feedback.toString();
+    }
+
+    /**
+     * testEveryControllerChangeReplays logs one of each kind of change and checks
+     * they all come back, so nothing the teacher did is lost after a crash.
+     */
+    @Test
+    void testEveryControllerChangeReplays() throws IOException {
+        Course course = freshCourse();
+        Assignment hw1 = course.findAssignmentByName("HW1");
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            journal.append(JournalRecord.enrollStudent(course, alice));
+            journal.append(JournalRecord.enrollStudent(course, bob));
+            journal.append(JournalRecord.removeStudent(course, bob));
+            hw1.setAssignmentName("HW1 Final");
+            hw1.setPointsPossible(20.0);
+            hw1.setGraded(true);
+            journal.append(JournalRecord.editAssignment(course, "HW1", hw1));
+            journal.append(JournalRecord.setGradingMode(course, new CategoryBasedCalculator()));
+            journal.append(JournalRecord.setCategories(course, List.of(new GradingCategory("hw", 1.0, 0, DropPolicy.LOWEST_PERCENTAGE))));
+            journal.append(JournalRecord.createGroup(course, "Team 1"));
+            journal.append(JournalRecord.addGroupMember(course, "Team 1", alice));
+            journal.append(JournalRecord.addGrade(course, alice, hw1, new Grade(18.0, "nice")));
+        }
+
+        Course restarted = freshCourse();
+        Student aliceAgain = Student.fromStoredAccount("Alice", "A", "a@test.com", "hash", "alice", "S1");
+        Student bobAgain = Student.fromStoredAccount("Bob", "B", "b@test.com", "hash", "bob", "S2");
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            GradebookJournal.ReplayResult result = journal.replay(Map.of("JRN101", restarted),
+                Map.<String, User>of("alice", aliceAgain, "bob", bobAgain)::get);
+            assertEquals(9, result.getApplied());
+            assertEquals(0, result.getSkipped());
+        }
+
+        assertNotNull(restarted.getEnrolledStudent("alice"));
+        assertNull(restarted.getEnrolledStudent("bob"), "Removed student shouldn't come back");
+        assertNull(restarted.findAssignmentByName("HW1"), "Renamed assignment shouldn't come back under its old name");
+        Assignment renamed = restarted.findAssignmentByName("HW1 Final");
+        assertNotNull(renamed);
+        assertEquals(20.0, renamed.getPointsWorth(), 0.001);
+        assertTrue(renamed.isGraded());
+        assertEquals(1, restarted.getAllAssignments().size());
+        assertTrue(restarted.getGradeCalculator() instanceof CategoryBasedCalculator);
+        GradingCategory hw = restarted.getGradingCategories().get("hw");
+        assertNotNull(hw);
+        assertEquals(DropPolicy.LOWEST_PERCENTAGE, hw.getDropPolicy());
+        assertTrue(restarted.findGroupByName("Team 1").contains(aliceAgain));
+        assertEquals(18.0, aliceAgain.getGradeForAssignment(renamed).getPointsEarned(), 0.001);
+    }
+
+    /**
+     * testGroupRemovalsReplay takes a member out of one group and deletes another,
+     * and checks neither comes back after a restart.
+     */
+    @Test
+    void testGroupRemovalsReplay() throws IOException {
+        Course course = freshCourse();
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            journal.append(JournalRecord.enrollStudent(course, alice));
+            journal.append(JournalRecord.enrollStudent(course, bob));
+            journal.append(JournalRecord.createGroup(course, "Team 1"));
+            journal.append(JournalRecord.createGroup(course, "Team 2"));
+            journal.append(JournalRecord.addGroupMember(course, "Team 1", alice));
+            journal.append(JournalRecord.addGroupMember(course, "Team 1", bob));
+            journal.append(JournalRecord.removeGroupMember(course, "Team 1", bob));
+            journal.append(JournalRecord.removeGroup(course, "Team 2"));
+        }
+
+        Course restarted = freshCourse();
+        Student aliceAgain = Student.fromStoredAccount("Alice", "A", "a@test.com", "hash", "alice", "S1");
+        Student bobAgain = Student.fromStoredAccount("Bob", "B", "b@test.com", "hash", "bob", "S2");
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            GradebookJournal.ReplayResult result = journal.replay(Map.of("JRN101", restarted),
+                Map.<String, User>of("alice", aliceAgain, "bob", bobAgain)::get);
+            assertEquals(8, result.getApplied());
+            assertEquals(0, result.getSkipped());
+        }
+
+        Group team1 = restarted.findGroupByName("Team 1");
+        assertNotNull(team1);
+        assertTrue(team1.contains(aliceAgain));
+        assertFalse(team1.contains(bobAgain), "Removed member shouldn't come back");
+        assertNull(restarted.findGroupByName("Team 2"), "Removed group shouldn't come back");
+    }
+
+    /**
+     * testTornTailIsCutOff writes a few records, adds half a line like a crash would,
+     * and checks the journal carries on from the last whole record.
+     */
+    @Test
+    void testTornTailIsCutOff() throws IOException {
+        Course course = freshCourse();
+        Assignment hw1 = course.findAssignmentByName("HW1");
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            journal.append(JournalRecord.enrollStudent(course, alice));
+            journal.append(JournalRecord.enrollStudent(course, bob));
+            journal.append(JournalRecord.addGrade(course, alice, hw1, new Grade(7.0, "ok")));
+        }
+        long cleanSize = Files.size(activeSegment());
+        tear("{\"seq\":4,\"type\":\"ADD_GR");
+
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            assertEquals(3, journal.getLastSeq(), "Half written record shouldn't count");
+            assertEquals(cleanSize, Files.size(activeSegment()), "Half line should be cut off");
+            assertEquals(4L, journal.append(JournalRecord.addGrade(course, bob, hw1, new Grade(9.0, "great"))).join().longValue());
+        }
+
+        Course restarted = freshCourse();
+        Student aliceAgain = Student.fromStoredAccount("Alice", "A", "a@test.com", "hash", "alice", "S1");
+        Student bobAgain = Student.fromStoredAccount("Bob", "B", "b@test.com", "hash", "bob", "S2");
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            GradebookJournal.ReplayResult result = journal.replay(Map.of("JRN101", restarted),
+                Map.<String, User>of("alice", aliceAgain, "bob", bobAgain)::get);
+            assertEquals(4, result.getApplied());
+            assertEquals(0, result.getSkipped());
+            assertEquals(4, result.getLastSeq());
+        }
+        Assignment hw1Again = restarted.findAssignmentByName("HW1");
+        assertEquals(7.0, aliceAgain.getGradeForAssignment(hw1Again).getPointsEarned(), 0.001);
+        assertEquals(9.0, bobAgain.getGradeForAssignment(hw1Again).getPointsEarned(), 0.001);
+    }
+
+    /**
+     * testLongRecordAtTheEnd checks a last record longer than the bit of the file the
+     * journal reads at a time, first whole and then with another long one torn after it.
+     */
+    @Test
+    void testLongRecordAtTheEnd() throws IOException {
+        Course course = freshCourse();
+        Assignment hw1 = course.findAssignmentByName("HW1");
+        String feedback = longFeedback();
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            journal.append(JournalRecord.enrollStudent(course, alice));
+            journal.append(JournalRecord.addGrade(course, alice, hw1, new Grade(8.0, feedback)));
+        }
+
+        // the whole last line is longer than one read, it still has to be found.
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            assertEquals(2, journal.getLastSeq(), "Long last record should still be read");
+        }
+
+        // a torn line longer than one read has to be cut off at its start, not in the middle.
+        long cleanSize = Files.size(activeSegment());
+        tear("{\"seq\":3,\"type\":\"ADD_GRADE\",\"feedback\":\"" + feedback);
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            assertEquals(2, journal.getLastSeq());
+            assertEquals(cleanSize, Files.size(activeSegment()), "Whole torn line should be cut off");
+            assertEquals(3L, journal.append(JournalRecord.enrollStudent(course, bob)).join().longValue());
+        }
+
+        Course restarted = freshCourse();
+        Student aliceAgain = Student.fromStoredAccount("Alice", "A", "a@test.com", "hash", "alice", "S1");
+        Student bobAgain = Student.fromStoredAccount("Bob", "B", "b@test.com", "hash", "bob", "S2");
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            GradebookJournal.ReplayResult result = journal.replay(Map.of("JRN101", restarted),
+                Map.<String, User>of("alice", aliceAgain, "bob", bobAgain)::get);
+            assertEquals(3, result.getApplied());
+            assertEquals(0, result.getSkipped());
+        }
+        assertEquals(feedback, aliceAgain.getGradeForAssignment(restarted.findAssignmentByName("HW1")).getFeedback());
+        assertNotNull(restarted.getEnrolledStudent("bob"));
+    }
+
+    /**
+     * testGroupCommitKeepsEveryRecord appends from several threads at once plus a
+     * whole class with appendAll, and checks every record gets its own number and
+     * all of them replay after a restart, across a segment roll too.
+     */
+    @Test
+    void testGroupCommitKeepsEveryRecord() throws Exception {
+        Course course = freshCourse();
+        Assignment hw1 = course.findAssignmentByName("HW1");
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            students.add(Student.fromStoredAccount("First" + i, "Last", "s" + i + "@test.com", "hash", "s" + i, "S" + i));
+        }
+
+        List<CompletableFuture<Long>> pending = new ArrayList<>();
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            List<JournalRecord> enrollments = new ArrayList<>();
+            for (Student student : students) {
+                enrollments.add(JournalRecord.enrollStudent(course, student));
+            }
+            assertEquals(40L, journal.appendAll(enrollments).join().longValue(), "appendAll gives the last record's number");
+
+            journal.rollSegment().join();
+            ExecutorService threads = Executors.newFixedThreadPool(4);
+            for (Student student : students) {
+                threads.execute(() -> {
+                    CompletableFuture<Long> done = journal.append(JournalRecord.addGrade(course, student, hw1, new Grade(5.0, "")));
+                    synchronized (pending) {
+                        pending.add(done);
+                    }
+                });
+            }
+            threads.shutdown();
+            assertTrue(threads.awaitTermination(10, TimeUnit.SECONDS));
+
+            List<Long> seqs = new ArrayList<>();
+            for (CompletableFuture<Long> done : pending) {
+                seqs.add(done.join());
+            }
+            assertEquals(40, seqs.stream().distinct().count(), "Every record should get its own number");
+            assertEquals(80, journal.getLastSeq());
+        }
+
+        Course restarted = freshCourse();
+        Map<String, User> accounts = new HashMap<>();
+        for (Student student : students) {
+            accounts.put(student.getUsername(), Student.fromStoredAccount(student.getFirstName(), "Last",
+                student.getEmail(), "hash", student.getUsername(), "S"));
+        }
+        try (GradebookJournal journal = new GradebookJournal(folder)) {
+            assertEquals(80, journal.getLastSeq(), "Reopening should pick up after the last record");
+            GradebookJournal.ReplayResult result = journal.replay(Map.of("JRN101", restarted), accounts::get);
+            assertEquals(80, result.getApplied());
+            assertEquals(0, result.getSkipped());
+        }
+        assertEquals(40, restarted.getEnrolledStudents().size());
+        Assignment hw1Again = restarted.findAssignmentByName("HW1");
+        for (User account : accounts.values()) {
+            assertEquals(5.0, ((Student) account).getGradeForAssignment(hw1Again).getPointsEarned(), 0.001);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package test.persistence;
+
+import model.*;
+import model.grading.*;
+import persistence.GradebookSnapshot;
+import persistence.GradebookStore;
+import persistence.JournalRecord;
+import persistence.GradebookJournal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests GradebookStore and GradebookSnapshot together.
+ * We take a snapshot, close the store, open it again and load into courses
+ * set up like the app does at startup, and check compaction keeps what it should.
+ */
+class GradebookStoreTest {
+
+    private Path folder;
+    // the accounts the app would look students up in.
+    private Map<String, User> accounts;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        folder = Files.createTempDirectory("store-test");
+        accounts = new HashMap<>();
+        for (String username : List.of("alice", "bob", "carol")) {
+            accounts.put(username, Student.fromStoredAccount(username, "Last", username + "@test.com", "hash", username, username));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    // the course like the app sets it up at startup, before anything is loaded.
+    private static Course startupCourse(String courseId) {
+        Course course = new Course("Store Course", courseId, "Test Sem", false);
+        course.setGradeCalculator(new PointsBasedCalculator());
+        course.addGradingCategory(new GradingCategory("hw", 1.0, 0));
+        course.addAssignment(new Assignment("HW1", 10.0, "2025-01-01", "hw", null));
+        return course;
+    }
+
+    // every startup gets its own student objects, like reading the account files again.
+    private Map<String, User> freshAccounts() {
+        Map<String, User> copies = new HashMap<>();
+        for (User user : accounts.values()) {
+            copies.put(user.getUsername(), Student.fromStoredAccount(user.getFirstName(), "Last", user.getEmail(),
+                "hash", user.getUsername(), user.getUsername()));
+        }
+        return copies;
+    }
+
+    private Student account(String username) {
+        return (Student) accounts.get(username);
+    }
+
+    private int segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(folder.resolve("journal"))) {
+            return (int) files.filter(f -> f.toString().endsWith(".journal")).count();
+        }
+    }
+
+    /**
+     * testSnapshotRestoreWinsOverStartup edits a course, snapshots it and checks that
+     * loading into a startup course gives back the edits, not the startup values:
+     * changed assignment details, a removed student and changed categories.
+     */
+    @Test
+    void testSnapshotRestoreWinsOverStartup() throws IOException {
+        Course course = startupCourse("STO101");
+        Assignment hw1 = course.findAssignmentByName("HW1");
+        try (GradebookStore store = new GradebookStore(folder, 1000)) {
+            course.enrollStudent(account("alice"));
+            course.enrollStudent(account("bob"));
+            course.enrollStudent(account("carol"));
+            course.removeStudent(account("carol"));
+            hw1.setPointsPossible(25.0);
+            hw1.setDueDate("2025-02-01");
+            hw1.setDescription("Chapter 2 problems");
+            hw1.markGraded();
+            course.clearGradingCategories();
+            course.addGradingCategory(new GradingCategory("hw", 0.6, 1, DropPolicy.LOWEST_PERCENTAGE));
+            course.addGradingCategory(new GradingCategory("exam", 0.4, 0));
+            course.setGradeCalculator(new CategoryBasedCalculator());
+            course.createGroup("Team 1");
+            course.addStudentToGroup("Team 1", account("alice"));
+            course.addAssignment(new Assignment("Exam", 50.0, "2025-03-01", "exam", null));
+            account("alice").addGrade(hw1, new Grade(20.0, "good"));
+            account("bob").addGrade(course.findAssignmentByName("Exam"), new Grade(45.0, "great"));
+            account("alice").setFinalGradeForCourse(course, "A");
+
+            GradebookSnapshot snapshot = store.snapshotNow(List.of(course)).join();
+            assertNotNull(snapshot);
+        }
+
+        // startup: the course has carol from an old account file and the old HW1 details.
+        Course restarted = startupCourse("STO101");
+        Map<String, User> startupAccounts = freshAccounts();
+        restarted.enrollStudent((Student) startupAccounts.get("carol"));
+        try (GradebookStore store = new GradebookStore(folder, 1000)) {
+            assertNotNull(store.getLatestSnapshot(), "Snapshot should be read back from disk");
+            store.load(Map.of("STO101", restarted), startupAccounts::get);
+        }
+
+        assertNotNull(restarted.getEnrolledStudent("alice"));
+        assertNotNull(restarted.getEnrolledStudent("bob"));
+        assertNull(restarted.getEnrolledStudent("carol"), "Student not in the saved roster should be taken out");
+        Assignment hw1Again = restarted.findAssignmentByName("HW1");
+        assertEquals(25.0, hw1Again.getPointsWorth(), 0.001);
+        assertEquals("2025-02-01", hw1Again.getDueDate());
+        assertEquals("Chapter 2 problems", hw1Again.getDescription());
+        assertTrue(hw1Again.isGraded());
+        assertEquals(2, restarted.getAllAssignments().size());
+        assertEquals(2, restarted.getGradingCategories().size());
+        GradingCategory hw = restarted.getGradingCategories().get("hw");
+        assertEquals(0.6, hw.getWeight(), 0.001);
+        assertEquals(1, hw.getNumDropped());
+        assertEquals(DropPolicy.LOWEST_PERCENTAGE, hw.getDropPolicy());
+        assertTrue(restarted.getGradeCalculator() instanceof CategoryBasedCalculator);
+        Student alice = restarted.getEnrolledStudent("alice");
+        assertTrue(restarted.findGroupByName("Team 1").contains(alice));
+        assertEquals(20.0, alice.getGradeForAssignment(hw1Again).getPointsEarned(), 0.001);
+        assertEquals("good", alice.getGradeForAssignment(hw1Again).getFeedback());
+        assertEquals(45.0, restarted.getEnrolledStudent("bob")
+            .getGradeForAssignment(restarted.findAssignmentByName("Exam")).getPointsEarned(), 0.001);
+        assertEquals("A", alice.getFinalGradeForCourse(restarted));
+    }
+
+    /**
+     * testCompactionKeepsWhatTheSnapshotLacks logs changes to two courses, snapshots only
+     * one of them, and checks compaction drops that course's old records but keeps the
+     * other one's, and that loading still gets everything back.
+     */
+    @Test
+    void testCompactionKeepsWhatTheSnapshotLacks() throws IOException {
+        Course saved = startupCourse("STO101");
+        Course other = startupCourse("STO202");
+        try (GradebookStore store = new GradebookStore(folder, 1000)) {
+            for (String username : List.of("alice", "bob")) {
+                saved.enrollStudent(account(username));
+                store.log(JournalRecord.enrollStudent(saved, account(username)));
+                other.enrollStudent(account(username));
+                store.log(JournalRecord.enrollStudent(other, account(username)));
+            }
+            Assignment savedHw = saved.findAssignmentByName("HW1");
+            account("alice").addGrade(savedHw, new Grade(9.0, ""));
+            store.log(JournalRecord.addGrade(saved, account("alice"), savedHw, new Grade(9.0, "")));
+
+            // only the first course is in the snapshot.
+            store.snapshotNow(List.of(saved)).join();
+            assertEquals(2, segmentCount(), "Segment with the other course's records should be kept");
+
+            // after the snapshot, these only live in the journal.
+            account("bob").addGrade(savedHw, new Grade(6.0, ""));
+            store.log(JournalRecord.addGrade(saved, account("bob"), savedHw, new Grade(6.0, ""))).join();
+        }
+
+        Course savedAgain = startupCourse("STO101");
+        Course otherAgain = startupCourse("STO202");
+        Map<String, User> startupAccounts = freshAccounts();
+        GradebookJournal.ReplayResult result;
+        try (GradebookStore store = new GradebookStore(folder, 1000)) {
+            result = store.load(Map.of("STO101", savedAgain, "STO202", otherAgain), startupAccounts::get);
+        }
+        // the other course's 2 enrollments and bob's grade, the rest came from the snapshot.
+        assertEquals(3, result.getApplied());
+        assertEquals(0, result.getCovered(), "Covered records should have been compacted away");
+        assertEquals(2, savedAgain.getEnrolledStudents().size());
+        assertEquals(2, otherAgain.getEnrolledStudents().size());
+        Assignment hw1Again = savedAgain.findAssignmentByName("HW1");
+        assertEquals(9.0, savedAgain.getEnrolledStudent("alice").getGradeForAssignment(hw1Again).getPointsEarned(), 0.001);
+        assertEquals(6.0, savedAgain.getEnrolledStudent("bob").getGradeForAssignment(hw1Again).getPointsEarned(), 0.001);
+    }
+
+    /**
+     * testSnapshotIfDue checks a snapshot only starts once enough records were logged,
+     * and that a full compaction leaves just the new segment.
+     */
+    @Test
+    void testSnapshotIfDue() throws IOException {
+        Course course = startupCourse("STO101");
+        try (GradebookStore store = new GradebookStore(folder, 3)) {
+            course.enrollStudent(account("alice"));
+            store.log(JournalRecord.enrollStudent(course, account("alice")));
+            assertFalse(store.snapshotIfDue(List.of(course)), "Not enough records yet");
+            course.enrollStudent(account("bob"));
+            store.log(JournalRecord.enrollStudent(course, account("bob")));
+            course.enrollStudent(account("carol"));
+            store.log(JournalRecord.enrollStudent(course, account("carol"))).join();
+            assertTrue(store.snapshotIfDue(List.of(course)));
+        }
+        // closing waited for the snapshot, and everything in the old segment was covered.
+        assertEquals(1, segmentCount());
+
+        Course restarted = startupCourse("STO101");
+        try (GradebookStore store = new GradebookStore(folder, 3)) {
+            assertEquals(3, store.getLatestSnapshot().getLastSeq());
+            GradebookJournal.ReplayResult result = store.load(Map.of("STO101", restarted), freshAccounts()::get);
+            assertEquals(0, result.getApplied());
+        }
+        assertEquals(3, restarted.getEnrolledStudents().size());
+    }
+}
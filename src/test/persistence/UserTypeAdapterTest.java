@@ -0,0 +1,196 @@
+package test.persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import model.*;
+import persistence.GradebookJson;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests UserTypeAdapter through GradebookJson.
+ * We write students and teachers and read them back, and check account files
+ * written by the old reflection based Gson still load.
+ */
+class UserTypeAdapterTest {
+
+    private Course current;
+    private Course finished;
+    private Map<String, Course> coursesById;
+    private Gson gson;
+
+    @BeforeEach
+    void setUp() {
+        current = new Course("Current Course", "CUR101", "Spring", false);
+        finished = new Course("Finished Course", "FIN101", "Fall", false);
+        coursesById = new HashMap<>();
+        coursesById.put(current.getCourseId(), current);
+        coursesById.put(finished.getCourseId(), finished);
+        gson = GradebookJson.create(true, coursesById::get, null);
+    }
+
+    /**
+     * testStudentRoundTrip checks a student's details, course lists and final grades
+     * come back, with the courses found by id.
+     */
+    @Test
+    void testStudentRoundTrip() {
+        Student student = Student.fromStoredAccount("Alice", "Smith", "a@test.com", "hashA", "alice", "S1");
+        student.enrollInCourse(current);
+        student.setFinalGradeForCourse(current, "B");
+        student.addCompletedCourse(finished, "A");
+
+        String json = gson.toJson(student, User.class);
+        User read = gson.fromJson(json, User.class);
+
+        assertTrue(read instanceof Student, "Should read back as a Student");
+        Student again = (Student) read;
+        assertEquals("Alice", again.getFirstName());
+        assertEquals("Smith", again.getLastName());
+        assertEquals("a@test.com", again.getEmail());
+        assertEquals("hashA", again.getHashedPassword());
+        assertEquals("alice", again.getUsername());
+        assertEquals("S1", again.getStudentId());
+        assertEquals(Role.STUDENT, again.getRole());
+        assertEquals(1, again.getCurrentCourses().size());
+        assertSame(current, again.getCurrentCourses().get(0), "Course should come from the resolver");
+        assertEquals("B", again.getFinalGradeForCourse(current));
+        assertTrue(again.hasCompletedCourse(finished));
+        assertEquals("A", again.getFinalGradeForCourse(finished));
+    }
+
+    /**
+     * testUnknownCourseIdsLeftOut checks a student file naming a course nobody has
+     * still loads, without that course.
+     */
+    @Test
+    void testUnknownCourseIdsLeftOut() {
+        Student student = Student.fromStoredAccount("Bob", "Jones", "b@test.com", "hashB", "bob", "S2");
+        student.enrollInCourse(current);
+        String json = gson.toJson(student, User.class);
+
+        Gson noCourses = GradebookJson.create(false);
+        Student again = (Student) noCourses.fromJson(json, User.class);
+        assertEquals("bob", again.getUsername());
+        assertTrue(again.getCurrentCourses().isEmpty());
+    }
+
+    /**
+     * testTeacherRoundTrip checks a teacher's details and courses come back.
+     */
+    @Test
+    void testTeacherRoundTrip() {
+        Teacher teacher = Teacher.fromStoredAccount("Tom", "Teach", "t@test.com", "hashT", "tom", "T1");
+        current.addAssignment(new Assignment("HW1", 10.0, "2025-01-01", "hw", null));
+        teacher.addCourse(current);
+
+        String json = gson.toJson(teacher, User.class);
+        User read = gson.fromJson(json, User.class);
+
+        assertTrue(read instanceof Teacher, "Should read back as a Teacher");
+        Teacher again = (Teacher) read;
+        assertEquals("tom", again.getUsername());
+        assertEquals("hashT", again.getHashedPassword());
+        assertEquals("T1", again.getTeacherId());
+        assertEquals(Role.TEACHER, again.getRole());
+        assertEquals(1, again.getCoursesTaught().size());
+        Course course = again.getCoursesTaught().get(0);
+        assertEquals("CUR101", course.getCourseId());
+        assertNotNull(course.findAssignmentByName("HW1"));
+    }
+
+    /**
+     * testOldStudentFileLoads reads a student file like the ones in accounts/,
+     * written by plain Gson before the adapters, with old style course objects.
+     */
+    @Test
+    void testOldStudentFileLoads() {
+        String old = "{\n"
+            + "  \"studentId\": \"1103897902\",\n"
+            + "  \"currentCourses\": [{\"name\": \"Current Course\", \"courseId\": \"CUR101\", \"semester\": \"Spring\","
+            + " \"enrolledStudents\": {}, \"assignments\": [], \"categories\": {}, \"useCategories\": false}],\n"
+            + "  \"completedCourses\": [],\n"
+            + "  \"grades\": {\"Assignment [name=HW1]\": {\"pointsEarned\": 9.0, \"feedback\": \"ok\"}},\n"
+            + "  \"finalGrades\": {},\n"
+            + "  \"firstName\": \"mike\",\n"
+            + "  \"lastName\": \"doe\",\n"
+            + "  \"email\": \"miked@arizona.edu\",\n"
+            + "  \"hashedPass\": \"$2a$10$hash\",\n"
+            + "  \"username\": \"miked\",\n"
+            + "  \"role\": \"STUDENT\"\n"
+            + "}";
+        Student read = (Student) gson.fromJson(old, User.class);
+        assertEquals("miked", read.getUsername());
+        assertEquals("1103897902", read.getStudentId());
+        assertEquals("$2a$10$hash", read.getHashedPassword());
+        assertEquals(1, read.getCurrentCourses().size());
+        assertSame(current, read.getCurrentCourses().get(0));
+    }
+
+    /**
+     * testOldTeacherFileLoads reads a teacher file written by plain Gson, where a course
+     * has its categories as a map, enrolled students as full objects keyed by username,
+     * and assignments with the old field names.
+     */
+    @Test
+    void testOldTeacherFileLoads() {
+        String old = "{\n"
+            + "  \"teacherId\": \"11115515535\",\n"
+            + "  \"coursesTaught\": [{\n"
+            + "    \"name\": \"Old Course\", \"courseId\": \"OLD101\", \"semester\": \"Fall\",\n"
+            + "    \"groups\": [{\"name\": \"Team 1\", \"members\": [{\"username\": \"alice\", \"firstName\": \"Alice\"}]}],\n"
+            + "    \"enrolledStudents\": {\"alice\": {\"username\": \"alice\", \"studentId\": \"S1\"}},\n"
+            + "    \"assignments\": [{\"name\": \"HW1\", \"pointsWorth\": 10.0, \"dueDate\": \"2025-01-01\","
+            + " \"categoryName\": \"hw\", \"group\": {\"name\": \"Team 1\", \"members\": []}, \"isGraded\": true,"
+            + " \"description\": \"old one\", \"studentGrades\": {\"alice\": {\"pointsEarned\": 9.0, \"feedback\": \"ok\"}}}],\n"
+            + "    \"categories\": {\"hw\": {\"name\": \"hw\", \"weight\": 1.0, \"numDropped\": 1, \"assignments\": []}},\n"
+            + "    \"useCategories\": true,\n"
+            + "    \"gradeCalculator\": {}\n"
+            + "  }],\n"
+            + "  \"firstName\": \"jackson\",\n"
+            + "  \"lastName\": \"Doe\",\n"
+            + "  \"email\": \"jacksond@arizona.edu\",\n"
+            + "  \"hashedPass\": \"$2a$10$hash\",\n"
+            + "  \"username\": \"jacksond\",\n"
+            + "  \"role\": \"TEACHER\"\n"
+            + "}";
+        Student alice = Student.fromStoredAccount("Alice", "A", "a@test.com", "hash", "alice", "S1");
+        Gson withStudents = GradebookJson.create(true, null, username -> "alice".equals(username) ? alice : null);
+
+        Teacher read = (Teacher) withStudents.fromJson(old, User.class);
+        assertEquals("jacksond", read.getUsername());
+        assertEquals("11115515535", read.getTeacherId());
+        Course course = read.getCoursesTaught().get(0);
+        assertEquals("OLD101", course.getCourseId());
+        assertTrue(course.usesCategories());
+        assertSame(alice, course.getEnrolledStudent("alice"));
+        assertTrue(course.findGroupByName("Team 1").contains(alice));
+        GradingCategory hw = course.getGradingCategories().get("hw");
+        assertNotNull(hw, "Category from the old map should load");
+        assertEquals(1, hw.getNumDropped());
+        assertEquals(DropPolicy.LOWEST_POINTS, hw.getDropPolicy());
+        Assignment hw1 = course.findAssignmentByName("HW1");
+        assertTrue(hw1.isGraded());
+        assertEquals("hw", hw1.getCategoryName());
+        assertEquals("old one", hw1.getDescription());
+        assertSame(course.findGroupByName("Team 1"), hw1.getGroup(), "Assignment should use the course's group");
+        assertEquals(9.0, alice.getGradeForAssignment(hw1).getPointsEarned(), 0.001);
+    }
+
+    @Test
+    void testBadFiles() {
+        assertThrows(JsonParseException.class, () -> gson.fromJson("{\"role\": \"STUDENT\"}", User.class));
+        assertThrows(JsonParseException.class, () -> gson.fromJson("{\"username\": \"x\", \"role\": \"WIZARD\"}", User.class));
+        // no role at all makes a plain User.
+        User plain = gson.fromJson("{\"username\": \"admin\"}", User.class);
+        assertEquals("admin", plain.getUsername());
+        assertNull(plain.getRole());
+        assertFalse(plain instanceof Student);
+    }
+}
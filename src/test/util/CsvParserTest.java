@@ -0,0 +1,45 @@
+package test.util;
+
+import util.CsvParser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests the CSV splitting the importers use.
+ * We check quoted commas, doubled quotes and quoted line breaks all come out right.
+ */
+class CsvParserTest {
+
+    /**
+     * testParseLineHandlesQuotes checks commas and doubled quotes inside quotes.
+     */
+    @Test
+    void testParseLineHandlesQuotes() {
+        List<String> fields = CsvParser.parseLine(" alice , \"Smith, Jr.\",\"say \"\"hi\"\"\",");
+        assertEquals(List.of("alice", "Smith, Jr.", "say \"hi\"", ""), fields);
+        assertThrows(IllegalArgumentException.class, () -> CsvParser.parseLine("\"never closed"));
+    }
+
+    /**
+     * testRecordReaderJoinsQuotedLineBreaks checks a quoted field with a line break
+     * comes back as one record and the line numbers stay right after it.
+     */
+    @Test
+    void testRecordReaderJoinsQuotedLineBreaks() throws IOException {
+        CsvParser.RecordReader reader = new CsvParser.RecordReader(new StringReader(
+            "username,note\nalice,\"two\nlines\"\nbrian,plain\n"));
+
+        assertEquals("username,note", reader.nextRecord());
+        String record = reader.nextRecord();
+        assertEquals(2, reader.getRecordLineNumber());
+        assertEquals(List.of("alice", "two\nlines"), CsvParser.parseLine(record));
+        assertEquals("brian,plain", reader.nextRecord());
+        assertEquals(4, reader.getRecordLineNumber());
+        assertNull(reader.nextRecord());
+    }
+}
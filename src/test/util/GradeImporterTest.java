@@ -0,0 +1,123 @@
+package test.util;
+
+import model.Assignment;
+import model.Course;
+import model.Grade;
+import model.Student;
+import util.GradeImportReport;
+import util.GradeImporter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests the GradeImporter reading a wide grade CSV into a course.
+ * We check good rows get stored, bad rows get skipped with their line number,
+ * and small chunks on more than one worker still come out in file order.
+ */
+class GradeImporterTest {
+
+    private Course course;
+    private Student alice;
+    private Student brian;
+    private Assignment hw1;
+    private Assignment hw2;
+
+    @BeforeEach
+    void setUp() {
+        course = new Course("Import Course", "IMP101", "Test Sem", false);
+        alice = new Student("Alice", "A", "a@test.com", "pw", "alice", "S1");
+        brian = new Student("Brian", "B", "b@test.com", "pw", "brian", "S2");
+        hw1 = new Assignment("HW 1", 100.0, "somedate", "hw", null);
+        hw2 = new Assignment("HW 2", 50.0, "somedate", "hw", null);
+        course.addAssignment(hw1);
+        course.addAssignment(hw2);
+        course.enrollStudent(alice);
+        course.enrollStudent(brian);
+    }
+
+    /**
+     * testImportsGoodRowsAndReportsBadOnes checks grades, blanks, unknown
+     * columns and rejected rows all show up right in the report.
+     */
+    @Test
+    void testImportsGoodRowsAndReportsBadOnes() throws IOException {
+        alice.addGrade(hw1, new Grade(10.0, "Keep me"));
+        String csv = "username,HW 1,\"HW 2\",Quiz 9\n"
+            + "alice,95,40,1\n"
+            + "\n"
+            + "brian,,45.5,\n"
+            + "nobody,80,20,\n"
+            + "brian,abc,20,\n";
+
+        GradeImporter importer = new GradeImporter(course, 2, 1);
+        GradeImportReport report = importer.importFrom(new StringReader(csv));
+
+        assertEquals(1, report.getHeaderProblems().size(), "Quiz 9 isn't an assignment");
+        assertEquals(4, report.getRowsRead(), "Empty line shouldn't count");
+        assertEquals(2, report.getRowsImported());
+        assertEquals(3, report.getGradesImported());
+        assertEquals(1, report.getBlankCells());
+        assertEquals(2, report.getRowErrorCount());
+        assertEquals(5, report.getRowErrors().get(0).getLineNumber(), "nobody is on line 5");
+        assertEquals(6, report.getRowErrors().get(1).getLineNumber(), "bad number is on line 6");
+        assertFalse(report.isClean());
+
+        assertEquals(95.0, hw1.getGrade("alice").getPointsEarned(), 0.001);
+        assertEquals("Keep me", hw1.getGrade("alice").getFeedback(), "Old feedback should stay");
+        assertEquals(45.5, hw2.getGrade("brian").getPointsEarned(), 0.001);
+        assertNull(hw1.getGrade("brian"), "Blank cell and rejected row shouldn't store anything");
+        assertTrue(hw1.isGraded());
+        assertTrue(hw2.isGraded());
+    }
+
+    /**
+     * testRepeatedUsernameAndQuotedNewline checks a second row for the same student is
+     * an error with the first row's line, a quoted cell going over two lines is one record,
+     * and the listener gets each chunk's grades together in file order.
+     */
+    @Test
+    void testRepeatedUsernameAndQuotedNewline() throws IOException {
+        String csv = "username,\"HW 1\",HW 2\n"
+            + "\"alice\",90,\"4\n0\"\n"   // lines 2 and 3, bad number but still one row
+            + "brian,70,30\n"
+            + "brian,75,35\n"
+            + "alice,91,41\n";
+        List<List<GradeImporter.CommittedGrade>> chunks = new ArrayList<>();
+        GradeImporter importer = new GradeImporter(course, 2, 1);
+        importer.setCommitListener(chunks::add);
+        GradeImportReport report = importer.importFrom(new StringReader(csv));
+
+        assertEquals(4, report.getRowsRead());
+        assertEquals(1, report.getRowsImported(), "Only brian's first row should go in");
+        assertEquals(3, report.getRowErrorCount());
+        assertEquals(2, report.getRowErrors().get(0).getLineNumber(), "Two line record starts on line 2");
+        assertEquals(5, report.getRowErrors().get(1).getLineNumber());
+        assertTrue(report.getRowErrors().get(1).getMessage().contains("line 4"), "Should say where brian was first");
+        assertEquals(6, report.getRowErrors().get(2).getLineNumber(), "alice's row with the error still counts as first");
+        assertEquals(70.0, hw1.getGrade("brian").getPointsEarned(), 0.001);
+        assertNull(hw1.getGrade("alice"));
+
+        assertEquals(1, chunks.size(), "Only the chunk with brian's row stored anything");
+        assertEquals(2, chunks.get(0).size());
+        assertSame(brian, chunks.get(0).get(0).getStudent());
+        assertSame(hw1, chunks.get(0).get(0).getAssignment());
+        assertEquals(30.0, chunks.get(0).get(1).getGrade().getPointsEarned(), 0.001);
+    }
+
+    /**
+     * testEmptyFileReportsHeaderProblem checks an empty file doesn't blow up.
+     */
+    @Test
+    void testEmptyFileReportsHeaderProblem() throws IOException {
+        GradeImportReport report = new GradeImporter(course).importFrom(new StringReader(""));
+        assertEquals(1, report.getHeaderProblems().size());
+        assertEquals(0, report.getRowsRead());
+    }
+}
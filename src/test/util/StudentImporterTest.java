@@ -0,0 +1,205 @@
+package test.util;
+
+import controller.TeacherController;
+import controller.UserController;
+import model.*;
+import persistence.UserRepository;
+import util.RosterImportReport;
+import util.StudentImporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests StudentImporter reading a roster file into a course.
+ * The accounts come from a repository kept in memory, and the roster files are
+ * written to a temp folder, so every count in the report can be checked.
+ */
+class StudentImporterTest {
+
+    private Path folder;
+    private MemoryRepository repository;
+    private Course course;
+    private StudentImporter importer;
+
+    /**
+     * setUp makes accounts for a few students and one teacher, and a course
+     * that already has carol in it.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        folder = Files.createTempDirectory("roster-test");
+        repository = new MemoryRepository();
+        for (String username : new String[] {"alice", "bob", "carol", "dave"}) {
+            repository.save(Student.fromStoredAccount(username, "Last", username + "@test.com", "hash", username, username));
+        }
+        Teacher tom = Teacher.fromStoredAccount("Tom", "Teach", "t@test.com", "hash", "tom", "T1");
+        repository.save(tom);
+
+        course = new Course("Roster Course", "ROS101", "Test Sem", false);
+        tom.addCourse(course);
+        course.enrollStudent((Student) repository.findByUsername("carol"));
+
+        UserController users = new UserController(repository, new PasswordPolicy(PasswordPolicy.LOWEST_COST));
+        importer = new StudentImporter(users, new TeacherController(tom, users));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private String rosterFile(String text) throws IOException {
+        Path file = folder.resolve("roster" + System.nanoTime() + ".csv");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+
+    /**
+     * testReportCountsEveryKindOfRow checks accepted, duplicate, unknown, wrong role and
+     * malformed rows are each counted, and the problems come back in line order.
+     */
+    @Test
+    void testReportCountsEveryKindOfRow() throws IOException {
+        String roster = "username,first,last\n"
+            + "alice,Alice,Last\n"       // 2 accepted
+            + "carol,Carol,Last\n"       // 3 already enrolled
+            + "\n"                       // 4 empty, not a row
+            + "nobody,No,Body\n"         // 5 unknown
+            + "tom,Tom,Teach\n"          // 6 teacher
+            + "alice,Alice,Again\n"      // 7 repeat in the file
+            + ",No,Name\n"               // 8 empty username
+            + "\"bob,Bob,Last\n"         // 9 quote never closes, swallows the rest
+            + "dave,Dave,Last\n";
+        RosterImportReport report = importer.importRoster(rosterFile(roster), course);
+
+        assertNotNull(report);
+        assertEquals(7, report.getRowsRead(), "Header and empty line shouldn't count");
+        assertEquals(1, report.getAccepted());
+        assertEquals(2, report.getDuplicates(), "Already enrolled and repeated in the file");
+        assertEquals(1, report.getUnknown());
+        assertEquals(1, report.getWrongRole());
+        assertEquals(2, report.getMalformed(), "Empty username and bad quoting");
+        assertEquals(6, report.getProblemCount());
+        int[] problemLines = {3, 5, 6, 7, 8, 9};
+        for (int i = 0; i < problemLines.length; i++) {
+            assertEquals(problemLines[i], report.getProblems().get(i).getLineNumber(), "Problems should be in line order");
+        }
+
+        assertNotNull(course.getEnrolledStudent("alice"));
+        assertNull(course.getEnrolledStudent("bob"), "Row with bad quoting shouldn't enroll anyone");
+        assertNull(course.getEnrolledStudent("dave"), "Swallowed by the open quote");
+        assertNull(course.getEnrolledStudent("tom"));
+        assertEquals(2, course.getEnrolledStudents().size());
+    }
+
+    /**
+     * testQuotedNewlineStaysOneRow checks a quoted field with a line break in it is
+     * one row, and the rows after it get the right line numbers.
+     */
+    @Test
+    void testQuotedNewlineStaysOneRow() throws IOException {
+        String roster = "username,first,last\n"
+            + "alice,\"Alice\nMarie\",Last\n"   // lines 2 and 3
+            + "nobody,No,Body\n"                // line 4
+            + "bob,Bob,Last\n";
+        RosterImportReport report = importer.importRoster(rosterFile(roster), course);
+
+        assertEquals(3, report.getRowsRead());
+        assertEquals(2, report.getAccepted());
+        assertEquals(1, report.getUnknown());
+        assertEquals(4, report.getProblems().get(0).getLineNumber(), "Line after the two line record");
+        assertNotNull(course.getEnrolledStudent("alice"));
+        assertNotNull(course.getEnrolledStudent("bob"));
+    }
+
+    /**
+     * testManyChunks checks a roster longer than a few chunks gets through the whole
+     * pipeline, with problems from late chunks still at the right lines.
+     */
+    @Test
+    void testManyChunks() throws IOException {
+        int students = StudentImporter.CHUNK_RECORDS * 3 + 7;
+        StringBuilder roster = new StringBuilder("username\n");
+        for (int i = 0; i < students; i++) {
+            String username = "student" + i;
+            repository.save(Student.fromStoredAccount("S", "Last", username + "@test.com", "hash", username, username));
+            roster.append(username).append('\n');
+        }
+        roster.append("ghost\n");
+        roster.append("student0\n");
+
+        RosterImportReport report = importer.importRoster(rosterFile(roster.toString()), course);
+
+        assertEquals(students + 2, report.getRowsRead());
+        assertEquals(students, report.getAccepted());
+        assertEquals(1, report.getUnknown());
+        assertEquals(1, report.getDuplicates());
+        assertEquals(students + 2, report.getProblems().get(0).getLineNumber(), "ghost is after every student");
+        assertEquals(students + 3, report.getProblems().get(1).getLineNumber());
+        assertEquals(students + 1, course.getEnrolledStudents().size(), "Everyone plus carol");
+        assertNotNull(course.getEnrolledStudent("student" + (students - 1)), "Last chunk should be enrolled too");
+    }
+
+    @Test
+    void testMissingFileAndInputs() {
+        assertNull(importer.importRoster(folder.resolve("missing.csv").toString(), course));
+        assertNull(importer.importRoster(null, course));
+        assertNull(importer.importRoster("roster.csv", null));
+        assertFalse(importer.importFromFile(folder.resolve("missing.csv").toString(), course));
+    }
+
+    /**
+     * A repository kept in a map, lookups give the same object every time.
+     */
+    private static class MemoryRepository implements UserRepository {
+        private final Map<String, User> users = new ConcurrentHashMap<>();
+
+        @Override
+        public User findByUsername(String username) {
+            return users.get(username);
+        }
+
+        @Override
+        public Map<String, User> findUsersByUsernames(Collection<String> usernames) {
+            Map<String, User> found = new LinkedHashMap<>();
+            for (String username : usernames) {
+                if (users.containsKey(username)) {
+                    found.put(username, users.get(username));
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public boolean exists(String username) {
+            return users.containsKey(username);
+        }
+
+        @Override
+        public boolean save(User user) {
+            users.put(user.getUsername(), user);
+            return true;
+        }
+
+        @Override
+        public void reload() {
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package test.view;
+
+import model.Assignment;
+import model.Course;
+import model.Grade;
+import model.Student;
+import view.GradeTableModel;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This tests the events GradeTableModel fires, without showing any window.
+ * Each change is made on the Swing thread so the model handles the course event
+ * right away, then we look at the table events a listener got.
+ */
+class GradeTableModelTest {
+
+    private Course course;
+    private Assignment hw1;
+    private Assignment hw2;
+    private Student alice;
+    private Student brian;
+    private GradeTableModel model;
+    private List<TableModelEvent> events;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        course = new Course("Table Course", "TBL101", "Test Sem", false);
+        hw1 = new Assignment("HW1", 10.0, "2025-01-01", "hw", null);
+        hw2 = new Assignment("HW2", 10.0, "2025-01-08", "hw", null);
+        course.addAssignment(hw1);
+        course.addAssignment(hw2);
+        alice = Student.fromStoredAccount("Alice", "A", "a@test.com", "hash", "alice", "S1");
+        brian = Student.fromStoredAccount("Brian", "B", "b@test.com", "hash", "brian", "S2");
+        course.enrollStudent(alice);
+        course.enrollStudent(brian);
+        events = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> {
+            model = new GradeTableModel(course);
+            model.addTableModelListener(events::add);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        model.detach();
+    }
+
+    // makes the change on the Swing thread, like the views do.
+    private static void onSwingThread(Runnable change) throws Exception {
+        SwingUtilities.invokeAndWait(change);
+    }
+
+    /**
+     * testGradeEditFiresOneCell checks a grade fires exactly one event for that
+     * student's row and that assignment's column.
+     */
+    @Test
+    void testGradeEditFiresOneCell() throws Exception {
+        onSwingThread(() -> hw2.addGrade("brian", new Grade(8.0, "ok")));
+
+        assertEquals(1, events.size(), "One grade should be one table event");
+        TableModelEvent event = events.get(0);
+        assertEquals(TableModelEvent.UPDATE, event.getType());
+        assertEquals(model.rowOf("brian"), event.getFirstRow());
+        assertEquals(model.rowOf("brian"), event.getLastRow());
+        assertEquals(model.columnOf(hw2), event.getColumn());
+        assertEquals("8.0", model.getValueAt(model.rowOf("brian"), model.columnOf(hw2)));
+    }
+
+    /**
+     * testBatchEnrollInsertsRows checks a studentsEnrolled summary event becomes one
+     * rows-inserted event at the end of the table.
+     */
+    @Test
+    void testBatchEnrollInsertsRows() throws Exception {
+        Student carla = Student.fromStoredAccount("Carla", "C", "c@test.com", "hash", "carla", "S3");
+        Student dev = Student.fromStoredAccount("Dev", "D", "d@test.com", "hash", "dev", "S4");
+        onSwingThread(() -> course.runInBatch(() -> {
+            course.enrollStudent(carla);
+            course.enrollStudent(dev);
+        }));
+
+        assertEquals(1, events.size(), "The batch should be one table event");
+        TableModelEvent event = events.get(0);
+        assertEquals(TableModelEvent.INSERT, event.getType());
+        assertEquals(2, event.getFirstRow());
+        assertEquals(3, event.getLastRow());
+        assertEquals(4, model.getRowCount());
+        assertEquals("dev", model.getValueAt(3, 0));
+    }
+
+    /**
+     * testRemoveStudentDeletesRow checks removing a student deletes just their row
+     * and the rows under it move up.
+     */
+    @Test
+    void testRemoveStudentDeletesRow() throws Exception {
+        int aliceRow = model.rowOf("alice");
+        onSwingThread(() -> course.removeStudent(alice));
+
+        assertEquals(1, events.size());
+        TableModelEvent event = events.get(0);
+        assertEquals(TableModelEvent.DELETE, event.getType());
+        assertEquals(aliceRow, event.getFirstRow());
+        assertEquals(aliceRow, event.getLastRow());
+        assertEquals(1, model.getRowCount());
+        assertEquals(-1, model.rowOf("alice"));
+        assertEquals(0, model.rowOf("brian"));
+    }
+
+    /**
+     * testRenameChangesStructure checks renaming an assignment redoes the headers.
+     */
+    @Test
+    void testRenameChangesStructure() throws Exception {
+        onSwingThread(() -> hw1.setAssignmentName("HW1 Final"));
+
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.HEADER_ROW, events.get(0).getFirstRow(), "Rename should be a structure change");
+        assertEquals("HW1 Final", model.getColumnName(model.columnOf(hw1)));
+    }
+}
@@ -0,0 +1,166 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CsvParser splits one line of a CSV file into its fields.
+ * The importers used to do line.split(","), which breaks as soon as a field has a
+ * comma in it. This follows the usual CSV quoting: a field in double quotes can have
+ * commas in it, and two double quotes inside a quoted field mean one double quote.
+ * Spaces around unquoted fields are trimmed, like the importers always did.
+ * A quoted field can also have line breaks in it, RecordReader joins those lines
+ * back into one record before it gets split.
+ */
+public final class CsvParser {
+
+    private CsvParser() {
+        // only static helpers
+    }
+
+    /**
+     * Splits one CSV line into fields.
+     * @param line the line, without the line break.
+     * @return the fields in order, an empty line gives one empty field.
+     * @throws IllegalArgumentException if a quoted field is never closed or has junk after the closing quote.
+     */
+    public static List<String> parseLine(String line) {
+        if (line == null) {
+            throw new IllegalArgumentException("line cannot be null");
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int length = line.length();
+        int i = 0;
+        while (true) {
+            // skip spaces before the field, a quote can come after them
+            int start = i;
+            while (i < length && line.charAt(i) == ' ') {
+                i++;
+            }
+            if (i < length && line.charAt(i) == '"') {
+                i = readQuoted(line, i + 1, field);
+                // only spaces allowed between the closing quote and the comma
+                while (i < length && line.charAt(i) == ' ') {
+                    i++;
+                }
+                if (i < length && line.charAt(i) != ',') {
+                    throw new IllegalArgumentException("text after closing quote at position " + i);
+                }
+                fields.add(field.toString());
+            } else {
+                int comma = line.indexOf(',', start);
+                int end = (comma < 0) ? length : comma;
+                fields.add(line.substring(start, end).trim());
+                i = end;
+            }
+            field.setLength(0);
+            if (i >= length) {
+                return fields;
+            }
+            i++; // past the comma
+            if (i == length) {
+                fields.add(""); // line ends with a comma, so there's one more empty field
+                return fields;
+            }
+        }
+    }
+
+    /**
+     * RecordReader reads whole CSV records from a file, one at a time.
+     * Most records are one line, but a quoted field with a line break in it keeps
+     * going on the next line, so this keeps reading lines until every quote is closed.
+     * The record comes back as text for parseLine, so the splitting can happen on
+     * another thread from the reading.
+     */
+    public static final class RecordReader {
+        /** A record this long is given up on, it's most likely a quote that never closes. */
+        public static final int MAX_RECORD_CHARS = 1 << 20;
+
+        private final BufferedReader in;
+        private int linesRead = 0;
+        private int recordLineNumber = 0;
+
+        /**
+         * Makes a record reader, the reader isn't closed by this.
+         * @param in where to read the CSV text from.
+         */
+        public RecordReader(Reader in) {
+            if (in == null) {
+                throw new IllegalArgumentException("reader cannot be null");
+            }
+            this.in = (in instanceof BufferedReader) ? (BufferedReader) in : new BufferedReader(in);
+        }
+
+        /**
+         * Reads the next record.
+         * If the file ends inside a quote, what was read is returned anyway and
+         * parseLine will say the quote was never closed.
+         * @return the record text without its final line break, null at the end of the file.
+         * @throws IOException if reading fails.
+         */
+        public String nextRecord() throws IOException {
+            String line = in.readLine();
+            if (line == null) {
+                return null;
+            }
+            linesRead++;
+            recordLineNumber = linesRead;
+            if (hasEvenQuotes(line)) {
+                return line; // the usual case, no copying
+            }
+            StringBuilder record = new StringBuilder(line);
+            boolean insideQuote = true;
+            while (insideQuote && record.length() < MAX_RECORD_CHARS) {
+                String more = in.readLine();
+                if (more == null) {
+                    break;
+                }
+                linesRead++;
+                record.append('\n').append(more);
+                // every quote in the new line flips whether we're inside a quoted field.
+                insideQuote = hasEvenQuotes(more) == insideQuote;
+            }
+            return record.toString();
+        }
+
+        /** Line the last record started on, the first line of the file is 1. */
+        public int getRecordLineNumber() {
+            return recordLineNumber;
+        }
+
+        // doubled quotes come in pairs, so an odd count means a quote is still open.
+        private static boolean hasEvenQuotes(String text) {
+            int quotes = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '"') {
+                    quotes++;
+                }
+            }
+            return (quotes % 2) == 0;
+        }
+    }
+
+    // reads a quoted field starting just after the opening quote, returns the index after the closing quote.
+    private static int readQuoted(String line, int i, StringBuilder field) {
+        int length = line.length();
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                boolean doubled = (i + 1 < length && line.charAt(i + 1) == '"');
+                if (!doubled) {
+                    return i + 1;
+                }
+                field.append('"');
+                i += 2;
+            } else {
+                field.append(c);
+                i++;
+            }
+        }
+        throw new IllegalArgumentException("quoted field never closed");
+    }
+}
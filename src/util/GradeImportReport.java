@@ -0,0 +1,136 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * GradeImportReport says how a grade import went.
+ * It has counts of what was read and stored, every problem found with the file
+ * and how long it took. The GradeImporter fills it in, then it doesn't change.
+ */
+public class GradeImportReport {
+    /** Most row problems kept in the list, the count keeps going past this. */
+    public static final int MAX_KEPT_ERRORS = 1000;
+
+    /**
+     * RowError is one problem on one line of the file.
+     */
+    public static class RowError {
+        private final int lineNumber;
+        private final String username;
+        private final String message;
+
+        public RowError(int lineNumber, String username, String message) {
+            this.lineNumber = lineNumber;
+            this.username = username;
+            this.message = message;
+        }
+
+        /** Line in the file, the header is line 1. */
+        public int getLineNumber() { return lineNumber; }
+        /** Username on that line, null if it couldn't be read. */
+        public String getUsername() { return username; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + (username != null ? " (" + username + ")" : "") + ": " + message;
+        }
+    }
+
+    private final List<String> headerProblems = new ArrayList<>();
+    private final List<RowError> rowErrors = new ArrayList<>();
+    private int rowErrorCount = 0;
+    private int rowsRead = 0;
+    private int rowsImported = 0;
+    private long gradesImported = 0;
+    private long blankCells = 0;
+    private long elapsedNanos = 0;
+
+    // --- filled in by GradeImporter ---
+
+    void addHeaderProblem(String problem) {
+        headerProblems.add(problem);
+    }
+
+    void addRowError(RowError error) {
+        rowErrorCount++;
+        if (rowErrors.size() < MAX_KEPT_ERRORS) {
+            rowErrors.add(error);
+        }
+    }
+
+    void countRowRead() {
+        rowsRead++;
+    }
+
+    void countRowImported(int grades, int blanks) {
+        rowsImported++;
+        gradesImported += grades;
+        blankCells += blanks;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // --- getters ---
+
+    /** Problems with the header line, like assignment columns the course doesn't have. */
+    public List<String> getHeaderProblems() {
+        return Collections.unmodifiableList(headerProblems);
+    }
+
+    /** Rows that were skipped and why, at most MAX_KEPT_ERRORS of them. */
+    public List<RowError> getRowErrors() {
+        return Collections.unmodifiableList(rowErrors);
+    }
+
+    /** How many rows were skipped, even past MAX_KEPT_ERRORS. */
+    public int getRowErrorCount() {
+        return rowErrorCount;
+    }
+
+    /** Data rows read, not counting the header or empty lines. */
+    public int getRowsRead() {
+        return rowsRead;
+    }
+
+    /** Rows whose grades were stored. */
+    public int getRowsImported() {
+        return rowsImported;
+    }
+
+    /** Grades stored. */
+    public long getGradesImported() {
+        return gradesImported;
+    }
+
+    /** Empty cells, those are left alone. */
+    public long getBlankCells() {
+        return blankCells;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000L;
+    }
+
+    /** Grades stored per second, 0 if it took no time. */
+    public double getGradesPerSecond() {
+        return (elapsedNanos == 0) ? 0.0 : gradesImported * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    /** True if the header was fine and no row was skipped. */
+    public boolean isClean() {
+        return headerProblems.isEmpty() && rowErrorCount == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "GradeImportReport [rowsRead=" + rowsRead + ", rowsImported=" + rowsImported
+            + ", grades=" + gradesImported + ", blanks=" + blankCells + ", rowErrors=" + rowErrorCount
+            + ", headerProblems=" + headerProblems.size() + ", millis=" + getElapsedMillis()
+            + ", gradesPerSecond=" + String.format("%.0f", getGradesPerSecond()) + "]";
+    }
+}
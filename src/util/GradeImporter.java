@@ -0,0 +1,436 @@
+package util;
+
+import model.Assignment;
+import model.Course;
+import model.Grade;
+import model.Student;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GradeImporter reads a whole spreadsheet of grades into a course at once.
+ * The file is a wide CSV: the header is "username" then one column per assignment name,
+ * and each row after that is a student's username then their points for each assignment.
+ * An empty cell means no grade for that one, it's left alone.
+ *
+ *   username,HW 1,HW 2,Midterm
+ *   alice123,95,88,
+ *   brian456,78,82,71.5
+ *
+ * How it works, so it stays fast on big files:
+ *   - The file is read a chunk of records at a time with CsvParser.RecordReader, it's
+ *     never all in memory. A quoted cell can go over more than one line.
+ *   - Each chunk is parsed and checked on a pool of worker threads. Students and
+ *     assignments are looked up in hash maps made once at the start.
+ *   - Checked chunks are stored in file order on the thread that called the importer,
+ *     inside one course batch, so the views get one gradesChanged event for the whole file.
+ *   - Only so many chunks are in flight at once, so a huge file doesn't pile up.
+ *
+ * A row with any problem (unknown or not enrolled student, a cell that isn't a number,
+ * a negative score, bad quoting, too many cells, a username that was already on an
+ * earlier row) is skipped completely and written up in the report with its line number.
+ * Columns for assignments the course doesn't have are reported once and skipped.
+ * Grades are stored with Student.addGrade, which puts them in the course's grade
+ * matrix the same as entering them one at a time.
+ */
+public class GradeImporter {
+    /** Lines handed to a worker at a time. */
+    public static final int DEFAULT_CHUNK_ROWS = 1024;
+
+    /**
+     * Hears about the grades the importer stores, like for logging to the journal.
+     * Called once per chunk on the importer's thread, in file order, so the listener
+     * can write a whole chunk at a time.
+     */
+    public interface CommitListener {
+        void gradesCommitted(List<CommittedGrade> grades);
+    }
+
+    /** One grade the importer stored. */
+    public static final class CommittedGrade {
+        private final Student student;
+        private final Assignment assignment;
+        private final Grade grade;
+
+        CommittedGrade(Student student, Assignment assignment, Grade grade) {
+            this.student = student;
+            this.assignment = assignment;
+            this.grade = grade;
+        }
+
+        public Student getStudent() { return student; }
+        public Assignment getAssignment() { return assignment; }
+        public Grade getGrade() { return grade; }
+    }
+
+    // one checked row ready to store.
+    private static final class ParsedRow {
+        final int lineNumber;
+        final Student student;
+        final int[] columns; // positions into the header's assignments
+        final double[] points;
+        final int blanks;
+
+        ParsedRow(int lineNumber, Student student, int[] columns, double[] points, int blanks) {
+            this.lineNumber = lineNumber;
+            this.student = student;
+            this.columns = columns;
+            this.points = points;
+            this.blanks = blanks;
+        }
+    }
+
+    // what a worker made from one chunk of records, rows and errors both in line order.
+    private static final class ParsedChunk {
+        final List<ParsedRow> rows = new ArrayList<>();
+        final List<GradeImportReport.RowError> errors = new ArrayList<>();
+        int rowsRead = 0;
+    }
+
+    private final Course course;
+    private final int parallelism;
+    private final int chunkRows;
+    private CommitListener commitListener;
+
+    /**
+     * Makes an importer that uses one worker per processor.
+     * @param course the course to put the grades in.
+     */
+    public GradeImporter(Course course) {
+        this(course, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_ROWS);
+    }
+
+    /**
+     * Makes an importer.
+     * @param course the course to put the grades in.
+     * @param parallelism how many worker threads parse and check rows.
+     * @param chunkRows how many lines each worker gets at a time.
+     */
+    public GradeImporter(Course course, int parallelism, int chunkRows) {
+        if (course == null) {
+            throw new IllegalArgumentException("course cannot be null");
+        }
+        if (parallelism < 1 || chunkRows < 1) {
+            throw new IllegalArgumentException("parallelism and chunkRows must be at least 1");
+        }
+        this.course = course;
+        this.parallelism = parallelism;
+        this.chunkRows = chunkRows;
+    }
+
+    /** Sets who hears about each stored grade, null for nobody. */
+    public void setCommitListener(CommitListener listener) {
+        this.commitListener = listener;
+    }
+
+    /**
+     * Imports a grade file.
+     * @param file the CSV file, read as UTF-8.
+     * @return the report.
+     * @throws IOException if the file can't be read.
+     */
+    public GradeImportReport importFromFile(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader);
+        }
+    }
+
+    /**
+     * Imports grades from any reader, the first line has to be the header.
+     * The reader isn't closed.
+     * @param in where to read the CSV from.
+     * @return the report.
+     * @throws IOException if reading fails.
+     */
+    public GradeImportReport importFrom(Reader in) throws IOException {
+        long startNanos = System.nanoTime();
+        GradeImportReport report = new GradeImportReport();
+        CsvParser.RecordReader reader = new CsvParser.RecordReader(in);
+
+        String headerLine = reader.nextRecord();
+        if (headerLine == null) {
+            report.addHeaderProblem("file is empty, needs a header line");
+            report.setElapsedNanos(System.nanoTime() - startNanos);
+            return report;
+        }
+        Assignment[] assignmentByColumn = readHeader(headerLine, report);
+
+        // made once, then only read by the workers.
+        Map<String, Student> rosterByUsername = new HashMap<>();
+        for (Student s : course.getEnrolledStudents()) {
+            rosterByUsername.put(s.getUsername(), s);
+        }
+
+        boolean[] columnGotGrades = new boolean[assignmentByColumn.length];
+        // first line each username was on, only used on this thread.
+        Map<String, Integer> firstLineOf = new HashMap<>();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, daemonThreads());
+        ArrayDeque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+        int maxInFlight = parallelism * 2;
+        // the reads throw IOException, so the batch is closed in the finally instead of runInBatch.
+        Course.Batch batch = course.beginBatch();
+        try {
+            String[] records = new String[chunkRows];
+            int[] lineNumbers = new int[chunkRows];
+            int count = 0;
+            String record;
+            while ((record = reader.nextRecord()) != null) {
+                if (record.trim().isEmpty()) {
+                    continue; // empty lines don't count as rows
+                }
+                records[count] = record;
+                lineNumbers[count] = reader.getRecordLineNumber();
+                count++;
+                if (count == chunkRows) {
+                    inFlight.add(submit(workers, records, lineNumbers, count, assignmentByColumn, rosterByUsername));
+                    records = new String[chunkRows];
+                    lineNumbers = new int[chunkRows];
+                    count = 0;
+                    // keep memory bounded: store the oldest chunk before reading more.
+                    if (inFlight.size() >= maxInFlight) {
+                        commit(waitFor(inFlight.poll()), assignmentByColumn, columnGotGrades, firstLineOf, report);
+                    }
+                }
+            }
+            if (count > 0) {
+                inFlight.add(submit(workers, records, lineNumbers, count, assignmentByColumn, rosterByUsername));
+            }
+            while (!inFlight.isEmpty()) {
+                commit(waitFor(inFlight.poll()), assignmentByColumn, columnGotGrades, firstLineOf, report);
+            }
+
+            // mark each assignment that got grades as graded once, like addGrade does per grade.
+            for (int c = 0; c < assignmentByColumn.length; c++) {
+                if (columnGotGrades[c]) {
+                    assignmentByColumn[c].markGraded();
+                }
+            }
+        } finally {
+            for (Future<ParsedChunk> pending : inFlight) {
+                pending.cancel(true);
+            }
+            workers.shutdownNow();
+            batch.close();
+        }
+
+        report.setElapsedNanos(System.nanoTime() - startNanos);
+        System.out.println("GradeImporter finished for course " + course.getName() + ": " + report);
+        return report;
+    }
+
+    /**
+     * Reads the header, finds each column's assignment with a name lookup.
+     * @return assignment for each column, index 0 (username) and unknown columns are null.
+     */
+    private Assignment[] readHeader(String headerLine, GradeImportReport report) {
+        List<String> headers;
+        try {
+            headers = CsvParser.parseLine(stripByteOrderMark(headerLine));
+        } catch (IllegalArgumentException badQuoting) {
+            report.addHeaderProblem("header has bad quoting: " + badQuoting.getMessage());
+            return new Assignment[1];
+        }
+        if (!"username".equalsIgnoreCase(headers.get(0))) {
+            report.addHeaderProblem("first column should be username, found '" + headers.get(0) + "', using it as usernames anyway");
+        }
+
+        // exact names first, then ignoring case if nothing matches exactly.
+        Map<String, Assignment> byName = new HashMap<>();
+        Map<String, Assignment> byLowerName = new HashMap<>();
+        for (Assignment a : course.getAllAssignments()) {
+            byName.put(a.getName(), a);
+            byLowerName.putIfAbsent(a.getName().toLowerCase(Locale.ROOT), a);
+        }
+
+        Assignment[] assignmentByColumn = new Assignment[headers.size()];
+        Map<Assignment, Integer> firstColumnOf = new HashMap<>();
+        for (int c = 1; c < headers.size(); c++) {
+            String name = headers.get(c);
+            Assignment a = byName.get(name);
+            if (a == null) {
+                a = byLowerName.get(name.toLowerCase(Locale.ROOT));
+            }
+            if (a == null) {
+                report.addHeaderProblem("column " + (c + 1) + " '" + name + "' isn't an assignment in " + course.getName() + ", skipping it");
+            } else if (firstColumnOf.containsKey(a)) {
+                report.addHeaderProblem("column " + (c + 1) + " '" + name + "' repeats column " + (firstColumnOf.get(a) + 1) + ", skipping it");
+            } else {
+                firstColumnOf.put(a, c);
+                assignmentByColumn[c] = a;
+            }
+        }
+        return assignmentByColumn;
+    }
+
+    private Future<ParsedChunk> submit(ExecutorService workers, String[] records, int[] lineNumbers, int count,
+                                       Assignment[] assignmentByColumn, Map<String, Student> rosterByUsername) {
+        return workers.submit(() -> parseChunk(records, lineNumbers, count, assignmentByColumn, rosterByUsername));
+    }
+
+    // runs on a worker: parses and checks every record, doesn't touch the course.
+    // repeated usernames are checked later by commit, it sees the rows in file order.
+    private static ParsedChunk parseChunk(String[] records, int[] lineNumbers, int count,
+                                          Assignment[] assignmentByColumn, Map<String, Student> rosterByUsername) {
+        ParsedChunk chunk = new ParsedChunk();
+        int[] columns = new int[assignmentByColumn.length];
+        double[] points = new double[assignmentByColumn.length];
+        for (int i = 0; i < count; i++) {
+            chunk.rowsRead++;
+            int lineNumber = lineNumbers[i];
+
+            List<String> cells;
+            try {
+                cells = CsvParser.parseLine(records[i]);
+            } catch (IllegalArgumentException badQuoting) {
+                chunk.errors.add(new GradeImportReport.RowError(lineNumber, null, "bad quoting: " + badQuoting.getMessage()));
+                continue;
+            }
+            String username = cells.get(0);
+            if (username.isEmpty()) {
+                chunk.errors.add(new GradeImportReport.RowError(lineNumber, null, "username is empty"));
+                continue;
+            }
+            if (cells.size() > assignmentByColumn.length) {
+                chunk.errors.add(new GradeImportReport.RowError(lineNumber, username,
+                    "has " + cells.size() + " cells but the header has " + assignmentByColumn.length));
+                continue;
+            }
+            Student student = rosterByUsername.get(username);
+            if (student == null) {
+                chunk.errors.add(new GradeImportReport.RowError(lineNumber, username, "not enrolled in the course"));
+                continue;
+            }
+
+            String problem = null;
+            int gradeCount = 0;
+            int blanks = 0;
+            for (int c = 1; c < cells.size() && problem == null; c++) {
+                if (assignmentByColumn[c] == null) {
+                    continue; // column was reported in the header problems
+                }
+                String cell = cells.get(c);
+                if (cell.isEmpty()) {
+                    blanks++;
+                    continue;
+                }
+                double value;
+                try {
+                    value = Double.parseDouble(cell);
+                } catch (NumberFormatException notANumber) {
+                    problem = "'" + cell + "' under " + assignmentByColumn[c].getName() + " isn't a number";
+                    break;
+                }
+                if (Double.isNaN(value) || Double.isInfinite(value) || value < 0) {
+                    problem = "'" + cell + "' under " + assignmentByColumn[c].getName() + " isn't a valid score";
+                    break;
+                }
+                columns[gradeCount] = c;
+                points[gradeCount] = value;
+                gradeCount++;
+            }
+            if (problem != null) {
+                chunk.errors.add(new GradeImportReport.RowError(lineNumber, username, problem));
+                continue;
+            }
+            chunk.rows.add(new ParsedRow(lineNumber, student, Arrays.copyOf(columns, gradeCount), Arrays.copyOf(points, gradeCount), blanks));
+        }
+        return chunk;
+    }
+
+    // runs on the importer's thread: stores one chunk's grades.
+    // rows and errors are gone through together in line order, so a username that was
+    // on an earlier row, good or not, turns this row into an error.
+    private void commit(ParsedChunk chunk, Assignment[] assignmentByColumn, boolean[] columnGotGrades,
+                        Map<String, Integer> firstLineOf, GradeImportReport report) {
+        for (int i = 0; i < chunk.rowsRead; i++) {
+            report.countRowRead();
+        }
+        List<CommittedGrade> committed = new ArrayList<>();
+        int nextRow = 0;
+        int nextError = 0;
+        while (nextRow < chunk.rows.size() || nextError < chunk.errors.size()) {
+            boolean errorIsNext = nextRow == chunk.rows.size()
+                || (nextError < chunk.errors.size()
+                    && chunk.errors.get(nextError).getLineNumber() < chunk.rows.get(nextRow).lineNumber);
+            if (errorIsNext) {
+                GradeImportReport.RowError error = chunk.errors.get(nextError++);
+                GradeImportReport.RowError duplicate = checkRepeated(error.getLineNumber(), error.getUsername(), firstLineOf);
+                report.addRowError((duplicate != null) ? duplicate : error);
+                continue;
+            }
+            ParsedRow row = chunk.rows.get(nextRow++);
+            String username = row.student.getUsername();
+            GradeImportReport.RowError duplicate = checkRepeated(row.lineNumber, username, firstLineOf);
+            if (duplicate != null) {
+                report.addRowError(duplicate);
+                continue;
+            }
+            for (int g = 0; g < row.columns.length; g++) {
+                Assignment a = assignmentByColumn[row.columns[g]];
+                // the file only has points, keep any feedback the grade already had.
+                Grade oldGrade = a.getGrade(username);
+                Grade newGrade = new Grade(row.points[g], (oldGrade != null) ? oldGrade.getFeedback() : null);
+                row.student.addGrade(a, newGrade);
+                columnGotGrades[row.columns[g]] = true;
+                committed.add(new CommittedGrade(row.student, a, newGrade));
+            }
+            report.countRowImported(row.columns.length, row.blanks);
+        }
+        if (commitListener != null && !committed.isEmpty()) {
+            commitListener.gradesCommitted(committed);
+        }
+    }
+
+    // remembers the username's first line, or gives the error for a row that repeats it.
+    private static GradeImportReport.RowError checkRepeated(int lineNumber, String username, Map<String, Integer> firstLineOf) {
+        if (username == null || username.isEmpty()) {
+            return null;
+        }
+        Integer firstLine = firstLineOf.putIfAbsent(username, lineNumber);
+        if (firstLine == null) {
+            return null;
+        }
+        return new GradeImportReport.RowError(lineNumber, username, "username already on line " + firstLine + ", skipping this row");
+    }
+
+    private static ParsedChunk waitFor(Future<ParsedChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new IOException("grade import interrupted", interrupted);
+        } catch (ExecutionException failed) {
+            throw new IllegalStateException("grade import worker failed", failed.getCause());
+        }
+    }
+
+    private static String stripByteOrderMark(String line) {
+        return (!line.isEmpty() && line.charAt(0) == '\uFEFF') ? line.substring(1) : line;
+    }
+
+    private static java.util.concurrent.ThreadFactory daemonThreads() {
+        AtomicInteger next = new AtomicInteger(1);
+        return task -> {
+            Thread thread = new Thread(task, "grade-import-" + next.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
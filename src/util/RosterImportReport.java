@@ -0,0 +1,136 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * RosterImportReport says how a roster import went.
+ * Every data row in the file ends up in exactly one of the counts: accepted,
+ * duplicate, unknown, wrong role or malformed. Rows that weren't accepted are also
+ * listed with their line number, up to GradeImportReport.MAX_KEPT_ERRORS of them.
+ * The StudentImporter stages fill it in, then it doesn't change.
+ */
+public class RosterImportReport {
+    private final List<GradeImportReport.RowError> problems = new ArrayList<>();
+    private int problemCount = 0;
+    private int rowsRead = 0;
+    private int accepted = 0;
+    private int duplicates = 0;
+    private int unknown = 0;
+    private int wrongRole = 0;
+    private int malformed = 0;
+    private long resolveNanos = 0;
+    private long elapsedNanos = 0;
+
+    // --- filled in by StudentImporter, the stages run on different threads ---
+
+    synchronized void countRowRead() {
+        rowsRead++;
+    }
+
+    synchronized void addAccepted(int count) {
+        accepted += count;
+    }
+
+    synchronized void addDuplicate(int lineNumber, String username, String why) {
+        duplicates++;
+        addProblem(new GradeImportReport.RowError(lineNumber, username, why));
+    }
+
+    synchronized void addUnknown(int lineNumber, String username) {
+        unknown++;
+        addProblem(new GradeImportReport.RowError(lineNumber, username, "no account with that username"));
+    }
+
+    synchronized void addWrongRole(int lineNumber, String username) {
+        wrongRole++;
+        addProblem(new GradeImportReport.RowError(lineNumber, username, "account is not a student"));
+    }
+
+    synchronized void addMalformed(int lineNumber, String why) {
+        malformed++;
+        addProblem(new GradeImportReport.RowError(lineNumber, null, why));
+    }
+
+    synchronized void addResolveNanos(long nanos) {
+        resolveNanos += nanos;
+    }
+
+    synchronized void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+        // the stages add problems as they find them, put them back in file order.
+        problems.sort(Comparator.comparingInt(GradeImportReport.RowError::getLineNumber));
+    }
+
+    private void addProblem(GradeImportReport.RowError problem) {
+        problemCount++;
+        if (problems.size() < GradeImportReport.MAX_KEPT_ERRORS) {
+            problems.add(problem);
+        }
+    }
+
+    // --- getters ---
+
+    /** Rows that weren't accepted and why, in line order. */
+    public synchronized List<GradeImportReport.RowError> getProblems() {
+        return Collections.unmodifiableList(new ArrayList<>(problems));
+    }
+
+    /** How many rows weren't accepted, even past the kept list. */
+    public synchronized int getProblemCount() {
+        return problemCount;
+    }
+
+    /** Data rows read, not counting the header or empty lines. */
+    public synchronized int getRowsRead() {
+        return rowsRead;
+    }
+
+    /** Students enrolled by this import. */
+    public synchronized int getAccepted() {
+        return accepted;
+    }
+
+    /** Rows for a student already in the course or already earlier in the file. */
+    public synchronized int getDuplicates() {
+        return duplicates;
+    }
+
+    /** Rows whose username has no account. */
+    public synchronized int getUnknown() {
+        return unknown;
+    }
+
+    /** Rows whose account is a teacher, not a student. */
+    public synchronized int getWrongRole() {
+        return wrongRole;
+    }
+
+    /** Rows that couldn't be read, like bad quoting or no username. */
+    public synchronized int getMalformed() {
+        return malformed;
+    }
+
+    /** Time spent looking up accounts. */
+    public synchronized long getResolveMillis() {
+        return resolveNanos / 1_000_000L;
+    }
+
+    public synchronized long getElapsedMillis() {
+        return elapsedNanos / 1_000_000L;
+    }
+
+    /** Rows handled per second, 0 if it took no time. */
+    public synchronized double getRowsPerSecond() {
+        return (elapsedNanos == 0) ? 0.0 : rowsRead * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RosterImportReport [rowsRead=" + rowsRead + ", accepted=" + accepted + ", duplicates=" + duplicates
+            + ", unknown=" + unknown + ", wrongRole=" + wrongRole + ", malformed=" + malformed
+            + ", resolveMillis=" + getResolveMillis() + ", millis=" + getElapsedMillis() + "]";
+    }
+}
@@ -9,15 +9,59 @@ import controller.TeacherController; // Needs TeacherController to add students
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * StudentImporter handles reading student usernames from a file CSV
  * and enrolling EXISTING students into a specific course.
  * It uses the UserController to look up if the username exists and if its a student.
- * It uses the TeacherController to actually add the found student to the course roster.
+ * It uses the TeacherController to actually add the found students to the course roster.
  * This keeps all the messy file reading and parsing logic separate from the main controller.
+ *
+ * The import runs as a pipeline so a big roster file doesn't go one line at a time:
+ *   1. read:    this thread reads CSV records (quoted fields can even have line breaks)
+ *               and hands them on in chunks.
+ *   2. parse:   a worker splits each record, pulls out the username and drops repeats
+ *               and students already in the course.
+ *   3. resolve: a worker looks up each chunk's usernames with one findUsersByUsernames call
+ *               and keeps the ones that are students.
+ *   4. commit:  back on this thread, every found student is enrolled with one
+ *               addStudentsToCourse call, so one course batch and one event.
+ * The stages are joined by small bounded queues, so reading can't get far ahead of the
+ * lookups and a huge file never sits in memory all at once.
  */
 public class StudentImporter {
+    /** Records handed between stages at a time. */
+    public static final int CHUNK_RECORDS = 512;
+    /** Chunks that can wait between two stages before the earlier stage has to wait. */
+    public static final int QUEUE_CAPACITY = 4;
+
+    // records read from the file, with the line each one started on.
+    private static final class RawChunk {
+        final int[] lineNumbers = new int[CHUNK_RECORDS];
+        final String[] records = new String[CHUNK_RECORDS];
+        int count = 0;
+    }
+
+    // usernames that made it through parsing, with their lines.
+    private static final class ParsedChunk {
+        final List<Integer> lineNumbers = new ArrayList<>();
+        final List<String> usernames = new ArrayList<>();
+    }
+
+    // handed down the queues after the last real chunk.
+    private static final RawChunk END_OF_RECORDS = new RawChunk();
+    private static final ParsedChunk END_OF_USERNAMES = new ParsedChunk();
 
     //need access to these controllers to do the work.
     private UserController userController;
@@ -31,22 +75,36 @@ public class StudentImporter {
      */
     public StudentImporter(UserController uController, TeacherController tController) {
         this.userController = uController;
-        this.teacherController = tController; // Store this to call addStudentToCourse later
+        this.teacherController = tController; // Store this to call addStudentsToCourse later
     }
 
     /**
      * importFromFile reads a file expects CSV format line: username,firstname,lastname...
-     * It goes line by line, skipping empty lines and the first header line.
-     * For each line, it gets the username, uses UserController to find that user.
-     * If the user exists and is a Student, it uses the TeacherController's
-     * addStudentToCourse method to enroll them in the given targetCourse.
-     * It does not create new student accounts if a username isn't found.
+     * The first line is the header and is skipped, so are empty lines.
+     * Only the username column is used. Students that exist are enrolled in the given
+     * targetCourse, it does not create new student accounts if a username isn't found.
      *
      * @param filePath The full path String to the CSV file containing student usernames.
      * @param targetCourse The Course object these students should be enrolled into.
      * @return true if the file was read okay and at least one student was found and processed successfully enrolled or already enrolled, false if file reading failed or no students processed.
      */
     public boolean importFromFile(String filePath, Course targetCourse) {
+        RosterImportReport report = importRoster(filePath, targetCourse);
+        if (report == null) {
+            return false;
+        }
+        return (report.getAccepted() + report.getDuplicates()) > 0;
+    }
+
+    /**
+     * importRoster does the same import as importFromFile but gives back the whole report,
+     * with how many rows were accepted, duplicates, unknown usernames or the wrong role.
+     *
+     * @param filePath The full path String to the CSV file containing student usernames.
+     * @param targetCourse The Course object these students should be enrolled into.
+     * @return the report, or null if something was missing or the file couldn't be read.
+     */
+    public RosterImportReport importRoster(String filePath, Course targetCourse) {
         System.out.println("StudentImporter importing from file: " + filePath + " into course: " + (targetCourse != null ? targetCourse.getName() : "null"));
         // First check if we have everything needed to start.
         boolean haveUserController = (this.userController != null);
@@ -54,116 +112,173 @@ public class StudentImporter {
         boolean courseExists = (targetCourse != null);
         boolean pathExists = (filePath != null && !filePath.isEmpty());
 
-        // If any required part is missing, print message and return false.
+        // If any required part is missing, print message and return null.
         if (!haveUserController || !haveTeacherController || !courseExists || !pathExists) {
              System.out.println("StudentImporter problem: missing controllers, course, or path");
-            return false;
+            return null;
         }
 
-        // Keep track if we manage to process at least one student successfully.
-        boolean atLeastOneProcessed = false;
-        // Use try with resources for the file reader. This makes sure the file
-        // gets closed properly even if there are errors during reading.
-        try (BufferedReader fileReader = new BufferedReader(new FileReader(filePath))) { // Needs imports
-            String currentLine; // Will hold each line read from the file.
-            int lineNumber = 0; // Keep track of line number for helpful messages.
-            // Read lines until we hit the end of the file readLine returns null then.
-            
-            while ((currentLine = fileReader.readLine()) != null) {
-                lineNumber++;
-                // Remove whitespace from beginning and end of the line.
-                String trimmedLine = currentLine.trim();
-                
-                // Skip this line if it's empty or if it's the first line assumed header.
-                if (trimmedLine.isEmpty() || lineNumber == 1) {
-                    System.out.println("Import skipping line " + lineNumber + " header or empty");
-                    continue; // Go to the next iteration of the while loop.
-                }
+        long startNanos = System.nanoTime();
+        RosterImportReport report = new RosterImportReport();
 
-                // Split the line into parts using comma as the separator.
-                String[] studentData = trimmedLine.split(",");
-                
-                // We only really need the first part the username to find the student.
-                boolean hasEnoughData = (studentData.length >= 1);
-
-                if (hasEnoughData) {
-                    // Get the username from the first column, trim spaces.
-                    String usernameFromFile = studentData[0].trim();
-                    
-                    // Make sure the username isn't empty.
-                    if (usernameFromFile.isEmpty()) {
-                         System.out.println("Import warning: Skipping line " + lineNumber + ", username is empty");
-                         continue; // Skip this line if username missing.
-                    }
+        // copied here so the parse stage never reads the course while something else changes it.
+        Set<String> alreadyEnrolled = new HashSet<>();
+        for (Student s : targetCourse.getEnrolledStudents()) {
+            alreadyEnrolled.add(s.getUsername());
+        }
 
-                    // Ask the UserController to find the User object for this username.
-                    User userFound = userController.findUserByUsername(usernameFromFile);
-                    Student studentToEnroll = null; // Prepare variable to hold Student if found.
-
-                    // Check if the user controller actually found a user.
-                    boolean userExists = (userFound != null);
-                    if (userExists) {
-                        // Found a user. Now make sure it's a Student and not a Teacher.
-                        // instanceof checks the actual object type.
-                        if (userFound instanceof Student) {
-                            // If it is a Student, cast the User object to Student type.
-                            studentToEnroll = (Student) userFound;
-                        } 
-                        
-                        else {
-                            //if user exists but has wrong role, print warning, skip this line.
-                            System.out.println("Import warning: User '" + usernameFromFile + "' on line " + lineNumber + " exists but is not a Student.");
-                        }
-                    } 
-                    
-                    else {
-                         //if user controller didn't find the username, print warning, skip line.
-                         //we are not creating accounts here.
-                         System.out.println("Import warning: User '" + usernameFromFile + "' on line " + lineNumber + " not found in system. Skipping enrollment.");
-                    }
+        BlockingQueue<RawChunk> recordQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<ParsedChunk> usernameQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ExecutorService stages = Executors.newFixedThreadPool(2, task -> {
+            Thread thread = new Thread(task, "roster-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Student> studentsFound;
+        try (BufferedReader fileReader = new BufferedReader(new FileReader(filePath))) {
+            Future<?> parseStage = stages.submit(() -> {
+                parseStage(recordQueue, usernameQueue, alreadyEnrolled, report);
+                return null;
+            });
+            Future<List<Student>> resolveStage = stages.submit(() -> resolveStage(usernameQueue, report));
 
-                    // Check if we ended up with a valid Student object after the checks.
-                    boolean haveStudentToEnroll = (studentToEnroll != null);
-                    if (haveStudentToEnroll) {
-                        //if yes, use the TeacherController's method to add this student to the course.
-                        boolean enrolledOk = teacherController.addStudentToCourse(studentToEnroll, targetCourse);
-                        
-                        // Check if the add method reported success.
-                        if (enrolledOk) {
-                             // Log that it worked.
-                             System.out.println("Import success: Enrolled student '" + usernameFromFile + "' in course '" + targetCourse.getName() + "'");
-                             atLeastOneProcessed = true; // Mark that we did something.
-                        } 
-                        
-                        else {
-                             //if it failed maybe already enrolled?, log that too.
-                             System.out.println("Import info: Student '" + usernameFromFile + "' failed to add, maybe already enrolled?");
-                             atLeastOneProcessed = true; // Still count as processed ok.
-                        }
-                    }
-                    // If we didn't get a studentToEnroll object, just continue to next line.
-                } 
-                
-                else {
-                     //if the line didn't have enough data after splitting by comma.
-                     System.out.println("Import warning: Skipping line " + lineNumber + ", not enough data needs at least username");
-                }
-            } //end while loop reading file lines
+            readStage(new CsvParser.RecordReader(fileReader), recordQueue, report);
 
+            parseStage.get();
+            studentsFound = resolveStage.get();
         } catch (IOException fileError) {
             // This block runs if there's a problem opening or reading the file.
             System.out.println("StudentImporter problem: ERROR reading file '" + filePath + "': " + fileError.getMessage());
-            return false; // Return false to signal the import failed.
-        } 
-        
-        catch (Exception generalError) {
-            // This block catches any other unexpected error during the process.
-            System.out.println("StudentImporter problem: ERROR processing file: " + generalError.getMessage());
-            generalError.printStackTrace(); // Print details to help debug.
-            return false; // Return false to signal failure.
+            return null;
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            System.out.println("StudentImporter problem: import interrupted");
+            return null;
+        } catch (ExecutionException stageError) {
+            // one of the worker stages hit something unexpected.
+            System.out.println("StudentImporter problem: ERROR processing file: " + stageError.getCause());
+            stageError.getCause().printStackTrace(); // Print details to help debug.
+            return null;
+        } finally {
+            // interrupts any stage still waiting on a queue, like after a read error.
+            stages.shutdownNow();
         }
 
-        //if the whole file was processed, return true only if we managed to process at least one student line.
-        return atLeastOneProcessed;
+        // one bulk enroll for the whole file.
+        int enrolledCount = teacherController.addStudentsToCourse(studentsFound, targetCourse);
+        report.addAccepted(Math.max(enrolledCount, 0));
+
+        report.finish(System.nanoTime() - startNanos);
+        System.out.println("StudentImporter finished for course " + targetCourse.getName() + ": " + report);
+        return report;
+    }
+
+    // stage 1, on the calling thread: reads records and passes them on in chunks.
+    private static void readStage(CsvParser.RecordReader recordReader, BlockingQueue<RawChunk> out,
+                                  RosterImportReport report) throws IOException, InterruptedException {
+        RawChunk chunk = new RawChunk();
+        String record;
+        while ((record = recordReader.nextRecord()) != null) {
+            // Skip this record if it's empty or if it's the first line assumed header.
+            if (recordReader.getRecordLineNumber() == 1 || record.trim().isEmpty()) {
+                continue;
+            }
+            report.countRowRead();
+            chunk.lineNumbers[chunk.count] = recordReader.getRecordLineNumber();
+            chunk.records[chunk.count] = record;
+            chunk.count++;
+            if (chunk.count == CHUNK_RECORDS) {
+                out.put(chunk); // waits here if the parse stage is behind
+                chunk = new RawChunk();
+            }
+        }
+        if (chunk.count > 0) {
+            out.put(chunk);
+        }
+        out.put(END_OF_RECORDS);
+    }
+
+    // stage 2: splits records, keeps the first row for each username not already enrolled.
+    private static void parseStage(BlockingQueue<RawChunk> in, BlockingQueue<ParsedChunk> out,
+                                   Set<String> alreadyEnrolled, RosterImportReport report) throws InterruptedException {
+        Set<String> seenInFile = new HashSet<>();
+        try {
+            RawChunk chunk;
+            while ((chunk = in.take()) != END_OF_RECORDS) {
+                ParsedChunk parsed = new ParsedChunk();
+                for (int i = 0; i < chunk.count; i++) {
+                    int lineNumber = chunk.lineNumbers[i];
+                    String username;
+                    try {
+                        // We only really need the first column the username to find the student.
+                        username = CsvParser.parseLine(chunk.records[i]).get(0);
+                    } catch (IllegalArgumentException badQuoting) {
+                        report.addMalformed(lineNumber, "bad quoting: " + badQuoting.getMessage());
+                        continue;
+                    }
+                    if (username.isEmpty()) {
+                        report.addMalformed(lineNumber, "username is empty");
+                    } else if (alreadyEnrolled.contains(username)) {
+                        report.addDuplicate(lineNumber, username, "already enrolled in the course");
+                    } else if (!seenInFile.add(username)) {
+                        report.addDuplicate(lineNumber, username, "already earlier in the file");
+                    } else {
+                        parsed.lineNumbers.add(lineNumber);
+                        parsed.usernames.add(username);
+                    }
+                }
+                if (!parsed.usernames.isEmpty()) {
+                    out.put(parsed);
+                }
+            }
+        } catch (RuntimeException parseFailed) {
+            // keep taking so the reader never waits on a full queue nobody empties.
+            drainRecords(in);
+            throw parseFailed;
+        } finally {
+            out.put(END_OF_USERNAMES);
+        }
+    }
+
+    // stage 3: one account lookup per chunk, sorts out the students from the rest.
+    private List<Student> resolveStage(BlockingQueue<ParsedChunk> in, RosterImportReport report) throws InterruptedException {
+        List<Student> studentsFound = new ArrayList<>();
+        try {
+            ParsedChunk chunk;
+            while ((chunk = in.take()) != END_OF_USERNAMES) {
+                long lookupStart = System.nanoTime();
+                Map<String, User> usersFound = userController.findUsersByUsernames(chunk.usernames);
+                report.addResolveNanos(System.nanoTime() - lookupStart);
+
+                for (int i = 0; i < chunk.usernames.size(); i++) {
+                    String username = chunk.usernames.get(i);
+                    User userFound = usersFound.get(username);
+                    // instanceof checks the actual object type, teachers are skipped.
+                    if (userFound == null) {
+                        report.addUnknown(chunk.lineNumbers.get(i), username);
+                    } else if (userFound instanceof Student) {
+                        studentsFound.add((Student) userFound);
+                    } else {
+                        report.addWrongRole(chunk.lineNumbers.get(i), username);
+                    }
+                }
+            }
+        } catch (RuntimeException lookupFailed) {
+            drainUsernames(in);
+            throw lookupFailed;
+        }
+        return studentsFound;
+    }
+
+    private static void drainRecords(BlockingQueue<RawChunk> in) throws InterruptedException {
+        while (in.take() != END_OF_RECORDS) {
+            // dropped
+        }
+    }
+
+    private static void drainUsernames(BlockingQueue<ParsedChunk> in) throws InterruptedException {
+        while (in.take() != END_OF_USERNAMES) {
+            // dropped
+        }
     }
-}
\ No newline at end of file
+}
@@ -257,10 +257,7 @@ public class AssignmentView extends JDialog {
         if (groupCheckbox.isSelected() && groupSelectionCombo.getSelectedItem() != null) {
             String groupName = (String) groupSelectionCombo.getSelectedItem();
             if (currentCourse != null) {
-                group = currentCourse.getGroups().stream()
-                    .filter(g -> g.getGroupName().equals(groupName))
-                    .findFirst()
-                    .orElse(null);
+                group = currentCourse.findGroupByName(groupName);
             }
         }
 
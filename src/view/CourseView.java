@@ -4,13 +4,13 @@ import model.*;
 
 import javax.swing.*;
 
+import controller.AssignmentController;
 import controller.MainController;
 import controller.TeacherController;
 import controller.UserController;
 
 import java.awt.*;
 import java.util.List;
-import java.util.Optional;
 
 /* We could also think about having 2 different course views as StudentCourseView and TeacherCourseView 
  * To be discussed later 
@@ -20,8 +20,11 @@ public class CourseView extends JFrame {
     private JButton backButton;
     private JButton addStudentButton;
     private JButton addAssignmentButton;
+    private JButton editAssignmentButton;
     private JButton calcAverageButton;
     private TeacherController teacherController;
+    // made from the teacher controller, so assignment edits get saved to the journal too.
+    private AssignmentController assignmentController;
     private User user;
 
 
@@ -32,6 +35,16 @@ public class CourseView extends JFrame {
     private JTable myGradeTable;
 	private Course course;
 
+    // background loads for the roster and assignment tables, a newer load cancels the older one.
+    private TableLoadWorker<Student> rosterLoad;
+    private TableLoadWorker<Assignment> assignmentLoad;
+    private SwingWorker<String, Void> averagesWork;
+    // shows how far the roster load is, hidden when nothing is loading.
+    private JProgressBar loadProgressBar;
+    // fold bursts of course events into one table reload per frame.
+    private final EdtDebouncer rosterRefresh = new EdtDebouncer(this::refreshStudentTable);
+    private final EdtDebouncer assignmentRefresh = new EdtDebouncer(this::refreshAssignmentTable);
+
     public CourseView(User user, Course course, TeacherController teacherController) {
         this.teacherController = teacherController;
         this.course = course;
@@ -49,6 +62,10 @@ public class CourseView extends JFrame {
         backButton = new JButton("Back to Main");
         topPanel.add(courseTitle, BorderLayout.WEST);
         topPanel.add(backButton, BorderLayout.EAST);
+        loadProgressBar = new JProgressBar(0, 100);
+        loadProgressBar.setStringPainted(true);
+        loadProgressBar.setVisible(false);
+        topPanel.add(loadProgressBar, BorderLayout.CENTER);
 
         // Tabs
         JTabbedPane tabbedPane = new JTabbedPane();
@@ -74,6 +91,8 @@ public class CourseView extends JFrame {
             JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
             addStudentButton = new JButton("Add Student");
             addAssignmentButton = new JButton("Add Assignment");
+            editAssignmentButton = new JButton("Edit Assignment");
+            assignmentController = new AssignmentController(teacherController);
             calcAverageButton = new JButton("Calculate Averages");
             
             JButton manageGroupsBtn = new JButton("Manage Groups");
@@ -83,6 +102,7 @@ public class CourseView extends JFrame {
             
             buttonPanel.add(addStudentButton);
             buttonPanel.add(addAssignmentButton);
+            buttonPanel.add(editAssignmentButton);
             buttonPanel.add(calcAverageButton);
             add(buttonPanel, BorderLayout.SOUTH);
 
@@ -137,13 +157,12 @@ public class CourseView extends JFrame {
                 createGroupBtn.addActionListener(ce -> {
                     String newGroupName = JOptionPane.showInputDialog(this, "Enter new group name:");
                     if (newGroupName != null && !newGroupName.trim().isEmpty()) {
-                        try {
-                            Group newGroup = new Group(newGroupName.trim());
-                            course.getGroups().add(newGroup);
-                            groupCombo.addItem(newGroup.getGroupName());
-                            groupCombo.setSelectedItem(newGroup.getGroupName());
-                        } catch (IllegalArgumentException ex) {
-                            JOptionPane.showMessageDialog(this, ex.getMessage(), 
+                        // through the controller so the new group gets saved to the journal
+                        if (teacherController.createGroup(course, newGroupName.trim())) {
+                            groupCombo.addItem(newGroupName.trim());
+                            groupCombo.setSelectedItem(newGroupName.trim());
+                        } else {
+                            JOptionPane.showMessageDialog(this, "Group name already exists",
                                 "Error", JOptionPane.ERROR_MESSAGE);
                         }
                     }
@@ -161,10 +180,7 @@ public class CourseView extends JFrame {
                         Group selectedGroup = null;
                         String selectedGroupName = (String)groupCombo.getSelectedItem();
                         if (!"None".equals(selectedGroupName)) {
-                            selectedGroup = course.getGroups().stream()
-                                .filter(g -> g.getGroupName().equals(selectedGroupName))
-                                .findFirst()
-                                .orElse(null);
+                            selectedGroup = course.findGroupByName(selectedGroupName);
                         }
 
                         Assignment newAssign = new Assignment(name, points, dueDate, category, selectedGroup);
@@ -182,6 +198,24 @@ public class CourseView extends JFrame {
                 }
             });
 
+            // Edit Assignment Logic, opens the same dialog TeacherView uses
+            editAssignmentButton.addActionListener(e -> {
+                int row = assignmentTable.getSelectedRow();
+                if (row < 0) {
+                    JOptionPane.showMessageDialog(this, "Select an assignment on the Assignments tab first.");
+                    return;
+                }
+                Assignment selectedAssignment = course.findAssignmentByName((String) assignmentTable.getValueAt(row, 0));
+                if (selectedAssignment == null) {
+                    JOptionPane.showMessageDialog(this, "Assignment not found, it may have been removed.");
+                    return;
+                }
+                JComboBox<String> groupsCombo = new JComboBox<>();
+                course.getGroups().forEach(g -> groupsCombo.addItem(g.getGroupName()));
+                new AssignmentView(this, assignmentController, teacherController, course, selectedAssignment, groupsCombo).setVisible(true);
+                // the course fires assignmentChanged, which reloads the table
+            });
+
             // Calculate Averages Logic
             calcAverageButton.addActionListener(e -> {
                 List<Assignment> assignments = course.getAllAssignments();
@@ -189,29 +223,59 @@ public class CourseView extends JFrame {
                     JOptionPane.showMessageDialog(this, "No assignments in course.");
                     return;
                 }
-
-                StringBuilder message = new StringBuilder("Class Averages:\n");
-                for (Assignment a : assignments) {
-                    double avg = teacherController.calculateClassAverage(a);
-                    message.append(a.getName()).append(": ").append(String.format("%.2f", avg)).append("\n");
+                if (averagesWork != null && !averagesWork.isDone()) {
+                    return; // still working on the last click
                 }
-                JOptionPane.showMessageDialog(this, message.toString());
+
+                // The averages are worked out in the background, the button comes back when they're shown.
+                calcAverageButton.setEnabled(false);
+                loadProgressBar.setIndeterminate(true);
+                loadProgressBar.setString("Calculating averages...");
+                loadProgressBar.setVisible(true);
+                averagesWork = new SwingWorker<>() {
+                    @Override
+                    protected String doInBackground() {
+                        StringBuilder message = new StringBuilder("Class Averages:\n");
+                        for (Assignment a : assignments) {
+                            if (isCancelled()) {
+                                break;
+                            }
+                            double avg = teacherController.calculateClassAverage(a);
+                            message.append(a.getName()).append(": ").append(String.format("%.2f", avg)).append("\n");
+                        }
+                        return message.toString();
+                    }
+
+                    @Override
+                    protected void done() {
+                        calcAverageButton.setEnabled(true);
+                        loadProgressBar.setVisible(false);
+                        if (isCancelled()) {
+                            return;
+                        }
+                        try {
+                            JOptionPane.showMessageDialog(CourseView.this, get());
+                        } catch (Exception ex) {
+                            JOptionPane.showMessageDialog(CourseView.this, "Error: " + ex.getMessage());
+                        }
+                    }
+                };
+                averagesWork.execute();
             });
         }
 
         add(topPanel, BorderLayout.NORTH);
         add(tabbedPane, BorderLayout.CENTER);
 
-        // React to model events
+        // React to model events, the reloads are debounced so a burst of events
+        // only reloads each table once per frame, on the Swing thread
         course.addPropertyChangeListener(evt -> {
             switch (evt.getPropertyName()) {
-                case "studentEnrolled", "studentRemoved" -> {
-                    if (user instanceof Teacher) refreshRoster(course);
-                }
-                case "assignmentAdded" -> refreshAssignments(course);
-                case "gradeAdded" -> {
-                    if (user instanceof Student) refreshMyGrades(course);
+                case "studentEnrolled", "studentsEnrolled", "studentRemoved" -> {
+                    if (user instanceof Teacher) rosterRefresh.request();
                 }
+                case "assignmentAdded", "assignmentChanged" -> assignmentRefresh.request();
+                // grade and column changes are handled by the GradeTableModel itself
             }
         });
 
@@ -280,64 +344,47 @@ public class CourseView extends JFrame {
         refreshAssignmentTable(); // Fill assignments
         refreshStudentTable();    // Fill students
         refreshGradesTable();
-    }
-    private void refreshRoster(Course course) {
-        if (rosterTable == null) return;
-        List<Student> students = course.getEnrolledStudents();
-        String[][] data = new String[students.size()][2];
-        for (int i = 0; i < students.size(); i++) {
-            Student s = students.get(i);
-            data[i][0] = s.getFirstName() + " " + s.getLastName();
-            data[i][1] = s.getStudentId();
-        }
-        String[] columnNames = {"Name", "Student ID"};
-        rosterTable.setModel(new javax.swing.table.DefaultTableModel(data, columnNames));
-    }
-
-    private void refreshAssignments(Course course) {
-        if (assignmentTable == null) return;
-        List<Assignment> assignments = course.getAllAssignments();
-        String[][] data = new String[assignments.size()][2];
-        for (int i = 0; i < assignments.size(); i++) {
-            Assignment a = assignments.get(i);
-            data[i][0] = a.getName();
-            data[i][1] = String.valueOf(a.getPointsWorth());
-        }
-        String[] columnNames = {"Assignment", "Points"};
-        assignmentTable.setModel(new javax.swing.table.DefaultTableModel(data, columnNames));
+        refreshMyGrades(course);
     }
     private void refreshMyGrades(Course course) {
         if (myGradeTable == null) return;
-
-        List<Assignment> assignments = course.getAllAssignments();
-        String[] columnNames = new String[assignments.size() + 1];
-        columnNames[0] = "Assignment";
-        for (int i = 0; i < assignments.size(); i++) {
-            columnNames[i + 1] = assignments.get(i).getName();
-        }
-
-        // Only one row: the logged-in student
-        String[][] data = new String[1][assignments.size() + 1];
-        data[0][0] = user.getUsername(); // First column is student username
-
+        // Only one row: the logged-in student. The model reads the cells itself and
+        // repaints the one that changed, so it only has to be made once.
+        if (myGradeTable.getModel() instanceof GradeTableModel) return;
         if (user instanceof Student student) {
-            for (int j = 0; j < assignments.size(); j++) {
-                Assignment assignment = assignments.get(j);
-                Grade grade = student.getGradeForAssignment(assignment);
-                if (grade != null) {
-                    data[0][j + 1] = String.valueOf(grade.getPointsEarned());
-                } else {
-                    data[0][j + 1] = "-"; // No grade yet
-                }
-            }
+            myGradeTable.setModel(new GradeTableModel(course, student, "Assignment"));
         }
-
-        myGradeTable.setModel(new javax.swing.table.DefaultTableModel(data, columnNames));
     }
     
     
 
 
+    /**
+     * Closes the window, cancels any background loads and stops the grade tables listening to the course,
+     * so a closed CourseView doesn't stay alive through the course's listener list.
+     */
+    @Override
+    public void dispose() {
+        rosterRefresh.cancel();
+        assignmentRefresh.cancel();
+        if (rosterLoad != null) {
+            rosterLoad.cancel(true);
+        }
+        if (assignmentLoad != null) {
+            assignmentLoad.cancel(true);
+        }
+        if (averagesWork != null) {
+            averagesWork.cancel(true);
+        }
+        if (gradeTable != null && gradeTable.getModel() instanceof GradeTableModel model) {
+            model.detach();
+        }
+        if (myGradeTable != null && myGradeTable.getModel() instanceof GradeTableModel model) {
+            model.detach();
+        }
+        super.dispose();
+    }
+
     // To be implemented to controllers later 
     public JButton getBackButton() {
         return backButton;
@@ -368,65 +415,55 @@ public class CourseView extends JFrame {
         return addAssignmentButton;
     }
 
+    public JButton getEditAssignmentButton() {
+        return editAssignmentButton;
+    }
+
     public JButton getCalcAverageButton() {
         return calcAverageButton;
     }
     
     private void refreshAssignmentTable() {
         if (assignmentTable == null) return;
-        List<Assignment> assignments = course.getAllAssignments();
-        String[][] data = new String[assignments.size()][4];
-        for (int i = 0; i < assignments.size(); i++) {
-            Assignment a = assignments.get(i);
-            data[i][0] = a.getName();
-            data[i][1] = a.getDueDate();
-            data[i][2] = String.valueOf(a.getPointsWorth());
-            data[i][3] = a.getGroup() != null ? a.getGroup().getGroupName() : "None";
+        if (assignmentLoad != null) {
+            assignmentLoad.cancel(true); // older load is stale now
         }
-        String[] columnNames = {"Assignment", "Due Date", "Points", "Group"};
-        assignmentTable.setModel(new javax.swing.table.DefaultTableModel(data, columnNames));
+        javax.swing.table.DefaultTableModel model = new javax.swing.table.DefaultTableModel(
+            new String[]{"Assignment", "Due Date", "Points", "Group"}, 0);
+        assignmentTable.setModel(model);
+        // the list is fetched and the rows are made on a background thread
+        assignmentLoad = new TableLoadWorker<>(model, course::getAllAssignments, a -> new Object[]{
+            a.getName(),
+            a.getDueDate(),
+            String.valueOf(a.getPointsWorth()),
+            a.getGroup() != null ? a.getGroup().getGroupName() : "None"
+        }, null, null, "assignments");
+        assignmentLoad.execute();
     }
 
     private void refreshStudentTable() {
         if (rosterTable == null) return;
-        List<Student> students = course.getEnrolledStudents();
-        String[][] data = new String[students.size()][3];
-        for (int i = 0; i < students.size(); i++) {
-            Student s = students.get(i);
-            data[i][0] = s.getFirstName() + " " + s.getLastName();
-            data[i][1] = s.getStudentId();
-            data[i][2] = s.getEmail();
+        if (rosterLoad != null) {
+            rosterLoad.cancel(true); // older load is stale now
         }
-        String[] columnNames = {"Name", "Student ID", "Email"};
-        rosterTable.setModel(new javax.swing.table.DefaultTableModel(data, columnNames));
+        javax.swing.table.DefaultTableModel model = new javax.swing.table.DefaultTableModel(
+            new String[]{"Name", "Student ID", "Email"}, 0);
+        rosterTable.setModel(model);
+        // the roster is copied and the rows are made on a background thread, the progress bar follows it
+        rosterLoad = new TableLoadWorker<>(model, course::getEnrolledStudents, s -> new Object[]{
+            s.getFirstName() + " " + s.getLastName(),
+            s.getStudentId(),
+            s.getEmail()
+        }, loadProgressBar, null, "students");
+        rosterLoad.execute();
     }
 
     private void refreshGradesTable() {
         if (gradeTable == null) return;
-        List<Student> students = course.getEnrolledStudents();
-        List<Assignment> assignments = course.getAllAssignments();
-        String[] columnNames = new String[assignments.size() + 1];
-        columnNames[0] = "Student";
-        for (int i = 0; i < assignments.size(); i++) {
-            columnNames[i + 1] = assignments.get(i).getName();
-        }
-
-        String[][] data = new String[students.size()][assignments.size() + 1];
-        for (int i = 0; i < students.size(); i++) {
-            Student student = students.get(i);
-            data[i][0] = student.getUsername();
-            for (int j = 0; j < assignments.size(); j++) {
-                Assignment assignment = assignments.get(j);
-                Grade grade = student.getGradeForAssignment(assignment);
-                if (grade != null) {
-                    data[i][j + 1] = String.valueOf(grade.getPointsEarned());
-                } else {
-                    data[i][j + 1] = "-"; // No grade yet
-                }
-            }
-        }
-
-        gradeTable.setModel(new javax.swing.table.DefaultTableModel(data, columnNames));
+        // The model reads cells from the course as they're drawn and listens for
+        // changes itself, so it only has to be made once.
+        if (gradeTable.getModel() instanceof GradeTableModel) return;
+        gradeTable.setModel(new GradeTableModel(course));
     }
 
 
@@ -438,7 +475,7 @@ public class CourseView extends JFrame {
         UserController uc = new UserController();
         TeacherController tc = new TeacherController(melanie, uc);
         Group groupA = new Group("Group A");
-        course.getGroups().add(groupA);
+        course.addGroup(groupA);
 
         // Step 2: Create assignments
         Assignment hw1 = new Assignment("HW 1", 100, "2025-04-30", "Homework", groupA);
@@ -493,14 +530,7 @@ public class CourseView extends JFrame {
             };
             view.getAssignmentTable().setModel(new javax.swing.table.DefaultTableModel(assignmentData, assignmentCols));
 
-            // === Fill Grades Table ===
-            String[] gradeCols = { "Student", "HW 1", "HW 2", "Quiz 1" };
-            Object[][] gradeData = {
-                { s1.getUsername(), s1.getGradeForAssignment(hw1).getPointsEarned(), s1.getGradeForAssignment(hw2).getPointsEarned(), s1.getGradeForAssignment(quiz1).getPointsEarned() },
-                { s2.getUsername(), s2.getGradeForAssignment(hw1).getPointsEarned(), s2.getGradeForAssignment(hw2).getPointsEarned(), s2.getGradeForAssignment(quiz1).getPointsEarned() },
-                { s3.getUsername(), s3.getGradeForAssignment(hw1).getPointsEarned(), s3.getGradeForAssignment(hw2).getPointsEarned(), s3.getGradeForAssignment(quiz1).getPointsEarned() },
-            };
-            view.getGradeTable().setModel(new javax.swing.table.DefaultTableModel(gradeData, gradeCols));
+            // Grades Table fills itself from the course through GradeTableModel.
 
             view.setVisible(true);
         });
@@ -534,12 +564,10 @@ public class CourseView extends JFrame {
         addGroupBtn.addActionListener(e -> {
             String groupName = JOptionPane.showInputDialog(dialog, "Enter group name:");
             if (groupName != null && !groupName.trim().isEmpty()) {
-                try {
-                    Group newGroup = new Group(groupName.trim());
-                    course.getGroups().add(newGroup);
-                    groupListModel.addElement(newGroup.getGroupName());
-                } catch (IllegalArgumentException ex) {
-                    JOptionPane.showMessageDialog(dialog, ex.getMessage(), 
+                if (teacherController.createGroup(course, groupName.trim())) {
+                    groupListModel.addElement(groupName.trim());
+                } else {
+                    JOptionPane.showMessageDialog(dialog, "Group name already exists",
                         "Error", JOptionPane.ERROR_MESSAGE);
                 }
             }
@@ -547,8 +575,7 @@ public class CourseView extends JFrame {
         
         removeGroupBtn.addActionListener(e -> {
             String selected = groupList.getSelectedValue();
-            if (selected != null) {
-                course.getGroups().removeIf(g -> g.getGroupName().equals(selected));
+            if (selected != null && teacherController.removeGroup(course, selected)) {
                 groupListModel.removeElement(selected);
             }
         });
@@ -564,13 +591,9 @@ public class CourseView extends JFrame {
     }
     
     private void showGroupMembersDialog(String groupName) {
-        Optional<Group> groupOpt = course.getGroups().stream()
-            .filter(g -> g.getGroupName().equals(groupName))
-            .findFirst();
-        
-        if (!groupOpt.isPresent()) return;
-        
-        Group group = groupOpt.get();
+        Group group = course.findGroupByName(groupName);
+        if (group == null) return;
+
         JDialog dialog = new JDialog(this, "Manage Members: " + groupName, true);
         dialog.setSize(400, 400);
         dialog.setLayout(new BorderLayout());
@@ -603,11 +626,8 @@ public class CourseView extends JFrame {
         addBtn.addActionListener(e -> {
             String selected = allStudentsList.getSelectedValue();
             if (selected != null) {
-                Student student = course.getEnrolledStudents().stream()
-                    .filter(s -> s.getUsername().equals(selected))
-                    .findFirst()
-                    .orElse(null);
-                if (student != null && group.addMember(student)) {
+                Student student = course.getEnrolledStudent(selected);
+                if (student != null && teacherController.addStudentToGroup(course, groupName, student)) {
                     membersModel.addElement(selected);
                 }
             }
@@ -620,7 +640,7 @@ public class CourseView extends JFrame {
                     .filter(s -> s.getUsername().equals(selected))
                     .findFirst()
                     .orElse(null);
-                if (student != null && group.removeMember(student)) {
+                if (student != null && teacherController.removeStudentFromGroup(course, groupName, student)) {
                     membersModel.removeElement(selected);
                 }
             }
@@ -0,0 +1,93 @@
+package view;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * EdtDebouncer runs a view refresh at most once per frame on the Swing thread.
+ * The views used to do invokeLater(refresh) for every model event, so a burst of
+ * events, like a column of grades being typed in, queued up one full table rebuild
+ * per event. With this, every request that comes in while a refresh is already
+ * waiting gets folded into it, so the burst ends with one refresh.
+ *
+ * request can be called from any thread. The refresh always runs on the Swing thread.
+ */
+public class EdtDebouncer {
+    /** About one frame at 60 frames a second. */
+    public static final int FRAME_MILLIS = 16;
+
+    private final Runnable refresh;
+    private final Timer timer;
+    // true from the first request until the refresh starts running.
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+
+    /**
+     * Makes a debouncer that waits one frame.
+     * @param refresh what to run, on the Swing thread.
+     */
+    public EdtDebouncer(Runnable refresh) {
+        this(FRAME_MILLIS, refresh);
+    }
+
+    /**
+     * Makes a debouncer.
+     * @param delayMillis how long to wait for more requests before refreshing.
+     * @param refresh what to run, on the Swing thread.
+     */
+    public EdtDebouncer(int delayMillis, Runnable refresh) {
+        if (refresh == null) {
+            throw new IllegalArgumentException("refresh cannot be null");
+        }
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("delayMillis cannot be negative");
+        }
+        this.refresh = refresh;
+        this.timer = new Timer(delayMillis, e -> runRefresh());
+        this.timer.setRepeats(false);
+    }
+
+    /**
+     * Asks for a refresh. If one is already waiting this does nothing,
+     * the waiting one will see the newest data anyway.
+     */
+    public void request() {
+        if (pending.compareAndSet(false, true)) {
+            // Timer has to be started on the Swing thread.
+            SwingUtilities.invokeLater(timer::restart);
+        }
+    }
+
+    /** Checks if a refresh is waiting to run. */
+    public boolean isPending() {
+        return pending.get();
+    }
+
+    /**
+     * Drops a waiting refresh, like when the view is closing.
+     * The timer is stopped and pending cleared together on the Swing thread. Clearing
+     * pending here and stopping the timer later let a request in between start the
+     * timer, and then the late stop dropped that new refresh while pending stayed true,
+     * so no request after it ever got through.
+     */
+    public void cancel() {
+        if (SwingUtilities.isEventDispatchThread()) {
+            stopAndClear();
+        } else {
+            SwingUtilities.invokeLater(this::stopAndClear);
+        }
+    }
+
+    private void stopAndClear() {
+        timer.stop();
+        pending.set(false);
+    }
+
+    private void runRefresh() {
+        // cleared first, so events the refresh itself causes ask for another one.
+        if (!pending.getAndSet(false)) {
+            return; // cancelled
+        }
+        refresh.run();
+    }
+}
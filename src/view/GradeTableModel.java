@@ -0,0 +1,285 @@
+package view;
+
+import model.Assignment;
+import model.Course;
+import model.Grade;
+import model.Student;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GradeTableModel is the grade grid for CourseView, students down the side and one
+ * column per assignment.
+ * The old way built a String[][] of every cell and made a new DefaultTableModel each
+ * refresh, which rebuilt every row and header and lost the selection. This model keeps
+ * no cell data, it only remembers which student is on which row and which assignment
+ * is in which column. getValueAt reads the grade from the Assignment when the JTable
+ * asks, and the JTable only asks for the cells that are on screen.
+ *
+ * It listens to the Course (Observer pattern) and fires the smallest table event that
+ * covers each change: one cell for gradeChanged, one row for studentEnrolled or
+ * studentRemoved. A course batch's gradesChanged or studentsEnrolled becomes one
+ * rows-updated or rows-inserted event. Only adding or removing assignments changes the columns.
+ * Events that come in off the Swing thread are passed over to it with invokeLater.
+ */
+public class GradeTableModel extends AbstractTableModel implements PropertyChangeListener {
+    private static final long serialVersionUID = 1L;
+
+    private static final String NO_GRADE = "-";
+
+    private final Course course;
+    // when not null the table only ever shows this one student, for the student's own view.
+    private final Student onlyStudent;
+    private final String firstColumnName;
+
+    // rows and columns in display order, plus lookups back the other way.
+    private final List<Student> rowStudents = new ArrayList<>();
+    private final Map<String, Integer> rowByUsername = new HashMap<>();
+    private final List<Assignment> columnAssignments = new ArrayList<>();
+    private final Map<Assignment, Integer> columnByAssignment = new IdentityHashMap<>();
+
+    /**
+     * Makes a grid of every enrolled student, and starts listening to the course.
+     * @param course the course to show.
+     */
+    public GradeTableModel(Course course) {
+        this(course, null, "Student");
+    }
+
+    /**
+     * Makes a grid with only one student's row, and starts listening to the course.
+     * @param course the course to show.
+     * @param onlyStudent the only student to show, null means everybody enrolled.
+     * @param firstColumnName header for the username column.
+     */
+    public GradeTableModel(Course course, Student onlyStudent, String firstColumnName) {
+        if (course == null) {
+            throw new IllegalArgumentException("course cannot be null");
+        }
+        this.course = course;
+        this.onlyStudent = onlyStudent;
+        this.firstColumnName = (firstColumnName != null) ? firstColumnName : "Student";
+        loadRows();
+        loadColumns();
+        course.addPropertyChangeListener(this);
+    }
+
+    /** Stops listening to the course, call when the table goes away. */
+    public void detach() {
+        course.removePropertyChangeListener(this);
+    }
+
+    public Course getCourse() {
+        return course;
+    }
+
+    /** Gets the student shown on a row. */
+    public Student getStudentAt(int row) {
+        return rowStudents.get(row);
+    }
+
+    /** Gets the assignment shown in a column, null for the username column. */
+    public Assignment getAssignmentAt(int column) {
+        return (column == 0) ? null : columnAssignments.get(column - 1);
+    }
+
+    /** Finds the row a student is on, -1 if they aren't shown. */
+    public int rowOf(String username) {
+        Integer row = rowByUsername.get(username);
+        return (row != null) ? row : -1;
+    }
+
+    /** Finds the table column an assignment is in, -1 if it isn't shown. */
+    public int columnOf(Assignment assignment) {
+        Integer column = columnByAssignment.get(assignment);
+        return (column != null) ? column + 1 : -1;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowStudents.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnAssignments.size() + 1;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return (column == 0) ? firstColumnName : columnAssignments.get(column - 1).getName();
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    /**
+     * Reads one cell when the table needs it.
+     * Column 0 is the username, the rest are the points earned or "-" for no grade yet.
+     */
+    @Override
+    public Object getValueAt(int row, int column) {
+        String username = rowStudents.get(row).getUsername();
+        if (column == 0) {
+            return username;
+        }
+        Grade grade = columnAssignments.get(column - 1).getGrade(username);
+        return (grade != null) ? String.valueOf(grade.getPointsEarned()) : NO_GRADE;
+    }
+
+    /**
+     * Turns a course event into the smallest table event for it.
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> propertyChange(evt));
+            return;
+        }
+        switch (evt.getPropertyName()) {
+            case "gradeChanged" -> gradeChanged((String) evt.getOldValue(), (Assignment) evt.getNewValue());
+            case "studentEnrolled" -> studentEnrolled((Student) evt.getNewValue());
+            case "gradesChanged" -> gradesChanged(usernamesIn(evt.getNewValue()));
+            case "studentsEnrolled" -> studentsEnrolled(usernamesIn(evt.getNewValue()));
+            case "studentRemoved" -> studentRemoved((Student) evt.getOldValue());
+            case "assignmentAdded", "assignmentRemoved" -> {
+                loadColumns();
+                fireTableStructureChanged();
+            }
+            case "assignmentChanged" -> assignmentChanged((String) evt.getOldValue(), (Assignment) evt.getNewValue());
+            default -> {
+                // nothing else changes what the grid shows
+            }
+        }
+    }
+
+    // only a rename changes what the grid shows, the header has the name.
+    private void assignmentChanged(String nameBefore, Assignment assignment) {
+        if (assignment != null && columnByAssignment.containsKey(assignment) && !assignment.getName().equals(nameBefore)) {
+            fireTableStructureChanged();
+        }
+    }
+
+    private void gradeChanged(String username, Assignment assignment) {
+        Integer assignmentIndex = columnByAssignment.get(assignment);
+        if (assignmentIndex == null) {
+            return;
+        }
+        int column = assignmentIndex + 1;
+        if (username == null) {
+            // the whole assignment was cleared, repaint that column.
+            if (!rowStudents.isEmpty()) {
+                fireTableChanged(new TableModelEvent(this, 0, rowStudents.size() - 1, column));
+            }
+            return;
+        }
+        int row = rowOf(username);
+        if (row >= 0) {
+            fireTableCellUpdated(row, column);
+        }
+    }
+
+    private void studentEnrolled(Student student) {
+        if (student == null || onlyStudent != null || rowByUsername.containsKey(student.getUsername())) {
+            return;
+        }
+        int row = rowStudents.size();
+        rowStudents.add(student);
+        rowByUsername.put(student.getUsername(), row);
+        fireTableRowsInserted(row, row);
+    }
+
+    // one rows-updated event from the first to the last affected row.
+    private void gradesChanged(List<String> usernames) {
+        int firstRow = Integer.MAX_VALUE;
+        int lastRow = -1;
+        for (String username : usernames) {
+            int row = rowOf(username);
+            if (row >= 0) {
+                firstRow = Math.min(firstRow, row);
+                lastRow = Math.max(lastRow, row);
+            }
+        }
+        if (lastRow >= 0) {
+            fireTableRowsUpdated(firstRow, lastRow);
+        }
+    }
+
+    // adds every new student at the end with one rows-inserted event.
+    private void studentsEnrolled(List<String> usernames) {
+        if (onlyStudent != null) {
+            return;
+        }
+        int firstRow = rowStudents.size();
+        for (String username : usernames) {
+            Student student = course.getEnrolledStudent(username);
+            if (student != null && !rowByUsername.containsKey(username)) {
+                rowByUsername.put(username, rowStudents.size());
+                rowStudents.add(student);
+            }
+        }
+        if (rowStudents.size() > firstRow) {
+            fireTableRowsInserted(firstRow, rowStudents.size() - 1);
+        }
+    }
+
+    // the summary events carry a list of usernames.
+    private static List<String> usernamesIn(Object value) {
+        List<String> usernames = new ArrayList<>();
+        if (value instanceof List<?> list) {
+            for (Object item : list) {
+                if (item instanceof String username) {
+                    usernames.add(username);
+                }
+            }
+        }
+        return usernames;
+    }
+
+    private void studentRemoved(Student student) {
+        int row = (student != null) ? rowOf(student.getUsername()) : -1;
+        if (row < 0) {
+            return;
+        }
+        rowStudents.remove(row);
+        rowByUsername.remove(student.getUsername());
+        // rows after it all moved up one.
+        for (int i = row; i < rowStudents.size(); i++) {
+            rowByUsername.put(rowStudents.get(i).getUsername(), i);
+        }
+        fireTableRowsDeleted(row, row);
+    }
+
+    private void loadRows() {
+        rowStudents.clear();
+        rowByUsername.clear();
+        if (onlyStudent != null) {
+            rowStudents.add(onlyStudent);
+        } else {
+            rowStudents.addAll(course.snapshot().getStudents());
+        }
+        for (int i = 0; i < rowStudents.size(); i++) {
+            rowByUsername.put(rowStudents.get(i).getUsername(), i);
+        }
+    }
+
+    private void loadColumns() {
+        columnAssignments.clear();
+        columnByAssignment.clear();
+        columnAssignments.addAll(course.snapshot().getAssignments());
+        for (int i = 0; i < columnAssignments.size(); i++) {
+            columnByAssignment.put(columnAssignments.get(i), i);
+        }
+    }
+}
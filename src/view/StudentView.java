@@ -28,6 +28,8 @@ public class StudentView extends JFrame implements PropertyChangeListener {
     private JTabbedPane tabbedPane; // For current/completed courses
     private JPanel completedCoursesPanel;
     private DefaultTableModel completedCoursesModel;
+    // folds bursts of events into one refreshData per frame.
+    private final EdtDebouncer dataRefresh = new EdtDebouncer(this::refreshData);
 
     /**
      * Constructs the StudentView with controller reference.
@@ -36,10 +38,29 @@ public class StudentView extends JFrame implements PropertyChangeListener {
     public StudentView(StudentController controller) {
         this.controller = controller;
         controller.addPropertyChangeListener(this);
+        // the student's own events, grades and courses opening or closing.
+        Student student = controller.getCurrentStudent();
+        if (student != null) {
+            student.addPropertyChangeListener(this);
+        }
         setupUI();
         refreshData();
     }
 
+    /**
+     * Stops listening to the controller and the student before the window goes away.
+     */
+    @Override
+    public void dispose() {
+        controller.removePropertyChangeListener(this);
+        Student student = controller.getCurrentStudent();
+        if (student != null) {
+            student.removePropertyChangeListener(this);
+        }
+        dataRefresh.cancel();
+        super.dispose();
+    }
+
     /**
      * Initializes all UI components and layouts.
      */
@@ -185,11 +206,11 @@ public class StudentView extends JFrame implements PropertyChangeListener {
      */
     @Override
     public void propertyChange(PropertyChangeEvent evt) {
-        SwingUtilities.invokeLater(() -> {
-            if (evt.getPropertyName().equals("gradeAdded") || 
-                evt.getPropertyName().equals("courseEnrolled")) {
-                refreshData();
-            }
-        });
+        if (evt.getPropertyName().equals("gradeAdded") || 
+            evt.getPropertyName().equals("courseEnrolled") ||
+            evt.getPropertyName().equals("courseCompleted")) {
+            // one refresh per frame on the Swing thread, however many events came in
+            dataRefresh.request();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+package view;
+
+import javax.swing.JProgressBar;
+import javax.swing.SwingWorker;
+import javax.swing.table.DefaultTableModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * TableLoadWorker fills a table off the Event Dispatch Thread.
+ * The views used to ask the model for the list, sort it and add every row right on
+ * the Swing thread, so a big roster froze the window until it was done.
+ * Here the fetch (the model query or sort) and turning each item into a row happen
+ * on a SwingWorker background thread. Rows are sent back to the Swing thread in chunks,
+ * and each chunk goes into the table with one rowsInserted event, so the table
+ * starts showing rows right away and the window stays responsive.
+ *
+ * A view keeps the worker it started and calls cancel(true) before starting a new one,
+ * like when the user picks a different course. A cancelled worker stops making rows
+ * and any chunks it already sent are ignored, so an old course never shows up in the
+ * table after a newer one.
+ *
+ * @param <T> the kind of thing on each row, like Student or Assignment.
+ */
+public class TableLoadWorker<T> extends SwingWorker<Integer, List<Object[]>> {
+    /** Rows sent to the Swing thread at a time. */
+    public static final int DEFAULT_CHUNK_SIZE = 200;
+
+    private final DefaultTableModel tableModel;
+    private final Supplier<List<T>> fetch;
+    private final Function<T, Object[]> toRow;
+    private final JProgressBar progressBar;
+    private final Runnable whenDone;
+    private final int chunkSize;
+    private final String what;
+
+    /**
+     * Makes a worker, call execute to start it. The table should already be cleared.
+     * @param tableModel the table to add rows to.
+     * @param fetch gets the items, runs on the background thread.
+     * @param toRow makes one table row for an item, runs on the background thread.
+     * @param progressBar shows how far along it is, can be null.
+     * @param whenDone runs on the Swing thread after every row is in, not if cancelled. Can be null.
+     * @param what what's loading, like "students", for the progress text and messages.
+     */
+    public TableLoadWorker(DefaultTableModel tableModel, Supplier<List<T>> fetch, Function<T, Object[]> toRow,
+                           JProgressBar progressBar, Runnable whenDone, String what) {
+        if (tableModel == null || fetch == null || toRow == null) {
+            throw new IllegalArgumentException("tableModel, fetch and toRow cannot be null");
+        }
+        this.tableModel = tableModel;
+        this.fetch = fetch;
+        this.toRow = toRow;
+        this.progressBar = progressBar;
+        this.whenDone = whenDone;
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+        this.what = (what != null) ? what : "rows";
+        if (progressBar != null) {
+            progressBar.setValue(0);
+            progressBar.setString("Loading " + this.what + "...");
+            progressBar.setIndeterminate(true);
+            progressBar.setVisible(true);
+        }
+    }
+
+    /**
+     * Runs on the background thread. Fetches the items and makes rows in chunks.
+     * @return how many rows were made.
+     */
+    @Override
+    protected Integer doInBackground() {
+        List<T> items = fetch.get();
+        if (items == null || isCancelled()) {
+            return 0;
+        }
+        int total = items.size();
+        List<Object[]> chunk = new ArrayList<>(Math.min(chunkSize, total));
+        for (int i = 0; i < total; i++) {
+            if (isCancelled()) {
+                return i; // somebody started a newer load, stop here
+            }
+            chunk.add(toRow.apply(items.get(i)));
+            if (chunk.size() == chunkSize) {
+                publish(chunk);
+                chunk = new ArrayList<>(chunkSize);
+                setProgress((int) ((i + 1) * 100L / total));
+            }
+        }
+        if (!chunk.isEmpty()) {
+            publish(chunk);
+        }
+        setProgress(100);
+        return total;
+    }
+
+    /**
+     * Runs on the Swing thread. Adds the chunks that came in with one event each.
+     */
+    @Override
+    protected void process(List<List<Object[]>> chunks) {
+        if (isCancelled()) {
+            return; // a newer load owns the table now
+        }
+        @SuppressWarnings("unchecked")
+        Vector<Vector<Object>> rows = (Vector<Vector<Object>>) (Vector<?>) tableModel.getDataVector();
+        for (List<Object[]> chunk : chunks) {
+            int firstRow = rows.size();
+            for (Object[] row : chunk) {
+                Vector<Object> rowVector = new Vector<>(row.length);
+                for (Object cell : row) {
+                    rowVector.add(cell);
+                }
+                rows.add(rowVector);
+            }
+            tableModel.fireTableRowsInserted(firstRow, rows.size() - 1);
+        }
+        if (progressBar != null) {
+            progressBar.setIndeterminate(false);
+            progressBar.setValue(getProgress());
+            progressBar.setString("Loaded " + rows.size() + " " + what);
+        }
+    }
+
+    /**
+     * Runs on the Swing thread once the background part is over.
+     * Hides the progress bar and runs whenDone, unless this load was cancelled.
+     */
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            System.out.println("TableLoadWorker info: load of " + what + " cancelled");
+            return; // the newer load takes care of the progress bar
+        }
+        try {
+            get();
+            if (whenDone != null) {
+                whenDone.run();
+            }
+        } catch (InterruptedException | CancellationException e) {
+            System.out.println("TableLoadWorker info: load of " + what + " stopped");
+        } catch (ExecutionException e) {
+            System.out.println("TableLoadWorker problem: loading " + what + " failed: " + e.getCause());
+        }
+        if (progressBar != null) {
+            progressBar.setVisible(false);
+        }
+    }
+}
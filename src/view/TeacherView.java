@@ -7,6 +7,8 @@ import model.grading.CategoryBasedCalculator;
 import controller.TeacherController; // Need controller for actions
 import controller.AssignmentController; // Need controller for editing assignments
 import controller.UserController; // Need controller for user lookup maybe
+import controller.ControllerExecutor; // For getting background results back on the Swing thread
+import util.GradeImportReport; // For showing what a grade import did
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel; // For table data
@@ -15,10 +17,12 @@ import java.awt.*;
 import java.awt.event.*; // For button clicks
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections; // For counting import results
 import java.util.Comparator; // For category sorting in dialog
 import java.beans.PropertyChangeListener; // For Observer
 import java.beans.PropertyChangeEvent; // For Observer
 import java.io.File; // For file chooser
+import java.util.function.Supplier; // For background table loads
 
 /**
  * This class TeacherView is the main GUI window for the Teacher user.
@@ -49,6 +53,7 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
     private JButton removeStudentButton;
     private JButton addGradeButton;
     private JButton importStudentsButton;
+    private JButton importGradesButton;
     private JButton sortStudentsByNameButton; // Will toggle sort direction maybe
     private JButton sortStudentsByGradeButton;
     private JButton setGradingModeButton;
@@ -56,6 +61,7 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
     private JButton viewUngradedButton; // Will toggle text/functionality
     private JButton calculateAssignmentStatsButton;
     private JButton assignFinalGradeButton;
+    private JButton closeCourseButton;
     private JButton refreshDataButton;
 
     // Table models hold the data for JTables, allows easy updates
@@ -65,6 +71,14 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
     // state for the view ungraded button
     private boolean showingOnlyUngraded = false;
 
+    // background loads filling the tables, kept so a newer load can cancel the old one.
+    private TableLoadWorker<Student> studentLoad;
+    private TableLoadWorker<Assignment> assignmentLoad;
+    // shows how far the student table load is, hidden when nothing is loading.
+    private JProgressBar loadProgressBar;
+    // folds bursts of model events into one reload per frame.
+    private final EdtDebouncer courseRefresh = new EdtDebouncer(this::displaySelectedCourseData);
+
     /**
      * Constructor - sets up the frame, layout, components, and action listeners.
      * Takes the controllers and logged-in teacher. Builds the whole UI.
@@ -74,7 +88,8 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
         this.teacherController = controller;
         this.currentTeacher = teacher;
         this.userController = uCtrl;
-        this.assignmentController = assignCtrl; // Store assignment controller
+        // Store assignment controller, or make one that logs edits through the teacher controller
+        this.assignmentController = (assignCtrl != null) ? assignCtrl : new AssignmentController(controller);
 
         // Register listener for courses this teacher teaches
         registerCourseListeners();
@@ -101,6 +116,10 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
         
         refreshDataButton = new JButton("Refresh Current View");
         topPanel.add(refreshDataButton);
+        loadProgressBar = new JProgressBar(0, 100);
+        loadProgressBar.setStringPainted(true);
+        loadProgressBar.setVisible(false);
+        topPanel.add(loadProgressBar);
         this.add(topPanel, BorderLayout.NORTH);
 
         // --- Center Panel: Tabbed View ---
@@ -164,6 +183,8 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
         gradesPanel.add(addGradeButton);
         gradesPanel.add(new JLabel("Select Student -> "));
         gradesPanel.add(assignFinalGradeButton);
+        closeCourseButton = new JButton("Close Course for All Students...");
+        gradesPanel.add(closeCourseButton);
         tabbedPane.addTab("Grading Actions", gradesPanel);
 
         // Add tabbed pane to the center of the window
@@ -173,9 +194,11 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
         JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         bottomPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
         importStudentsButton = new JButton("Import Students from File...");
+        importGradesButton = new JButton("Import Grades from File...");
         setGradingModeButton = new JButton("Set Course Grading Mode...");
         setupCategoriesButton = new JButton("Setup Grading Categories...");
         bottomPanel.add(importStudentsButton);
+        bottomPanel.add(importGradesButton);
         bottomPanel.add(setGradingModeButton);
         bottomPanel.add(setupCategoriesButton);
         // Add bottom panel to the bottom of the window
@@ -256,13 +279,16 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
         // If no course selected or controller missing, clear tables and stop
         boolean haveValidSelection = (selectedCourse != null && teacherController != null);
         if (!haveValidSelection) {
+            cancelLoads();
             studentTableModel.setRowCount(0);
             assignmentTableModel.setRowCount(0);
+            loadProgressBar.setVisible(false);
             return;
         }
 
-        // Update Student Table
-        updateStudentTable(teacherController.viewStudentsInCourse(selectedCourse));
+        // Update Student Table, the roster is fetched in the background
+        Course courseToLoad = selectedCourse;
+        updateStudentTable(() -> teacherController.viewStudentsInCourse(courseToLoad));
 
         // Update Assignment Table based on filter state
         updateAssignmentTable(selectedCourse);
@@ -312,8 +338,8 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
             Course selectedCourse = (Course) courseComboBox.getSelectedItem();
             if (selectedCourse != null && teacherController != null) {
                 // TODO: Add option to toggle sort direction maybe later
-                List<Student> sortedStudents = teacherController.sortStudentsByName(selectedCourse, true, true); // Last name, A-Z
-                updateStudentTable(sortedStudents); // Refresh table with sorted list
+                // sorting happens in the background, then the table refills with the sorted list
+                updateStudentTable(() -> teacherController.sortStudentsByName(selectedCourse, true, true)); // Last name, A-Z
             } else {
                  showError("Select a course first.");
             }
@@ -325,8 +351,8 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
              Course selectedCourse = (Course) courseComboBox.getSelectedItem();
              Assignment selectedAssignment = getSelectedAssignmentFromTable(); // Use helper
              if (selectedCourse != null && selectedAssignment != null && teacherController != null) {
-                 List<Student> sortedStudents = teacherController.sortStudentsByGrade(selectedAssignment, selectedCourse, false); // Highest first
-                 updateStudentTable(sortedStudents); // Refresh student table with sorted list
+                 // sorting happens in the background, then the table refills with the sorted list
+                 updateStudentTable(() -> teacherController.sortStudentsByGrade(selectedAssignment, selectedCourse, false)); // Highest first
              } else {
                  showError("Select a course and an assignment first.");
              }
@@ -430,10 +456,7 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
                     Group group = null;
                     if (groupCheckbox.isSelected() && groupsCombo.getSelectedItem() != null) {
                         String groupName = (String) groupsCombo.getSelectedItem();
-                        group = selectedCourse.getGroups().stream()
-                            .filter(g -> g.getGroupName().equals(groupName))
-                            .findFirst()
-                            .orElse(null);
+                        group = selectedCourse.findGroupByName(groupName);
                     }
                     
                     Assignment newAssignment = new Assignment(name, points, dueDate, category, group);
@@ -533,21 +556,68 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
             if (selectedCourse == null) { showError("Select a course first."); return; }
             // Make file chooser dialog
             JFileChooser fileChooser = new JFileChooser();
-            fileChooser.setDialogTitle("Select Student CSV File (username,first,last)");
+            fileChooser.setDialogTitle("Select Student CSV File(s) (username,first,last)");
+            fileChooser.setMultiSelectionEnabled(true); // several files get imported at the same time
             // Show the dialog to choose file
             int result = fileChooser.showOpenDialog(this);
             // Check if user actually chose a file
             if (result == JFileChooser.APPROVE_OPTION) {
-                File selectedFile = fileChooser.getSelectedFile();
-                // Call controller method to handle the import process
-                boolean success = teacherController.importStudentsFromFile(selectedFile.getAbsolutePath(), selectedCourse);
-                if (success) {
-                    showInfo("Student import finished.\nCheck console output for details/warnings.");
-                    // Observer should update student table via Course event
-                } else { showError("Student import failed. Check file or console."); }
+                List<String> paths = new ArrayList<>();
+                for (File selectedFile : fileChooser.getSelectedFiles()) {
+                    paths.add(selectedFile.getAbsolutePath());
+                }
+                // reading the files blocks, so the import runs in the background and the button stays off until it's done.
+                importStudentsButton.setEnabled(false);
+                ControllerExecutor.onEdt(teacherController.importStudentsFromFiles(paths, selectedCourse), (results, error) -> {
+                    importStudentsButton.setEnabled(true);
+                    if (error != null) {
+                        showError("Student import failed: " + error.getMessage());
+                        return;
+                    }
+                    int worked = Collections.frequency(results, Boolean.TRUE);
+                    if (worked == results.size()) {
+                        showInfo("Student import finished.\nCheck console output for details/warnings.");
+                        // Observer should update student table via Course event
+                    } else { showError((results.size() - worked) + " of " + results.size() + " student imports failed. Check file or console."); }
+                });
             }
         });
 
+        // Import Grades reads a spreadsheet with username then one column per assignment
+        importGradesButton.addActionListener(e -> {
+            System.out.println("Import Grades button pressed");
+            Course selectedCourse = (Course) courseComboBox.getSelectedItem();
+            if (selectedCourse == null || teacherController == null) { showError("Select a course first."); return; }
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Select Grade CSV File (username,assignment names...)");
+            if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            String path = fileChooser.getSelectedFile().getAbsolutePath();
+            // big files take a while, so the import runs in the background like the student import.
+            importGradesButton.setEnabled(false);
+            ControllerExecutor.shared().submit(() -> teacherController.importGradesFromFile(path, selectedCourse), (report, error) -> {
+                importGradesButton.setEnabled(true);
+                if (error != null || report == null) {
+                    showError("Grade import failed. Check the file or console.");
+                    return;
+                }
+                StringBuilder message = new StringBuilder();
+                message.append("Imported ").append(report.getGradesImported()).append(" grades for ")
+                       .append(report.getRowsImported()).append(" of ").append(report.getRowsRead()).append(" students.");
+                for (String problem : report.getHeaderProblems()) {
+                    message.append("\n").append(problem);
+                }
+                // only the first few rows, the console has the whole report.
+                List<GradeImportReport.RowError> rowErrors = report.getRowErrors();
+                for (int i = 0; i < Math.min(rowErrors.size(), 10); i++) {
+                    message.append("\n").append(rowErrors.get(i));
+                }
+                if (report.getRowErrorCount() > 10) {
+                    message.append("\n...and ").append(report.getRowErrorCount() - 10).append(" more row problems.");
+                }
+                if (report.isClean()) { showInfo(message.toString()); } else { showError(message.toString()); }
+            });
+        });
+
         // Set Grading Mode needs popup
         setGradingModeButton.addActionListener(e -> {
              System.out.println("Set Grading Mode button pressed");
@@ -571,8 +641,19 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
              if (selectedCalc != null) {
                   // Tell controller to set the chosen calculator on the course model
                   boolean success = teacherController.setCourseGradingMode(selectedCourse, selectedCalc);
-                  if (success) { showInfo("Grading mode set for course."); }
-                  else { showError("Failed to set grading mode."); }
+                  if (!success) { showError("Failed to set grading mode."); return; }
+                  // every average changed, working them all out can take a bit for a big class,
+                  // so it runs in the background and the button stays off until it's done.
+                  setGradingModeButton.setEnabled(false);
+                  ControllerExecutor.onEdt(teacherController.recomputeCourseAveragesInBackground(selectedCourse), (averages, error) -> {
+                      setGradingModeButton.setEnabled(true);
+                      if (error != null || averages == null) {
+                          showError("Grading mode set, but the averages couldn't be worked out. Check console.");
+                          return;
+                      }
+                      showInfo("Grading mode set for course.\n"
+                              + String.format("Class average: %.1f%%", averages.getClassAverage()));
+                  });
              }
         });
 
@@ -616,6 +697,28 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
                  }
              } else { showError("Select a course and student first."); }
         });
+
+        // Close Course finishes the selected course for every enrolled student at once
+        closeCourseButton.addActionListener(e -> {
+            System.out.println("Close Course button pressed");
+            Course selectedCourse = (Course) courseComboBox.getSelectedItem();
+            if (selectedCourse == null || teacherController == null) { showError("Select a course first."); return; }
+            int confirm = JOptionPane.showConfirmDialog(this,
+                    "Give every enrolled student their final grade and close " + selectedCourse.getName() + "?",
+                    "Close Course", JOptionPane.YES_NO_OPTION);
+            if (confirm != JOptionPane.YES_OPTION) return;
+            // working out the whole class can take a bit, so it runs in the background.
+            closeCourseButton.setEnabled(false);
+            ControllerExecutor.shared().submit(() -> teacherController.closeCourse(selectedCourse), (finals, error) -> {
+                closeCourseButton.setEnabled(true);
+                if (error != null || finals == null) {
+                    showError("Failed to close course. Check a grading mode is set, or console.");
+                    return;
+                }
+                showInfo("Closed " + selectedCourse.getName() + " for " + finals.getStudentCount() + " students.\n"
+                        + String.format("Class average: %.1f%%", finals.getClassAverage()));
+            });
+        });
     }
 
     // --- Helper methods for GUI ---
@@ -671,11 +774,10 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
      */
     private Student findStudentInCourse(Course course, String username) {
         if (course == null || username == null) return null;
-        // Loop through students in the course using getter returns copy
-        for (Student s : course.getEnrolledStudents()) {
-            if (s.getUsername().equals(username)) {
-                return s; // Found it
-            }
+        // Look the username up in the course's roster map instead of copying the whole roster
+        Student found = course.getEnrolledStudent(username);
+        if (found != null) {
+            return found; // Found it
         }
         System.out.println("Helper problem: findStudentInCourse couldn't find " + username);
         return null; // Didnt find it
@@ -709,50 +811,76 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
      /**
       * updateStudentTable is a helper used by sorting methods or refresh
       * to clear and refill the student table with a new list.
-      * @param students The list of students to display.
+      * The list is fetched (and sorted) on a background thread and the rows come
+      * back in chunks, any student load still running is cancelled first.
+      * @param fetchStudents gets the list of students to display, runs off the Swing thread.
       */
-     private void updateStudentTable(List<Student> students) {
-         studentTableModel.setRowCount(0); // Clear table first
-         // Check if list is valid
-         boolean haveStudents = (students != null);
-         if (haveStudents) {
-             for (Student s : students) { // Refill table
-                 studentTableModel.addRow(new Object[]{s.getUsername(), s.getFirstName(), s.getLastName(), s.getStudentId()});
-             }
+     private void updateStudentTable(Supplier<List<Student>> fetchStudents) {
+         if (studentLoad != null) {
+             studentLoad.cancel(true); // older load is stale now
          }
+         studentTableModel.setRowCount(0); // Clear table first
+         studentLoad = new TableLoadWorker<>(studentTableModel, fetchStudents,
+             s -> new Object[]{s.getUsername(), s.getFirstName(), s.getLastName(), s.getStudentId()},
+             loadProgressBar, null, "students");
+         studentLoad.execute();
      }
 
      /**
       * updateAssignmentTable is a helper used by refresh or filters
       * to clear and refill the assignment table with a new list.
+      * The list is fetched on a background thread, any assignment load still running is cancelled first.
       * @param course The course whose assignments to display (needed for filtering maybe)
       */
       private void updateAssignmentTable(Course course) {
+         if (assignmentLoad != null) {
+             assignmentLoad.cancel(true); // older load is stale now
+         }
          assignmentTableModel.setRowCount(0); // Clear table
          if (course == null) return; // Need course
 
-         List<Assignment> assignmentsToShow;
          // Decide whether to show all or only ungraded based on flag
-         if (showingOnlyUngraded) {
-              assignmentsToShow = teacherController.viewUngradedAssignments(course); // Get filtered list
+         boolean onlyUngraded = showingOnlyUngraded;
+         Supplier<List<Assignment>> fetchAssignments;
+         if (onlyUngraded) {
+              fetchAssignments = () -> teacherController.viewUngradedAssignments(course); // Get filtered list
               viewUngradedButton.setText("Show All Assignments"); // Update button text
          } else {
-              assignmentsToShow = course.getAllAssignments(); // Get all assignments
+              fetchAssignments = course::getAllAssignments; // Get all assignments
               viewUngradedButton.setText("Show Only Ungraded"); // Reset button text
          }
 
-         // Check if list has assignments
-         boolean haveAssignments = (assignmentsToShow != null);
-         if (haveAssignments) {
-             for (Assignment a : assignmentsToShow) { // Refill table
-                 String dueDateStr = a.getDueDate(); // String date
-                 String categoryNameStr = a.getCategoryName() != null ? a.getCategoryName() : "None";
-                 String isGradedStr = a.isGraded() ? "Yes" : "No";
-                 assignmentTableModel.addRow(new Object[]{a.getName(), dueDateStr, a.getPointsWorth(), categoryNameStr, isGradedStr});
-             }
-         }
+         assignmentLoad = new TableLoadWorker<>(assignmentTableModel, fetchAssignments, a -> {
+             String dueDateStr = a.getDueDate(); // String date
+             String categoryNameStr = a.getCategoryName() != null ? a.getCategoryName() : "None";
+             String isGradedStr = a.isGraded() ? "Yes" : "No";
+             return new Object[]{a.getName(), dueDateStr, a.getPointsWorth(), categoryNameStr, isGradedStr};
+         }, null, null, "assignments");
+         assignmentLoad.execute();
       }
 
+     /**
+      * cancelLoads stops any table loads still running, like when there's no course to show.
+      */
+     private void cancelLoads() {
+         if (studentLoad != null) {
+             studentLoad.cancel(true);
+         }
+         if (assignmentLoad != null) {
+             assignmentLoad.cancel(true);
+         }
+     }
+
+    /**
+     * Closes the window and cancels any table loads still running.
+     */
+    @Override
+    public void dispose() {
+        courseRefresh.cancel();
+        cancelLoads();
+        super.dispose();
+    }
+
     // --- Simple Dialog Helpers ---
     /** Shows a basic information message popup. */
     private void showInfo(String message) {
@@ -793,10 +921,13 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
         // List of property names from Course model that mean we should refresh tables
         if (changeIsInSelectedCourse) {
             if ("studentEnrolled".equals(propertyThatChanged) ||
+                "studentsEnrolled".equals(propertyThatChanged) ||
                 "studentRemoved".equals(propertyThatChanged) ||
                 "assignmentAdded".equals(propertyThatChanged) ||
                 "assignmentRemoved".equals(propertyThatChanged) ||
-                "groupAdded".equals(propertyThatChanged)) {
+                "assignmentChanged".equals(propertyThatChanged) ||
+                "groupAdded".equals(propertyThatChanged) ||
+                "courseClosed".equals(propertyThatChanged)) {
                 // If students, assignments or groups changed in this course, refresh needed
                 needsRefresh = true;
                 System.out.println("Course structure changed, flagging refresh");
@@ -813,12 +944,10 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
 
         // If we decided a refresh is needed...
         if (needsRefresh) {
-            // ... use invokeLater to make sure the GUI update happens safely on the Swing event thread.
-            // Otherwise GUI can crash or act weird if updated from wrong thread.
-            SwingUtilities.invokeLater(() -> {
-                 System.out.println("TeacherView refreshing data due to event: " + propertyThatChanged);
-                 displaySelectedCourseData(); // Call helper to reload table data
-            });
+            // ... ask the debouncer, it runs the reload on the Swing event thread so the GUI
+            // doesn't act weird, and a burst of events like an import only reloads once per frame.
+            System.out.println("TeacherView asking for refresh due to event: " + propertyThatChanged);
+            courseRefresh.request(); // reloads the table data soon
         }
     }
 
@@ -860,6 +989,7 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
     public JButton getRemoveStudentButton() { return removeStudentButton; }
     public JButton getAddGradeButton() { return addGradeButton; }
     public JButton getImportStudentsButton() { return importStudentsButton; }
+    public JButton getImportGradesButton() { return importGradesButton; }
     public JButton getSortStudentsByNameButton() { return sortStudentsByNameButton; }
     public JButton getSortStudentsByGradeButton() { return sortStudentsByGradeButton; }
     public JButton getSetGradingModeButton() { return setGradingModeButton; }
@@ -867,6 +997,7 @@ public class TeacherView extends JFrame implements PropertyChangeListener {
     public JButton getViewUngradedButton() { return viewUngradedButton; }
     public JButton getCalculateAssignmentStatsButton() { return calculateAssignmentStatsButton; }
     public JButton getAssignFinalGradeButton() { return assignFinalGradeButton; }
+    public JButton getCloseCourseButton() { return closeCourseButton; }
     public JButton getRefreshDataButton() { return refreshDataButton; }
     public JButton getCreateGroupBtn() { return createGroupBtn; }
     public JComboBox<String> getGroupsCombo() { return groupsCombo; }